@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.benchmark;
+
+import com.agapsys.security.web.AttributeService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Attribute access from concurrent threads.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttributeServiceBenchmark {
+	// INSTANCE SCOPE ==========================================================
+	private static final String ATTRIBUTE = "attribute";
+
+	private final AttributeService attributeService = AttributeService.getInstance();
+	private final Object value = new Object();
+
+	@Benchmark
+	public Object setGetDestroy() {
+		attributeService.setAttribute(ATTRIBUTE, value);
+		Object result = attributeService.getAttribute(ATTRIBUTE);
+		attributeService.destroyAttributes();
+		return result;
+	}
+
+	@Benchmark
+	public Object getRequestContext() {
+		return attributeService.getRequestContext().getRequest();
+	}
+	// =========================================================================
+}
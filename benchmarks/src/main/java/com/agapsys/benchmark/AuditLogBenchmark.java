@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.benchmark;
+
+import com.agapsys.security.web.AuditEvent;
+import com.agapsys.security.web.AuditLog;
+import com.agapsys.security.web.AuditSink;
+import com.agapsys.security.web.DenialReason;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost paid by request threads to record audit events.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class AuditLogBenchmark {
+	// CLASS SCOPE =============================================================
+	/** Sink discarding events, so the writer drains as fast as possible. */
+	private static class NullSink implements AuditSink {
+		@Override
+		public void write(AuditEvent event) {}
+
+		@Override
+		public void flush() {}
+
+		@Override
+		public void close() {}
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@Param({"DROP", "BLOCK"})
+	public AuditLog.OverflowPolicy overflowPolicy;
+
+	private AuditLog           auditLog;
+	private BenchmarkUser      user;
+	private HttpServletRequest request;
+
+	@Setup
+	public void setup() {
+		auditLog = new AuditLog(new NullSink(), AuditLog.DEFAULT_CAPACITY, overflowPolicy);
+		user     = new BenchmarkUser(4, false);
+		request  = new Mocks.Request().setRemoteAddr("10.0.0.1").setMethod("GET").setRequestUri("/app/secured").toHttpServletRequest();
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		System.out.println();
+		System.out.println("Dropped events: " + auditLog.getDroppedCount());
+		auditLog.close();
+	}
+
+	@Benchmark
+	public void record() {
+		auditLog.record(AuditEvent.Type.DENIED, user, request, DenialReason.FORBIDDEN);
+	}
+	// =========================================================================
+}
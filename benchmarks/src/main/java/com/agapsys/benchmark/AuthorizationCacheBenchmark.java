@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.benchmark;
+
+import com.agapsys.security.web.AttributeService;
+import com.agapsys.security.web.AuthorizationCache;
+import com.agapsys.security.web.User;
+import com.agapsys.security.web.VersionedUser;
+import com.agapsys.security.web.WebSecurityFilter;
+import com.agapsys.security.web.WebSecurityManager;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * First role check of a request, with and without an {@linkplain AuthorizationCache}.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthorizationCacheBenchmark {
+	// CLASS SCOPE =============================================================
+	private static class VersionedBenchmarkUser extends BenchmarkUser implements VersionedUser {
+		private VersionedBenchmarkUser(int roleCount) {
+			super(roleCount, false);
+		}
+
+		@Override
+		public long getRolesVersion() {
+			return 0;
+		}
+	}
+
+	private static class FixedUserSecurityManager extends WebSecurityManager {
+		private final User user;
+
+		private FixedUserSecurityManager(User user) {
+			this.user = user;
+		}
+
+		@Override
+		protected User loadCurrentUser() {
+			return user;
+		}
+
+		@Override
+		protected void storeCurrentUser(User user) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		protected void removeCurrentUser() {
+			throw new UnsupportedOperationException();
+		}
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@Param({"4", "64"})
+	public int userRoles;
+
+	@Param({"false", "true"})
+	public boolean cached;
+
+	private final AttributeService attributeService = AttributeService.getInstance();
+
+	private WebSecurityManager securityManager;
+	private HttpServletRequest request;
+	private String[]           roles;
+
+	@Setup
+	public void setup() {
+		VersionedBenchmarkUser user = new VersionedBenchmarkUser(userRoles);
+		Set<String> userRoleSet = user.getRoles();
+
+		securityManager = new FixedUserSecurityManager(user);
+		request = new Mocks.Request().toHttpServletRequest();
+		roles = new String[] {userRoleSet.toArray(new String[userRoleSet.size()])[userRoles - 1]};
+
+		if (cached)
+			securityManager.setAuthorizationCache(new AuthorizationCache());
+	}
+
+	@Benchmark
+	public boolean isAllowedNewRequest() {
+		attributeService.setAttribute(WebSecurityFilter.ATTR_HTTP_REQUEST, request);
+
+		try {
+			return securityManager.isAllowed(roles);
+		} finally {
+			attributeService.destroyAttributes();
+		}
+	}
+	// =========================================================================
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the benchmarks and compares results against a baseline.
+ *
+ * Each benchmark is run twice: in throughput mode with the GC profiler
+ * (ops/s and bytes allocated per operation) and in sample mode (p99
+ * latency). Raw JMH results are written as JSON into the output directory.
+ *
+ * Usage: {@code java -cp target/benchmarks.jar com.agapsys.benchmark.BenchmarkRunner [regexp]}
+ *
+ * System properties:
+ * <ul>
+ *   <li>{@code baseline.file}: baseline file (default: {@code baseline.properties})</li>
+ *   <li>{@code baseline.update}: when {@code true}, the baseline is updated with current results instead of being checked</li>
+ *   <li>{@code output.dir}: directory where JSON results are written (default: {@code target})</li>
+ * </ul>
+ *
+ * Process exits with status 1 if any metric regressed beyond its tolerance ({@code tolerance.<metric>} entries in the baseline file).
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class BenchmarkRunner {
+	// CLASS SCOPE =============================================================
+	private static final String THROUGHPUT = "throughput";
+	private static final String ALLOCATION = "alloc";
+	private static final String P99        = "p99";
+
+	private static final String TOLERANCE_KEY = "tolerance";
+
+	/** Default relative tolerances. Tail latency is much noisier than throughput. */
+	private static final Map<String, Double> DEFAULT_TOLERANCES = new TreeMap<>();
+
+	static {
+		DEFAULT_TOLERANCES.put(THROUGHPUT, 0.2);
+		DEFAULT_TOLERANCES.put(ALLOCATION, 0.1);
+		DEFAULT_TOLERANCES.put(P99,        1.0);
+	}
+
+	private static double getTolerance(Properties baseline, String metric) {
+		return Double.parseDouble(baseline.getProperty(TOLERANCE_KEY + "." + metric, Double.toString(DEFAULT_TOLERANCES.get(metric))));
+	}
+
+	/** Allocation differences below this value (bytes/op) are ignored. */
+	private static final double ALLOCATION_SLACK = 16;
+
+	/** Builds an identifier for given benchmark (method name followed by parameters). */
+	private static String getLabel(BenchmarkParams params) {
+		String benchmark = params.getBenchmark();
+		StringBuilder sb = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+
+		String separator = "[";
+		for (String key : params.getParamsKeys()) {
+			sb.append(separator).append(key).append('-').append(params.getParam(key));
+			separator = ",";
+		}
+
+		if (!params.getParamsKeys().isEmpty())
+			sb.append(']');
+
+		return sb.toString();
+	}
+
+	private static ChainedOptionsBuilder getOptions(String include, File outputDir, String name) {
+		return new OptionsBuilder()
+			.include(include)
+			.warmupIterations(3)
+			.warmupTime(TimeValue.seconds(1))
+			.measurementIterations(3)
+			.measurementTime(TimeValue.seconds(1))
+			.forks(1)
+			.resultFormat(ResultFormatType.JSON)
+			.result(new File(outputDir, name + ".json").getPath());
+	}
+
+	private static Collection<RunResult> run(ChainedOptionsBuilder options) {
+		try {
+			return new Runner(options.build()).run();
+		} catch (RunnerException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	private static Double getSecondaryScore(RunResult runResult, String suffix) {
+		for (Map.Entry<String, Result> entry : runResult.getSecondaryResults().entrySet()) {
+			if (entry.getKey().endsWith(suffix))
+				return entry.getValue().getScore();
+		}
+
+		return null;
+	}
+
+	private static Properties readBaseline(File file) throws IOException {
+		Properties properties = new Properties();
+
+		try (InputStream in = new FileInputStream(file)) {
+			properties.load(in);
+		}
+
+		return properties;
+	}
+
+	private static void writeBaseline(File file, Map<String, Double> results, Properties previous) throws IOException {
+		Properties properties = new Properties() {
+			// Keeps entries sorted
+			@Override
+			public synchronized Enumeration<Object> keys() {
+				return Collections.enumeration(new TreeSet<>(super.keySet()));
+			}
+		};
+
+		// Entries of benchmarks which were not run are kept
+		properties.putAll(previous);
+
+		for (String metric : DEFAULT_TOLERANCES.keySet()) {
+			properties.setProperty(TOLERANCE_KEY + "." + metric, Double.toString(getTolerance(previous, metric)));
+		}
+
+		for (Map.Entry<String, Double> entry : results.entrySet()) {
+			properties.setProperty(entry.getKey(), String.format("%.2f", entry.getValue()));
+		}
+
+		try (OutputStream out = new FileOutputStream(file)) {
+			properties.store(out, "Benchmark baseline. Regenerate with -Dbaseline.update=true");
+		}
+	}
+
+	/**
+	 * Compares results against baseline.
+	 * @return detected regressions.
+	 */
+	private static List<String> compare(Map<String, Double> results, Properties baseline) {
+		List<String> regressions = new ArrayList<>();
+
+		for (Map.Entry<String, Double> entry : results.entrySet()) {
+			String key = entry.getKey();
+			String baselineValue = baseline.getProperty(key);
+
+			if (baselineValue == null) {
+				System.out.println(String.format("NEW        %s = %.2f", key, entry.getValue()));
+				continue;
+			}
+
+			double expected = Double.parseDouble(baselineValue);
+			double actual = entry.getValue();
+			String metric = key.substring(key.lastIndexOf('.') + 1);
+			double tolerance = getTolerance(baseline, metric);
+			boolean regressed;
+
+			switch (metric) {
+				case THROUGHPUT:
+					regressed = actual < expected * (1 - tolerance);
+					break;
+
+				case ALLOCATION:
+					regressed = actual > expected * (1 + tolerance) + ALLOCATION_SLACK;
+					break;
+
+				default:
+					regressed = actual > expected * (1 + tolerance);
+			}
+
+			String line = String.format("%-10s %s = %.2f (baseline: %.2f, %+.1f%%)", regressed ? "REGRESSION" : "OK", key, actual, expected, expected == 0 ? 0 : (actual - expected) * 100 / expected);
+			System.out.println(line);
+
+			if (regressed)
+				regressions.add(line);
+		}
+
+		return regressions;
+	}
+
+	public static void main(String[] args) throws IOException {
+		String include = args.length > 0 ? args[0] : "com\\.agapsys\\.benchmark\\..*";
+		File baselineFile = new File(System.getProperty("baseline.file", "baseline.properties"));
+		boolean update = Boolean.getBoolean("baseline.update");
+		File outputDir = new File(System.getProperty("output.dir", "target"));
+		outputDir.mkdirs();
+
+		Map<String, Double> results = new TreeMap<>();
+
+		Collection<RunResult> throughputResults = run(
+			getOptions(include, outputDir, "jmh-throughput")
+				.mode(Mode.Throughput)
+				.timeUnit(TimeUnit.SECONDS)
+				.addProfiler(GCProfiler.class)
+		);
+
+		for (RunResult runResult : throughputResults) {
+			String label = getLabel(runResult.getParams());
+			results.put(label + "." + THROUGHPUT, runResult.getPrimaryResult().getScore());
+
+			Double allocation = getSecondaryScore(runResult, "gc.alloc.rate.norm");
+			if (allocation != null)
+				results.put(label + "." + ALLOCATION, allocation);
+		}
+
+		Collection<RunResult> sampleResults = run(
+			getOptions(include, outputDir, "jmh-sample")
+				.mode(Mode.SampleTime)
+				.timeUnit(TimeUnit.NANOSECONDS)
+		);
+
+		for (RunResult runResult : sampleResults) {
+			String label = getLabel(runResult.getParams());
+			results.put(label + "." + P99, runResult.getPrimaryResult().getStatistics().getPercentile(99));
+		}
+
+		if (update || !baselineFile.exists()) {
+			Properties previous = baselineFile.exists() ? readBaseline(baselineFile) : new Properties();
+			writeBaseline(baselineFile, results, previous);
+			System.out.println("Baseline written to " + baselineFile.getPath());
+			return;
+		}
+
+		List<String> regressions = compare(results, readBaseline(baselineFile));
+		if (!regressions.isEmpty()) {
+			System.out.println(regressions.size() + " regression(s) detected");
+			System.exit(1);
+		}
+	}
+	// =========================================================================
+}
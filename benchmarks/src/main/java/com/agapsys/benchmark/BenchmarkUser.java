@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.benchmark;
+
+import com.agapsys.security.web.User;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * User with a configurable number of roles (ROLE_0, ROLE_1, ...).
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class BenchmarkUser implements User {
+	// CLASS SCOPE =============================================================
+	public static String[] getRoles(int count) {
+		String[] roles = new String[count];
+
+		for (int i = 0; i < count; i++) {
+			roles[i] = "ROLE_" + i;
+		}
+
+		return roles;
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final Set<String> roles;
+	private final boolean admin;
+
+	public BenchmarkUser(int roleCount, boolean admin) {
+		Set<String> roleSet = new LinkedHashSet<>();
+		Collections.addAll(roleSet, getRoles(roleCount));
+
+		this.roles = Collections.unmodifiableSet(roleSet);
+		this.admin = admin;
+	}
+
+	@Override
+	public Set<String> getRoles() {
+		return roles;
+	}
+
+	@Override
+	public boolean isAdmin() {
+		return admin;
+	}
+	// =========================================================================
+}
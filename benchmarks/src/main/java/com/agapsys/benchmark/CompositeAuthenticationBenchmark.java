@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.benchmark;
+
+import com.agapsys.security.web.AttributeService;
+import com.agapsys.security.web.Authenticator;
+import com.agapsys.security.web.BasicAuthenticator;
+import com.agapsys.security.web.CompositeWebSecurityManager;
+import com.agapsys.security.web.CredentialVerifier;
+import com.agapsys.security.web.User;
+import com.agapsys.security.web.WebSecurityFilter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * User resolution by a {@linkplain CompositeWebSecurityManager} for each
+ * credential type: cached Basic credentials, a bearer token sharing the
+ * Authorization header, a cookie placed after both, and no credentials.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompositeAuthenticationBenchmark {
+	// CLASS SCOPE =============================================================
+	private static final User USER = new User() {
+		@Override
+		public Set<String> getRoles() {
+			return Collections.emptySet();
+		}
+
+		@Override
+		public boolean isAdmin() {
+			return false;
+		}
+	};
+
+	private static class StaticAuthenticator extends Authenticator {
+		private StaticAuthenticator(String header, String scheme, String cookie) {
+			super(header, scheme, cookie);
+		}
+
+		@Override
+		protected User authenticate(HttpServletRequest request, String credentials) {
+			return USER;
+		}
+	}
+
+	private static final char[] BASE64_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+	/** Encodes standard, padded Base64 (javax.xml.bind is not available on newer JDKs). */
+	private static String base64(byte[] data) {
+		StringBuilder sb = new StringBuilder((data.length + 2) / 3 * 4);
+		for (int i = 0; i < data.length; i += 3) {
+			int chunk = (data[i] & 0xff) << 16;
+			if (i + 1 < data.length) chunk |= (data[i + 1] & 0xff) << 8;
+			if (i + 2 < data.length) chunk |= data[i + 2] & 0xff;
+
+			sb.append(BASE64_ALPHABET[(chunk >> 18) & 0x3f]);
+			sb.append(BASE64_ALPHABET[(chunk >> 12) & 0x3f]);
+			sb.append(i + 1 < data.length ? BASE64_ALPHABET[(chunk >> 6) & 0x3f] : '=');
+			sb.append(i + 2 < data.length ? BASE64_ALPHABET[chunk & 0x3f] : '=');
+		}
+		return sb.toString();
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@Param({"basic", "bearer", "cookie", "anonymous"})
+	public String credentials;
+
+	private final AttributeService attributeService = AttributeService.getInstance();
+
+	private CompositeWebSecurityManager securityManager;
+	private HttpServletRequest          request;
+
+	@Setup
+	public void setup() {
+		CredentialVerifier verifier = new CredentialVerifier() {
+			@Override
+			public User verify(String username, String password) {
+				return USER;
+			}
+		};
+
+		Authenticator cookie = new StaticAuthenticator(null, null, "auth");
+		securityManager = new CompositeWebSecurityManager(cookie, new BasicAuthenticator(verifier), new StaticAuthenticator("Authorization", "Bearer", null), cookie);
+
+		Mocks.Request mock = new Mocks.Request();
+		switch (credentials) {
+			case "basic":
+				mock.setHeader("Authorization", "Basic " + base64("user:secret".getBytes(StandardCharsets.UTF_8)));
+				break;
+
+			case "bearer":
+				mock.setHeader("Authorization", "Bearer token");
+				break;
+
+			case "cookie":
+				mock.setCookie("auth", "token");
+				break;
+		}
+		request = mock.toHttpServletRequest();
+	}
+
+	@TearDown
+	public void tearDown() {
+		attributeService.destroyAttributes();
+	}
+
+	/** First user lookup performed by a request. */
+	@Benchmark
+	public User getCurrentUser() {
+		attributeService.setAttribute(WebSecurityFilter.ATTR_HTTP_REQUEST, request);
+
+		try {
+			return securityManager.getCurrentUser();
+		} finally {
+			attributeService.destroyAttributes();
+		}
+	}
+	// =========================================================================
+}
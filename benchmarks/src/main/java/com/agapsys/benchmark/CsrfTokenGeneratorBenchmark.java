@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.benchmark;
+
+import com.agapsys.security.web.CsrfTokenGenerator;
+import com.agapsys.security.web.SecureRandomCsrfTokenGenerator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Token generation under a login storm: every thread generates tokens back to back.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(Threads.MAX)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsrfTokenGeneratorBenchmark {
+	// INSTANCE SCOPE ==========================================================
+	@Param({"legacy", "secureRandom"})
+	public String generator;
+
+	private CsrfTokenGenerator tokenGenerator;
+
+	@Setup
+	public void setup() {
+		switch (generator) {
+			case "legacy":
+				tokenGenerator = new LegacyCsrfTokenGenerator();
+				break;
+
+			case "secureRandom":
+				tokenGenerator = new SecureRandomCsrfTokenGenerator();
+				break;
+
+			default:
+				throw new IllegalArgumentException("Unknown generator: " + generator);
+		}
+	}
+
+	@Benchmark
+	public String generateToken() {
+		return tokenGenerator.generateToken();
+	}
+	// =========================================================================
+}
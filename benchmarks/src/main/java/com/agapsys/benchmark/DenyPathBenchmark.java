@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.benchmark;
+
+import com.agapsys.security.Security;
+import com.agapsys.security.SecurityManager;
+import com.agapsys.security.web.DenialMode;
+import com.agapsys.security.web.DenialReason;
+import com.agapsys.security.web.SessionSecurityManager;
+import com.agapsys.security.web.WebSecurity;
+import com.agapsys.security.web.WebSecurityFilter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Forbidden requests handled by each denial mode, and by a non-exceptional check ("checkAccess").
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DenyPathBenchmark {
+	// CLASS SCOPE =============================================================
+	/** Emulates the code injected into a method annotated with {@code @Secured("ROLE_0")}. */
+	private static final FilterChain SECURED_ACTION = new FilterChain() {
+		@Override
+		public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+			String[] roles = {"ROLE_0"};
+			SecurityManager sm = Security.getSecurityManager();
+
+			if (!sm.isAllowed(roles))
+				sm.onNotAllowed();
+		}
+	};
+
+	/** Checks the same roles and sets the response status instead of throwing. */
+	private static final FilterChain CHECKED_ACTION = new FilterChain() {
+		@Override
+		public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+			DenialReason reason = WebSecurity.getSecurityManager().checkAccess("ROLE_0");
+
+			if (reason != null)
+				((HttpServletResponse) response).setStatus(reason.getStatus());
+		}
+	};
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@Param({"STACK_TRACE", "STACKLESS", "SHARED", "checkAccess"})
+	public String denial;
+
+	private WebSecurityFilter   filter;
+	private FilterChain         action;
+	private HttpServletRequest  request;
+	private Mocks.Response      responseMock;
+	private HttpServletResponse response;
+
+	@Setup
+	public void setup() throws ServletException {
+		SessionSecurityManager securityManager = new SessionSecurityManager();
+		WebSecurity.init(securityManager);
+
+		if (denial.equals("checkAccess")) {
+			action = CHECKED_ACTION;
+		} else {
+			action = SECURED_ACTION;
+			securityManager.setDenialMode(DenialMode.valueOf(denial));
+		}
+
+		filter = new WebSecurityFilter();
+		filter.init(null);
+
+		request = new Mocks.Request().setRequestUri("/secured").toHttpServletRequest();
+		responseMock = new Mocks.Response();
+		response = responseMock.toHttpServletResponse();
+
+		// User without required role
+		WebSecurityFilterBenchmark.login(request, new BenchmarkUser(0, false));
+	}
+
+	@Benchmark
+	public int doFilter() throws IOException, ServletException {
+		responseMock.reset();
+		filter.doFilter(request, response, action);
+		return responseMock.getStatus();
+	}
+	// =========================================================================
+}
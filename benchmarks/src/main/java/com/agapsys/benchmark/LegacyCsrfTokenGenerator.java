@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.benchmark;
+
+import com.agapsys.security.web.CsrfTokenGenerator;
+import java.util.Random;
+
+/**
+ * Token generator previously embedded in SessionCsrfSecurityManager. Kept as a baseline.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class LegacyCsrfTokenGenerator implements CsrfTokenGenerator {
+	// CLASS SCOPE =============================================================
+	private static final int CSRF_TOKEN_LENGTH = 128;
+
+	private static String getRandomString(int length) throws IllegalArgumentException {
+		char[] chars = "abcdefghijklmnopqrstuvwxyz0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+		return getRandomString(length, chars);
+	}
+
+	private static String getRandomString(int length, char[] chars) throws IllegalArgumentException {
+		if (length < 1)
+			throw new IllegalArgumentException("Invalid length: " + length);
+
+		if (chars == null || chars.length == 0)
+			throw new IllegalArgumentException("Null/Empty chars");
+
+		StringBuilder sb = new StringBuilder();
+		Random random = new Random();
+		for (int i = 0; i < length; i++) {
+			char c = chars[random.nextInt(chars.length)];
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@Override
+	public String generateToken() {
+		return getRandomString(CSRF_TOKEN_LENGTH);
+	}
+	// =========================================================================
+}
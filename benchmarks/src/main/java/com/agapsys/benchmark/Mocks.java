@@ -0,0 +1,234 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Minimal servlet API objects backed by dynamic proxies.
+ *
+ * Only the methods used by the framework are implemented. Any other method
+ * returns the default value of its return type.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class Mocks {
+	// CLASS SCOPE =============================================================
+	private static Object defaultValue(Class<?> type) {
+		if (type == boolean.class)
+			return false;
+
+		if (type == int.class)
+			return 0;
+
+		if (type == long.class)
+			return 0L;
+
+		return null;
+	}
+
+	private static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(Mocks.class.getClassLoader(), new Class<?>[] {type}, handler));
+	}
+
+	public static class Session implements InvocationHandler {
+		private final String id;
+		private final Map<String, Object> attributes = new LinkedHashMap<>();
+
+		public Session(String id) {
+			this.id = id;
+		}
+
+		public Map<String, Object> getAttributes() {
+			return attributes;
+		}
+
+		public HttpSession toHttpSession() {
+			return newProxy(HttpSession.class, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "getId":
+					return id;
+
+				case "getAttribute":
+					return attributes.get((String) args[0]);
+
+				case "setAttribute":
+					attributes.put((String) args[0], args[1]);
+					return null;
+
+				case "removeAttribute":
+					attributes.remove((String) args[0]);
+					return null;
+
+				default:
+					return defaultValue(method.getReturnType());
+			}
+		}
+	}
+
+	public static class Request implements InvocationHandler {
+		private final Map<String, String> headers = new LinkedHashMap<>();
+		private final Map<String, Object> attributes = new LinkedHashMap<>();
+
+		private String      method     = "GET";
+		private String      requestUri = "/";
+		private String      remoteAddr = "127.0.0.1";
+		private HttpSession session;
+		private Cookie[]    cookies;
+
+		public Request setHeader(String name, String value) {
+			headers.put(name, value);
+			return this;
+		}
+
+		public Request setCookie(String name, String value) {
+			int length = cookies == null ? 0 : cookies.length;
+			cookies = cookies == null ? new Cookie[1] : Arrays.copyOf(cookies, length + 1);
+			cookies[length] = new Cookie(name, value);
+			return this;
+		}
+
+		public Request setMethod(String method) {
+			this.method = method;
+			return this;
+		}
+
+		public Request setRequestUri(String requestUri) {
+			this.requestUri = requestUri;
+			return this;
+		}
+
+		public Request setRemoteAddr(String remoteAddr) {
+			this.remoteAddr = remoteAddr;
+			return this;
+		}
+
+		public Request setSession(HttpSession session) {
+			this.session = session;
+			return this;
+		}
+
+		public HttpServletRequest toHttpServletRequest() {
+			return newProxy(HttpServletRequest.class, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+			switch (m.getName()) {
+				case "getHeader":
+					return headers.get((String) args[0]);
+
+				case "getCookies":
+					return cookies;
+
+				case "getMethod":
+					return method;
+
+				case "getRequestURI":
+				case "getServletPath":
+					return requestUri;
+
+				case "getContextPath":
+					return "";
+
+				case "getRemoteAddr":
+					return remoteAddr;
+
+				case "getRequestedSessionId":
+					return session == null ? null : session.getId();
+
+				case "getSession":
+					if (session == null && (args == null || (Boolean) args[0]))
+						session = new Session("mock-session").toHttpSession();
+
+					return session;
+
+				case "getAttribute":
+					return attributes.get((String) args[0]);
+
+				case "setAttribute":
+					attributes.put((String) args[0], args[1]);
+					return null;
+
+				case "removeAttribute":
+					attributes.remove((String) args[0]);
+					return null;
+
+				default:
+					return defaultValue(m.getReturnType());
+			}
+		}
+	}
+
+	public static class Response implements InvocationHandler {
+		private final Map<String, String> headers = new LinkedHashMap<>();
+		private int status = HttpServletResponse.SC_OK;
+
+		public int getStatus() {
+			return status;
+		}
+
+		public void reset() {
+			headers.clear();
+			status = HttpServletResponse.SC_OK;
+		}
+
+		public HttpServletResponse toHttpServletResponse() {
+			return newProxy(HttpServletResponse.class, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "setStatus":
+				case "sendError":
+					status = (Integer) args[0];
+					return null;
+
+				case "getStatus":
+					return status;
+
+				case "setHeader":
+				case "addHeader":
+					headers.put((String) args[0], (String) args[1]);
+					return null;
+
+				case "getHeader":
+					return headers.get((String) args[0]);
+
+				default:
+					return defaultValue(method.getReturnType());
+			}
+		}
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private Mocks() {}
+	// =========================================================================
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.benchmark;
+
+import com.agapsys.security.web.PathRules;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Path rule matching. Matching cost must not grow with the number of rules nor allocate.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathRulesBenchmark {
+	// INSTANCE SCOPE ==========================================================
+	@Param({"10", "1000"})
+	public int ruleCount;
+
+	private PathRules rules;
+
+	@Setup
+	public void setup() {
+		PathRules.Builder builder = new PathRules.Builder();
+
+		for (int i = 0; i < ruleCount; i++) {
+			builder
+				.permit("/app" + i + "/public/**")
+				.secure("/app" + i + "/api/*/items", "ROLE_0")
+				.secure("/app" + i + "/**", "ROLE_1");
+		}
+
+		rules = builder.permit("/**").build();
+	}
+
+	@Benchmark
+	public PathRules.Rule literal() {
+		return rules.match("GET", "/app5/api", "/v1/items");
+	}
+
+	@Benchmark
+	public PathRules.Rule deepWildcard() {
+		return rules.match("GET", "/app5/a/b/c/d/e/f", null);
+	}
+
+	@Benchmark
+	public PathRules.Rule fallback() {
+		return rules.match("POST", "/static/js/app.js", null);
+	}
+	// =========================================================================
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.benchmark;
+
+import com.agapsys.security.web.RequestContext;
+import com.agapsys.security.web.RequestContextCarrier;
+import com.agapsys.security.web.ScopedContextCarrier;
+import com.agapsys.security.web.ThreadLocalContextCarrier;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a request scope for each context carrier.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestScopeBenchmark {
+	// INSTANCE SCOPE ==========================================================
+	@Param({"threadLocal", "scoped"})
+	public String carrierType;
+
+	private RequestContextCarrier carrier;
+
+	@Setup
+	public void setup() {
+		switch (carrierType) {
+			case "threadLocal":
+				carrier = new ThreadLocalContextCarrier();
+				break;
+
+			case "scoped":
+				carrier = new ScopedContextCarrier();
+				break;
+
+			default:
+				throw new IllegalArgumentException("Unknown carrier: " + carrierType);
+		}
+	}
+
+	@Benchmark
+	public RequestContext scope() {
+		RequestContext context = carrier.openScope();
+
+		try {
+			return carrier.getContext();
+		} finally {
+			carrier.closeScope(context);
+		}
+	}
+	// =========================================================================
+}
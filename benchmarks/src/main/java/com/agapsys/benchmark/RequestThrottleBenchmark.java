@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.benchmark;
+
+import com.agapsys.security.web.RequestThrottle;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rate limiting of requests from many clients by concurrent threads.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class RequestThrottleBenchmark {
+	// CLASS SCOPE =============================================================
+	private static final int CLIENT_COUNT = 1024;
+
+	@State(Scope.Benchmark)
+	public static class SharedState {
+		private RequestThrottle throttle;
+
+		@Setup
+		public void setup() {
+			// Limits are never reached: every request is fully processed
+			throttle = new RequestThrottle(1000000, 1000000);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class ThreadState {
+		private final HttpServletRequest[] requests = new HttpServletRequest[CLIENT_COUNT];
+		private int next;
+
+		@Setup
+		public void setup() {
+			for (int i = 0; i < CLIENT_COUNT; i++) {
+				requests[i] = new Mocks.Request().setRemoteAddr("10.0." + (i >>> 8) + "." + (i & 0xff)).toHttpServletRequest();
+			}
+		}
+
+		private HttpServletRequest nextRequest() {
+			return requests[next++ & (CLIENT_COUNT - 1)];
+		}
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@Benchmark
+	public boolean tryAcquire(SharedState shared, ThreadState thread) {
+		return shared.throttle.tryAcquire(thread.nextRequest());
+	}
+
+	@Benchmark
+	public void onDenied(SharedState shared, ThreadState thread) {
+		shared.throttle.onDenied(thread.nextRequest());
+	}
+	// =========================================================================
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.benchmark;
+
+import com.agapsys.security.web.AttributeService;
+import com.agapsys.security.web.CachingSessionSecurityManager;
+import com.agapsys.security.web.User;
+import com.agapsys.security.web.WebSecurity;
+import com.agapsys.security.web.WebSecurityFilter;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolution of a cached session user with and without a session touch
+ * interval. Mock sessions are in memory, so this measures the security
+ * layer only: savings on externalized stores are far greater.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionTouchBenchmark {
+	// INSTANCE SCOPE ==========================================================
+	@Param({"0", "60000"})
+	public long sessionTouchInterval;
+
+	private final AttributeService attributeService = AttributeService.getInstance();
+
+	private CachingSessionSecurityManager securityManager;
+	private HttpServletRequest            request;
+
+	@Setup
+	public void setup() {
+		securityManager = new CachingSessionSecurityManager();
+		securityManager.setSessionTouchInterval(sessionTouchInterval);
+		WebSecurity.init(securityManager);
+
+		request = new Mocks.Request().toHttpServletRequest();
+		WebSecurityFilterBenchmark.login(request, new BenchmarkUser(4, false));
+	}
+
+	@Benchmark
+	public User getCurrentUser() {
+		attributeService.setAttribute(WebSecurityFilter.ATTR_HTTP_REQUEST, request);
+
+		try {
+			return securityManager.getCurrentUser();
+		} finally {
+			attributeService.destroyAttributes();
+		}
+	}
+	// =========================================================================
+}
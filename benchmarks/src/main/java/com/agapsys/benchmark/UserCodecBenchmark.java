@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.benchmark;
+
+import com.agapsys.security.web.CompactUserCodec;
+import com.agapsys.security.web.DefaultUserCodec;
+import com.agapsys.security.web.IdentifiedUser;
+import com.agapsys.security.web.User;
+import com.agapsys.security.web.UserCodec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Size and speed of the representations a user may have in a session.
+ *
+ * Encoded sizes (bytes per session) are printed when each trial starts.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserCodecBenchmark {
+	// CLASS SCOPE =============================================================
+	/** Typical application user, stored with Java serialization. */
+	private static class SessionUser implements IdentifiedUser {
+		private static final long serialVersionUID = 1L;
+
+		private final String      id;
+		private final Set<String> roles;
+
+		private SessionUser(String id, String... roles) {
+			this.id    = id;
+			this.roles = new HashSet<>(Arrays.asList(roles));
+		}
+
+		@Override
+		public String getId() {
+			return id;
+		}
+
+		@Override
+		public Set<String> getRoles() {
+			return Collections.unmodifiableSet(roles);
+		}
+
+		@Override
+		public boolean isAdmin() {
+			return false;
+		}
+	}
+
+	/** Standard Java serialization, as used by servlet containers. */
+	private static class SerializationCodec implements UserCodec {
+		@Override
+		public byte[] encode(User user) {
+			try {
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+				try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+					out.writeObject(user);
+				}
+
+				return baos.toByteArray();
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+
+		@Override
+		public User decode(byte[] data) {
+			try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+				return (User) in.readObject();
+			} catch (IOException | ClassNotFoundException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+	}
+
+	/** Dictionary shared by all nodes. */
+	private static final String[] DICTIONARY = BenchmarkUser.getRoles(64);
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@Param({"serialization", "default", "compact"})
+	public String codecType;
+
+	@Param({"4", "16"})
+	public int roleCount;
+
+	private UserCodec codec;
+	private User      user;
+	private byte[]    encodedUser;
+
+	@Setup
+	public void setup() {
+		switch (codecType) {
+			case "serialization":
+				codec = new SerializationCodec();
+				break;
+
+			case "default":
+				codec = new DefaultUserCodec();
+				break;
+
+			case "compact":
+				codec = new CompactUserCodec(DICTIONARY);
+				break;
+
+			default:
+				throw new IllegalArgumentException("Unknown codec: " + codecType);
+		}
+
+		user = new SessionUser("user-123456", BenchmarkUser.getRoles(roleCount));
+		encodedUser = codec.encode(user);
+		System.out.println(String.format("%n%s, %d roles: %d bytes per session", codecType, roleCount, encodedUser.length));
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return codec.encode(user);
+	}
+
+	@Benchmark
+	public User decode() {
+		return codec.decode(encodedUser);
+	}
+	// =========================================================================
+}
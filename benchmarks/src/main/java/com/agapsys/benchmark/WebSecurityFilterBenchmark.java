@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.benchmark;
+
+import com.agapsys.security.Security;
+import com.agapsys.security.SecurityManager;
+import com.agapsys.security.web.AttributeService;
+import com.agapsys.security.web.PathRules;
+import com.agapsys.security.web.SessionSecurityManager;
+import com.agapsys.security.web.WebSecurity;
+import com.agapsys.security.web.WebSecurityFilter;
+import com.agapsys.security.web.WebSecurityManager;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full request path: filter, security manager and a secured action.
+ *
+ * Unauthenticated requests are rejected either by the action (which throws
+ * an exception handled by the filter) or by a path rule, before the action
+ * is reached ("anonymousFastFail").
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebSecurityFilterBenchmark {
+	// CLASS SCOPE =============================================================
+	/** Emulates the code injected into a method annotated with {@code @Secured("ROLE_0")}. */
+	private static final FilterChain SECURED_ACTION = new FilterChain() {
+		@Override
+		public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+			String[] roles = {"ROLE_0"};
+			SecurityManager sm = Security.getSecurityManager();
+
+			if (!sm.isAllowed(roles))
+				sm.onNotAllowed();
+		}
+	};
+
+	/**
+	 * Registers given user in given request as if a login action was processed.
+	 * @param request HTTP request
+	 * @param user user to be registered.
+	 */
+	static void login(HttpServletRequest request, BenchmarkUser user) {
+		AttributeService attributeService = AttributeService.getInstance();
+		attributeService.setAttribute(WebSecurityFilter.ATTR_HTTP_REQUEST, request);
+
+		try {
+			WebSecurity.setCurrentUser(user);
+		} finally {
+			attributeService.destroyAttributes();
+		}
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@Param({"authorized", "forbidden", "anonymous", "anonymousFastFail"})
+	public String scenario;
+
+	private WebSecurityFilter   filter;
+	private HttpServletRequest  request;
+	private Mocks.Response      responseMock;
+	private HttpServletResponse response;
+
+	/**
+	 * Returns the security manager used by this benchmark.
+	 * @return the security manager used by this benchmark.
+	 */
+	protected WebSecurityManager createSecurityManager() {
+		return new SessionSecurityManager();
+	}
+
+	@Setup
+	public void setup() throws ServletException {
+		WebSecurity.init(createSecurityManager());
+
+		filter = new WebSecurityFilter();
+		filter.init(null);
+
+		request = new Mocks.Request().setRequestUri("/secured").toHttpServletRequest();
+		responseMock = new Mocks.Response();
+		response = responseMock.toHttpServletResponse();
+
+		switch (scenario) {
+			case "authorized":
+				login(request, new BenchmarkUser(1, false));
+				break;
+
+			case "forbidden":
+				login(request, new BenchmarkUser(0, false));
+				break;
+
+			case "anonymous":
+				break;
+
+			case "anonymousFastFail":
+				// Request is rejected by the filter before reaching the action
+				WebSecurity.getSecurityManager().setPathRules(new PathRules.Builder().secure("/secured").build());
+				break;
+
+			default:
+				throw new IllegalArgumentException("Unknown scenario: " + scenario);
+		}
+	}
+
+	@Benchmark
+	public int doFilter() throws IOException, ServletException {
+		responseMock.reset();
+		filter.doFilter(request, response, SECURED_ACTION);
+		return responseMock.getStatus();
+	}
+	// =========================================================================
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.io.IOException;
+
+/**
+ * Source of API keys used by {@linkplain ApiKeySecurityManager}.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public interface ApiKeyLoader {
+	/**
+	 * Loads keys. This method is never called concurrently by a security manager.
+	 * @param current keys currently in use (null on first load).
+	 * @return loaded keys, or given instance if keys did not change since it was loaded.
+	 * @throws IOException if keys cannot be loaded.
+	 */
+	public ApiKeyStore load(ApiKeyStore current) throws IOException;
+}
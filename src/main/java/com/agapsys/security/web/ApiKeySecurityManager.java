@@ -0,0 +1,218 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Security manager authenticating service clients through API keys sent in
+ * the {@value #API_KEY_HEADER} header.
+ *
+ * Keys are kept in memory (see {@linkplain ApiKeyStore}), so authenticating
+ * a request needs no external lookup and creates no session. Keys are
+ * reloaded lazily, at most once per reload interval, from the thread
+ * performing a lookup. A new key set replaces the previous one with a single
+ * reference swap: requests in flight are never blocked. If keys cannot be
+ * reloaded, current ones are kept and reloading is retried on next interval;
+ * the failure is reported by {@linkplain #getLastReloadError()}.
+ *
+ * Users cannot be registered through this manager. In order to accept API
+ * keys along with other schemes, use it in a {@linkplain CompositeWebSecurityManager}
+ * through {@linkplain Authenticator#ofHeader(WebSecurityManager, String)}.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class ApiKeySecurityManager extends WebSecurityManager {
+	// CLASS SCOPE =============================================================
+	/** Name of the header carrying API keys. */
+	public static final String API_KEY_HEADER = "X-Api-Key";
+
+	public static final long DEFAULT_RELOAD_INTERVAL = 5000; // 5 seconds
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final ApiKeyLoader  loader;
+	private final long          reloadInterval;
+	private final AtomicBoolean reloading = new AtomicBoolean();
+
+	private volatile ApiKeyStore      keyStore;
+	private volatile long             nextReload;
+	private volatile RuntimeException lastReloadError;
+
+	/**
+	 * Constructor. Keys are loaded immediately.
+	 * @param loader key loader.
+	 * @param reloadInterval minimum interval (in milliseconds) between reloads.
+	 */
+	public ApiKeySecurityManager(ApiKeyLoader loader, long reloadInterval) {
+		if (loader == null)
+			throw new IllegalArgumentException("Loader cannot be null");
+
+		if (reloadInterval < 0)
+			throw new IllegalArgumentException("Invalid reload interval: " + reloadInterval);
+
+		this.loader         = loader;
+		this.reloadInterval = reloadInterval;
+
+		reload();
+		nextReload = currentTimeMillis() + reloadInterval;
+	}
+
+	public ApiKeySecurityManager(ApiKeyLoader loader) {
+		this(loader, DEFAULT_RELOAD_INTERVAL);
+	}
+
+	/**
+	 * Constructor.
+	 * @param file key file (see {@linkplain FileApiKeyLoader}).
+	 */
+	public ApiKeySecurityManager(File file) {
+		this(new FileApiKeyLoader(file));
+	}
+
+	/**
+	 * Constructor. Given keys are never reloaded.
+	 * @param keyStore keys.
+	 */
+	public ApiKeySecurityManager(ApiKeyStore keyStore) {
+		if (keyStore == null)
+			throw new IllegalArgumentException("Key store cannot be null");
+
+		this.loader         = null;
+		this.reloadInterval = 0;
+		this.keyStore       = keyStore;
+	}
+
+	/**
+	 * Returns the key loader.
+	 * @return the key loader or null if keys are never reloaded.
+	 */
+	public ApiKeyLoader getLoader() {
+		return loader;
+	}
+
+	public long getReloadInterval() {
+		return reloadInterval;
+	}
+
+	/**
+	 * Returns the keys currently in use.
+	 * @return the keys currently in use.
+	 */
+	public ApiKeyStore getKeyStore() {
+		return keyStore;
+	}
+
+	/**
+	 * Returns the error raised by the last reload.
+	 * @return the error raised by the last reload, or null if it succeeded. If
+	 * not null, keys in use are the ones from the last successful reload.
+	 */
+	public RuntimeException getLastReloadError() {
+		return lastReloadError;
+	}
+
+	/**
+	 * Returns current time. Subclasses may override this method for testing purposes.
+	 * @return current time in milliseconds.
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	private ApiKeyStore load() {
+		ApiKeyStore loaded;
+
+		try {
+			loaded = loader.load(keyStore);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+
+		if (loaded == null)
+			throw new IllegalStateException("Loader returned no keys");
+
+		return loaded;
+	}
+
+	/**
+	 * Loads keys from the loader.
+	 * @throws RuntimeException if keys cannot be loaded. Current keys are kept
+	 * and the error is also reported by {@linkplain #getLastReloadError()}.
+	 */
+	public synchronized void reload() {
+		if (loader == null)
+			return;
+
+		try {
+			keyStore = load();
+			lastReloadError = null;
+		} catch (RuntimeException ex) {
+			lastReloadError = ex;
+			throw ex;
+		}
+	}
+
+	private void reloadIfDue() {
+		if (loader == null)
+			return;
+
+		long now = currentTimeMillis();
+
+		// Only one thread reloads; others keep using current keys
+		if (now < nextReload || !reloading.compareAndSet(false, true))
+			return;
+
+		try {
+			if (now >= nextReload)
+				reload();
+		} catch (RuntimeException ex) {
+			// Current keys are kept until a reload succeeds (error is kept in 'lastReloadError')
+		} finally {
+			nextReload = now + reloadInterval;
+			reloading.set(false);
+		}
+	}
+
+	@Override
+	protected User loadCurrentUser() {
+		HttpServletRequest request = getRequest();
+
+		if (request == null)
+			return null;
+
+		String key = request.getHeader(API_KEY_HEADER);
+
+		if (key == null)
+			return null;
+
+		reloadIfDue();
+		return keyStore.find(key);
+	}
+
+	@Override
+	protected void storeCurrentUser(User user) {
+		throw new UnsupportedOperationException("API key clients cannot be registered");
+	}
+
+	@Override
+	protected void removeCurrentUser() {
+		// Nothing is stored
+	}
+	// =========================================================================
+}
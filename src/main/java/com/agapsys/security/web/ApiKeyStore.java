@@ -0,0 +1,255 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable set of API keys.
+ *
+ * Only SHA-256 hashes of keys are kept. Entries are sorted by the first
+ * eight bytes of their hashes, so a lookup hashes the presented key, finds
+ * candidates through a binary search on that prefix and confirms them with a
+ * constant-time comparison of the full hash. Users are built (and their role
+ * masks computed) when the store is built, never per request.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public final class ApiKeyStore {
+	// CLASS SCOPE =============================================================
+	/** Length (in bytes) of key hashes. */
+	public static final int HASH_LENGTH = 32;
+
+	private static final class Buffers {
+		private final MessageDigest digest;
+		private final byte[]        hash = new byte[HASH_LENGTH];
+
+		private Buffers() {
+			try {
+				digest = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+
+		/** Hashes given key into this instance's buffer. Returns false if key contains non-ASCII chars. */
+		private boolean hash(String key) {
+			MessageDigest digest = this.digest;
+			digest.reset();
+
+			for (int i = 0; i < key.length(); i++) {
+				char c = key.charAt(i);
+
+				if (c > 0x7f)
+					return false;
+
+				digest.update((byte) c);
+			}
+
+			try {
+				digest.digest(hash, 0, HASH_LENGTH);
+			} catch (DigestException ex) {
+				throw new RuntimeException(ex);
+			}
+
+			return true;
+		}
+	}
+
+	private static final ThreadLocal<Buffers> THREAD_BUFFERS = new ThreadLocal<Buffers>() {
+		@Override
+		protected Buffers initialValue() {
+			return new Buffers();
+		}
+	};
+
+	private static long readPrefix(byte[] hash) {
+		long value = 0;
+
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | (hash[i] & 0xff);
+		}
+
+		return value;
+	}
+
+	/**
+	 * Returns the hash of given key, as stored by key files.
+	 * @param key API key (ASCII chars only).
+	 * @return the URL-safe Base64 encoding of the SHA-256 hash of given key.
+	 */
+	public static String hash(String key) {
+		Buffers buffers = THREAD_BUFFERS.get();
+
+		if (key == null || key.isEmpty() || !buffers.hash(key))
+			throw new IllegalArgumentException("Invalid key");
+
+		return Base64Url.encode(buffers.hash.clone());
+	}
+
+	private static final class Entry {
+		private final long      prefix;
+		private final byte[]    hash;
+		private final BasicUser user;
+
+		private Entry(byte[] hash, BasicUser user) {
+			this.prefix = readPrefix(hash);
+			this.hash   = hash;
+			this.user   = user;
+		}
+	}
+
+	/** Collects keys and builds an {@linkplain ApiKeyStore} instance. */
+	public static final class Builder {
+		private final List<Entry> entries = new ArrayList<>();
+		private boolean built = false;
+
+		/**
+		 * Adds a key given by its hash.
+		 * @param keyHash key hash, as returned by {@linkplain ApiKeyStore#hash(String)}.
+		 * @param user user authenticated by the key.
+		 * @return this builder.
+		 */
+		public Builder addHash(String keyHash, BasicUser user) {
+			if (built)
+				throw new IllegalStateException("Store was already built");
+
+			if (keyHash == null)
+				throw new IllegalArgumentException("Key hash cannot be null");
+
+			if (user == null)
+				throw new IllegalArgumentException("User cannot be null");
+
+			byte[] hash = new byte[HASH_LENGTH];
+			if (Base64Url.decode(keyHash, hash) != HASH_LENGTH)
+				throw new IllegalArgumentException("Invalid key hash: " + keyHash);
+
+			entries.add(new Entry(hash, user));
+			return this;
+		}
+
+		/**
+		 * Adds a plain key. Only its hash is kept.
+		 * @param key API key (ASCII chars only).
+		 * @param user user authenticated by the key.
+		 * @return this builder.
+		 */
+		public Builder addKey(String key, BasicUser user) {
+			return addHash(hash(key), user);
+		}
+
+		public ApiKeyStore build() {
+			if (built)
+				throw new IllegalStateException("Store was already built");
+
+			built = true;
+
+			Entry[] sorted = entries.toArray(new Entry[entries.size()]);
+			Arrays.sort(sorted, new Comparator<Entry>() {
+				@Override
+				public int compare(Entry a, Entry b) {
+					return Long.compare(a.prefix, b.prefix);
+				}
+			});
+
+			List<BasicUser> users = new ArrayList<>(sorted.length);
+
+			for (int i = 0; i < sorted.length; i++) {
+				if (i > 0 && sorted[i].prefix == sorted[i - 1].prefix && Arrays.equals(sorted[i].hash, sorted[i - 1].hash))
+					throw new IllegalArgumentException("Duplicate key for " + sorted[i].user);
+
+				// Role masks are computed once, when keys are loaded
+				sorted[i].user.getRoleMask();
+				users.add(sorted[i].user);
+			}
+
+			return new ApiKeyStore(sorted, Collections.unmodifiableList(users));
+		}
+	}
+
+	/** Store without keys. */
+	public static final ApiKeyStore EMPTY = new Builder().build();
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final long[]          prefixes;
+	private final Entry[]         entries;
+	private final List<BasicUser> users;
+
+	private ApiKeyStore(Entry[] entries, List<BasicUser> users) {
+		this.entries  = entries;
+		this.users    = users;
+		this.prefixes = new long[entries.length];
+
+		for (int i = 0; i < entries.length; i++) {
+			prefixes[i] = entries[i].prefix;
+		}
+	}
+
+	/**
+	 * Returns the users authenticated by stored keys.
+	 * @return the users authenticated by stored keys (in no particular order).
+	 */
+	public List<BasicUser> getUsers() {
+		return users;
+	}
+
+	public int size() {
+		return entries.length;
+	}
+
+	/**
+	 * Returns the user authenticated by given key.
+	 * @param key API key.
+	 * @return the user authenticated by given key or null if key is unknown.
+	 */
+	public BasicUser find(String key) {
+		if (key == null || key.isEmpty() || entries.length == 0)
+			return null;
+
+		Buffers buffers = THREAD_BUFFERS.get();
+		if (!buffers.hash(key))
+			return null;
+
+		byte[] hash = buffers.hash;
+		long prefix = readPrefix(hash);
+		int index = Arrays.binarySearch(prefixes, prefix);
+
+		if (index < 0)
+			return null;
+
+		// Move to the first entry sharing the prefix
+		while (index > 0 && prefixes[index - 1] == prefix) {
+			index--;
+		}
+
+		for (; index < entries.length && prefixes[index] == prefix; index++) {
+			Entry entry = entries[index];
+
+			if (HmacKeyRing.constantTimeEquals(hash, 0, entry.hash, 0, HASH_LENGTH))
+				return entry.user;
+		}
+
+		return null;
+	}
+	// =========================================================================
+}
@@ -15,12 +15,19 @@
  */
 package com.agapsys.security.web;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import com.agapsys.security.Security;
+import com.agapsys.security.SecurityManager;
 
 /**
  * Global attribute service with thread-safe access.
+ *
+ * Contexts are associated with requests by a {@linkplain RequestContextCarrier}.
+ * By default, each thread owns a single {@linkplain RequestContext} which is
+ * reused by every request processed by that thread, so no synchronization is
+ * required (see {@linkplain ThreadLocalContextCarrier}).
+ * Asynchronous requests own their context until they complete (see
+ * {@linkplain WebSecurityFilter}); work handed to other threads carries a
+ * copy of it (see {@linkplain RequestContextExecutor}).
  * @author Leandro Oliveira (leandro@agapsys.com)
  */
 public class AttributeService {
@@ -30,47 +37,96 @@ public class AttributeService {
 		return SINGLETON;
 	}
 	// =========================================================================
-	
+
 	// INSTANCE SCOPE ==========================================================
 	private AttributeService() {}
-	
-	private final Map<Thread, Map<String, Object>> threadMap = new ConcurrentHashMap<>();
-
-	private Map<String, Object> getAttributeMap() {
-		Thread currentThread = Thread.currentThread();
-		Map<String, Object> attributeMap = threadMap.get(currentThread);
-		if (attributeMap == null) {
-			attributeMap = new LinkedHashMap<>();
-			threadMap.put(currentThread, attributeMap);
-		}
-
-		return attributeMap;
+
+	private volatile RequestContextCarrier carrier = new ThreadLocalContextCarrier();
+
+	public RequestContextCarrier getCarrier() {
+		return carrier;
+	}
+
+	/**
+	 * Sets the strategy used to associate contexts with requests. It must be set before any request is processed.
+	 * @param carrier context carrier.
+	 */
+	public void setCarrier(RequestContextCarrier carrier) {
+		if (carrier == null)
+			throw new IllegalArgumentException("Carrier cannot be null");
+
+		this.carrier = carrier;
+	}
+
+	/**
+	 * Returns the context of the request being processed by current thread.
+	 * @return the context of the request being processed by current thread.
+	 */
+	public RequestContext getRequestContext() {
+		return carrier.getContext();
+	}
+
+	/**
+	 * Returns a copy of the context associated with current thread.
+	 *
+	 * Current user is resolved before copying, so the copy does not need to
+	 * access the underlying storage again. The copy can be bound to another
+	 * thread (see {@linkplain AttributeService#bind(RequestContext)}) in
+	 * order to continue processing current request there.
+	 * @return a copy of the context associated with current thread.
+	 */
+	public RequestContext capture() {
+		RequestContext context = getRequestContext();
+		SecurityManager securityManager = Security.getSecurityManager();
+
+		if (context.getRequest() != null && securityManager instanceof WebSecurityManager)
+			((WebSecurityManager) securityManager).getCurrentUser();
+
+		return context.copy();
+	}
+
+	/**
+	 * Binds given context to current thread.
+	 * @param context context to be bound
+	 * @return the previous binding (may be null). It must be restored (see {@linkplain AttributeService#restore(RequestContext)}) when given context is no longer needed.
+	 */
+	public RequestContext bind(RequestContext context) {
+		if (context == null)
+			throw new IllegalArgumentException("Context cannot be null");
+
+		return carrier.bind(context);
+	}
+
+	/**
+	 * Restores a binding previously replaced by {@linkplain AttributeService#bind(RequestContext)}.
+	 * @param previous value returned by bind().
+	 */
+	public void restore(RequestContext previous) {
+		carrier.restore(previous);
 	}
 
 	public Object getAttribute(String name) {
 		if (name == null || name.trim().isEmpty())
 			throw new IllegalArgumentException("Null/Empty name");
 
-		return getAttributeMap().get(name);
+		return getRequestContext().getAttribute(name);
 	}
 	public void setAttribute(String name, Object attribute) {
 		if (name == null || name.trim().isEmpty())
 			throw new IllegalArgumentException("Null/Empty name");
 
-		getAttributeMap().put(name, attribute);
+		getRequestContext().setAttribute(name, attribute);
 	}
 
 	public void destroyAttribute(String name) {
 		if (name == null || name.trim().isEmpty())
 			throw new IllegalArgumentException("Null/Empty name");
 
-		Map<String, Object> attributeMap = threadMap.get(Thread.currentThread());
-		if (attributeMap != null)
-			attributeMap.remove(name);
+		getRequestContext().removeAttribute(name);
 	}
 
 	public void destroyAttributes() {
-		threadMap.remove(Thread.currentThread());
+		getRequestContext().clear();
 	}
 	// =========================================================================
 }
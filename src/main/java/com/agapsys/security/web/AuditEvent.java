@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+/**
+ * Security event recorded by an {@linkplain AuditLog}.
+ *
+ * Instances are slots of the log's ring buffer and they are reused: an
+ * {@linkplain AuditSink} must not retain them after
+ * {@linkplain AuditSink#write(AuditEvent)} returns.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public final class AuditEvent {
+	// CLASS SCOPE =============================================================
+	public static enum Type {
+		/** A user was registered with a session or token. */
+		LOGIN,
+
+		/** Current user was unregistered. */
+		LOGOUT,
+
+		/** A request had a missing or invalid CSRF token. */
+		CSRF_MISMATCH,
+
+		/** A request was rejected by {@linkplain WebSecurityFilter}. */
+		DENIED
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private Type         type;
+	private long         time;
+	private String       userId;
+	private String       clientAddress;
+	private String       method;
+	private String       path;
+	private DenialReason reason;
+
+	AuditEvent() {}
+
+	void set(Type type, long time, String userId, String clientAddress, String method, String path, DenialReason reason) {
+		this.type          = type;
+		this.time          = time;
+		this.userId        = userId;
+		this.clientAddress = clientAddress;
+		this.method        = method;
+		this.path          = path;
+		this.reason        = reason;
+	}
+
+	/** Releases references held by this slot. */
+	void clear() {
+		set(null, 0, null, null, null, null, null);
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Returns the time when event happened.
+	 * @return the time (in milliseconds since epoch) when event happened.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Returns the id of the user associated with the event.
+	 * @return the id of the user associated with the event or null if there is no user or it is not an {@linkplain IdentifiedUser}.
+	 */
+	public String getUserId() {
+		return userId;
+	}
+
+	public String getClientAddress() {
+		return clientAddress;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Returns the reason of a denial.
+	 * @return the reason of a denial or null if event type is not {@linkplain Type#DENIED}.
+	 */
+	public DenialReason getReason() {
+		return reason;
+	}
+	// =========================================================================
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Asynchronous audit trail of security events.
+ *
+ * Request threads claim a slot of a bounded ring buffer (a single CAS),
+ * fill it and publish it. A background thread drains published slots in
+ * batches into an {@linkplain AuditSink}. Slots are preallocated, so
+ * recording an event does not allocate. When the buffer is full, events are
+ * handled according to the {@linkplain OverflowPolicy}.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class AuditLog {
+	// CLASS SCOPE =============================================================
+	/** Defines what happens to events recorded while the buffer is full. */
+	public static enum OverflowPolicy {
+		/** Events are discarded. */
+		DROP,
+
+		/** Once the buffer is three quarters full, only a sample of events is kept. Events are discarded when it is full. */
+		SAMPLE,
+
+		/** Recording threads wait until there is room for the event. */
+		BLOCK
+	}
+
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	/** Under {@linkplain OverflowPolicy#SAMPLE}, one in this number of events is kept. */
+	public static final int SAMPLE_RATE = 16;
+
+	private static final int  MAX_BATCH          = 256;
+	private static final long IDLE_PARK_NANOS    = 1000000; // 1 ms
+	private static final long BLOCKED_PARK_NANOS = 10000;   // 10 us
+
+	private static int roundUp(int value) {
+		int size = Integer.highestOneBit(value);
+		return size < value ? size << 1 : size;
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final AuditSink      sink;
+	private final OverflowPolicy overflowPolicy;
+
+	private final AuditEvent[] slots;
+	private final int          mask;
+	private final int          sampleThreshold;
+
+	/** Sequence published in each slot. */
+	private final AtomicLongArray published;
+
+	/** Next sequence to be claimed by a recording thread. */
+	private final AtomicLong claimed = new AtomicLong();
+
+	/** Next sequence to be read by the writer. Only written by the writer thread. */
+	private volatile long consumed;
+
+	private final StripedCounter dropped = new StripedCounter();
+
+	private final Thread writer;
+	private volatile boolean closed;
+
+	/**
+	 * Constructor. A writer thread is started immediately.
+	 * @param sink destination of recorded events.
+	 * @param capacity maximum number of pending events. It will be rounded up to a power of two.
+	 * @param overflowPolicy policy applied when there is no room for an event.
+	 */
+	public AuditLog(AuditSink sink, int capacity, OverflowPolicy overflowPolicy) {
+		if (sink == null)
+			throw new IllegalArgumentException("Sink cannot be null");
+
+		if (capacity < 1 || capacity > 1 << 24)
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+
+		if (overflowPolicy == null)
+			throw new IllegalArgumentException("Overflow policy cannot be null");
+
+		this.sink           = sink;
+		this.overflowPolicy = overflowPolicy;
+
+		int size = roundUp(capacity);
+		this.slots           = new AuditEvent[size];
+		this.published       = new AtomicLongArray(size);
+		this.mask            = size - 1;
+		this.sampleThreshold = size - size / 4;
+
+		for (int i = 0; i < size; i++) {
+			slots[i] = new AuditEvent();
+			published.set(i, -1);
+		}
+
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				runWriter();
+			}
+		}, "audit-log-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Constructor. Events are dropped when the buffer is full.
+	 * @param sink destination of recorded events.
+	 */
+	public AuditLog(AuditSink sink) {
+		this(sink, DEFAULT_CAPACITY, OverflowPolicy.DROP);
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * Returns the number of events which were not written (due to overflow or sink failures).
+	 * @return the number of events which were not written.
+	 */
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	/** Returns the sequence of a claimed slot or -1 if event shall be dropped. */
+	private long claim() {
+		for (;;) {
+			if (closed)
+				return -1;
+
+			long sequence = claimed.get();
+			long pending  = sequence - consumed;
+
+			if (pending >= slots.length) {
+				if (overflowPolicy != OverflowPolicy.BLOCK)
+					return -1;
+
+				LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+				continue;
+			}
+
+			if (overflowPolicy == OverflowPolicy.SAMPLE && pending >= sampleThreshold && ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0)
+				return -1;
+
+			if (claimed.compareAndSet(sequence, sequence + 1))
+				return sequence;
+		}
+	}
+
+	/**
+	 * Records an event.
+	 * @param type event type
+	 * @param user user associated with the event (may be null).
+	 * @param request request associated with the event (may be null).
+	 * @param reason denial reason (may be null).
+	 */
+	public void record(AuditEvent.Type type, User user, HttpServletRequest request, DenialReason reason) {
+		if (type == null)
+			throw new IllegalArgumentException("Type cannot be null");
+
+		// User and container code may throw, so it is called before a slot is
+		// claimed: a claimed slot which is never published would stall the writer
+		String userId        = user instanceof IdentifiedUser ? ((IdentifiedUser) user).getId() : null;
+		String clientAddress = request == null ? null : request.getRemoteAddr();
+		String method        = request == null ? null : request.getMethod();
+		String path          = request == null ? null : request.getRequestURI();
+
+		long sequence = claim();
+
+		if (sequence < 0) {
+			dropped.increment();
+			return;
+		}
+
+		int index = (int) sequence & mask;
+		slots[index].set(type, System.currentTimeMillis(), userId, clientAddress, method, path, reason);
+		published.lazySet(index, sequence);
+	}
+
+	/** Writes a batch of published events. Returns the number of written events. */
+	private int drain() {
+		long sequence = consumed;
+		int count = 0;
+		int failed = 0;
+
+		while (count < MAX_BATCH) {
+			int index = (int) sequence & mask;
+
+			if (published.get(index) != sequence)
+				break;
+
+			AuditEvent event = slots[index];
+
+			try {
+				sink.write(event);
+			} catch (IOException | RuntimeException ex) {
+				failed++;
+			}
+
+			event.clear();
+			sequence++;
+			count++;
+		}
+
+		if (count > 0) {
+			try {
+				sink.flush();
+			} catch (IOException | RuntimeException ex) {
+				failed = count;
+			}
+
+			if (failed > 0)
+				dropped.add(failed);
+
+			// Slots are released to recording threads only after the batch is done
+			consumed = sequence;
+		}
+
+		return count;
+	}
+
+	private void runWriter() {
+		while (!closed) {
+			if (drain() == 0)
+				LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+		}
+
+		// Events claimed before the log was closed
+		while (consumed != claimed.get()) {
+			if (drain() == 0)
+				Thread.yield();
+		}
+
+		try {
+			sink.close();
+		} catch (IOException | RuntimeException ex) {
+			// Nothing else to do: the log is closed
+		}
+	}
+
+	/**
+	 * Writes pending events, closes the sink and stops the writer thread. Events recorded afterwards are dropped.
+	 * @throws InterruptedException if current thread is interrupted while waiting for the writer.
+	 */
+	public void close() throws InterruptedException {
+		closed = true;
+		LockSupport.unpark(writer);
+		writer.join();
+	}
+	// =========================================================================
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.io.IOException;
+
+/**
+ * Destination of events recorded by an {@linkplain AuditLog}.
+ *
+ * Sinks are only called by the log's writer thread: events are written in
+ * batches, each batch being followed by a {@linkplain #flush()}.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public interface AuditSink {
+	/**
+	 * Writes an event.
+	 * @param event event. It must not be retained after this method returns.
+	 * @throws IOException if an I/O error happens.
+	 */
+	public void write(AuditEvent event) throws IOException;
+
+	/**
+	 * Called after each batch of events.
+	 * @throws IOException if an I/O error happens.
+	 */
+	public void flush() throws IOException;
+
+	/**
+	 * Releases resources used by this sink. Called once, after the last batch.
+	 * @throws IOException if an I/O error happens.
+	 */
+	public void close() throws IOException;
+}
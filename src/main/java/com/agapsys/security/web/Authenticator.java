@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Authentication scheme evaluated by a {@linkplain CompositeWebSecurityManager}.
+ *
+ * Each authenticator declares where its credentials are carried (a header,
+ * optionally starting with a scheme name, or a cookie). The composite
+ * manager probes these locations and calls only the authenticator whose
+ * credentials are present.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public abstract class Authenticator {
+	// CLASS SCOPE =============================================================
+	/** Adapts a security manager into an authenticator. */
+	private static final class ManagerAuthenticator extends Authenticator {
+		private final WebSecurityManager securityManager;
+
+		private ManagerAuthenticator(WebSecurityManager securityManager, String header, String cookie) {
+			super(header, null, cookie);
+
+			if (securityManager == null)
+				throw new IllegalArgumentException("Security manager cannot be null");
+
+			this.securityManager = securityManager;
+		}
+
+		@Override
+		protected User authenticate(HttpServletRequest request, String credentials) {
+			return securityManager.loadCurrentUser();
+		}
+
+		@Override
+		protected boolean isAllowed(HttpServletRequest request) {
+			return securityManager.isAllowed(request);
+		}
+
+		@Override
+		protected void store(User user) {
+			securityManager.storeCurrentUser(user);
+		}
+
+		@Override
+		protected void remove() {
+			securityManager.removeCurrentUser();
+		}
+
+		@Override
+		public String toString() {
+			return securityManager.getClass().getSimpleName();
+		}
+	}
+
+	/**
+	 * Creates an authenticator delegating to given manager when given header is present.
+	 * @param securityManager security manager (for instance, a {@linkplain TokenSecurityManager}). It must not be registered with {@linkplain WebSecurity}.
+	 * @param header header carrying credentials read by given manager.
+	 * @return authenticator.
+	 */
+	public static Authenticator ofHeader(WebSecurityManager securityManager, String header) {
+		return new ManagerAuthenticator(securityManager, header, null);
+	}
+
+	/**
+	 * Creates an authenticator delegating to given manager when given cookie is present.
+	 * @param securityManager security manager (for instance, a {@linkplain SessionSecurityManager} with the session cookie). It must not be registered with {@linkplain WebSecurity}.
+	 * @param cookie cookie carrying credentials read by given manager.
+	 * @return authenticator.
+	 */
+	public static Authenticator ofCookie(WebSecurityManager securityManager, String cookie) {
+		return new ManagerAuthenticator(securityManager, null, cookie);
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final String header;
+	private final String scheme;
+	private final String cookie;
+
+	/**
+	 * Constructor. Either a header or a cookie must be given.
+	 * @param header header carrying credentials (null if credentials are carried by a cookie).
+	 * @param scheme scheme name expected at the beginning of header value (e.g. "Basic"), or null to accept any value.
+	 * @param cookie cookie carrying credentials (null if credentials are carried by a header).
+	 */
+	protected Authenticator(String header, String scheme, String cookie) {
+		if ((header == null) == (cookie == null))
+			throw new IllegalArgumentException("Either a header or a cookie must be given");
+
+		if (header != null && header.trim().isEmpty())
+			throw new IllegalArgumentException("Empty header");
+
+		if (cookie != null && cookie.trim().isEmpty())
+			throw new IllegalArgumentException("Empty cookie");
+
+		if (scheme != null && (header == null || scheme.trim().isEmpty()))
+			throw new IllegalArgumentException("Invalid scheme: " + scheme);
+
+		this.header = header;
+		this.scheme = scheme;
+		this.cookie = cookie;
+	}
+
+	/**
+	 * Returns the header carrying credentials.
+	 * @return the header carrying credentials or null if credentials are carried by a cookie.
+	 */
+	public final String getHeader() {
+		return header;
+	}
+
+	/**
+	 * Returns the scheme name expected at the beginning of header value.
+	 * @return the scheme name expected at the beginning of header value or null if any value is accepted.
+	 */
+	public final String getScheme() {
+		return scheme;
+	}
+
+	/**
+	 * Returns the cookie carrying credentials.
+	 * @return the cookie carrying credentials or null if credentials are carried by a header.
+	 */
+	public final String getCookie() {
+		return cookie;
+	}
+
+	/**
+	 * Returns the credentials carried by given header value.
+	 * @param value header value.
+	 * @return the credentials carried by given header value or null if value does not match the scheme of this authenticator.
+	 */
+	final String matchHeader(String value) {
+		if (scheme == null)
+			return value;
+
+		int length = scheme.length();
+
+		if (value.length() <= length || value.charAt(length) != ' ' || !value.regionMatches(true, 0, scheme, 0, length))
+			return null;
+
+		return value.substring(length + 1).trim();
+	}
+
+	/**
+	 * Authenticates a request carrying credentials handled by this authenticator.
+	 * @param request HTTP request.
+	 * @param credentials header value (without the scheme name) or cookie value.
+	 * @return authenticated user or null if credentials are not valid.
+	 */
+	protected abstract User authenticate(HttpServletRequest request, String credentials);
+
+	/**
+	 * Checks a request authenticated by this authenticator (for instance, its CSRF token).
+	 * @param request HTTP request.
+	 * @return a boolean indicating if request is allowed. Default implementation returns true.
+	 */
+	protected boolean isAllowed(HttpServletRequest request) {
+		return true;
+	}
+
+	/**
+	 * Registers given user (login). Default implementation throws an {@linkplain UnsupportedOperationException}.
+	 * @param user user to be stored.
+	 */
+	protected void store(User user) {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not store users");
+	}
+
+	/** Unregisters current user (logout). Default implementation does nothing. */
+	protected void remove() {}
+	// =========================================================================
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free cache of authorization decisions.
+ *
+ * Users with identical roles share a single interned entry, which holds
+ * the role mask and the decisions already taken for each
+ * {@linkplain RoleRequirement}. Users are associated with their entry by
+ * identity, roles version and role hierarchy, so only {@linkplain VersionedUser}
+ * instances are cached: a cached user whose roles change must report a new version.
+ *
+ * Both tables are direct-mapped (see {@linkplain ExpiringCache}): a
+ * colliding entry simply replaces the previous one.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public final class AuthorizationCache {
+	// CLASS SCOPE =============================================================
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/** Decisions are cached for requirements with smaller ids. Others are always evaluated. */
+	static final int MAX_REQUIREMENTS = 512;
+
+	private static final long KNOWN   = 1;
+	private static final long ALLOWED = 2;
+
+	private static int roundUp(int capacity) {
+		int size = Integer.highestOneBit(capacity);
+		return size < capacity ? size << 1 : size;
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	/** Decisions shared by all users with the same roles. */
+	static final class Decisions {
+		private final RoleMask        mask;
+		private final AtomicLongArray bits = new AtomicLongArray(MAX_REQUIREMENTS * 2 / 64);
+
+		private Decisions(RoleMask mask) {
+			this.mask = mask;
+		}
+
+		RoleMask getMask() {
+			return mask;
+		}
+
+		boolean isSatisfied(RoleRequirement requirement) {
+			int id = requirement.getId();
+
+			if (id >= MAX_REQUIREMENTS)
+				return requirement.isSatisfiedBy(mask);
+
+			int word = id >>> 5;
+			int shift = (id & 31) << 1;
+			long current = bits.get(word);
+
+			if (((current >>> shift) & KNOWN) != 0)
+				return ((current >>> shift) & ALLOWED) != 0;
+
+			boolean satisfied = requirement.isSatisfiedBy(mask);
+			long decision = (satisfied ? KNOWN | ALLOWED : KNOWN) << shift;
+
+			while ((current & decision) != decision && !bits.compareAndSet(word, current, current | decision)) {
+				current = bits.get(word);
+			}
+
+			return satisfied;
+		}
+	}
+
+	private static final class UserEntry {
+		private final User          user;
+		private final long          version;
+		private final RoleHierarchy roleHierarchy;
+		private final RoleMask      mask;
+		private final Decisions     decisions;
+
+		private UserEntry(User user, long version, RoleHierarchy roleHierarchy, RoleMask mask, Decisions decisions) {
+			this.user          = user;
+			this.version       = version;
+			this.roleHierarchy = roleHierarchy;
+			this.mask          = mask;
+			this.decisions     = decisions;
+		}
+	}
+
+	private final AtomicReferenceArray<UserEntry> users;
+	private final AtomicReferenceArray<Decisions> decisions;
+	private final int userMask;
+	private final int decisionMask;
+
+	/**
+	 * Constructor.
+	 * @param capacity maximum number of cached users. It will be rounded up to a power of two.
+	 */
+	public AuthorizationCache(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+
+		int size = roundUp(capacity);
+		this.users        = new AtomicReferenceArray<>(size);
+		this.decisions    = new AtomicReferenceArray<>(size);
+		this.userMask     = size - 1;
+		this.decisionMask = size - 1;
+	}
+
+	public AuthorizationCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	private int userIndex(User user) {
+		int hash = System.identityHashCode(user);
+		return (hash ^ (hash >>> 16)) & userMask;
+	}
+
+	/** Returns the interned decisions for given mask. */
+	private Decisions intern(RoleMask mask) {
+		int hash = mask.hashCode();
+		int index = (hash ^ (hash >>> 16)) & decisionMask;
+		Decisions current = decisions.get(index);
+
+		if (current != null && current.mask.equals(mask))
+			return current;
+
+		Decisions created = new Decisions(mask);
+		decisions.set(index, created);
+		return created;
+	}
+
+	/**
+	 * Returns the decisions associated with given user.
+	 * @param user versioned user
+	 * @param roleHierarchy hierarchy used to expand user roles (may be null)
+	 * @return the decisions associated with given user.
+	 */
+	Decisions get(VersionedUser user, RoleHierarchy roleHierarchy) {
+		long version = user.getRolesVersion();
+		int index = userIndex(user);
+		UserEntry entry = users.get(index);
+
+		// An entry expanded by a previous hierarchy may be stored by a lookup racing with clear()
+		if (entry != null && entry.user == user && entry.version == version && entry.roleHierarchy == roleHierarchy && !entry.mask.isOutdated())
+			return entry.decisions;
+
+		RoleMask userMask = user instanceof RoleMaskProvider ? ((RoleMaskProvider) user).getRoleMask() : RoleMask.lookup(user.getRoles());
+		RoleMask mask = roleHierarchy != null ? roleHierarchy.expand(userMask) : userMask;
+
+		Decisions userDecisions = intern(mask);
+		users.set(index, new UserEntry(user, version, roleHierarchy, userMask, userDecisions));
+		return userDecisions;
+	}
+
+	/**
+	 * Discards the entry of given user.
+	 * @param user user
+	 */
+	public void invalidate(User user) {
+		int index = userIndex(user);
+		UserEntry entry = users.get(index);
+
+		if (entry != null && entry.user == user)
+			users.compareAndSet(index, entry, null);
+	}
+
+	/** Discards all entries. */
+	public void clear() {
+		for (int i = 0; i < users.length(); i++) {
+			users.set(i, null);
+			decisions.set(i, null);
+		}
+	}
+	// =========================================================================
+}
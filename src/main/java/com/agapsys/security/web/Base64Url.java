@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+/**
+ * URL-safe Base64 encoding without padding (RFC 4648, section 5).
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+final class Base64Url {
+	// CLASS SCOPE =============================================================
+	private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+	private static final int[]  INDEXES  = new int[128];
+
+	static {
+		for (int i = 0; i < INDEXES.length; i++) {
+			INDEXES[i] = -1;
+		}
+
+		for (int i = 0; i < ALPHABET.length; i++) {
+			INDEXES[ALPHABET[i]] = i;
+		}
+	}
+
+	/**
+	 * Returns the number of chars needed to encode given number of bytes.
+	 * @param length number of bytes
+	 * @return the number of chars needed to encode given number of bytes.
+	 */
+	static int getEncodedLength(int length) {
+		return (length * 4 + 2) / 3;
+	}
+
+	/**
+	 * Encodes given bytes into given char buffer.
+	 * @param src source bytes
+	 * @param srcLength number of bytes to be encoded
+	 * @param dst destination buffer
+	 * @return number of chars written into dst.
+	 */
+	static int encode(byte[] src, int srcLength, char[] dst) {
+		int d = 0;
+		int s = 0;
+		int fullGroupsEnd = srcLength - srcLength % 3;
+
+		while (s < fullGroupsEnd) {
+			int bits = (src[s++] & 0xff) << 16 | (src[s++] & 0xff) << 8 | (src[s++] & 0xff);
+			dst[d++] = ALPHABET[(bits >>> 18) & 0x3f];
+			dst[d++] = ALPHABET[(bits >>> 12) & 0x3f];
+			dst[d++] = ALPHABET[(bits >>> 6) & 0x3f];
+			dst[d++] = ALPHABET[bits & 0x3f];
+		}
+
+		int remaining = srcLength - fullGroupsEnd;
+		if (remaining == 1) {
+			int bits = (src[s] & 0xff) << 16;
+			dst[d++] = ALPHABET[(bits >>> 18) & 0x3f];
+			dst[d++] = ALPHABET[(bits >>> 12) & 0x3f];
+		} else if (remaining == 2) {
+			int bits = (src[s] & 0xff) << 16 | (src[s + 1] & 0xff) << 8;
+			dst[d++] = ALPHABET[(bits >>> 18) & 0x3f];
+			dst[d++] = ALPHABET[(bits >>> 12) & 0x3f];
+			dst[d++] = ALPHABET[(bits >>> 6) & 0x3f];
+		}
+
+		return d;
+	}
+
+	static String encode(byte[] src) {
+		char[] dst = new char[getEncodedLength(src.length)];
+		encode(src, src.length, dst);
+		return new String(dst);
+	}
+
+	private static int indexOf(char c) {
+		return c < INDEXES.length ? INDEXES[c] : -1;
+	}
+
+	/**
+	 * Decodes given string into given buffer.
+	 * @param src encoded string
+	 * @param dst destination buffer
+	 * @return number of bytes written into dst or -1 if src is not a valid encoded string or if it does not fit into dst.
+	 */
+	static int decode(String src, byte[] dst) {
+		int srcLength = src.length();
+
+		if (srcLength % 4 == 1 || srcLength / 4 * 3 + Math.max(srcLength % 4 - 1, 0) > dst.length)
+			return -1;
+
+		int d = 0;
+		int bits = 0;
+		int bitCount = 0;
+
+		for (int s = 0; s < srcLength; s++) {
+			int index = indexOf(src.charAt(s));
+
+			if (index < 0)
+				return -1;
+
+			bits = (bits << 6) | index;
+			bitCount += 6;
+
+			if (bitCount >= 8) {
+				bitCount -= 8;
+				dst[d++] = (byte) (bits >>> bitCount);
+				bits &= (1 << bitCount) - 1;
+			}
+		}
+
+		// Non-canonical encodings carry unused bits
+		if (bits != 0)
+			return -1;
+
+		return d;
+	}
+
+	static byte[] decode(String src) {
+		byte[] dst = new byte[src.length() / 4 * 3 + Math.max(src.length() % 4 - 1, 0)];
+		int length = decode(src, dst);
+
+		if (length < 0)
+			throw new IllegalArgumentException("Invalid encoded string");
+
+		return dst;
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private Base64Url() {}
+	// =========================================================================
+}
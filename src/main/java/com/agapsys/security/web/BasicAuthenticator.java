@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * HTTP Basic authentication (RFC 7617).
+ *
+ * Password verification is usually expensive by design (slow hashes).
+ * Successful verifications are therefore cached for a short time, keyed by
+ * a SHA-256 digest of the credentials, so plain credentials are not kept
+ * in memory. Failed verifications are not cached.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class BasicAuthenticator extends Authenticator {
+	// CLASS SCOPE =============================================================
+	public static final String AUTHORIZATION_HEADER = "Authorization";
+	public static final String SCHEME               = "Basic";
+
+	public static final int  DEFAULT_CACHE_SIZE = 1024;
+	public static final long DEFAULT_CACHE_TTL  = 60 * 1000L; // 1 minute
+
+	private static final ThreadLocal<MessageDigest> DIGESTS = new ThreadLocal<MessageDigest>() {
+		@Override
+		protected MessageDigest initialValue() {
+			try {
+				return MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+	};
+
+	private static String digest(String credentials) {
+		MessageDigest digest = DIGESTS.get();
+
+		for (int i = 0; i < credentials.length(); i++) {
+			digest.update((byte) credentials.charAt(i));
+		}
+
+		return Base64Url.encode(digest.digest());
+	}
+
+	/** Decodes standard Base64 (with or without padding). */
+	private static byte[] decodeBase64(String value) {
+		int end = value.length();
+		while (end > 0 && value.charAt(end - 1) == '=') {
+			end--;
+		}
+
+		return Base64Url.decode(value.substring(0, end).replace('+', '-').replace('/', '_'));
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final CredentialVerifier          verifier;
+	private final ExpiringCache<String, User> verifiedCredentials;
+	private final long                        cacheTtl;
+
+	/**
+	 * Constructor.
+	 * @param verifier verifier of user names and passwords.
+	 * @param cacheSize maximum number of verified credentials kept in memory.
+	 * @param cacheTtl time (in milliseconds) verified credentials are kept in memory (0 disables the cache).
+	 */
+	public BasicAuthenticator(CredentialVerifier verifier, int cacheSize, long cacheTtl) {
+		super(AUTHORIZATION_HEADER, SCHEME, null);
+
+		if (verifier == null)
+			throw new IllegalArgumentException("Verifier cannot be null");
+
+		if (cacheTtl < 0)
+			throw new IllegalArgumentException("Invalid cache TTL: " + cacheTtl);
+
+		this.verifier            = verifier;
+		this.verifiedCredentials = new ExpiringCache<>(cacheSize);
+		this.cacheTtl            = cacheTtl;
+	}
+
+	public BasicAuthenticator(CredentialVerifier verifier) {
+		this(verifier, DEFAULT_CACHE_SIZE, DEFAULT_CACHE_TTL);
+	}
+
+	public CredentialVerifier getVerifier() {
+		return verifier;
+	}
+
+	public long getCacheTtl() {
+		return cacheTtl;
+	}
+
+	/** Removes all cached credentials (for instance, after passwords were changed). */
+	public void clearCache() {
+		verifiedCredentials.clear();
+	}
+
+	/**
+	 * Returns current time. Subclasses may override this method for testing purposes.
+	 * @return current time in milliseconds.
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	@Override
+	protected User authenticate(HttpServletRequest request, String credentials) {
+		String key = cacheTtl > 0 ? digest(credentials) : null;
+		long now = currentTimeMillis();
+
+		if (key != null) {
+			User user = verifiedCredentials.get(key, now);
+
+			if (user != null)
+				return user;
+		}
+
+		String decoded;
+
+		try {
+			decoded = new String(decodeBase64(credentials), StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException ex) {
+			return null;
+		}
+
+		int separator = decoded.indexOf(':');
+		if (separator < 0)
+			return null;
+
+		User user = verifier.verify(decoded.substring(0, separator), decoded.substring(separator + 1));
+
+		if (user != null && key != null)
+			verifiedCredentials.put(key, user, now + cacheTtl);
+
+		return user;
+	}
+	// =========================================================================
+}
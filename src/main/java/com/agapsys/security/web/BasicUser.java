@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Immutable user holding only the information needed by security checks.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class BasicUser implements IdentifiedUser, RoleMaskProvider {
+	// CLASS SCOPE =============================================================
+	private static final long serialVersionUID = 1L;
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final String      id;
+	private final Set<String> roles;
+	private final boolean     admin;
+
+	private transient volatile RoleMask roleMask;
+
+	/**
+	 * Constructor.
+	 * @param id user identifier (may be null).
+	 * @param roles user roles.
+	 * @param admin defines if user is an administrator.
+	 */
+	public BasicUser(String id, Collection<String> roles, boolean admin) {
+		if (roles == null)
+			throw new IllegalArgumentException("Roles cannot be null");
+
+		this.id    = id;
+		this.roles = Collections.unmodifiableSet(new LinkedHashSet<>(roles));
+		this.admin = admin;
+	}
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	@Override
+	public Set<String> getRoles() {
+		return roles;
+	}
+
+	@Override
+	public boolean isAdmin() {
+		return admin;
+	}
+
+	@Override
+	public RoleMask getRoleMask() {
+		RoleMask mask = roleMask;
+
+		if (mask == null || mask.isOutdated()) {
+			mask = RoleMask.lookup(roles);
+			roleMask = mask;
+		}
+
+		return mask;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[id=%s, roles=%s, admin=%b]", getClass().getSimpleName(), id, roles, admin);
+	}
+	// =========================================================================
+}
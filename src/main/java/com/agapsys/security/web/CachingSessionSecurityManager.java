@@ -0,0 +1,245 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import com.agapsys.security.Security;
+import com.agapsys.security.SecurityManager;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSessionEvent;
+import javax.servlet.http.HttpSessionIdListener;
+import javax.servlet.http.HttpSessionListener;
+
+/**
+ * Session security manager which keeps recently used users in memory.
+ *
+ * Intended for externalized session stores (Redis, JDBC, etc.), where
+ * reading the user means fetching and deserializing it. Along with the user,
+ * in the same session attribute, a random version stamp is stored. Each
+ * request only checks the stamp; the user is taken from an in-process cache
+ * (keyed by session id) as long as the cached stamp matches. A user
+ * registered by another node therefore changes the stamp and invalidates
+ * stale copies.
+ *
+ * A session touch interval may also be given (see {@linkplain #setSessionTouchInterval(long)}).
+ * Within that interval after a session was read, a request carrying the
+ * same (still valid) session id takes its user straight from the cache,
+ * without reading the session attributes. Stores which persist the last
+ * access time on every session read are then written at most once per
+ * interval for each session.
+ * The price is that a user registered or removed on another node may go
+ * unnoticed by this node for up to one interval.
+ *
+ * Register {@linkplain CachingSessionSecurityManager.SessionListener} in
+ * order to evict users of destroyed sessions and of replaced session ids
+ * immediately. Otherwise they are evicted by size or time-to-live.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class CachingSessionSecurityManager extends SessionSecurityManager {
+	// CLASS SCOPE =============================================================
+	public static final int  DEFAULT_CACHE_SIZE = 4096;
+	public static final long DEFAULT_CACHE_TTL  = 5 * 60 * 1000; // 5 minutes
+
+	/** Evicts cached users of destroyed sessions and of replaced session ids. */
+	public static class SessionListener implements HttpSessionListener, HttpSessionIdListener {
+		@Override
+		public void sessionCreated(HttpSessionEvent se) {}
+
+		@Override
+		public void sessionDestroyed(HttpSessionEvent se) {
+			SecurityManager securityManager = Security.getSecurityManager();
+
+			if (securityManager instanceof CachingSessionSecurityManager)
+				((CachingSessionSecurityManager) securityManager).evict(se.getSession().getId());
+		}
+
+		@Override
+		public void sessionIdChanged(HttpSessionEvent se, String oldSessionId) {
+			SecurityManager securityManager = Security.getSecurityManager();
+
+			if (securityManager instanceof CachingSessionSecurityManager)
+				((CachingSessionSecurityManager) securityManager).evict(oldSessionId);
+		}
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private static final class CachedUser {
+		private final long version;
+		private final User user;
+		private final long expiresAt;
+		private final long nextTouch; // Session is not read again before this time
+
+		private CachedUser(long version, User user, long expiresAt, long nextTouch) {
+			this.version   = version;
+			this.user      = user;
+			this.expiresAt = expiresAt;
+			this.nextTouch = nextTouch;
+		}
+	}
+
+	private final ExpiringCache<String, CachedUser> cache;
+	private final long cacheTtl;
+
+	private volatile long sessionTouchInterval = 0;
+
+	/**
+	 * Constructor.
+	 * @param userCodec codec used to store users in sessions (may be null). See {@linkplain SessionSecurityManager#SessionSecurityManager(UserCodec)}.
+	 * @param cacheSize maximum number of users kept in memory.
+	 * @param cacheTtl time (in milliseconds) a user is kept in memory.
+	 */
+	public CachingSessionSecurityManager(UserCodec userCodec, int cacheSize, long cacheTtl) {
+		super(userCodec);
+
+		if (cacheTtl < 1)
+			throw new IllegalArgumentException("Invalid cache TTL: " + cacheTtl);
+
+		this.cache    = new ExpiringCache<>(cacheSize);
+		this.cacheTtl = cacheTtl;
+	}
+
+	/**
+	 * Constructor.
+	 * @param cacheSize maximum number of users kept in memory.
+	 * @param cacheTtl time (in milliseconds) a user is kept in memory.
+	 */
+	public CachingSessionSecurityManager(int cacheSize, long cacheTtl) {
+		this(null, cacheSize, cacheTtl);
+	}
+
+	public CachingSessionSecurityManager() {
+		this(DEFAULT_CACHE_SIZE, DEFAULT_CACHE_TTL);
+	}
+
+	public long getCacheTtl() {
+		return cacheTtl;
+	}
+
+	public long getSessionTouchInterval() {
+		return sessionTouchInterval;
+	}
+
+	/**
+	 * Defines the minimum interval between session reads made on behalf of a cached user.
+	 * @param sessionTouchInterval interval in milliseconds (0 disables the throttle, so the session is read by every request).
+	 */
+	public void setSessionTouchInterval(long sessionTouchInterval) {
+		if (sessionTouchInterval < 0)
+			throw new IllegalArgumentException("Invalid session touch interval: " + sessionTouchInterval);
+
+		this.sessionTouchInterval = sessionTouchInterval;
+	}
+
+	/**
+	 * Returns current time. Subclasses may override this method for testing purposes.
+	 * @return current time in milliseconds.
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Removes the user associated with given session from the cache.
+	 * @param sessionId session id.
+	 */
+	public void evict(String sessionId) {
+		if (sessionId == null)
+			throw new IllegalArgumentException("Session id cannot be null");
+
+		cache.remove(sessionId);
+	}
+
+	/** Removes all cached users. */
+	public void clearCache() {
+		cache.clear();
+	}
+
+	@Override
+	protected User loadCurrentUser() {
+		long now = currentTimeMillis();
+		long touchInterval = sessionTouchInterval;
+
+		RequestContext context = getRequestContext();
+		HttpServletRequest request = context.getRequest();
+
+		// An id which is no longer valid (expired, invalidated or replaced session) is never trusted
+		if (touchInterval > 0 && request != null && !context.isSessionAccessed() && request.isRequestedSessionIdValid()) {
+			String requestedSessionId = request.getRequestedSessionId();
+			CachedUser cachedUser = requestedSessionId == null ? null : cache.get(requestedSessionId, now);
+
+			// Session was read recently on behalf of this user
+			if (cachedUser != null && now < cachedUser.nextTouch)
+				return cachedUser.user;
+		}
+
+		SessionState state = getSessionState();
+
+		if (state == null)
+			return null;
+
+		// User was not registered by this manager
+		if (state.getVersion() == null)
+			return super.loadCurrentUser();
+
+		long version = state.getVersion();
+		String sessionId = getSession(false).getId();
+		CachedUser cachedUser = cache.get(sessionId, now);
+
+		if (cachedUser != null && cachedUser.version == version) {
+			if (touchInterval > 0)
+				cache.put(sessionId, new CachedUser(version, cachedUser.user, cachedUser.expiresAt, now + touchInterval), cachedUser.expiresAt);
+
+			return cachedUser.user;
+		}
+
+		User user = super.loadCurrentUser();
+		if (user != null)
+			cache.put(sessionId, new CachedUser(version, user, now + cacheTtl, now + touchInterval), now + cacheTtl);
+
+		return user;
+	}
+
+	@Override
+	SessionState createSessionState(Object user) {
+		// Version is stored along with the user, so registration writes the session once
+		return new SessionState(user, null, ThreadLocalRandom.current().nextLong());
+	}
+
+	@Override
+	protected void storeCurrentUser(User user) {
+		super.storeCurrentUser(user);
+
+		// Session was created by superclass
+		HttpSession session = getSession(false);
+		long version = getSessionState().getVersion();
+		long now = currentTimeMillis();
+
+		cache.put(session.getId(), new CachedUser(version, user, now + cacheTtl, now + sessionTouchInterval), now + cacheTtl);
+	}
+
+	@Override
+	protected void removeCurrentUser() {
+		HttpSession session = getSession(false);
+
+		if (session != null)
+			cache.remove(session.getId());
+
+		super.removeCurrentUser();
+	}
+	// =========================================================================
+}
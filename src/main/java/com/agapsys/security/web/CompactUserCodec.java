@@ -0,0 +1,267 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * User codec producing a compact binary representation.
+ *
+ * Roles contained in a dictionary given on construction are encoded as
+ * varint indexes into it (ascending and delta-encoded, so usually one byte
+ * per role). Other roles are written inline as UTF-8 strings. Decoded users
+ * are instances of {@linkplain BasicUser} sharing the dictionary strings.
+ *
+ * Encoded data can only be decoded with the same dictionary, so every node
+ * sharing encoded users must use the same dictionary. New roles may be
+ * appended to the dictionary, but existing entries must never be removed or
+ * reordered.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class CompactUserCodec implements UserCodec {
+	// CLASS SCOPE =============================================================
+	private static final int VERSION = 1;
+
+	private static final int FLAG_ADMIN  = 1;
+	private static final int FLAG_HAS_ID = 1 << 1;
+
+	private static final int VERSION_SHIFT = 4;
+
+	/** Growable byte buffer with varint support. */
+	private static final class Writer {
+		private byte[] buffer = new byte[64];
+		private int    length;
+
+		private void ensureCapacity(int extra) {
+			if (length + extra > buffer.length)
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+		}
+
+		private void writeByte(int value) {
+			ensureCapacity(1);
+			buffer[length++] = (byte) value;
+		}
+
+		private void writeVarint(int value) {
+			ensureCapacity(5);
+
+			while ((value & ~0x7f) != 0) {
+				buffer[length++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+
+			buffer[length++] = (byte) value;
+		}
+
+		private void writeString(String value) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarint(bytes.length);
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, buffer, length, bytes.length);
+			length += bytes.length;
+		}
+
+		private byte[] toByteArray() {
+			return Arrays.copyOf(buffer, length);
+		}
+	}
+
+	private static final class Reader {
+		private final byte[] data;
+		private int          position;
+
+		private Reader(byte[] data) {
+			this.data = data;
+		}
+
+		private int readByte() {
+			if (position >= data.length)
+				throw new IllegalArgumentException("Unexpected end of data");
+
+			return data[position++] & 0xff;
+		}
+
+		private int readVarint() {
+			int value = 0;
+
+			for (int shift = 0; shift < 32; shift += 7) {
+				int b = readByte();
+				value |= (b & 0x7f) << shift;
+
+				if ((b & 0x80) == 0) {
+					if (value < 0)
+						throw new IllegalArgumentException("Invalid varint");
+
+					return value;
+				}
+			}
+
+			throw new IllegalArgumentException("Invalid varint");
+		}
+
+		private String readString() {
+			int length = readVarint();
+
+			if (length > data.length - position)
+				throw new IllegalArgumentException("Unexpected end of data");
+
+			String value = new String(data, position, length, StandardCharsets.UTF_8);
+			position += length;
+			return value;
+		}
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final String[]             dictionary;
+	private final Map<String, Integer> dictionaryIndexes;
+
+	/**
+	 * Constructor.
+	 * @param dictionary known roles. See class documentation about compatibility constraints.
+	 */
+	public CompactUserCodec(Collection<String> dictionary) {
+		if (dictionary == null)
+			throw new IllegalArgumentException("Dictionary cannot be null");
+
+		this.dictionary = dictionary.toArray(new String[dictionary.size()]);
+		this.dictionaryIndexes = new HashMap<>();
+
+		for (int i = 0; i < this.dictionary.length; i++) {
+			String role = this.dictionary[i];
+
+			if (role == null)
+				throw new IllegalArgumentException("Dictionary cannot contain null roles");
+
+			if (dictionaryIndexes.put(role, i) != null)
+				throw new IllegalArgumentException("Duplicate role in dictionary: " + role);
+		}
+	}
+
+	public CompactUserCodec(String... dictionary) {
+		this(Arrays.asList(dictionary));
+	}
+
+	/**
+	 * Returns the role dictionary.
+	 * @return the role dictionary.
+	 */
+	public List<String> getDictionary() {
+		return Arrays.asList(dictionary.clone());
+	}
+
+	@Override
+	public byte[] encode(User user) {
+		if (user == null)
+			throw new IllegalArgumentException("User cannot be null");
+
+		String id = user instanceof IdentifiedUser ? ((IdentifiedUser) user).getId() : null;
+
+		int[] indexes = new int[user.getRoles().size()];
+		int indexCount = 0;
+		List<String> inlineRoles = null;
+
+		for (String role : user.getRoles()) {
+			Integer index = dictionaryIndexes.get(role);
+
+			if (index != null) {
+				indexes[indexCount++] = index;
+			} else {
+				if (inlineRoles == null)
+					inlineRoles = new ArrayList<>();
+
+				inlineRoles.add(role);
+			}
+		}
+
+		Arrays.sort(indexes, 0, indexCount);
+
+		int flags = VERSION << VERSION_SHIFT;
+		if (user.isAdmin())
+			flags |= FLAG_ADMIN;
+
+		if (id != null)
+			flags |= FLAG_HAS_ID;
+
+		Writer writer = new Writer();
+		writer.writeByte(flags);
+
+		if (id != null)
+			writer.writeString(id);
+
+		writer.writeVarint(indexCount);
+		int previous = -1;
+		for (int i = 0; i < indexCount; i++) {
+			writer.writeVarint(indexes[i] - previous - 1);
+			previous = indexes[i];
+		}
+
+		writer.writeVarint(inlineRoles == null ? 0 : inlineRoles.size());
+		if (inlineRoles != null) {
+			for (String role : inlineRoles) {
+				writer.writeString(role);
+			}
+		}
+
+		return writer.toByteArray();
+	}
+
+	@Override
+	public User decode(byte[] data) throws IllegalArgumentException {
+		if (data == null)
+			throw new IllegalArgumentException("Data cannot be null");
+
+		Reader reader = new Reader(data);
+		int flags = reader.readByte();
+
+		if (flags >>> VERSION_SHIFT != VERSION)
+			throw new IllegalArgumentException("Unsupported version: " + (flags >>> VERSION_SHIFT));
+
+		String id = (flags & FLAG_HAS_ID) != 0 ? reader.readString() : null;
+
+		int indexCount = reader.readVarint();
+		if (indexCount > dictionary.length)
+			throw new IllegalArgumentException("Invalid role count: " + indexCount);
+
+		List<String> roles = new ArrayList<>(indexCount);
+		int index = -1;
+		for (int i = 0; i < indexCount; i++) {
+			index += reader.readVarint() + 1;
+
+			if (index < 0 || index >= dictionary.length)
+				throw new IllegalArgumentException("Invalid role index: " + index);
+
+			roles.add(dictionary[index]);
+		}
+
+		int inlineCount = reader.readVarint();
+		for (int i = 0; i < inlineCount; i++) {
+			roles.add(reader.readString());
+		}
+
+		if (reader.position != data.length)
+			throw new IllegalArgumentException("Trailing data");
+
+		return new BasicUser(id, roles, (flags & FLAG_ADMIN) != 0);
+	}
+	// =========================================================================
+}
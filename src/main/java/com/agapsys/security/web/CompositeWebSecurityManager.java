@@ -0,0 +1,211 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Security manager accepting several authentication schemes (for instance,
+ * sessions for browsers, tokens for mobile clients and Basic or API keys for
+ * other services).
+ *
+ * Authenticators are grouped by the header they read, so each header is
+ * probed once per request regardless of how many schemes share it (e.g.
+ * Basic and Bearer in the Authorization header). The first authenticator
+ * whose credentials are present is the only one called. Header credentials
+ * take precedence over cookies. The selection is made once per request.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class CompositeWebSecurityManager extends WebSecurityManager {
+	// CLASS SCOPE =============================================================
+	/** Authenticators reading the same header, in chain order. */
+	private static final class HeaderGroup {
+		private final String          header;
+		private final Authenticator[] authenticators;
+
+		private HeaderGroup(String header, List<Authenticator> authenticators) {
+			this.header         = header;
+			this.authenticators = authenticators.toArray(new Authenticator[authenticators.size()]);
+		}
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final List<Authenticator> authenticators;
+	private final Authenticator       loginAuthenticator;
+	private final HeaderGroup[]       headerGroups;
+	private final Authenticator[]     cookieAuthenticators;
+
+	/**
+	 * Constructor.
+	 * @param loginAuthenticator authenticator which stores users registered through {@linkplain WebSecurity#setCurrentUser(User)}. It must be one of given authenticators. Passing null disables user registration.
+	 * @param authenticators ordered authenticator chain.
+	 */
+	public CompositeWebSecurityManager(Authenticator loginAuthenticator, Authenticator... authenticators) {
+		if (authenticators == null || authenticators.length == 0)
+			throw new IllegalArgumentException("At least one authenticator must be given");
+
+		List<Authenticator> authenticatorList = Arrays.asList(authenticators.clone());
+
+		if (authenticatorList.contains(null))
+			throw new IllegalArgumentException("Null authenticator");
+
+		if (loginAuthenticator != null && !authenticatorList.contains(loginAuthenticator))
+			throw new IllegalArgumentException("Login authenticator is not in the chain");
+
+		Map<String, List<Authenticator>> headerMap = new LinkedHashMap<>();
+		List<Authenticator> cookieList = new ArrayList<>();
+
+		for (Authenticator authenticator : authenticatorList) {
+			String header = authenticator.getHeader();
+
+			if (header == null) {
+				cookieList.add(authenticator);
+				continue;
+			}
+
+			// Header names are case-insensitive
+			String key = header.toLowerCase();
+			List<Authenticator> group = headerMap.get(key);
+
+			if (group == null) {
+				group = new ArrayList<>();
+				headerMap.put(key, group);
+			}
+
+			group.add(authenticator);
+		}
+
+		List<HeaderGroup> groups = new ArrayList<>();
+		for (List<Authenticator> group : headerMap.values()) {
+			groups.add(new HeaderGroup(group.get(0).getHeader(), group));
+		}
+
+		this.authenticators       = authenticatorList;
+		this.loginAuthenticator   = loginAuthenticator;
+		this.headerGroups         = groups.toArray(new HeaderGroup[groups.size()]);
+		this.cookieAuthenticators = cookieList.toArray(new Authenticator[cookieList.size()]);
+	}
+
+	/**
+	 * Returns the authenticator chain.
+	 * @return the authenticator chain.
+	 */
+	public List<Authenticator> getAuthenticators() {
+		return authenticators;
+	}
+
+	public Authenticator getLoginAuthenticator() {
+		return loginAuthenticator;
+	}
+
+	/** Selects the authenticator of current request. */
+	private void resolve(RequestContext context, HttpServletRequest request) {
+		for (HeaderGroup group : headerGroups) {
+			String value = request.getHeader(group.header);
+
+			if (value == null)
+				continue;
+
+			for (Authenticator authenticator : group.authenticators) {
+				String credentials = authenticator.matchHeader(value);
+
+				if (credentials != null) {
+					context.setAuthenticator(authenticator, credentials);
+					return;
+				}
+			}
+		}
+
+		if (cookieAuthenticators.length > 0) {
+			Cookie[] cookies = request.getCookies();
+
+			if (cookies != null) {
+				for (Authenticator authenticator : cookieAuthenticators) {
+					for (Cookie cookie : cookies) {
+						if (cookie.getName().equals(authenticator.getCookie())) {
+							context.setAuthenticator(authenticator, cookie.getValue());
+							return;
+						}
+					}
+				}
+			}
+		}
+
+		context.setAuthenticator(null, null);
+	}
+
+	/**
+	 * Returns the authenticator selected for current request.
+	 * @return the authenticator selected for current request or null if request carries no credentials.
+	 */
+	public final Authenticator getCurrentAuthenticator() {
+		RequestContext context = getRequestContext();
+		HttpServletRequest request = context.getRequest();
+
+		if (request == null)
+			return null;
+
+		if (!context.isAuthenticatorResolved())
+			resolve(context, request);
+
+		return context.getAuthenticator();
+	}
+
+	@Override
+	protected boolean isAllowed(HttpServletRequest request) {
+		Authenticator authenticator = getCurrentAuthenticator();
+
+		// Anonymous requests have nothing to be checked
+		return authenticator == null || authenticator.isAllowed(request);
+	}
+
+	@Override
+	protected User loadCurrentUser() {
+		Authenticator authenticator = getCurrentAuthenticator();
+
+		if (authenticator == null)
+			return null;
+
+		return authenticator.authenticate(getRequest(), getRequestContext().getCredentials());
+	}
+
+	@Override
+	protected void storeCurrentUser(User user) {
+		if (loginAuthenticator == null)
+			throw new UnsupportedOperationException("There is no login authenticator");
+
+		loginAuthenticator.store(user);
+	}
+
+	@Override
+	protected void removeCurrentUser() {
+		Authenticator authenticator = getCurrentAuthenticator();
+
+		if (authenticator == null)
+			authenticator = loginAuthenticator;
+
+		if (authenticator != null)
+			authenticator.remove();
+	}
+	// =========================================================================
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+/**
+ * Verifies user names and passwords (for instance, against hashed passwords in a database).
+ *
+ * Implementations must be thread-safe.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public interface CredentialVerifier {
+	/**
+	 * Verifies given credentials.
+	 * @param username user name
+	 * @param password password
+	 * @return the user associated with given credentials or null if credentials are not valid.
+	 */
+	public User verify(String username, String password);
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+/**
+ * Strategy used to generate CSRF tokens.
+ *
+ * Implementations must be thread-safe.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public interface CsrfTokenGenerator {
+	/**
+	 * Generates a new token.
+	 * @return a new token. Returned value must be safe to be sent as an HTTP header value.
+	 */
+	public String generateToken();
+}
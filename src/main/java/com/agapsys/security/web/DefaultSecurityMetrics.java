@@ -0,0 +1,268 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Default metrics implementation.
+ *
+ * Counters are striped across padded cells (see {@linkplain StripedCounter}),
+ * so concurrent requests do not contend on a shared variable. Role checks are
+ * counted per {@linkplain RoleRequirement}, indexed by requirement id.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class DefaultSecurityMetrics implements SecurityMetrics {
+	// INSTANCE SCOPE ==========================================================
+	private static final class CheckCounters {
+		private final RoleRequirement requirement;
+		private final StripedCounter  allowed = new StripedCounter();
+		private final StripedCounter  denied  = new StripedCounter();
+
+		private CheckCounters(RoleRequirement requirement) {
+			this.requirement = requirement;
+		}
+	}
+
+	private final Object lock = new Object();
+
+	private volatile CheckCounters[] checkCounters = new CheckCounters[0];
+
+	private final StripedCounter   unauthorized   = new StripedCounter();
+	private final StripedCounter   forbidden      = new StripedCounter();
+	private final StripedCounter   csrfMismatches = new StripedCounter();
+	private final StripedCounter   throttled      = new StripedCounter();
+	private final StripedCounter   sessionAccess  = new StripedCounter();
+	private final StripedCounter   sessionCreated = new StripedCounter();
+	private final LatencyHistogram userLookups    = new LatencyHistogram();
+	private final LatencyHistogram requests       = new LatencyHistogram();
+
+	private CheckCounters findCheckCounters(RoleRequirement requirement) {
+		int id = requirement.getId();
+		CheckCounters[] counters = checkCounters;
+
+		return id < counters.length ? counters[id] : null;
+	}
+
+	private CheckCounters getCheckCounters(RoleRequirement requirement) {
+		CheckCounters counters = findCheckCounters(requirement);
+
+		if (counters != null)
+			return counters;
+
+		return createCheckCounters(requirement);
+	}
+
+	private CheckCounters createCheckCounters(RoleRequirement requirement) {
+		int id = requirement.getId();
+
+		synchronized (lock) {
+			CheckCounters[] counters = checkCounters;
+
+			if (id >= counters.length)
+				counters = Arrays.copyOf(counters, Math.max(id + 1, counters.length * 2));
+
+			if (counters[id] == null) {
+				counters[id] = new CheckCounters(requirement);
+				checkCounters = counters;
+			}
+
+			return counters[id];
+		}
+	}
+
+	@Override
+	public void onCheck(RoleRequirement requirement, boolean allowed) {
+		CheckCounters counters = getCheckCounters(requirement);
+
+		if (allowed) {
+			counters.allowed.increment();
+		} else {
+			counters.denied.increment();
+		}
+	}
+
+	@Override
+	public void onUnauthorized() {
+		unauthorized.increment();
+	}
+
+	@Override
+	public void onForbidden() {
+		forbidden.increment();
+	}
+
+	@Override
+	public void onCsrfMismatch() {
+		csrfMismatches.increment();
+	}
+
+	@Override
+	public void onThrottled() {
+		throttled.increment();
+	}
+
+	@Override
+	public void onSessionAccess() {
+		sessionAccess.increment();
+	}
+
+	@Override
+	public void onSessionCreated() {
+		sessionCreated.increment();
+	}
+
+	@Override
+	public void onUserLookup(long nanos) {
+		userLookups.record(nanos);
+	}
+
+	@Override
+	public void onRequest(long nanos) {
+		requests.record(nanos);
+	}
+
+	/**
+	 * Returns the requirements which were checked at least once.
+	 * @return the requirements which were checked at least once.
+	 */
+	public List<RoleRequirement> getCheckedRequirements() {
+		List<RoleRequirement> requirements = new ArrayList<>();
+
+		for (CheckCounters counters : checkCounters) {
+			if (counters != null)
+				requirements.add(counters.requirement);
+		}
+
+		return requirements;
+	}
+
+	public long getAllowedChecks(RoleRequirement requirement) {
+		CheckCounters counters = findCheckCounters(requirement);
+		return counters == null ? 0 : counters.allowed.sum();
+	}
+
+	public long getDeniedChecks(RoleRequirement requirement) {
+		CheckCounters counters = findCheckCounters(requirement);
+		return counters == null ? 0 : counters.denied.sum();
+	}
+
+	public long getAllowedChecks() {
+		long sum = 0;
+
+		for (CheckCounters counters : checkCounters) {
+			if (counters != null)
+				sum += counters.allowed.sum();
+		}
+
+		return sum;
+	}
+
+	public long getDeniedChecks() {
+		long sum = 0;
+
+		for (CheckCounters counters : checkCounters) {
+			if (counters != null)
+				sum += counters.denied.sum();
+		}
+
+		return sum;
+	}
+
+	public long getUnauthorizedCount() {
+		return unauthorized.sum();
+	}
+
+	public long getForbiddenCount() {
+		return forbidden.sum();
+	}
+
+	public long getCsrfMismatchCount() {
+		return csrfMismatches.sum();
+	}
+
+	public long getThrottledCount() {
+		return throttled.sum();
+	}
+
+	/**
+	 * Returns the number of requests whose session was accessed by the security manager.
+	 * @return the number of requests whose session was accessed by the security manager.
+	 */
+	public long getSessionAccessCount() {
+		return sessionAccess.sum();
+	}
+
+	public long getSessionCreatedCount() {
+		return sessionCreated.sum();
+	}
+
+	public long getUserLookupCount() {
+		return userLookups.getCount();
+	}
+
+	public double getUserLookupMeanNanos() {
+		return userLookups.getMean();
+	}
+
+	/**
+	 * Returns an approximation (within a factor of two) of given user lookup latency percentile.
+	 * @param percentile percentile (0 - 100)
+	 * @return latency in nanoseconds.
+	 */
+	public long getUserLookupPercentileNanos(double percentile) {
+		return userLookups.getPercentile(percentile);
+	}
+
+	public long getRequestCount() {
+		return requests.getCount();
+	}
+
+	public double getRequestMeanNanos() {
+		return requests.getMean();
+	}
+
+	/**
+	 * Returns an approximation (within a factor of two) of given percentile of time spent by the security layer per request.
+	 * @param percentile percentile (0 - 100)
+	 * @return latency in nanoseconds.
+	 */
+	public long getRequestPercentileNanos(double percentile) {
+		return requests.getPercentile(percentile);
+	}
+
+	/** Resets all metrics. */
+	public void reset() {
+		for (CheckCounters counters : checkCounters) {
+			if (counters != null) {
+				counters.allowed.reset();
+				counters.denied.reset();
+			}
+		}
+
+		unauthorized.reset();
+		forbidden.reset();
+		csrfMismatches.reset();
+		throttled.reset();
+		sessionAccess.reset();
+		sessionCreated.reset();
+		userLookups.reset();
+		requests.reset();
+	}
+	// =========================================================================
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Default user codec.
+ *
+ * Encodes user id (when user is an {@linkplain IdentifiedUser}), roles and
+ * admin flag. Decoded users are instances of {@linkplain BasicUser}.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class DefaultUserCodec implements UserCodec {
+	// CLASS SCOPE =============================================================
+	private static final int FLAG_ADMIN  = 1;
+	private static final int FLAG_HAS_ID = 1 << 1;
+
+	private static final int MAX_ROLES = 0xffff;
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@Override
+	public byte[] encode(User user) {
+		if (user == null)
+			throw new IllegalArgumentException("User cannot be null");
+
+		String id = user instanceof IdentifiedUser ? ((IdentifiedUser) user).getId() : null;
+		Set<String> roles = user.getRoles();
+
+		if (roles.size() > MAX_ROLES)
+			throw new IllegalArgumentException("Too many roles: " + roles.size());
+
+		int flags = 0;
+		if (user.isAdmin())
+			flags |= FLAG_ADMIN;
+
+		if (id != null)
+			flags |= FLAG_HAS_ID;
+
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(baos);
+
+			out.writeByte(flags);
+			if (id != null)
+				out.writeUTF(id);
+
+			out.writeShort(roles.size());
+			for (String role : roles) {
+				out.writeUTF(role);
+			}
+
+			out.flush();
+			return baos.toByteArray();
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	@Override
+	public User decode(byte[] data) throws IllegalArgumentException {
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+			int flags = in.readUnsignedByte();
+			String id = (flags & FLAG_HAS_ID) != 0 ? in.readUTF() : null;
+
+			int roleCount = in.readUnsignedShort();
+			List<String> roles = new ArrayList<>(roleCount);
+			for (int i = 0; i < roleCount; i++) {
+				roles.add(in.readUTF());
+			}
+
+			if (in.available() != 0)
+				throw new IllegalArgumentException("Trailing data");
+
+			return new BasicUser(id, roles, (flags & FLAG_ADMIN) != 0);
+		} catch (IOException ex) {
+			throw new IllegalArgumentException("Invalid user data", ex);
+		}
+	}
+	// =========================================================================
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+/**
+ * Defines how {@linkplain NotAllowedException} instances are created when a secured method is denied.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public enum DenialMode {
+	/** A new exception with a stack trace is created for each denial (default). */
+	STACK_TRACE,
+
+	/** A new exception without a stack trace is created for each denial. */
+	STACKLESS,
+
+	/**
+	 * A preallocated exception (without a stack trace) is shared by all
+	 * denials with the same reason. Shared exceptions do not carry the user
+	 * (see {@linkplain NotAllowedException#getUser()}) and ignore attempts to
+	 * attach a cause, a stack trace or suppressed exceptions. If the runtime
+	 * does not allow disabling suppression, this mode behaves as {@linkplain #STACKLESS}.
+	 */
+	SHARED
+}
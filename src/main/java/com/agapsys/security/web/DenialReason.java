@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Reason why a request was denied.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public enum DenialReason {
+	/** There is no user associated with the request. */
+	UNAUTHENTICATED(HttpServletResponse.SC_UNAUTHORIZED),
+
+	/** User does not have the required roles. */
+	FORBIDDEN(HttpServletResponse.SC_FORBIDDEN),
+
+	/** Request was rejected by the security manager (for instance, due to an invalid CSRF token). */
+	REQUEST_REJECTED(HttpServletResponse.SC_FORBIDDEN),
+
+	/** Request exceeded the limits of {@linkplain RequestThrottle} (HTTP 429). */
+	THROTTLED(429);
+
+	private final int status;
+
+	private DenialReason(int status) {
+		this.status = status;
+	}
+
+	/**
+	 * Returns the HTTP status sent by {@linkplain WebSecurityFilter} for this reason.
+	 * @return the HTTP status sent by {@linkplain WebSecurityFilter} for this reason.
+	 */
+	public int getStatus() {
+		return status;
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.Arrays;
+
+/**
+ * Request path served by a secured method.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public final class Endpoint {
+	// INSTANCE SCOPE ==========================================================
+	private final String   pattern;
+	private final String[] httpMethods;
+
+	/**
+	 * Constructor.
+	 * @param pattern path pattern (see {@linkplain PathRules}).
+	 * @param httpMethods HTTP methods served by the endpoint. Passing no methods means all methods.
+	 */
+	public Endpoint(String pattern, String... httpMethods) {
+		if (pattern == null || !pattern.startsWith("/"))
+			throw new IllegalArgumentException("Invalid pattern: " + pattern);
+
+		this.pattern     = pattern;
+		this.httpMethods = httpMethods == null ? new String[0] : httpMethods.clone();
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	public String[] getHttpMethods() {
+		return httpMethods.clone();
+	}
+
+	@Override
+	public String toString() {
+		return (httpMethods.length == 0 ? "*" : Arrays.toString(httpMethods)) + " " + pattern;
+	}
+	// =========================================================================
+}
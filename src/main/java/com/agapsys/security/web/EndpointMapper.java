@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+
+/**
+ * Maps secured methods to the request paths they serve.
+ *
+ * Knowing which paths are secured allows {@linkplain WebSecurityFilter} to
+ * reject unauthenticated requests before they are dispatched (see
+ * {@linkplain WebSecurity#registerEndpoints(EndpointMapper)}). Mappings
+ * depend on the web framework used by the application.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public interface EndpointMapper {
+	/**
+	 * Returns the endpoints served by given method.
+	 * @param securedClass class declaring the method.
+	 * @param method secured method.
+	 * @return the endpoints served by given method. Returning null or an empty collection means the method is not reachable through a request.
+	 */
+	public Collection<Endpoint> getEndpoints(Class<?> securedClass, Method method);
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free cache with per-entry expiration.
+ *
+ * The cache is direct-mapped: each key may only live in the slot given by
+ * its hash, and a new entry simply replaces whatever was there. This makes
+ * it a good fit for caching results of expensive, repeatable computations
+ * (such as signature verification), where an occasional miss only costs a
+ * recomputation.
+ * @param <K> key type
+ * @param <V> value type
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+final class ExpiringCache<K, V> {
+	// INSTANCE SCOPE ==========================================================
+	private static final class Entry<K, V> {
+		private final K    key;
+		private final V    value;
+		private final long expiresAt;
+
+		private Entry(K key, V value, long expiresAt) {
+			this.key       = key;
+			this.value     = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final AtomicReferenceArray<Entry<K, V>> slots;
+	private final int mask;
+
+	/**
+	 * Constructor.
+	 * @param capacity maximum number of entries. It will be rounded up to a power of two.
+	 */
+	ExpiringCache(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+			size <<= 1;
+
+		this.slots = new AtomicReferenceArray<>(size);
+		this.mask  = size - 1;
+	}
+
+	private int indexOf(Object key) {
+		int hash = key.hashCode();
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	/**
+	 * Returns the value associated with given key.
+	 * @param key key
+	 * @param now current time in milliseconds
+	 * @return the value associated with given key or null if there is no such value or if it is expired.
+	 */
+	V get(K key, long now) {
+		Entry<K, V> entry = slots.get(indexOf(key));
+
+		if (entry == null || now >= entry.expiresAt || !entry.key.equals(key))
+			return null;
+
+		return entry.value;
+	}
+
+	/**
+	 * Associates a value with given key.
+	 * @param key key
+	 * @param value value
+	 * @param expiresAt time (in milliseconds) when entry expires.
+	 */
+	void put(K key, V value, long expiresAt) {
+		slots.set(indexOf(key), new Entry<>(key, value, expiresAt));
+	}
+
+	/**
+	 * Removes the entry associated with given key.
+	 * @param key key
+	 */
+	void remove(K key) {
+		int index = indexOf(key);
+		Entry<K, V> entry = slots.get(index);
+
+		if (entry != null && entry.key.equals(key))
+			slots.compareAndSet(index, entry, null);
+	}
+
+	/** Removes all entries. */
+	void clear() {
+		for (int i = 0; i < slots.length(); i++) {
+			slots.set(i, null);
+		}
+	}
+	// =========================================================================
+}
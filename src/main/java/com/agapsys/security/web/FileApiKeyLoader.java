@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * API key loader backed by a local file.
+ *
+ * Each line holds a key hash (see {@linkplain ApiKeyStore#hash(String)}),
+ * a client id and its roles, separated by whitespace. A role named
+ * {@code *} makes the client an administrator. Empty lines and lines
+ * starting with {@code #} are ignored:
+ * <pre>
+ * # hash                                      id      roles
+ * wBjEHBr68sC2bGT5fQ7hNWV7aZrSYPKZI0zUCl1iXg4 billing INVOICES REPORTS
+ * </pre>
+ *
+ * The file is read again only when its modification time, its length or its
+ * identity (see {@linkplain BasicFileAttributes#fileKey()}, where supported)
+ * change. It should be replaced atomically (written elsewhere, then renamed),
+ * so a partially written file is never read: a renamed file is detected even
+ * if it keeps the length and the (coarse-grained) modification time of the
+ * replaced one.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class FileApiKeyLoader implements ApiKeyLoader {
+	// CLASS SCOPE =============================================================
+	/** Role granting administrator privileges. */
+	public static final String ADMIN_ROLE = "*";
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final File file;
+
+	private long   lastModified = -1;   // Guarded by 'this'
+	private long   length       = -1;   // Guarded by 'this'
+	private Object fileKey      = null; // Guarded by 'this'
+
+	public FileApiKeyLoader(File file) {
+		if (file == null)
+			throw new IllegalArgumentException("File cannot be null");
+
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	private ApiKeyStore parse(List<String> lines) {
+		ApiKeyStore.Builder builder = new ApiKeyStore.Builder();
+		int lineNumber = 0;
+
+		for (String line : lines) {
+			lineNumber++;
+			line = line.trim();
+
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+
+			String[] fields = line.split("\\s+");
+			if (fields.length < 2)
+				throw new IllegalArgumentException(String.format("Invalid entry at %s:%d", file, lineNumber));
+
+			List<String> roles = new ArrayList<>();
+			boolean admin = false;
+
+			for (int i = 2; i < fields.length; i++) {
+				if (fields[i].equals(ADMIN_ROLE)) {
+					admin = true;
+				} else {
+					roles.add(fields[i]);
+				}
+			}
+
+			try {
+				builder.addHash(fields[0], new BasicUser(fields[1], roles, admin));
+			} catch (IllegalArgumentException ex) {
+				throw new IllegalArgumentException(String.format("Invalid entry at %s:%d", file, lineNumber), ex);
+			}
+		}
+
+		return builder.build();
+	}
+
+	@Override
+	public synchronized ApiKeyStore load(ApiKeyStore current) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		long fileLastModified = attributes.lastModifiedTime().toMillis();
+		long fileLength = attributes.size();
+		Object key = attributes.fileKey();
+
+		if (current != null && fileLastModified == lastModified && fileLength == length && (key == null ? fileKey == null : key.equals(fileKey)))
+			return current;
+
+		ApiKeyStore loaded = parse(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+
+		// Only updated on success, so an invalid file is read again on next load
+		lastModified = fileLastModified;
+		length       = fileLength;
+		fileKey      = key;
+
+		return loaded;
+	}
+	// =========================================================================
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Revocation transport backed by a file (one key per line).
+ *
+ * The file may live in a shared filesystem. Positions are byte offsets, so
+ * a node only reads what was appended since its last read. Keys are appended
+ * with a single write, and a line is only consumed once its line break has
+ * been written.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class FileRevocationTransport implements RevocationTransport {
+	// INSTANCE SCOPE ==========================================================
+	private final File file;
+
+	public FileRevocationTransport(File file) {
+		if (file == null)
+			throw new IllegalArgumentException("File cannot be null");
+
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public synchronized void publish(String key) {
+		if (key == null || key.indexOf('\n') >= 0)
+			throw new IllegalArgumentException("Invalid key: " + key);
+
+		try (FileOutputStream out = new FileOutputStream(file, true)) {
+			out.write((key + "\n").getBytes(StandardCharsets.UTF_8));
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	@Override
+	public long read(long position, Collection<String> keys) {
+		if (position < 0)
+			throw new IllegalArgumentException("Invalid position: " + position);
+
+		if (!file.exists() || file.length() <= position)
+			return position;
+
+		byte[] buffer;
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			raf.seek(position);
+			buffer = new byte[(int) (raf.length() - position)];
+			raf.readFully(buffer);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+
+		int lineStart = 0;
+
+		for (int i = 0; i < buffer.length; i++) {
+			if (buffer[i] == '\n') {
+				if (i > lineStart)
+					keys.add(new String(buffer, lineStart, i - lineStart, StandardCharsets.UTF_8));
+
+				lineStart = i + 1;
+			}
+		}
+
+		// A trailing incomplete line is read again next time
+		return position + lineStart;
+	}
+	// =========================================================================
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Set of rotating HMAC-SHA256 keys.
+ *
+ * Time is divided into periods of fixed length. Each period has its own key,
+ * identified by the period number and derived from a master secret. Nodes
+ * sharing the same master secret therefore agree on keys without any
+ * coordination. A key is accepted during its own period and, for a grace
+ * window, during the next one.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class HmacKeyRing {
+	// CLASS SCOPE =============================================================
+	private static final String ALGORITHM = "HmacSHA256";
+
+	/** Length (in bytes) of generated MACs. */
+	public static final int MAC_LENGTH = 32;
+
+	public static final long DEFAULT_ROTATION_INTERVAL = 12 * 60 * 60 * 1000L; // 12 hours
+	public static final long DEFAULT_GRACE_PERIOD      = DEFAULT_ROTATION_INTERVAL;
+
+	private static byte[] generateSecret() {
+		byte[] secret = new byte[MAC_LENGTH];
+		new SecureRandom().nextBytes(secret);
+		return secret;
+	}
+
+	private static Mac newMac(byte[] key) {
+		try {
+			Mac mac = Mac.getInstance(ALGORITHM);
+			mac.init(new SecretKeySpec(key, ALGORITHM));
+			return mac;
+		} catch (GeneralSecurityException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Compares two byte regions in time independent of their contents.
+	 * @param a first array
+	 * @param aOffset offset of first region
+	 * @param b second array
+	 * @param bOffset offset of second region
+	 * @param length region length
+	 * @return a boolean indicating if both regions are equal.
+	 */
+	public static boolean constantTimeEquals(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+		int result = 0;
+
+		for (int i = 0; i < length; i++) {
+			result |= a[aOffset + i] ^ b[bOffset + i];
+		}
+
+		return result == 0;
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	/** MAC instance initialized with the key of a given period. */
+	private static final class KeyedMac {
+		private long keyId = -1;
+		private Mac  mac;
+	}
+
+	/** Per-thread state. Keeps MACs for two periods (current and previous). */
+	private final class ThreadState {
+		private final Mac        masterMac  = newMac(masterSecret);
+		private final KeyedMac[] macs       = { new KeyedMac(), new KeyedMac() };
+		private final byte[]     keyIdBytes = new byte[8];
+
+		private Mac getMac(long keyId) {
+			KeyedMac keyedMac = macs[(int) (keyId & 1)];
+
+			if (keyedMac.keyId != keyId) {
+				keyedMac.mac = newMac(deriveKey(keyId));
+				keyedMac.keyId = keyId;
+			}
+
+			keyedMac.mac.reset();
+			return keyedMac.mac;
+		}
+
+		private byte[] deriveKey(long keyId) {
+			for (int i = 7; i >= 0; i--) {
+				keyIdBytes[i] = (byte) keyId;
+				keyId >>>= 8;
+			}
+
+			return masterMac.doFinal(keyIdBytes);
+		}
+	}
+
+	private final byte[] masterSecret;
+	private final long   rotationInterval;
+	private final long   gracePeriod;
+
+	private final ThreadLocal<ThreadState> threadState = new ThreadLocal<ThreadState>() {
+		@Override
+		protected ThreadState initialValue() {
+			return new ThreadState();
+		}
+	};
+
+	/**
+	 * Constructor.
+	 * @param masterSecret secret used to derive keys. Nodes validating each other's signatures must share the same secret.
+	 * @param rotationInterval key period length in milliseconds.
+	 * @param gracePeriod time (in milliseconds) a key is still accepted after its period ends. It cannot be greater than rotation interval.
+	 */
+	public HmacKeyRing(byte[] masterSecret, long rotationInterval, long gracePeriod) {
+		if (masterSecret == null || masterSecret.length < 16)
+			throw new IllegalArgumentException("Master secret must have at least 16 bytes");
+
+		if (rotationInterval < 1)
+			throw new IllegalArgumentException("Invalid rotation interval: " + rotationInterval);
+
+		if (gracePeriod < 0 || gracePeriod > rotationInterval)
+			throw new IllegalArgumentException("Invalid grace period: " + gracePeriod);
+
+		this.masterSecret     = masterSecret.clone();
+		this.rotationInterval = rotationInterval;
+		this.gracePeriod      = gracePeriod;
+	}
+
+	/**
+	 * Constructor. Keys are derived from a random secret, so signatures are only accepted by this instance.
+	 * @param rotationInterval key period length in milliseconds.
+	 * @param gracePeriod time (in milliseconds) a key is still accepted after its period ends.
+	 */
+	public HmacKeyRing(long rotationInterval, long gracePeriod) {
+		this(generateSecret(), rotationInterval, gracePeriod);
+	}
+
+	public HmacKeyRing() {
+		this(DEFAULT_ROTATION_INTERVAL, DEFAULT_GRACE_PERIOD);
+	}
+
+	public long getRotationInterval() {
+		return rotationInterval;
+	}
+
+	public long getGracePeriod() {
+		return gracePeriod;
+	}
+
+	/**
+	 * Returns current time. Subclasses may override this method for testing purposes.
+	 * @return current time in milliseconds.
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the identifier of the key which shall be used to sign new data.
+	 * @return the identifier of the key which shall be used to sign new data.
+	 */
+	public long getCurrentKeyId() {
+		return currentTimeMillis() / rotationInterval;
+	}
+
+	/**
+	 * Returns a boolean indicating if signatures made with given key are still accepted.
+	 * @param keyId key identifier
+	 * @return a boolean indicating if signatures made with given key are still accepted.
+	 */
+	public boolean isAccepted(long keyId) {
+		long now = currentTimeMillis();
+		long currentKeyId = now / rotationInterval;
+
+		if (keyId == currentKeyId)
+			return true;
+
+		return keyId == currentKeyId - 1 && now - currentKeyId * rotationInterval < gracePeriod;
+	}
+
+	/**
+	 * Returns a MAC initialized with given key.
+	 *
+	 * Returned instance is owned by current thread. It must be used
+	 * immediately and must not be shared with other threads.
+	 * @param keyId key identifier
+	 * @return a MAC initialized with given key.
+	 */
+	public Mac getMac(long keyId) {
+		if (keyId < 0)
+			throw new IllegalArgumentException("Invalid key id: " + keyId);
+
+		return threadState.get().getMac(keyId);
+	}
+
+	/**
+	 * Computes the MAC of given data.
+	 * @param keyId key identifier
+	 * @param data data to be signed
+	 * @param offset data offset
+	 * @param length data length
+	 * @param out output buffer
+	 * @param outOffset offset where MAC will be written. Buffer must have at least {@linkplain HmacKeyRing#MAC_LENGTH} bytes available.
+	 */
+	public void sign(long keyId, byte[] data, int offset, int length, byte[] out, int outOffset) {
+		Mac mac = getMac(keyId);
+		mac.update(data, offset, length);
+
+		try {
+			mac.doFinal(out, outOffset);
+		} catch (ShortBufferException ex) {
+			throw new IllegalArgumentException(ex);
+		}
+	}
+	// =========================================================================
+}
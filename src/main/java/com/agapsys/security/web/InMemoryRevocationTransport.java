@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Revocation transport backed by a list in memory.
+ *
+ * Nodes running in the same JVM (for instance, in tests) share revocations
+ * by sharing an instance.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class InMemoryRevocationTransport implements RevocationTransport {
+	// INSTANCE SCOPE ==========================================================
+	private final List<String> log = new ArrayList<>();
+
+	@Override
+	public synchronized void publish(String key) {
+		if (key == null)
+			throw new IllegalArgumentException("Key cannot be null");
+
+		log.add(key);
+	}
+
+	@Override
+	public synchronized long read(long position, Collection<String> keys) {
+		if (position < 0 || position > log.size())
+			throw new IllegalArgumentException("Invalid position: " + position);
+
+		keys.addAll(log.subList((int) position, log.size()));
+		return log.size();
+	}
+	// =========================================================================
+}
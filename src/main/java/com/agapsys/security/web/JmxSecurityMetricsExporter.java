@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Exposes {@linkplain DefaultSecurityMetrics} through JMX.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class JmxSecurityMetricsExporter {
+	// CLASS SCOPE =============================================================
+	public static final String DEFAULT_OBJECT_NAME = "com.agapsys.security.web:type=SecurityMetrics";
+
+	private static ObjectName toObjectName(String name) {
+		try {
+			return new ObjectName(name);
+		} catch (JMException ex) {
+			throw new IllegalArgumentException(ex);
+		}
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final class MXBean implements SecurityMetricsMXBean {
+		private Map<String, Long> getChecksByRoles(boolean allowed) {
+			Map<String, Long> map = new LinkedHashMap<>();
+
+			for (RoleRequirement requirement : metrics.getCheckedRequirements()) {
+				map.put(Arrays.toString(requirement.getRoles()), allowed ? metrics.getAllowedChecks(requirement) : metrics.getDeniedChecks(requirement));
+			}
+
+			return map;
+		}
+
+		@Override
+		public long getAllowedChecks() {
+			return metrics.getAllowedChecks();
+		}
+
+		@Override
+		public long getDeniedChecks() {
+			return metrics.getDeniedChecks();
+		}
+
+		@Override
+		public Map<String, Long> getAllowedChecksByRoles() {
+			return getChecksByRoles(true);
+		}
+
+		@Override
+		public Map<String, Long> getDeniedChecksByRoles() {
+			return getChecksByRoles(false);
+		}
+
+		@Override
+		public long getUnauthorizedCount() {
+			return metrics.getUnauthorizedCount();
+		}
+
+		@Override
+		public long getForbiddenCount() {
+			return metrics.getForbiddenCount();
+		}
+
+		@Override
+		public long getCsrfMismatchCount() {
+			return metrics.getCsrfMismatchCount();
+		}
+
+		@Override
+		public long getThrottledCount() {
+			return metrics.getThrottledCount();
+		}
+
+		@Override
+		public long getSessionAccessCount() {
+			return metrics.getSessionAccessCount();
+		}
+
+		@Override
+		public long getSessionCreatedCount() {
+			return metrics.getSessionCreatedCount();
+		}
+
+		@Override
+		public long getUserLookupCount() {
+			return metrics.getUserLookupCount();
+		}
+
+		@Override
+		public double getUserLookupMeanNanos() {
+			return metrics.getUserLookupMeanNanos();
+		}
+
+		@Override
+		public long getUserLookupP99Nanos() {
+			return metrics.getUserLookupPercentileNanos(99);
+		}
+
+		@Override
+		public long getRequestCount() {
+			return metrics.getRequestCount();
+		}
+
+		@Override
+		public double getRequestMeanNanos() {
+			return metrics.getRequestMeanNanos();
+		}
+
+		@Override
+		public long getRequestP99Nanos() {
+			return metrics.getRequestPercentileNanos(99);
+		}
+
+		@Override
+		public void reset() {
+			metrics.reset();
+		}
+	}
+
+	private final DefaultSecurityMetrics metrics;
+	private final MBeanServer            mBeanServer;
+	private final ObjectName             objectName;
+
+	/**
+	 * Constructor.
+	 * @param metrics exported metrics
+	 * @param mBeanServer server where metrics will be registered
+	 * @param objectName name used to register metrics
+	 */
+	public JmxSecurityMetricsExporter(DefaultSecurityMetrics metrics, MBeanServer mBeanServer, String objectName) {
+		if (metrics == null)
+			throw new IllegalArgumentException("Metrics cannot be null");
+
+		if (mBeanServer == null)
+			throw new IllegalArgumentException("MBean server cannot be null");
+
+		if (objectName == null || objectName.trim().isEmpty())
+			throw new IllegalArgumentException("Null/Empty object name");
+
+		this.metrics     = metrics;
+		this.mBeanServer = mBeanServer;
+		this.objectName  = toObjectName(objectName);
+	}
+
+	/**
+	 * Constructor. Metrics will be registered in the platform MBean server using {@linkplain JmxSecurityMetricsExporter#DEFAULT_OBJECT_NAME}.
+	 * @param metrics exported metrics
+	 */
+	public JmxSecurityMetricsExporter(DefaultSecurityMetrics metrics) {
+		this(metrics, ManagementFactory.getPlatformMBeanServer(), DEFAULT_OBJECT_NAME);
+	}
+
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+	public void register() {
+		try {
+			mBeanServer.registerMBean(new MXBean(), objectName);
+		} catch (JMException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	public void unregister() {
+		try {
+			if (mBeanServer.isRegistered(objectName))
+				mBeanServer.unregisterMBean(objectName);
+		} catch (JMException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+	// =========================================================================
+}
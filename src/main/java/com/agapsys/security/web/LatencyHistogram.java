@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Striped histogram with logarithmic buckets.
+ *
+ * Bucket {@code i > 0} counts values in {@code [2^(i-1), 2^i)}; bucket 0
+ * counts zeros (and negative values). Percentiles are therefore reported as
+ * the upper bound of the bucket containing them, which is accurate within a
+ * factor of two. Recording a value costs two uncontended atomic additions.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+final class LatencyHistogram {
+	// CLASS SCOPE =============================================================
+	static final int BUCKETS = 64;
+
+	private static final int SUM_OFFSET = BUCKETS;
+
+	/** Distance between stripes: buckets, sum and padding. */
+	private static final int STRIDE = BUCKETS + StripedCounter.PADDING;
+
+	private static int getBucket(long value) {
+		return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+	}
+
+	private static long getUpperBound(int bucket) {
+		return bucket == 0 ? 0 : bucket == 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final AtomicLongArray cells = new AtomicLongArray(StripedCounter.STRIPES * STRIDE);
+
+	void record(long value) {
+		int base = StripedCounter.getStripe() * STRIDE;
+
+		cells.getAndIncrement(base + getBucket(value));
+		cells.getAndAdd(base + SUM_OFFSET, value);
+	}
+
+	/**
+	 * Returns the number of recorded values in each bucket.
+	 * @return the number of recorded values in each bucket.
+	 */
+	long[] getBucketCounts() {
+		long[] counts = new long[BUCKETS];
+
+		for (int stripe = 0; stripe < StripedCounter.STRIPES; stripe++) {
+			int base = stripe * STRIDE;
+
+			for (int bucket = 0; bucket < BUCKETS; bucket++) {
+				counts[bucket] += cells.get(base + bucket);
+			}
+		}
+
+		return counts;
+	}
+
+	long getCount() {
+		long count = 0;
+
+		for (long bucketCount : getBucketCounts()) {
+			count += bucketCount;
+		}
+
+		return count;
+	}
+
+	long getSum() {
+		long sum = 0;
+
+		for (int stripe = 0; stripe < StripedCounter.STRIPES; stripe++) {
+			sum += cells.get(stripe * STRIDE + SUM_OFFSET);
+		}
+
+		return sum;
+	}
+
+	double getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : (double) getSum() / count;
+	}
+
+	/**
+	 * Returns an approximation of given percentile.
+	 * @param percentile percentile (0 - 100)
+	 * @return the upper bound of the bucket containing given percentile or 0 if there are no recorded values.
+	 */
+	long getPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException("Invalid percentile: " + percentile);
+
+		long[] counts = getBucketCounts();
+		long total = 0;
+
+		for (long count : counts) {
+			total += count;
+		}
+
+		if (total == 0)
+			return 0;
+
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long accumulated = 0;
+
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			accumulated += counts[bucket];
+
+			if (accumulated >= rank && accumulated > 0)
+				return getUpperBound(bucket);
+		}
+
+		return getUpperBound(BUCKETS - 1);
+	}
+
+	void reset() {
+		for (int i = 0; i < cells.length(); i++) {
+			cells.set(i, 0);
+		}
+	}
+	// =========================================================================
+}
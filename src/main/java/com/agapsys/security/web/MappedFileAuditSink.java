@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Audit sink appending events, as JSON lines, to memory-mapped segment files.
+ *
+ * Each segment is a file of fixed size mapped into memory. Writing an
+ * event is a copy into the mapping, so data reach the OS page cache
+ * without a system call per batch. They survive an application crash.
+ * Data are forced to disk when a segment is complete and when the sink is
+ * closed. When a segment is complete, its file is truncated to the written
+ * length and a new segment is started.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class MappedFileAuditSink implements AuditSink {
+	// CLASS SCOPE =============================================================
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	/** File extension of segment files. */
+	public static final String SEGMENT_EXTENSION = ".jsonl";
+
+	private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final File   directory;
+	private final String prefix;
+	private final int    segmentSize;
+	private final long   startTime = System.currentTimeMillis();
+
+	private byte[] record = new byte[512];
+	private int    recordLength;
+
+	private int              segmentIndex;
+	private FileChannel      channel;
+	private MappedByteBuffer buffer;
+
+	/**
+	 * Constructor.
+	 * @param directory directory where segment files are created.
+	 * @param prefix segment file name prefix. Files are named {@code <prefix>-<start time>-<segment index>.jsonl}.
+	 * @param segmentSize size (in bytes) of each segment.
+	 */
+	public MappedFileAuditSink(File directory, String prefix, int segmentSize) {
+		if (directory == null)
+			throw new IllegalArgumentException("Directory cannot be null");
+
+		if (prefix == null || prefix.isEmpty())
+			throw new IllegalArgumentException("Invalid prefix: " + prefix);
+
+		if (segmentSize < 1024)
+			throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+
+		this.directory   = directory;
+		this.prefix      = prefix;
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Constructor.
+	 * @param directory directory where segment files are created.
+	 */
+	public MappedFileAuditSink(File directory) {
+		this(directory, "audit", DEFAULT_SEGMENT_SIZE);
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	// Record encoding ---------------------------------------------------------
+	private void append(int b) {
+		if (recordLength == record.length)
+			record = Arrays.copyOf(record, record.length * 2);
+
+		record[recordLength++] = (byte) b;
+	}
+
+	private void append(String ascii) {
+		for (int i = 0; i < ascii.length(); i++) {
+			append(ascii.charAt(i));
+		}
+	}
+
+	private void appendNumber(long value) {
+		append(Long.toString(value));
+	}
+
+	/** Appends a JSON string. Non-ASCII characters are escaped, so each char is encoded as a single byte. */
+	private void appendString(String value) {
+		append('"');
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if (c == '"' || c == '\\') {
+				append('\\');
+				append(c);
+			} else if (c < 0x20 || c > 0x7e) {
+				append('\\');
+				append('u');
+				append(HEX[(c >>> 12) & 0xf]);
+				append(HEX[(c >>> 8) & 0xf]);
+				append(HEX[(c >>> 4) & 0xf]);
+				append(HEX[c & 0xf]);
+			} else {
+				append(c);
+			}
+		}
+
+		append('"');
+	}
+
+	private void appendField(String name, String value) {
+		if (value == null)
+			return;
+
+		append(',');
+		appendString(name);
+		append(':');
+		appendString(value);
+	}
+
+	private void encode(AuditEvent event) {
+		recordLength = 0;
+
+		append("{\"time\":");
+		appendNumber(event.getTime());
+		appendField("type", event.getType().name());
+		appendField("user", event.getUserId());
+		appendField("address", event.getClientAddress());
+		appendField("method", event.getMethod());
+		appendField("path", event.getPath());
+		appendField("reason", event.getReason() == null ? null : event.getReason().name());
+		append('}');
+		append('\n');
+	}
+	// -------------------------------------------------------------------------
+
+	// Segments ----------------------------------------------------------------
+	private void openSegment() throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Cannot create directory: " + directory);
+
+		File file = new File(directory, String.format("%s-%d-%04d%s", prefix, startTime, segmentIndex++, SEGMENT_EXTENSION));
+
+		channel = new RandomAccessFile(file, "rw").getChannel();
+
+		try {
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		} catch (IOException ex) {
+			channel.close();
+			channel = null;
+			throw ex;
+		}
+	}
+
+	private void closeSegment() throws IOException {
+		if (buffer == null)
+			return;
+
+		buffer.force();
+		int length = buffer.position();
+		buffer = null;
+
+		try {
+			channel.truncate(length);
+		} catch (IOException ex) {
+			// Some platforms do not allow truncating a mapped file: segment keeps its trailing zeros
+		} finally {
+			channel.close();
+			channel = null;
+		}
+	}
+	// -------------------------------------------------------------------------
+
+	@Override
+	public void write(AuditEvent event) throws IOException {
+		encode(event);
+
+		if (recordLength > segmentSize)
+			throw new IOException("Event does not fit into a segment");
+
+		if (buffer != null && buffer.remaining() < recordLength)
+			closeSegment();
+
+		if (buffer == null)
+			openSegment();
+
+		buffer.put(record, 0, recordLength);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// Mapped data are already visible to readers and they are written back by the OS
+	}
+
+	@Override
+	public void close() throws IOException {
+		closeSegment();
+	}
+	// =========================================================================
+}
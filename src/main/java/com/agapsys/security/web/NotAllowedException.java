@@ -15,18 +15,138 @@
  */
 package com.agapsys.security.web;
 
+import java.lang.reflect.Field;
+
 /**
+ * Thrown when a secured method is called by a user lacking required roles.
  *
+ * Depending on the {@linkplain DenialMode} of the security manager,
+ * instances may have no stack trace or may be shared.
  * @author Leandro Oliveira (leandro@agapsys.com)
  */
 public class NotAllowedException extends com.agapsys.security.NotAllowedException {
-	private final User user;
-	
+	// CLASS SCOPE =============================================================
+	private static final long serialVersionUID = 1L;
+
+	/** Exception which does not capture the stack trace. */
+	private static class Stackless extends NotAllowedException {
+		private static final long serialVersionUID = 1L;
+
+		private Stackless(User user, DenialReason reason) {
+			super(user, reason);
+		}
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			// Called by Throwable constructor
+			return this;
+		}
+	}
+
+	/**
+	 * Exception shared among all threads.
+	 *
+	 * Callers must not be able to attach state to it. Since
+	 * {@linkplain Throwable#addSuppressed(Throwable)} is final, suppression is
+	 * disabled when the instance is created (see {@linkplain #disableSuppression(Throwable)}).
+	 */
+	private static final class Shared extends Stackless {
+		private static final long serialVersionUID = 1L;
+
+		private Shared(DenialReason reason) {
+			super(null, reason);
+		}
+
+		@Override
+		public synchronized Throwable initCause(Throwable cause) {
+			throw new IllegalStateException("Shared instances cannot have a cause");
+		}
+
+		@Override
+		public void setStackTrace(StackTraceElement[] stackTrace) {
+			// Shared instances have no stack trace
+		}
+
+		private Object readResolve() {
+			return of(DenialMode.SHARED, null, getReason());
+		}
+	}
+
+	/**
+	 * Disables suppressed exceptions of given throwable, as done by
+	 * {@linkplain Throwable#Throwable(String, Throwable, boolean, boolean)},
+	 * which is not reachable through the superclass.
+	 * @return a boolean indicating if suppression was disabled.
+	 */
+	private static boolean disableSuppression(Throwable throwable) {
+		try {
+			Field field = Throwable.class.getDeclaredField("suppressedExceptions");
+			field.setAccessible(true);
+			field.set(throwable, null);
+			return throwable.getSuppressed().length == 0;
+		} catch (ReflectiveOperationException | RuntimeException ex) {
+			// Runtime denies access to java.lang (e.g. strong encapsulation)
+			return false;
+		}
+	}
+
+	private static final NotAllowedException[] SHARED = new NotAllowedException[DenialReason.values().length];
+
+	static {
+		for (DenialReason reason : DenialReason.values()) {
+			Shared shared = new Shared(reason);
+
+			// Without suppression disabled, shared instances would accumulate state (SHARED mode falls back to STACKLESS)
+			if (disableSuppression(shared))
+				SHARED[reason.ordinal()] = shared;
+		}
+	}
+
+	/**
+	 * Returns an exception for given denial.
+	 * @param mode denial mode
+	 * @param user denied user
+	 * @param reason denial reason
+	 * @return an exception for given denial.
+	 */
+	static NotAllowedException of(DenialMode mode, User user, DenialReason reason) {
+		switch (mode) {
+			case STACKLESS:
+				return new Stackless(user, reason);
+
+			case SHARED:
+				NotAllowedException shared = SHARED[reason.ordinal()];
+				return shared != null ? shared : new Stackless(null, reason);
+
+			default:
+				return new NotAllowedException(user, reason);
+		}
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final User         user;
+	private final DenialReason reason;
+
+	NotAllowedException(User user, DenialReason reason) {
+		this.user   = user;
+		this.reason = reason;
+	}
+
 	NotAllowedException(User user) {
-		this.user = user;
+		this(user, user == null ? DenialReason.UNAUTHENTICATED : DenialReason.FORBIDDEN);
 	}
-	
+
+	/**
+	 * Returns the denied user.
+	 * @return the denied user or null if there is no user (or if this is a shared instance).
+	 */
 	public User getUser() {
 		return user;
 	}
+
+	public DenialReason getReason() {
+		return reason;
+	}
+	// =========================================================================
 }
@@ -0,0 +1,428 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Authorization rules applied to request paths.
+ *
+ * Rules map ant-style patterns to required roles. A pattern is a sequence
+ * of segments separated by '/', where a segment may be a literal, '*'
+ * (exactly one segment) or '**' (zero or more segments). Wildcards must
+ * span whole segments. Empty segments are ignored, so "/a/b/" and "/a//b"
+ * are both the same as "/a/b".
+ *
+ * Rules are compiled into a segment trie. When several rules match a path,
+ * literal segments take precedence over '*', which takes precedence over
+ * '**'. Among rules with the same pattern, the first one declared for the
+ * request method is used. Matching walks the path once for each wildcard
+ * alternative it needs to try and does not allocate.
+ *
+ * Instances are immutable and created through {@linkplain Builder}.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public final class PathRules {
+	// CLASS SCOPE =============================================================
+	private static final String SINGLE_WILDCARD = "*";
+	private static final String MULTI_WILDCARD  = "**";
+
+	private static final String[] METHODS = {"GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "TRACE", "PATCH"};
+
+	private static final int OTHER_METHODS = 1 << METHODS.length;
+	private static final int ALL_METHODS   = (OTHER_METHODS << 1) - 1;
+
+	/** Rules matching nothing. */
+	public static final PathRules EMPTY = new Builder().build();
+
+	private static int getMethodBit(String method) {
+		switch (method) {
+			case "GET":     return 1;
+			case "HEAD":    return 1 << 1;
+			case "POST":    return 1 << 2;
+			case "PUT":     return 1 << 3;
+			case "DELETE":  return 1 << 4;
+			case "OPTIONS": return 1 << 5;
+			case "TRACE":   return 1 << 6;
+			case "PATCH":   return 1 << 7;
+			default:        return OTHER_METHODS;
+		}
+	}
+
+	private static int getMethodMask(String[] methods) {
+		if (methods == null || methods.length == 0)
+			return ALL_METHODS;
+
+		int mask = 0;
+
+		for (String method : methods) {
+			if (method == null || method.trim().isEmpty())
+				throw new IllegalArgumentException("Invalid method: " + method);
+
+			mask |= getMethodBit(method.trim().toUpperCase());
+		}
+
+		return mask;
+	}
+
+	/** Returns the char at given index of the concatenation of given strings. */
+	private static char charAt(String a, String b, int index) {
+		return index < a.length() ? a.charAt(index) : b.charAt(index - a.length());
+	}
+
+	private static Rule match(Node node, String a, String b, int length, int pos, int methodBit) {
+		while (pos < length && charAt(a, b, pos) == '/') {
+			pos++;
+		}
+
+		if (pos == length) {
+			Rule rule = node.findRule(methodBit);
+
+			// Trailing '**' matches zero segments
+			if (rule == null && node.multi != null)
+				rule = match(node.multi, a, b, length, pos, methodBit);
+
+			return rule;
+		}
+
+		int end = pos;
+		int hash = 0;
+		char c;
+
+		while (end < length && (c = charAt(a, b, end)) != '/') {
+			hash = 31 * hash + c;
+			end++;
+		}
+
+		Rule rule;
+		Node literal = node.findLiteral(a, b, pos, end, hash);
+
+		if (literal != null && (rule = match(literal, a, b, length, end, methodBit)) != null)
+			return rule;
+
+		if (node.single != null && (rule = match(node.single, a, b, length, end, methodBit)) != null)
+			return rule;
+
+		if (node.multi != null) {
+			int p = pos;
+
+			while (true) {
+				if ((rule = match(node.multi, a, b, length, p, methodBit)) != null)
+					return rule;
+
+				if (p == length)
+					break;
+
+				// Consumes one more segment
+				while (p < length && charAt(a, b, p) == '/') {
+					p++;
+				}
+
+				while (p < length && charAt(a, b, p) != '/') {
+					p++;
+				}
+			}
+		}
+
+		return null;
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	/** Authorization rule associated with a pattern. */
+	public static final class Rule {
+		private final String          pattern;
+		private final int             methodMask;
+		private final RoleRequirement requirement;
+
+		private Rule(String pattern, int methodMask, RoleRequirement requirement) {
+			this.pattern     = pattern;
+			this.methodMask  = methodMask;
+			this.requirement = requirement;
+		}
+
+		public String getPattern() {
+			return pattern;
+		}
+
+		/**
+		 * Returns required roles.
+		 * @return required roles (an empty requirement means any authenticated user) or null if access is public.
+		 */
+		public RoleRequirement getRequirement() {
+			return requirement;
+		}
+
+		/**
+		 * Returns a boolean indicating if paths matching this rule can be accessed without a user.
+		 * @return a boolean indicating if paths matching this rule can be accessed without a user.
+		 */
+		public boolean isPublic() {
+			return requirement == null;
+		}
+
+		@Override
+		public String toString() {
+			return pattern + " -> " + (requirement == null ? "public" : requirement.toString());
+		}
+	}
+
+	/** Trie node. Mutable while rules are being added. */
+	private static final class Node {
+		private Map<String, Node> literals = new LinkedHashMap<>();
+		private List<Rule>        ruleList = new ArrayList<>();
+
+		private String[] literalKeys;
+		private Node[]   literalNodes;
+		private Rule[]   rules;
+		private Node     single;
+		private Node     multi;
+
+		private Node getChild(String segment) {
+			switch (segment) {
+				case SINGLE_WILDCARD:
+					if (single == null)
+						single = new Node();
+
+					return single;
+
+				case MULTI_WILDCARD:
+					if (multi == null)
+						multi = new Node();
+
+					return multi;
+
+				default:
+					if (segment.contains(SINGLE_WILDCARD))
+						throw new IllegalArgumentException("Wildcards must span whole segments: " + segment);
+
+					Node child = literals.get(segment);
+
+					if (child == null) {
+						child = new Node();
+						literals.put(segment, child);
+					}
+
+					return child;
+			}
+		}
+
+		/** Converts this node (and its descendants) into lookup tables. */
+		private void freeze() {
+			int size = Integer.highestOneBit(Math.max(literals.size() * 2, 1));
+			if (size < literals.size() * 2)
+				size <<= 1;
+
+			literalKeys  = new String[size];
+			literalNodes = new Node[size];
+
+			for (Map.Entry<String, Node> entry : literals.entrySet()) {
+				int i = entry.getKey().hashCode() & (size - 1);
+
+				while (literalKeys[i] != null) {
+					i = (i + 1) & (size - 1);
+				}
+
+				literalKeys[i]  = entry.getKey();
+				literalNodes[i] = entry.getValue();
+				entry.getValue().freeze();
+			}
+
+			rules = ruleList.toArray(new Rule[ruleList.size()]);
+			literals = null;
+			ruleList = null;
+
+			if (single != null)
+				single.freeze();
+
+			if (multi != null)
+				multi.freeze();
+		}
+
+		private Rule findRule(int methodBit) {
+			for (Rule rule : rules) {
+				if ((rule.methodMask & methodBit) != 0)
+					return rule;
+			}
+
+			return null;
+		}
+
+		private Node findLiteral(String a, String b, int start, int end, int hash) {
+			int mask = literalKeys.length - 1;
+			int length = end - start;
+
+			for (int i = hash & mask; ; i = (i + 1) & mask) {
+				String key = literalKeys[i];
+
+				if (key == null)
+					return null;
+
+				if (key.length() == length && key.hashCode() == hash && equals(key, a, b, start))
+					return literalNodes[i];
+			}
+		}
+
+		private static boolean equals(String key, String a, String b, int start) {
+			for (int i = 0; i < key.length(); i++) {
+				if (key.charAt(i) != charAt(a, b, start + i))
+					return false;
+			}
+
+			return true;
+		}
+	}
+
+	/** Collects rules and compiles them into a {@linkplain PathRules} instance. */
+	public static final class Builder {
+		private final Node root = new Node();
+		private final List<Rule> rules = new ArrayList<>();
+		private boolean built = false;
+
+		private Builder add(String[] methods, String pattern, RoleRequirement requirement) {
+			if (built)
+				throw new IllegalStateException("Rules were already built");
+
+			if (pattern == null || !pattern.startsWith("/"))
+				throw new IllegalArgumentException("Invalid pattern: " + pattern);
+
+			return add(new Rule(pattern, getMethodMask(methods), requirement));
+		}
+
+		private Builder add(Rule rule) {
+			Node node = root;
+
+			for (String segment : rule.pattern.split("/")) {
+				if (!segment.isEmpty())
+					node = node.getChild(segment);
+			}
+
+			node.ruleList.add(rule);
+			rules.add(rule);
+			return this;
+		}
+
+		/**
+		 * Adds all rules of given instance.
+		 * @param rules rules to be added. They take precedence over rules with the same pattern added later.
+		 * @return this builder.
+		 */
+		public Builder include(PathRules rules) {
+			if (built)
+				throw new IllegalStateException("Rules were already built");
+
+			for (Rule rule : rules.rules) {
+				add(rule);
+			}
+
+			return this;
+		}
+
+		/**
+		 * Allows access to matching paths without a user.
+		 * @param pattern path pattern
+		 * @return this builder.
+		 */
+		public Builder permit(String pattern) {
+			return add(null, pattern, null);
+		}
+
+		/**
+		 * Allows access to matching paths without a user for given methods.
+		 * @param methods HTTP methods. Passing null means all methods.
+		 * @param pattern path pattern
+		 * @return this builder.
+		 */
+		public Builder permit(String[] methods, String pattern) {
+			return add(methods, pattern, null);
+		}
+
+		/**
+		 * Requires given roles to access matching paths.
+		 * @param pattern path pattern
+		 * @param roles required roles. Passing no roles requires only an authenticated user.
+		 * @return this builder.
+		 */
+		public Builder secure(String pattern, String... roles) {
+			return add(null, pattern, RoleRequirement.of(roles));
+		}
+
+		/**
+		 * Requires given roles to access matching paths with given methods.
+		 * @param methods HTTP methods. Passing null means all methods.
+		 * @param pattern path pattern
+		 * @param roles required roles. Passing no roles requires only an authenticated user.
+		 * @return this builder.
+		 */
+		public Builder secure(String[] methods, String pattern, String... roles) {
+			return add(methods, pattern, RoleRequirement.of(roles));
+		}
+
+		public PathRules build() {
+			if (built)
+				throw new IllegalStateException("Rules were already built");
+
+			built = true;
+			root.freeze();
+			return new PathRules(root, rules);
+		}
+	}
+
+	private final Node       root;
+	private final List<Rule> rules;
+
+	private PathRules(Node root, List<Rule> rules) {
+		this.root  = root;
+		this.rules = rules;
+	}
+
+	/**
+	 * Returns all rules in declaration order.
+	 * @return all rules in declaration order.
+	 */
+	public List<Rule> getRules() {
+		return new ArrayList<>(rules);
+	}
+
+	/**
+	 * Returns the rule applied to given request path.
+	 * @param method HTTP method
+	 * @param path request path (relative to the context path)
+	 * @return matching rule or null if there is no rule for given request.
+	 */
+	public Rule match(String method, String path) {
+		return match(method, path, null);
+	}
+
+	/**
+	 * Returns the rule applied to given request path, given by servlet path and path info.
+	 * Both parts are matched as a single path without being concatenated.
+	 * @param method HTTP method
+	 * @param servletPath servlet path
+	 * @param pathInfo path info. It may be null.
+	 * @return matching rule or null if there is no rule for given request.
+	 */
+	public Rule match(String method, String servletPath, String pathInfo) {
+		if (pathInfo == null)
+			pathInfo = "";
+
+		return match(root, servletPath, pathInfo, servletPath.length() + pathInfo.length(), 0, getMethodBit(method));
+	}
+	// =========================================================================
+}
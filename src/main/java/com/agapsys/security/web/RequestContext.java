@@ -0,0 +1,288 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Security state associated with the request being processed.
+ *
+ * Frequently used values are held in typed slots. Arbitrary attributes are
+ * kept in a map which is only allocated when first needed. Instances are
+ * reused between requests, so they must not be retained after a request is
+ * finished.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public final class RequestContext {
+	private HttpServletRequest  request;
+	private HttpServletResponse response;
+	private User                currentUser;
+	private boolean             userResolved;
+	private Boolean             requestAllowed;
+	private RoleMask            roleMask;
+	private RoleMask            expandedRoleMask;
+	private long                securityNanos;
+	private DenialReason        denialReason;
+	private Authenticator       authenticator;
+	private String              credentials;
+	private boolean             authenticatorResolved;
+	private boolean             sessionAccessed;
+	private RequestContext      enclosing;
+
+	private Map<String, Object> attributeMap;
+
+	RequestContext() {}
+
+	public HttpServletRequest getRequest() {
+		return request;
+	}
+
+	void setRequest(HttpServletRequest request) {
+		this.request = request;
+	}
+
+	public HttpServletResponse getResponse() {
+		return response;
+	}
+
+	void setResponse(HttpServletResponse response) {
+		this.response = response;
+	}
+
+	public User getCurrentUser() {
+		return currentUser;
+	}
+
+	void setCurrentUser(User currentUser) {
+		this.currentUser = currentUser;
+		this.userResolved = true;
+	}
+
+	/**
+	 * Returns a boolean indicating if current user was already resolved for the request.
+	 * @return a boolean indicating if current user was already resolved for the request.
+	 */
+	boolean isUserResolved() {
+		return userResolved;
+	}
+
+	/**
+	 * Returns the cached request verdict.
+	 * @return the cached request verdict or null if request was not evaluated yet.
+	 */
+	Boolean getRequestAllowed() {
+		return requestAllowed;
+	}
+
+	void setRequestAllowed(Boolean requestAllowed) {
+		this.requestAllowed = requestAllowed;
+	}
+
+	RoleMask getRoleMask() {
+		return roleMask;
+	}
+
+	void setRoleMask(RoleMask roleMask) {
+		this.roleMask = roleMask;
+	}
+
+	/**
+	 * Returns the role mask of current user expanded through the role hierarchy.
+	 * @return the expanded role mask or null if it was not computed for current role mask.
+	 */
+	RoleMask getExpandedRoleMask() {
+		return expandedRoleMask;
+	}
+
+	void setExpandedRoleMask(RoleMask expandedRoleMask) {
+		this.expandedRoleMask = expandedRoleMask;
+	}
+
+	/**
+	 * Returns the reason of the last denied check in this request.
+	 * @return the reason of the last denied check in this request or null if no check was denied.
+	 */
+	public DenialReason getDenialReason() {
+		return denialReason;
+	}
+
+	void setDenialReason(DenialReason denialReason) {
+		this.denialReason = denialReason;
+	}
+
+	/**
+	 * Returns the authenticator selected for the request by a {@linkplain CompositeWebSecurityManager}.
+	 * @return the authenticator selected for the request or null if request carries no credentials.
+	 */
+	Authenticator getAuthenticator() {
+		return authenticator;
+	}
+
+	/**
+	 * Returns the credentials handled by selected authenticator.
+	 * @return the credentials handled by selected authenticator or null if request carries no credentials.
+	 */
+	String getCredentials() {
+		return credentials;
+	}
+
+	boolean isAuthenticatorResolved() {
+		return authenticatorResolved;
+	}
+
+	void setAuthenticator(Authenticator authenticator, String credentials) {
+		this.authenticator         = authenticator;
+		this.credentials           = credentials;
+		this.authenticatorResolved = true;
+	}
+
+	/**
+	 * Returns a boolean indicating if the session of the request was accessed by the security manager.
+	 * @return a boolean indicating if the session of the request was accessed by the security manager.
+	 */
+	boolean isSessionAccessed() {
+		return sessionAccessed;
+	}
+
+	void setSessionAccessed(boolean sessionAccessed) {
+		this.sessionAccessed = sessionAccessed;
+	}
+
+	/**
+	 * Returns the context bound before this one was bound by a {@linkplain ScopedContextCarrier}.
+	 * @return enclosing context or null.
+	 */
+	RequestContext getEnclosing() {
+		return enclosing;
+	}
+
+	void setEnclosing(RequestContext enclosing) {
+		this.enclosing = enclosing;
+	}
+
+	/**
+	 * Accumulates time spent in role checks (only measured when metrics are enabled).
+	 * @param nanos time in nanoseconds.
+	 */
+	void addSecurityNanos(long nanos) {
+		securityNanos += nanos;
+	}
+
+	/**
+	 * Returns and resets the time spent in role checks.
+	 * @return time in nanoseconds.
+	 */
+	long takeSecurityNanos() {
+		long nanos = securityNanos;
+		securityNanos = 0;
+		return nanos;
+	}
+
+	/**
+	 * Returns a copy of this context.
+	 * @return a copy of this context. Attributes are copied into a new map.
+	 */
+	RequestContext copy() {
+		RequestContext copy = new RequestContext();
+		copy.request        = request;
+		copy.response       = response;
+		copy.currentUser    = currentUser;
+		copy.userResolved   = userResolved;
+		copy.requestAllowed = requestAllowed;
+		copy.roleMask       = roleMask;
+		copy.authenticator  = authenticator;
+		copy.credentials    = credentials;
+
+		copy.expandedRoleMask      = expandedRoleMask;
+		copy.authenticatorResolved = authenticatorResolved;
+		copy.sessionAccessed       = sessionAccessed;
+
+		if (attributeMap != null && !attributeMap.isEmpty())
+			copy.attributeMap = new LinkedHashMap<>(attributeMap);
+
+		return copy;
+	}
+
+	/** Discards cached user, its role mask and request verdict. */
+	void invalidateUser() {
+		currentUser    = null;
+		userResolved   = false;
+		requestAllowed = null;
+		roleMask       = null;
+
+		expandedRoleMask = null;
+	}
+
+	Object getAttribute(String name) {
+		if (name.equals(WebSecurityFilter.ATTR_HTTP_REQUEST))
+			return request;
+
+		if (name.equals(WebSecurityFilter.ATTR_HTTP_RESPONSE))
+			return response;
+
+		if (attributeMap == null)
+			return null;
+
+		return attributeMap.get(name);
+	}
+
+	void setAttribute(String name, Object attribute) {
+		if (name.equals(WebSecurityFilter.ATTR_HTTP_REQUEST)) {
+			request = (HttpServletRequest) attribute;
+		} else if (name.equals(WebSecurityFilter.ATTR_HTTP_RESPONSE)) {
+			response = (HttpServletResponse) attribute;
+		} else {
+			if (attributeMap == null)
+				attributeMap = new LinkedHashMap<>();
+
+			attributeMap.put(name, attribute);
+		}
+	}
+
+	void removeAttribute(String name) {
+		if (name.equals(WebSecurityFilter.ATTR_HTTP_REQUEST)) {
+			request = null;
+		} else if (name.equals(WebSecurityFilter.ATTR_HTTP_RESPONSE)) {
+			response = null;
+		} else if (attributeMap != null) {
+			attributeMap.remove(name);
+		}
+	}
+
+	/** Releases all references held by this context. */
+	void clear() {
+		request        = null;
+		response       = null;
+		currentUser    = null;
+		userResolved   = false;
+		requestAllowed = null;
+		roleMask       = null;
+		securityNanos  = 0;
+		denialReason   = null;
+		authenticator  = null;
+		credentials    = null;
+
+		expandedRoleMask      = null;
+		authenticatorResolved = false;
+		sessionAccessed       = false;
+
+		if (attributeMap != null)
+			attributeMap.clear();
+	}
+}
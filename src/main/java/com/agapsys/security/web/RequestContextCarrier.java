@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+/**
+ * Strategy used to associate {@linkplain RequestContext request contexts} with the code processing a request.
+ *
+ * A request is processed within a scope delimited by {@linkplain RequestContextCarrier#openScope()}
+ * and {@linkplain RequestContextCarrier#closeScope(RequestContext)}, which
+ * must be called by the same thread in a try/finally block. Implementations
+ * must be thread-safe.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public interface RequestContextCarrier {
+	/**
+	 * Returns the context of current scope.
+	 * @return the context of current scope. If there is no open scope, returns a context associated with current thread. Never null.
+	 */
+	public RequestContext getContext();
+
+	/**
+	 * Opens a request scope.
+	 * @return the context bound to the scope.
+	 */
+	public RequestContext openScope();
+
+	/**
+	 * Closes a scope opened by current thread. Context is cleared and the binding active before the scope was opened is restored.
+	 * @param context context returned by {@linkplain RequestContextCarrier#openScope()}.
+	 */
+	public void closeScope(RequestContext context);
+
+	/**
+	 * Closes a scope opened by current thread without clearing its context, so it can be used after the scope ends (for instance, by an asynchronous request).
+	 * @param context context returned by {@linkplain RequestContextCarrier#openScope()}.
+	 */
+	public void detachScope(RequestContext context);
+
+	/**
+	 * Binds given context to current thread.
+	 * @param context context to be bound.
+	 * @return previous binding (may be null). It must be passed to {@linkplain RequestContextCarrier#restore(RequestContext)} when given context is no longer needed.
+	 */
+	public RequestContext bind(RequestContext context);
+
+	/**
+	 * Restores a binding replaced by {@linkplain RequestContextCarrier#bind(RequestContext)}.
+	 * @param previous value returned by bind().
+	 */
+	public void restore(RequestContext previous);
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executor which propagates the security context of the submitting thread.
+ *
+ * Each submitted task is wrapped into a {@linkplain RequestContextRunnable}.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class RequestContextExecutor implements Executor {
+	// INSTANCE SCOPE ==========================================================
+	private final Executor delegate;
+
+	public RequestContextExecutor(Executor delegate) {
+		if (delegate == null)
+			throw new IllegalArgumentException("Delegate cannot be null");
+
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		delegate.execute(new RequestContextRunnable(command));
+	}
+	// =========================================================================
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+/**
+ * Runnable which executes in the security context of the request that created it.
+ *
+ * The context of the creating thread is copied on construction (see
+ * {@linkplain AttributeService#capture()}) and it is bound to the thread
+ * executing the task while the task runs. Request and response objects are
+ * only valid until the request completes, so tasks which access them must
+ * finish before that.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class RequestContextRunnable implements Runnable {
+	// INSTANCE SCOPE ==========================================================
+	private final AttributeService attributeService = AttributeService.getInstance();
+
+	private final Runnable       task;
+	private final RequestContext context;
+
+	public RequestContextRunnable(Runnable task) {
+		if (task == null)
+			throw new IllegalArgumentException("Task cannot be null");
+
+		this.task    = task;
+		this.context = attributeService.capture();
+	}
+
+	@Override
+	public void run() {
+		RequestContext previous = attributeService.bind(context);
+
+		try {
+			task.run();
+		} finally {
+			attributeService.restore(previous);
+		}
+	}
+	// =========================================================================
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Request rate limiter applied by {@linkplain WebSecurityFilter} before a request reaches the application.
+ *
+ * Each client (see {@linkplain #getClientKey(HttpServletRequest)}) and each requested session id has a token bucket
+ * (tracked as a theoretical arrival time, as in GCRA). Buckets live in a
+ * count-min sketch: a fixed table of atomic cells, each key mapped to one
+ * cell per row. Memory does not depend on the number of clients; keys
+ * sharing cells are throttled earlier, never later. Denied requests
+ * (HTTP 401/403) are charged extra tokens, so clients producing denials
+ * are slowed down automatically.
+ *
+ * Clients are identified by {@linkplain HttpServletRequest#getRemoteAddr()}
+ * by default. Behind a reverse proxy or load balancer, that is the address
+ * of the proxy, so all clients would share a single bucket. In that case,
+ * override {@linkplain #getClientKey(HttpServletRequest)} to read the client
+ * address set by the proxy (e.g. the last X-Forwarded-For entry added by a
+ * trusted proxy). Never trust headers which clients can set directly.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class RequestThrottle {
+	// CLASS SCOPE =============================================================
+	/** Default number of cells per sketch row. */
+	public static final int DEFAULT_WIDTH = 1 << 14;
+
+	/** Default number of tokens charged for a denied request (in addition to the request itself). */
+	public static final int DEFAULT_DENIAL_COST = 4;
+
+	private static final int DEPTH = 4;
+
+	private static final long ADDRESS_SEED = 0x9E3779B97F4A7C15L;
+	private static final long SESSION_SEED = 0xC2B2AE3D27D4EB4FL;
+
+	private static long hash(String key, long seed) {
+		long hash = seed;
+
+		for (int i = 0; i < key.length(); i++) {
+			hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+		}
+
+		// Final mix, so both halves of the hash are usable as indexes
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	private static int roundUp(int value) {
+		int size = Integer.highestOneBit(value);
+		return size < value ? size << 1 : size;
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final AtomicLongArray cells;
+	private final int             width;
+	private final int             widthMask;
+
+	/** Time (in microseconds) between requests at the sustained rate. */
+	private final long interval;
+
+	/** Maximum advance (in microseconds) of a bucket over current time. */
+	private final long tolerance;
+
+	private final int denialCost;
+
+	/**
+	 * Constructor.
+	 * @param rate sustained number of requests per second allowed for each client.
+	 * @param burst number of requests a client may issue at once.
+	 * @param denialCost number of additional tokens charged for a denied request.
+	 * @param width number of cells per sketch row. It will be rounded up to a power of two.
+	 */
+	public RequestThrottle(double rate, int burst, int denialCost, int width) {
+		if (!(rate > 0) || rate > 1000000)
+			throw new IllegalArgumentException("Invalid rate: " + rate);
+
+		if (burst < 1)
+			throw new IllegalArgumentException("Invalid burst: " + burst);
+
+		if (denialCost < 0)
+			throw new IllegalArgumentException("Invalid denial cost: " + denialCost);
+
+		if (width < 1 || width > 1 << 24)
+			throw new IllegalArgumentException("Invalid width: " + width);
+
+		this.width      = roundUp(width);
+		this.widthMask  = this.width - 1;
+		this.cells      = new AtomicLongArray(this.width * DEPTH);
+		this.interval   = Math.max(1, Math.round(1000000 / rate));
+		this.tolerance  = interval * burst;
+		this.denialCost = denialCost;
+	}
+
+	/**
+	 * Constructor.
+	 * @param rate sustained number of requests per second allowed for each client.
+	 * @param burst number of requests a client may issue at once.
+	 */
+	public RequestThrottle(double rate, int burst) {
+		this(rate, burst, DEFAULT_DENIAL_COST, DEFAULT_WIDTH);
+	}
+
+	/**
+	 * Returns current time. Subclasses may override this method for testing purposes.
+	 * @return current time in milliseconds.
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the key identifying the client which issued given request.
+	 * @param request HTTP request
+	 * @return the key identifying the client or null if the client cannot be identified (only the session is throttled). Default implementation returns the remote address.
+	 */
+	protected String getClientKey(HttpServletRequest request) {
+		return request.getRemoteAddr();
+	}
+
+	private int cellIndex(long hash, int row) {
+		// Double hashing: one hash yields an independent index per row
+		int index = (int) hash + row * ((int) (hash >>> 32) | 1);
+		return row * width + (index & widthMask);
+	}
+
+	/** Returns the theoretical arrival time of given key (the smallest among its cells). */
+	private long estimate(long hash) {
+		long estimate = Long.MAX_VALUE;
+
+		for (int row = 0; row < DEPTH; row++) {
+			estimate = Math.min(estimate, cells.get(cellIndex(hash, row)));
+		}
+
+		return estimate;
+	}
+
+	private void charge(long hash, long now, long cost) {
+		for (int row = 0; row < DEPTH; row++) {
+			int index = cellIndex(hash, row);
+			long current;
+
+			do {
+				current = cells.get(index);
+			} while (!cells.compareAndSet(index, current, Math.max(current, now) + cost));
+		}
+	}
+
+	private boolean isAllowed(long hash, long now) {
+		return Math.max(estimate(hash), now) + interval - now <= tolerance;
+	}
+
+	/**
+	 * Consumes a token from the buckets of given request.
+	 * @param request HTTP request
+	 * @return a boolean indicating if request is within limits. Rejected requests do not consume tokens.
+	 */
+	public boolean tryAcquire(HttpServletRequest request) {
+		long now = currentTimeMillis() * 1000;
+
+		String address   = getClientKey(request);
+		String sessionId = request.getRequestedSessionId();
+
+		long addressHash = address   == null ? 0 : hash(address, ADDRESS_SEED);
+		long sessionHash = sessionId == null ? 0 : hash(sessionId, SESSION_SEED);
+
+		if (address != null && !isAllowed(addressHash, now))
+			return false;
+
+		if (sessionId != null && !isAllowed(sessionHash, now))
+			return false;
+
+		if (address != null)
+			charge(addressHash, now, interval);
+
+		if (sessionId != null)
+			charge(sessionHash, now, interval);
+
+		return true;
+	}
+
+	/**
+	 * Charges the buckets of given request for a denial.
+	 * @param request denied request
+	 */
+	public void onDenied(HttpServletRequest request) {
+		if (denialCost == 0)
+			return;
+
+		long now = currentTimeMillis() * 1000;
+		long cost = interval * denialCost;
+
+		String address   = getClientKey(request);
+		String sessionId = request.getRequestedSessionId();
+
+		if (address != null)
+			charge(hash(address, ADDRESS_SEED), now, cost);
+
+		if (sessionId != null)
+			charge(hash(sessionId, SESSION_SEED), now, cost);
+	}
+
+	/** Resets all buckets. */
+	public void clear() {
+		for (int i = 0; i < cells.length(); i++) {
+			cells.set(i, 0);
+		}
+	}
+	// =========================================================================
+}
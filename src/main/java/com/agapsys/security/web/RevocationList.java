@@ -0,0 +1,343 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Set of revoked sessions and users shared among cluster nodes.
+ *
+ * Lookups go through a Bloom filter first, so checking an identifier which
+ * was never revoked (the common case) costs a few reads of an
+ * {@linkplain AtomicLongArray} and no locking. Only possible matches are
+ * confirmed against the exact set.
+ *
+ * Revocations are shared through a {@linkplain RevocationTransport}. Nodes
+ * pull entries appended since their last read lazily, at most once per sync
+ * interval, from the thread performing a lookup. A revocation made on a node
+ * is therefore seen by other nodes after at most one sync interval.
+ *
+ * Session revocations expire after {@linkplain #getSessionRevocationTtl()},
+ * which must be at least the maximum lifetime of a session. Expired entries
+ * are skipped when the log is read and dropped during sync, when the filter
+ * is rebuilt from remaining entries. User revocations last until users are
+ * restored. A filter sized far below the number of revocations degrades to
+ * exact set lookups, but results are always exact.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class RevocationList {
+	// CLASS SCOPE =============================================================
+	public static final int  DEFAULT_FILTER_BITS   = 1 << 20; // 128 KiB
+	public static final long DEFAULT_SYNC_INTERVAL = 1000; // 1 second
+
+	public static final long DEFAULT_SESSION_REVOCATION_TTL = 24 * 60 * 60 * 1000L; // 24 hours
+
+	private static final int HASH_COUNT = 4;
+
+	private static final String REVOKE_PREFIX  = "+";
+	private static final String RESTORE_PREFIX = "-";
+	private static final String SESSION_PREFIX = "session:";
+	private static final String USER_PREFIX    = "user:";
+
+	private static final char EXPIRES_AT_SEPARATOR = '\t';
+
+	private static final Long NEVER = Long.MAX_VALUE;
+
+	/** 64-bit FNV-1a hash. */
+	private static long hash(String key) {
+		long hash = 0xcbf29ce484222325L;
+
+		for (int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+
+		return hash;
+	}
+
+	private static String checkId(String id) {
+		if (id == null || id.isEmpty() || id.indexOf('\n') >= 0 || id.indexOf(EXPIRES_AT_SEPARATOR) >= 0)
+			throw new IllegalArgumentException("Invalid id: " + id);
+
+		return id;
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final RevocationTransport transport;
+	private final long                syncInterval;
+	private final int                 filterBits;
+	private final int                 filterMask;
+	private final Map<String, Long>   revokedKeys = new ConcurrentHashMap<>(); // Key -> expiration time
+	private final AtomicBoolean       syncing     = new AtomicBoolean();
+
+	private volatile AtomicLongArray filter;
+	private volatile long            sessionRevocationTtl = DEFAULT_SESSION_REVOCATION_TTL;
+	private volatile long            nextSync;
+	private long                     position; // Guarded by 'this'
+
+	/**
+	 * Constructor.
+	 * @param transport transport used to share revocations.
+	 * @param filterBits number of bits in the Bloom filter. It will be rounded up to a power of two.
+	 * @param syncInterval minimum interval (in milliseconds) between reads from the transport.
+	 */
+	public RevocationList(RevocationTransport transport, int filterBits, long syncInterval) {
+		if (transport == null)
+			throw new IllegalArgumentException("Transport cannot be null");
+
+		if (filterBits < 64)
+			throw new IllegalArgumentException("Filter must have at least 64 bits: " + filterBits);
+
+		if (syncInterval < 0)
+			throw new IllegalArgumentException("Invalid sync interval: " + syncInterval);
+
+		int bits = Integer.highestOneBit(filterBits);
+		if (bits < filterBits)
+			bits <<= 1;
+
+		this.transport    = transport;
+		this.syncInterval = syncInterval;
+		this.filterBits   = bits;
+		this.filter       = new AtomicLongArray(bits >>> 6);
+		this.filterMask   = bits - 1;
+	}
+
+	public RevocationList(RevocationTransport transport) {
+		this(transport, DEFAULT_FILTER_BITS, DEFAULT_SYNC_INTERVAL);
+	}
+
+	public RevocationTransport getTransport() {
+		return transport;
+	}
+
+	public long getSyncInterval() {
+		return syncInterval;
+	}
+
+	public long getSessionRevocationTtl() {
+		return sessionRevocationTtl;
+	}
+
+	/**
+	 * Defines for how long a session revocation is kept.
+	 *
+	 * Given value must be at least the maximum lifetime of a session,
+	 * otherwise a revoked session would be accepted again once its revocation
+	 * expires. Applications whose sessions have no absolute timeout must
+	 * also invalidate revoked sessions.
+	 * @param sessionRevocationTtl time-to-live in milliseconds. Default value is {@linkplain RevocationList#DEFAULT_SESSION_REVOCATION_TTL}.
+	 */
+	public void setSessionRevocationTtl(long sessionRevocationTtl) {
+		if (sessionRevocationTtl < 1)
+			throw new IllegalArgumentException("Invalid session revocation TTL: " + sessionRevocationTtl);
+
+		this.sessionRevocationTtl = sessionRevocationTtl;
+	}
+
+	/**
+	 * Returns current time. Subclasses may override this method for testing purposes.
+	 * @return current time in milliseconds.
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	private void addToFilter(AtomicLongArray filter, String key) {
+		long hash = hash(key);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32) | 1;
+
+		for (int i = 0; i < HASH_COUNT; i++) {
+			int bit = (h1 + i * h2) & filterMask;
+			int word = bit >>> 6;
+			long mask = 1L << bit;
+
+			while (true) {
+				long current = filter.get(word);
+
+				if ((current & mask) != 0 || filter.compareAndSet(word, current, current | mask))
+					break;
+			}
+		}
+	}
+
+	private boolean mightContain(String key) {
+		AtomicLongArray filter = this.filter;
+		long hash = hash(key);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32) | 1;
+
+		for (int i = 0; i < HASH_COUNT; i++) {
+			int bit = (h1 + i * h2) & filterMask;
+
+			if ((filter.get(bit >>> 6) & (1L << bit)) == 0)
+				return false;
+		}
+
+		return true;
+	}
+
+	/** Applies an entry read from (or published to) the transport. */
+	private synchronized void apply(String entry, long now) {
+		String key = entry.substring(1);
+
+		if (entry.startsWith(REVOKE_PREFIX)) {
+			Long expiresAt = NEVER;
+
+			if (key.startsWith(SESSION_PREFIX)) {
+				int separatorIndex = key.lastIndexOf(EXPIRES_AT_SEPARATOR);
+
+				if (separatorIndex < 0) {
+					// Entry written without expiration time
+					expiresAt = now + sessionRevocationTtl;
+				} else {
+					try {
+						expiresAt = Long.parseLong(key.substring(separatorIndex + 1));
+					} catch (NumberFormatException ex) {
+						expiresAt = now + sessionRevocationTtl;
+					}
+
+					key = key.substring(0, separatorIndex);
+				}
+
+				if (expiresAt <= now)
+					return;
+			}
+
+			// Exact set is updated first, so a filter hit is never missed by the exact lookup
+			revokedKeys.put(key, expiresAt);
+			addToFilter(filter, key);
+		} else if (entry.startsWith(RESTORE_PREFIX)) {
+			revokedKeys.remove(key);
+		}
+	}
+
+	private void publish(String entry) {
+		apply(entry, currentTimeMillis());
+		transport.publish(entry);
+	}
+
+	/** Drops expired entries and rebuilds the filter from remaining ones. */
+	private void purge(long now) {
+		boolean purged = false;
+
+		for (Iterator<Long> iterator = revokedKeys.values().iterator(); iterator.hasNext();) {
+			if (iterator.next() <= now) {
+				iterator.remove();
+				purged = true;
+			}
+		}
+
+		if (!purged)
+			return;
+
+		// Filter is replaced only when it is complete, so lookups never miss a revoked key
+		AtomicLongArray newFilter = new AtomicLongArray(filterBits >>> 6);
+		for (String key : revokedKeys.keySet()) {
+			addToFilter(newFilter, key);
+		}
+		filter = newFilter;
+	}
+
+	/** Reads entries appended to the transport since last read and drops expired ones. */
+	public synchronized void sync() {
+		long now = currentTimeMillis();
+		List<String> entries = new ArrayList<>();
+		position = transport.read(position, entries);
+
+		for (String entry : entries) {
+			apply(entry, now);
+		}
+
+		purge(now);
+	}
+
+	private void syncIfDue() {
+		long now = currentTimeMillis();
+
+		// Only one thread syncs; others keep using current state
+		if (now < nextSync || !syncing.compareAndSet(false, true))
+			return;
+
+		try {
+			if (now >= nextSync)
+				sync();
+		} finally {
+			nextSync = now + syncInterval;
+			syncing.set(false);
+		}
+	}
+
+	private boolean isRevoked(String key) {
+		syncIfDue();
+
+		if (!mightContain(key))
+			return false;
+
+		Long expiresAt = revokedKeys.get(key);
+		return expiresAt != null && expiresAt > currentTimeMillis();
+	}
+
+	/**
+	 * Revokes given session in all nodes. Revocation expires after {@linkplain #getSessionRevocationTtl()}.
+	 * @param sessionId session id
+	 */
+	public void revokeSession(String sessionId) {
+		long expiresAt = currentTimeMillis() + sessionRevocationTtl;
+		publish(REVOKE_PREFIX + SESSION_PREFIX + checkId(sessionId) + EXPIRES_AT_SEPARATOR + expiresAt);
+	}
+
+	/**
+	 * Revokes given user in all nodes. Revoked users are not recognized until they are restored.
+	 * @param userId user id (see {@linkplain IdentifiedUser#getId()}).
+	 */
+	public void revokeUser(String userId) {
+		publish(REVOKE_PREFIX + USER_PREFIX + checkId(userId));
+	}
+
+	/**
+	 * Restores a previously revoked user in all nodes.
+	 * @param userId user id
+	 */
+	public void restoreUser(String userId) {
+		publish(RESTORE_PREFIX + USER_PREFIX + checkId(userId));
+	}
+
+	public boolean isSessionRevoked(String sessionId) {
+		return isRevoked(SESSION_PREFIX + sessionId);
+	}
+
+	public boolean isUserRevoked(String userId) {
+		return isRevoked(USER_PREFIX + userId);
+	}
+
+	/**
+	 * Returns the number of revoked sessions and users known by this node.
+	 * Expired session revocations are counted until next sync.
+	 * @return the number of revoked sessions and users known by this node.
+	 */
+	public int getRevokedCount() {
+		return revokedKeys.size();
+	}
+	// =========================================================================
+}
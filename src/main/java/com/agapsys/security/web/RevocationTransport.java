@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.Collection;
+
+/**
+ * Channel used to share revocations among cluster nodes.
+ *
+ * A transport is an append-only log of revocation keys. Each node keeps its
+ * own read position and only fetches entries appended after it.
+ *
+ * Implementations must be thread-safe.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public interface RevocationTransport {
+	/**
+	 * Appends given key to the log.
+	 * @param key revocation key. It does not contain line breaks.
+	 */
+	public void publish(String key);
+
+	/**
+	 * Reads keys appended after given position.
+	 * @param position position returned by a previous call (or zero to read the whole log).
+	 * @param keys collection receiving read keys.
+	 * @return position to be used in the next call.
+	 */
+	public long read(long position, Collection<String> keys);
+}
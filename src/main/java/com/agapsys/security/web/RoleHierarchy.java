@@ -0,0 +1,204 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Graph of roles implying other roles (e.g. ADMIN implies EDITOR, which implies VIEWER).
+ *
+ * The transitive closure of each role is computed once, when the hierarchy
+ * is built, into a bit set. Expanding a user mask is therefore a bitwise OR
+ * per user role regardless of hierarchy depth, and users only need to carry
+ * their top-level roles.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public final class RoleHierarchy {
+	// CLASS SCOPE =============================================================
+	/**
+	 * Parses a hierarchy definition.
+	 * @param definition comma-separated chains of roles, each role implying the ones to its right (e.g. {@code "ADMIN > EDITOR > VIEWER, ADMIN > AUDITOR"}).
+	 * @return parsed hierarchy.
+	 */
+	public static RoleHierarchy parse(String definition) {
+		if (definition == null)
+			throw new IllegalArgumentException("Null definition");
+
+		Builder builder = new Builder();
+
+		for (String chain : definition.split(",")) {
+			if (chain.trim().isEmpty())
+				continue;
+
+			String[] roles = chain.split(">");
+			if (roles.length < 2)
+				throw new IllegalArgumentException("Invalid role chain: " + chain.trim());
+
+			for (int i = 0; i < roles.length - 1; i++) {
+				builder.include(roles[i].trim(), roles[i + 1].trim());
+			}
+		}
+
+		return builder.build();
+	}
+
+	/** Collects role implications and compiles them into a {@linkplain RoleHierarchy} instance. */
+	public static final class Builder {
+		private final Map<String, Set<String>> edges = new LinkedHashMap<>();
+		private boolean built = false;
+
+		/**
+		 * Declares that given role implies other roles.
+		 * @param role role name
+		 * @param impliedRoles roles granted to any user having given role
+		 * @return this builder.
+		 */
+		public Builder include(String role, String... impliedRoles) {
+			if (built)
+				throw new IllegalStateException("Hierarchy was already built");
+
+			if (role == null || role.isEmpty())
+				throw new IllegalArgumentException("Invalid role: " + role);
+
+			Set<String> implied = edges.get(role);
+			if (implied == null) {
+				implied = new LinkedHashSet<>();
+				edges.put(role, implied);
+			}
+
+			for (String impliedRole : impliedRoles) {
+				if (impliedRole == null || impliedRole.isEmpty())
+					throw new IllegalArgumentException("Invalid implied role: " + impliedRole);
+
+				implied.add(impliedRole);
+			}
+
+			return this;
+		}
+
+		private void collect(String role, Set<String> closure) {
+			Set<String> implied = edges.get(role);
+
+			if (implied == null)
+				return;
+
+			for (String impliedRole : implied) {
+				if (closure.add(impliedRole))
+					collect(impliedRole, closure);
+			}
+		}
+
+		public RoleHierarchy build() {
+			if (built)
+				throw new IllegalStateException("Hierarchy was already built");
+
+			built = true;
+
+			Map<String, Set<String>> closures = new LinkedHashMap<>();
+			for (String role : edges.keySet()) {
+				Set<String> closure = new LinkedHashSet<>();
+				collect(role, closure);
+				closure.remove(role);
+
+				if (!closure.isEmpty())
+					closures.put(role, Collections.unmodifiableSet(closure));
+			}
+
+			return new RoleHierarchy(closures);
+		}
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final Map<String, Set<String>> closures;
+
+	/** Closure masks indexed by role index (see {@linkplain RoleRegistry}). Null entries imply no roles. */
+	private final long[][] masks;
+
+	private RoleHierarchy(Map<String, Set<String>> closures) {
+		this.closures = Collections.unmodifiableMap(closures);
+
+		RoleRegistry registry = RoleRegistry.getInstance();
+		long[][] closureMasks = new long[0][];
+
+		for (Map.Entry<String, Set<String>> entry : closures.entrySet()) {
+			int index = registry.getIndex(entry.getKey());
+
+			if (index >= closureMasks.length)
+				closureMasks = Arrays.copyOf(closureMasks, index + 1);
+
+			closureMasks[index] = RoleMask.of(entry.getValue()).getWords();
+		}
+
+		this.masks = closureMasks;
+	}
+
+	/**
+	 * Returns the roles implied by given role, directly or not.
+	 * @param role role name
+	 * @return the roles implied by given role (not including the role itself).
+	 */
+	public Set<String> getImpliedRoles(String role) {
+		Set<String> implied = closures.get(role);
+		return implied == null ? Collections.<String>emptySet() : implied;
+	}
+
+	/**
+	 * Returns a mask containing given roles and all roles implied by them.
+	 * @param mask user role mask
+	 * @return expanded mask. If given mask implies no other roles, it is returned as is.
+	 */
+	public RoleMask expand(RoleMask mask) {
+		long[] words = mask.getWords();
+		long[] expanded = null;
+
+		for (int w = 0; w < words.length; w++) {
+			long word = words[w];
+
+			while (word != 0) {
+				int index = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+
+				long[] implied = index < masks.length ? masks[index] : null;
+				if (implied == null)
+					continue;
+
+				if (expanded == null)
+					expanded = words.clone();
+
+				if (implied.length > expanded.length)
+					expanded = Arrays.copyOf(expanded, implied.length);
+
+				for (int i = 0; i < implied.length; i++) {
+					expanded[i] |= implied[i];
+				}
+			}
+		}
+
+		return expanded == null ? mask : RoleMask.wrap(expanded);
+	}
+
+	@Override
+	public String toString() {
+		return closures.toString();
+	}
+	// =========================================================================
+}
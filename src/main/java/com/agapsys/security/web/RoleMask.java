@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable set of roles represented as a bit mask.
+ *
+ * Bit indexes are given by {@linkplain RoleRegistry}.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public final class RoleMask {
+	// CLASS SCOPE =============================================================
+	public static final RoleMask EMPTY = new RoleMask(new long[0], -1);
+
+	private static long[] setBit(long[] words, int index) {
+		int wordIndex = index >>> 6;
+
+		if (wordIndex >= words.length)
+			words = Arrays.copyOf(words, wordIndex + 1);
+
+		words[wordIndex] |= 1L << index;
+		return words;
+	}
+
+	/**
+	 * Creates a mask containing given roles.
+	 * @param roles role names
+	 * @return a mask containing given roles.
+	 */
+	public static RoleMask of(Collection<String> roles) {
+		if (roles == null || roles.isEmpty())
+			return EMPTY;
+
+		RoleRegistry registry = RoleRegistry.getInstance();
+		long[] words = new long[0];
+
+		for (String role : roles) {
+			words = setBit(words, registry.getIndex(role));
+		}
+
+		return new RoleMask(words, -1);
+	}
+
+	/**
+	 * Creates a mask containing given roles.
+	 * @param roles role names
+	 * @return a mask containing given roles.
+	 */
+	public static RoleMask of(String... roles) {
+		return of(Arrays.asList(roles));
+	}
+
+	/**
+	 * Creates a mask containing given user roles without registering them.
+	 *
+	 * Roles which are not known by {@linkplain RoleRegistry} are ignored, since no requirement can reference them.
+	 * Use this method for roles coming from users instead of {@linkplain #of(Collection)}, otherwise every
+	 * distinct role carried by a user would be kept by the registry forever.
+	 * @param roles role names
+	 * @return a mask containing given roles which are currently registered.
+	 * @see #isOutdated()
+	 */
+	public static RoleMask lookup(Collection<String> roles) {
+		if (roles == null || roles.isEmpty())
+			return EMPTY;
+
+		RoleRegistry registry = RoleRegistry.getInstance();
+		// Size is read before lookups so that concurrent registrations mark the mask as outdated
+		int registrySize = registry.size();
+		boolean skipped = false;
+		long[] words = new long[0];
+
+		for (String role : roles) {
+			int index = role == null ? -1 : registry.findIndex(role);
+
+			if (index < 0) {
+				skipped = true;
+			} else {
+				words = setBit(words, index);
+			}
+		}
+
+		return new RoleMask(words, skipped ? registrySize : -1);
+	}
+
+	/** Wraps given words without copying them. */
+	static RoleMask wrap(long[] words) {
+		return new RoleMask(words, -1);
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final long[] words;
+	private final int registrySize;
+
+	private RoleMask(long[] words, int registrySize) {
+		this.words = words;
+		this.registrySize = registrySize;
+	}
+
+	/** Returns the words backing this mask. Returned array must not be modified. */
+	long[] getWords() {
+		return words;
+	}
+
+	/**
+	 * Returns a boolean indicating if this mask must be rebuilt.
+	 *
+	 * A mask created via {@linkplain #lookup(Collection)} ignoring unknown roles becomes outdated as soon as new
+	 * roles are registered, since an ignored role may have been registered meanwhile.
+	 * @return a boolean indicating if this mask must be rebuilt.
+	 */
+	public boolean isOutdated() {
+		return registrySize >= 0 && RoleRegistry.getInstance().size() != registrySize;
+	}
+
+	/**
+	 * Returns a boolean indicating if this mask contains all roles of given mask.
+	 * @param other mask to be tested
+	 * @return a boolean indicating if this mask contains all roles of given mask.
+	 */
+	public boolean containsAll(RoleMask other) {
+		long[] otherWords = other.words;
+
+		for (int i = 0; i < otherWords.length; i++) {
+			long word = i < words.length ? words[i] : 0L;
+
+			if ((otherWords[i] & ~word) != 0)
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns a boolean indicating if this mask contains given role index.
+	 * @param index role index
+	 * @return a boolean indicating if this mask contains given role index.
+	 */
+	public boolean contains(int index) {
+		int wordIndex = index >>> 6;
+		return wordIndex < words.length && (words[wordIndex] & (1L << index)) != 0;
+	}
+
+	public boolean isEmpty() {
+		for (long word : words) {
+			if (word != 0)
+				return false;
+		}
+
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 0;
+
+		// Trailing empty words must not affect the hash
+		for (int i = words.length - 1; i >= 0; i--) {
+			if (hash != 0 || words[i] != 0)
+				hash = 31 * hash + (int) (words[i] ^ (words[i] >>> 32));
+		}
+
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+
+		if (!(obj instanceof RoleMask))
+			return false;
+
+		RoleMask other = (RoleMask) obj;
+		return containsAll(other) && other.containsAll(this);
+	}
+
+	@Override
+	public String toString() {
+		RoleRegistry registry = RoleRegistry.getInstance();
+		StringBuilder sb = new StringBuilder("[");
+
+		for (int i = 0; i < words.length * 64; i++) {
+			if (contains(i)) {
+				if (sb.length() > 1)
+					sb.append(", ");
+
+				sb.append(registry.getRole(i));
+			}
+		}
+
+		return sb.append("]").toString();
+	}
+	// =========================================================================
+}
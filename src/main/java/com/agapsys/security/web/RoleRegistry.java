@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Global registry assigning a stable bit index to each known role.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public final class RoleRegistry {
+	// CLASS SCOPE =============================================================
+	private static final RoleRegistry SINGLETON = new RoleRegistry();
+	public static RoleRegistry getInstance() {
+		return SINGLETON;
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final ConcurrentMap<String, Integer> indexMap = new ConcurrentHashMap<>();
+	private volatile String[] roles = new String[0];
+
+	private RoleRegistry() {}
+
+	/**
+	 * Returns the index associated with given role, registering it if needed.
+	 * @param role role name
+	 * @return index associated with given role.
+	 */
+	public int getIndex(String role) {
+		if (role == null)
+			throw new IllegalArgumentException("Null role");
+
+		Integer index = indexMap.get(role);
+		if (index != null)
+			return index;
+
+		return register(role);
+	}
+
+	/**
+	 * Returns the index associated with given role without registering it.
+	 * @param role role name
+	 * @return index associated with given role or -1 if role is not registered.
+	 */
+	public int findIndex(String role) {
+		Integer index = indexMap.get(role);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Returns the role associated with given index.
+	 * @param index role index
+	 * @return the role associated with given index.
+	 */
+	public String getRole(int index) {
+		return roles[index];
+	}
+
+	/**
+	 * Returns the number of registered roles.
+	 * @return the number of registered roles.
+	 */
+	public int size() {
+		return roles.length;
+	}
+
+	private synchronized int register(String role) {
+		Integer index = indexMap.get(role);
+		if (index != null)
+			return index;
+
+		String[] currentRoles = roles;
+		String[] newRoles = new String[currentRoles.length + 1];
+		System.arraycopy(currentRoles, 0, newRoles, 0, currentRoles.length);
+		newRoles[currentRoles.length] = role;
+
+		roles = newRoles;
+		indexMap.put(role, currentRoles.length);
+		return currentRoles.length;
+	}
+	// =========================================================================
+}
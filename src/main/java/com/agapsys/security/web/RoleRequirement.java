@@ -0,0 +1,197 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Compiled set of roles required by a secured method.
+ *
+ * Instances are interned: role arrays with the same elements (regardless of
+ * order) resolve to the same instance. Lookups do not allocate once a
+ * requirement is compiled.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public final class RoleRequirement {
+	// CLASS SCOPE =============================================================
+	private static final Object LOCK = new Object();
+
+	/** Open-addressing table. Replaced (never modified) when a requirement is added. */
+	private static volatile RoleRequirement[] table = new RoleRequirement[64];
+	private static int count = 0;
+
+	private static int hash(String[] roles) {
+		// Order-independent hash
+		int hash = roles.length;
+		for (String role : roles) {
+			if (role == null)
+				throw new IllegalArgumentException("Null role");
+
+			hash += role.hashCode() * 0x9E3779B9;
+		}
+
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean containsAll(String[] roles, String[] otherRoles) {
+		for (String otherRole : otherRoles) {
+			boolean found = false;
+
+			for (String role : roles) {
+				if (role.equals(otherRole)) {
+					found = true;
+					break;
+				}
+			}
+
+			if (!found)
+				return false;
+		}
+
+		return true;
+	}
+
+	private static RoleRequirement find(RoleRequirement[] table, String[] roles, int hash) {
+		int mask = table.length - 1;
+
+		for (int i = hash & mask; ; i = (i + 1) & mask) {
+			RoleRequirement requirement = table[i];
+
+			if (requirement == null)
+				return null;
+
+			if (requirement.hash == hash && requirement.matches(roles))
+				return requirement;
+		}
+	}
+
+	private static void insert(RoleRequirement[] table, RoleRequirement requirement) {
+		int mask = table.length - 1;
+		int i = requirement.hash & mask;
+
+		while (table[i] != null) {
+			i = (i + 1) & mask;
+		}
+
+		table[i] = requirement;
+	}
+
+	private static RoleRequirement compile(String[] roles, int hash) {
+		synchronized(LOCK) {
+			RoleRequirement[] currentTable = table;
+			RoleRequirement requirement = find(currentTable, roles, hash);
+
+			if (requirement != null)
+				return requirement;
+
+			requirement = new RoleRequirement(count, roles.clone(), hash);
+
+			int length = currentTable.length;
+			if ((count + 1) * 2 > length)
+				length *= 2;
+
+			RoleRequirement[] newTable = new RoleRequirement[length];
+			for (RoleRequirement existing : currentTable) {
+				if (existing != null)
+					insert(newTable, existing);
+			}
+			insert(newTable, requirement);
+
+			count++;
+			table = newTable;
+			return requirement;
+		}
+	}
+
+	/**
+	 * Returns the requirement associated with given roles, compiling it if needed.
+	 * @param roles required roles
+	 * @return the requirement associated with given roles.
+	 */
+	public static RoleRequirement of(String... roles) {
+		if (roles == null)
+			throw new IllegalArgumentException("Null roles");
+
+		int hash = hash(roles);
+		RoleRequirement requirement = find(table, roles, hash);
+
+		if (requirement != null)
+			return requirement;
+
+		return compile(roles, hash);
+	}
+
+	/**
+	 * Compiles given role sets in advance.
+	 * @param roleSets role sets to be compiled.
+	 */
+	public static void precompile(Collection<String[]> roleSets) {
+		for (String[] roles : roleSets) {
+			of(roles);
+		}
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final int      id;
+	private final String[] roles;
+	private final int      hash;
+	private final RoleMask mask;
+
+	private RoleRequirement(int id, String[] roles, int hash) {
+		this.id    = id;
+		this.roles = roles;
+		this.hash  = hash;
+		this.mask  = RoleMask.of(roles);
+	}
+
+	private boolean matches(String[] otherRoles) {
+		// Role arrays are small: a nested loop is cheaper than building sets
+		return otherRoles.length == roles.length && containsAll(roles, otherRoles) && containsAll(otherRoles, roles);
+	}
+
+	/**
+	 * Returns a sequential identifier unique to this requirement.
+	 * @return a sequential identifier unique to this requirement.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	public String[] getRoles() {
+		return roles.clone();
+	}
+
+	public RoleMask getMask() {
+		return mask;
+	}
+
+	/**
+	 * Returns a boolean indicating if given mask contains all required roles.
+	 * @param userMask user role mask
+	 * @return a boolean indicating if given mask contains all required roles.
+	 */
+	public boolean isSatisfiedBy(RoleMask userMask) {
+		return roles.length == 0 || userMask.containsAll(mask);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(roles);
+	}
+	// =========================================================================
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+/**
+ * Carrier which allocates a new context for each scope.
+ *
+ * A context exists only while its scope is open: the thread binding is
+ * removed when the scope closes, so threads keep no security state between
+ * requests. This suits containers which run each request on a new
+ * (short-lived or virtual) thread, where per-thread contexts would never be
+ * reused. Each request allocates exactly one context. Scopes may be nested.
+ *
+ * Code running outside any scope (for instance, in tests) gets a context
+ * associated with current thread, as in {@linkplain ThreadLocalContextCarrier}.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class ScopedContextCarrier implements RequestContextCarrier {
+	// INSTANCE SCOPE ==========================================================
+	private final ThreadLocal<RequestContext> scopedContext = new ThreadLocal<>();
+
+	private final ThreadLocal<RequestContext> unscopedContext = new ThreadLocal<RequestContext>() {
+		@Override
+		protected RequestContext initialValue() {
+			return new RequestContext();
+		}
+	};
+
+	@Override
+	public RequestContext getContext() {
+		RequestContext context = scopedContext.get();
+		return context != null ? context : unscopedContext.get();
+	}
+
+	@Override
+	public RequestContext openScope() {
+		RequestContext context = new RequestContext();
+		context.setEnclosing(scopedContext.get());
+		scopedContext.set(context);
+		return context;
+	}
+
+	private void exitScope(RequestContext context) {
+		if (scopedContext.get() != context)
+			throw new IllegalStateException("Scope is not open in current thread");
+
+		restore(context.getEnclosing());
+		context.setEnclosing(null);
+	}
+
+	@Override
+	public void closeScope(RequestContext context) {
+		exitScope(context);
+		context.clear();
+	}
+
+	@Override
+	public void detachScope(RequestContext context) {
+		exitScope(context);
+	}
+
+	@Override
+	public RequestContext bind(RequestContext context) {
+		RequestContext previous = scopedContext.get();
+		scopedContext.set(context);
+		return previous;
+	}
+
+	@Override
+	public void restore(RequestContext previous) {
+		if (previous == null) {
+			scopedContext.remove();
+		} else {
+			scopedContext.set(previous);
+		}
+	}
+	// =========================================================================
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Default CSRF token generator.
+ *
+ * Tokens are random bytes obtained from a pool of {@linkplain SecureRandom}
+ * instances (so concurrent threads do not contend on a single generator)
+ * encoded with URL-safe Base64. Each thread reuses its own buffers.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class SecureRandomCsrfTokenGenerator implements CsrfTokenGenerator {
+	// CLASS SCOPE =============================================================
+	/** Default number of random bytes in a token (256 bits, encoded as 43 chars). */
+	public static final int DEFAULT_ENTROPY_BYTES = 32;
+
+	/**
+	 * Algorithm used by pooled instances. Unlike the platform default
+	 * (NativePRNG on most Unix systems, which shares a global lock among all
+	 * instances), SHA1PRNG instances do not share state.
+	 */
+	private static final String POOL_ALGORITHM = "SHA1PRNG";
+
+	private static int getDefaultPoolSize() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	private static SecureRandom newSecureRandom() {
+		SecureRandom random;
+
+		try {
+			random = SecureRandom.getInstance(POOL_ALGORITHM);
+		} catch (NoSuchAlgorithmException ex) {
+			return new SecureRandom();
+		}
+
+		// Explicit seeding from the platform generator
+		random.setSeed(new SecureRandom().generateSeed(32));
+		return random;
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final class Buffers {
+		private final byte[] bytes = new byte[entropyBytes];
+		private final char[] chars = new char[tokenLength];
+	}
+
+	private final int            entropyBytes;
+	private final int            tokenLength;
+	private final SecureRandom[] pool;
+	private final int            poolMask;
+
+	private final ThreadLocal<Buffers> threadBuffers = new ThreadLocal<Buffers>() {
+		@Override
+		protected Buffers initialValue() {
+			return new Buffers();
+		}
+	};
+
+	/**
+	 * Constructor.
+	 * @param entropyBytes number of random bytes in each token.
+	 * @param poolSize number of {@linkplain SecureRandom} instances. It will be rounded up to a power of two.
+	 */
+	public SecureRandomCsrfTokenGenerator(int entropyBytes, int poolSize) {
+		if (entropyBytes < 16)
+			throw new IllegalArgumentException("Entropy must be at least 16 bytes: " + entropyBytes);
+
+		if (poolSize < 1)
+			throw new IllegalArgumentException("Invalid pool size: " + poolSize);
+
+		this.entropyBytes = entropyBytes;
+		this.tokenLength  = Base64Url.getEncodedLength(entropyBytes);
+
+		int size = Integer.highestOneBit(poolSize);
+		if (size < poolSize)
+			size <<= 1;
+
+		this.pool = new SecureRandom[size];
+		for (int i = 0; i < size; i++) {
+			pool[i] = newSecureRandom();
+		}
+		this.poolMask = size - 1;
+	}
+
+	/**
+	 * Constructor.
+	 * @param entropyBytes number of random bytes in each token.
+	 */
+	public SecureRandomCsrfTokenGenerator(int entropyBytes) {
+		this(entropyBytes, getDefaultPoolSize());
+	}
+
+	public SecureRandomCsrfTokenGenerator() {
+		this(DEFAULT_ENTROPY_BYTES);
+	}
+
+	public int getEntropyBytes() {
+		return entropyBytes;
+	}
+
+	/**
+	 * Returns the length of generated tokens.
+	 * @return the length of generated tokens.
+	 */
+	public int getTokenLength() {
+		return tokenLength;
+	}
+
+	@Override
+	public String generateToken() {
+		Buffers buffers = threadBuffers.get();
+		SecureRandom random = pool[(int) Thread.currentThread().getId() & poolMask];
+
+		random.nextBytes(buffers.bytes);
+		Base64Url.encode(buffers.bytes, entropyBytes, buffers.chars);
+		return new String(buffers.chars);
+	}
+	// =========================================================================
+}
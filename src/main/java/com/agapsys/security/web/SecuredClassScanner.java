@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import com.agapsys.security.Secured;
+import com.agapsys.security.Security;
+import com.agapsys.security.Unsecured;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtMethod;
+import javassist.NotFoundException;
+
+/**
+ * Reads security metadata from secured classes without loading them.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+final class SecuredClassScanner {
+	// CLASS SCOPE =============================================================
+	private static final String SECURITY_INFO_FILE = "META-INF/security.info";
+	private static final String SECURITY_INFO_FILE_ENCODING = "utf-8";
+
+	/**
+	 * Returns the names of the classes declared in the security info file.
+	 * @return the names of the classes declared in the security info file (same file used by {@linkplain Security}).
+	 */
+	static Set<String> readSecuredClasses() {
+		Set<String> classNames = new LinkedHashSet<>();
+
+		try (InputStream is = Security.class.getClassLoader().getResourceAsStream(SECURITY_INFO_FILE)) {
+			if (is == null)
+				return classNames;
+
+			BufferedReader reader = new BufferedReader(new InputStreamReader(is, SECURITY_INFO_FILE_ENCODING));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+
+				if (!line.isEmpty())
+					classNames.add(line);
+			}
+
+			return classNames;
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Returns the role sets required by the secured methods of given classes.
+	 * @param classNames secured class names
+	 * @return the role sets required by the secured methods of given classes.
+	 */
+	static List<String[]> getRoleSets(Collection<String> classNames) {
+		ClassPool classPool = ClassPool.getDefault();
+		List<String[]> roleSets = new LinkedList<>();
+
+		try {
+			for (String className : classNames) {
+				CtClass ctClass = classPool.get(className);
+				Secured classSecured = (Secured) ctClass.getAnnotation(Secured.class);
+
+				for (CtMethod method : ctClass.getDeclaredMethods()) {
+					Secured methodSecured = (Secured) method.getAnnotation(Secured.class);
+
+					if (method.hasAnnotation(Unsecured.class) || (classSecured == null && methodSecured == null))
+						continue;
+
+					// Same ordering used by instrumented code
+					Set<String> roles = new LinkedHashSet<>();
+					if (classSecured != null)
+						roles.addAll(Arrays.asList(classSecured.value()));
+
+					if (methodSecured != null)
+						roles.addAll(Arrays.asList(methodSecured.value()));
+
+					roleSets.add(roles.toArray(new String[roles.size()]));
+				}
+			}
+		} catch (NotFoundException | ClassNotFoundException ex) {
+			throw new RuntimeException(ex);
+		}
+
+		return roleSets;
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private SecuredClassScanner() {}
+	// =========================================================================
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Index of classes instrumented at build time (see {@linkplain SecurityWeaver}).
+ *
+ * The index lists woven classes and the role sets required by their
+ * methods, so neither instrumentation nor class scanning is needed at
+ * startup. An index is only a hint: each listed class is checked for the
+ * weaver mark before runtime instrumentation is skipped.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+final class SecurityIndex {
+	// CLASS SCOPE =============================================================
+	static final String INDEX_FILE = "META-INF/security.index";
+
+	private static final String ENCODING     = "utf-8";
+	private static final String CLASS_PREFIX = "class=";
+	private static final String ROLES_PREFIX = "roles=";
+
+	private static void read(URL url, SecurityIndex index) throws IOException {
+		try (InputStream is = url.openStream()) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(is, ENCODING));
+			String line;
+
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(CLASS_PREFIX)) {
+					index.classNames.add(line.substring(CLASS_PREFIX.length()));
+				} else if (line.startsWith(ROLES_PREFIX)) {
+					String roles = line.substring(ROLES_PREFIX.length());
+					index.roleSets.add(roles.isEmpty() ? new String[0] : roles.split(","));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads all indexes visible to given class loader (one per classpath entry) into a single index.
+	 * @param classLoader class loader
+	 * @return index or null if there is no index.
+	 */
+	static SecurityIndex read(ClassLoader classLoader) {
+		try {
+			Enumeration<URL> urls = classLoader.getResources(INDEX_FILE);
+
+			if (!urls.hasMoreElements())
+				return null;
+
+			SecurityIndex index = new SecurityIndex();
+
+			while (urls.hasMoreElements()) {
+				read(urls.nextElement(), index);
+			}
+
+			return index;
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final Set<String>    classNames = new LinkedHashSet<>();
+	private final List<String[]> roleSets   = new ArrayList<>();
+
+	SecurityIndex() {}
+
+	Set<String> getClassNames() {
+		return classNames;
+	}
+
+	List<String[]> getRoleSets() {
+		return roleSets;
+	}
+
+	void addClass(String className) {
+		classNames.add(className);
+	}
+
+	void addRoleSet(Collection<String> roles) {
+		for (String role : roles) {
+			if (role.isEmpty() || role.contains(",") || role.contains("\n"))
+				throw new IllegalArgumentException("Role cannot be indexed: " + role);
+		}
+
+		roleSets.add(roles.toArray(new String[roles.size()]));
+	}
+
+	/**
+	 * Writes this index into given output directory.
+	 * @param outputDirectory class output directory.
+	 */
+	void write(File outputDirectory) {
+		File file = new File(outputDirectory, INDEX_FILE);
+		file.getParentFile().mkdirs();
+
+		try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), ENCODING))) {
+			writer.print("# Generated by " + SecurityWeaver.class.getName() + "\n");
+
+			for (String className : classNames) {
+				writer.print(CLASS_PREFIX + className + "\n");
+			}
+
+			for (String[] roles : roleSets) {
+				StringBuilder sb = new StringBuilder(ROLES_PREFIX);
+
+				for (int i = 0; i < roles.length; i++) {
+					if (i > 0)
+						sb.append(',');
+
+					sb.append(roles[i]);
+				}
+
+				writer.print(sb.append('\n').toString());
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+	// =========================================================================
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+/**
+ * Receives measurements from the security layer.
+ *
+ * Methods are called from request processing threads, so implementations
+ * must be thread-safe and must return quickly. Metrics are disabled by
+ * default (see {@linkplain WebSecurityManager#setMetrics(SecurityMetrics)}),
+ * in which case no measurement is taken at all.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public interface SecurityMetrics {
+	/**
+	 * Called after each role check.
+	 * @param requirement checked roles
+	 * @param allowed check result
+	 */
+	public void onCheck(RoleRequirement requirement, boolean allowed);
+
+	/** Called when a request is rejected because there is no authenticated user (HTTP 401). */
+	public void onUnauthorized();
+
+	/** Called when a request is rejected because current user is not allowed (HTTP 403). */
+	public void onForbidden();
+
+	/** Called when a request carrying a session has a missing or invalid CSRF token. */
+	public void onCsrfMismatch();
+
+	/** Called when a request is rejected by {@linkplain RequestThrottle} (HTTP 429). */
+	public void onThrottled();
+
+	/** Called the first time a security manager reads or writes the session of a request. */
+	public void onSessionAccess();
+
+	/** Called when a security manager creates a session. */
+	public void onSessionCreated();
+
+	/**
+	 * Called after current user is loaded from the underlying storage.
+	 * @param nanos time (in nanoseconds) spent loading the user.
+	 */
+	public void onUserLookup(long nanos);
+
+	/**
+	 * Called when {@linkplain WebSecurityFilter} finishes processing a request.
+	 * @param nanos time (in nanoseconds) spent by the security layer while processing the request. It includes filter bookkeeping and role checks, but not application code.
+	 */
+	public void onRequest(long nanos);
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.Map;
+
+/**
+ * Management interface exposed by {@linkplain JmxSecurityMetricsExporter}.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public interface SecurityMetricsMXBean {
+	public long getAllowedChecks();
+
+	public long getDeniedChecks();
+
+	/**
+	 * Returns allowed checks per role set.
+	 * @return a map whose keys are role sets (as in "[ROLE_A, ROLE_B]").
+	 */
+	public Map<String, Long> getAllowedChecksByRoles();
+
+	/**
+	 * Returns denied checks per role set.
+	 * @return a map whose keys are role sets (as in "[ROLE_A, ROLE_B]").
+	 */
+	public Map<String, Long> getDeniedChecksByRoles();
+
+	public long getUnauthorizedCount();
+
+	public long getForbiddenCount();
+
+	public long getCsrfMismatchCount();
+
+	public long getThrottledCount();
+
+	public long getSessionAccessCount();
+
+	public long getSessionCreatedCount();
+
+	public long getUserLookupCount();
+
+	public double getUserLookupMeanNanos();
+
+	public long getUserLookupP99Nanos();
+
+	public long getRequestCount();
+
+	public double getRequestMeanNanos();
+
+	public long getRequestP99Nanos();
+
+	public void reset();
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import com.agapsys.security.Secured;
+import com.agapsys.security.Unsecured;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtMethod;
+import javassist.LoaderClassPath;
+import javassist.bytecode.ClassFile;
+
+/**
+ * Instruments secured classes at build time.
+ *
+ * Classes listed in META-INF/security.info (the same file read by
+ * {@linkplain WebSecurity#init(WebSecurityManager)}) are rewritten in place
+ * with the same checks injected at runtime, and a META-INF/security.index
+ * file is written next to them. When that index is found at startup,
+ * {@linkplain WebSecurity} skips runtime instrumentation and class scanning
+ * for indexed classes.
+ *
+ * Weaving is intended to run after compilation, for instance through the
+ * exec-maven-plugin at the process-classes phase:
+ * <pre>
+ * &lt;plugin&gt;
+ *     &lt;groupId&gt;org.codehaus.mojo&lt;/groupId&gt;
+ *     &lt;artifactId&gt;exec-maven-plugin&lt;/artifactId&gt;
+ *     &lt;executions&gt;
+ *         &lt;execution&gt;
+ *             &lt;phase&gt;process-classes&lt;/phase&gt;
+ *             &lt;goals&gt;&lt;goal&gt;java&lt;/goal&gt;&lt;/goals&gt;
+ *             &lt;configuration&gt;
+ *                 &lt;mainClass&gt;com.agapsys.security.web.SecurityWeaver&lt;/mainClass&gt;
+ *                 &lt;arguments&gt;&lt;argument&gt;${project.build.outputDirectory}&lt;/argument&gt;&lt;/arguments&gt;
+ *             &lt;/configuration&gt;
+ *         &lt;/execution&gt;
+ *     &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ * Woven classes are marked, so running the weaver again over the same output is harmless.
+ * At startup, indexed classes are only trusted when their class files carry
+ * the mark (see {@linkplain #isWoven(ClassLoader, String)}); a class compiled
+ * again after weaving is instrumented at runtime.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public final class SecurityWeaver {
+	// CLASS SCOPE =============================================================
+	private static final String SECURITY_INFO_FILE = "META-INF/security.info";
+	private static final String WOVEN_ATTRIBUTE    = SecurityWeaver.class.getName();
+
+	private static Set<String> readSecuredClasses(File outputDirectory) {
+		Set<String> classNames = new LinkedHashSet<>();
+		File file = new File(outputDirectory, SECURITY_INFO_FILE);
+
+		if (!file.exists())
+			return classNames;
+
+		try (InputStream is = new FileInputStream(file)) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(is, "utf-8"));
+			String line;
+
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+
+				if (!line.isEmpty())
+					classNames.add(line);
+			}
+
+			return classNames;
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	private static void addRoles(Set<String> roles, Secured secured, String owner) {
+		for (String role : secured.value()) {
+			if (!roles.add(role))
+				throw new RuntimeException(String.format("Duplicate role definition (%s) for %s", role, owner));
+		}
+	}
+
+	/**
+	 * Returns a boolean indicating if the class file of given class, as seen by given class loader, is marked as woven.
+	 * Class is not loaded.
+	 * @param classLoader class loader
+	 * @param className class name
+	 * @return a boolean indicating if given class was woven. If class file cannot be read, returns false.
+	 */
+	static boolean isWoven(ClassLoader classLoader, String className) {
+		try (InputStream is = classLoader.getResourceAsStream(className.replace('.', '/') + ".class")) {
+			if (is == null)
+				return false;
+
+			ClassFile classFile = new ClassFile(new DataInputStream(new BufferedInputStream(is)));
+			return classFile.getAttribute(WOVEN_ATTRIBUTE) != null;
+		} catch (IOException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Instruments given classes.
+	 * @param outputDirectory directory containing compiled classes. Woven classes and the index are written into it.
+	 * @param classLoader class loader able to load classes referenced by secured classes.
+	 * @param classNames names of the classes to be woven.
+	 * @return the number of woven methods.
+	 */
+	public static int weave(File outputDirectory, ClassLoader classLoader, Set<String> classNames) {
+		if (outputDirectory == null || !outputDirectory.isDirectory())
+			throw new IllegalArgumentException("Invalid output directory: " + outputDirectory);
+
+		ClassPool classPool = new ClassPool(true);
+		SecurityIndex index = new SecurityIndex();
+		int wovenMethods = 0;
+
+		try {
+			classPool.insertClassPath(outputDirectory.getAbsolutePath());
+			classPool.appendClassPath(new LoaderClassPath(classLoader));
+
+			for (String className : classNames) {
+				CtClass ctClass = classPool.get(className);
+				boolean alreadyWoven = ctClass.getAttribute(WOVEN_ATTRIBUTE) != null;
+				Secured classSecured = (Secured) ctClass.getAnnotation(Secured.class);
+
+				for (CtMethod method : ctClass.getDeclaredMethods()) {
+					Secured methodSecured = (Secured) method.getAnnotation(Secured.class);
+					boolean unsecured = method.hasAnnotation(Unsecured.class);
+
+					if (methodSecured != null && unsecured)
+						throw new RuntimeException(String.format("Method '%s' has both '%s' and '%s' annotations", method.getLongName(), Secured.class.getName(), Unsecured.class.getName()));
+
+					if (unsecured || (classSecured == null && methodSecured == null))
+						continue;
+
+					// Same ordering and code used by runtime instrumentation
+					Set<String> roles = new LinkedHashSet<>();
+					if (classSecured != null)
+						addRoles(roles, classSecured, ctClass.getName());
+
+					if (methodSecured != null)
+						addRoles(roles, methodSecured, method.getLongName());
+
+					index.addRoleSet(roles);
+
+					if (alreadyWoven)
+						continue;
+
+					StringBuilder rolesArray = new StringBuilder();
+					for (String role : roles) {
+						if (rolesArray.length() > 0)
+							rolesArray.append(", ");
+
+						rolesArray.append('"').append(role.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+					}
+
+					method.insertBefore(String.format(
+						"{ String[] roles = new String[] {%s}; com.agapsys.security.SecurityManager sm = com.agapsys.security.Security.getSecurityManager(); if (!sm.isAllowed(roles)) { sm.onNotAllowed(); } }",
+						rolesArray
+					));
+					wovenMethods++;
+				}
+
+				index.addClass(className);
+
+				if (!alreadyWoven) {
+					ctClass.setAttribute(WOVEN_ATTRIBUTE, new byte[0]);
+					ctClass.writeFile(outputDirectory.getAbsolutePath());
+				}
+			}
+		} catch (RuntimeException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw new RuntimeException(ex);
+		}
+
+		index.write(outputDirectory);
+		return wovenMethods;
+	}
+
+	/**
+	 * Entry point.
+	 * @param args class output directory, optionally followed by the names of the classes to be woven (by default, classes listed in META-INF/security.info).
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1)
+			throw new IllegalArgumentException("Usage: SecurityWeaver <classes directory> [class names...]");
+
+		File outputDirectory = new File(args[0]);
+		Set<String> classNames = args.length > 1 ? new LinkedHashSet<>(Arrays.asList(args).subList(1, args.length)) : readSecuredClasses(outputDirectory);
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+		int wovenMethods = weave(outputDirectory, classLoader != null ? classLoader : SecurityWeaver.class.getClassLoader(), classNames);
+		System.out.println(String.format("Secured classes: %d, woven methods: %d", classNames.size(), wovenMethods));
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private SecurityWeaver() {}
+	// =========================================================================
+}
@@ -16,9 +16,7 @@
 package com.agapsys.security.web;
 
 import java.util.Objects;
-import java.util.Random;
 import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpSession;
 
 /**
  *
@@ -27,81 +25,51 @@ import javax.servlet.http.HttpSession;
 public class SessionCsrfSecurityManager extends SessionSecurityManager {
 
 	// CLASS SCOPE =============================================================
-	private static final String SESSION_ATTR_CSRF_TOKEN = SessionCsrfSecurityManager.class.getName() + ".csrfToken";
-	
-	private static final int CSRF_TOKEN_LENGTH = 128;
-	
 	/** Name of the header used to send/retrieve a CSRF token. */
 	public static final String CSRF_HEADER  = "X-Csrf-Token";
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final CsrfTokenGenerator tokenGenerator;
 
-	/** 
-	 * Generates a random string (chars: [a-z][A-Z][0-9]).
-	 * @param length length of returned string
-	 * @return a random string with given length.
-	 * @throws IllegalArgumentException if (length &lt; 1)
-	 */
-	private static String getRandomString(int length) throws IllegalArgumentException {
-		char[] chars = "abcdefghijklmnopqrstuvwxyz0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
-		return getRandomString(length, chars);
+	public SessionCsrfSecurityManager(CsrfTokenGenerator tokenGenerator) {
+		if (tokenGenerator == null)
+			throw new IllegalArgumentException("Token generator cannot be null");
+
+		this.tokenGenerator = tokenGenerator;
 	}
-	
-	/**
-	 * Generates a random String 
-	 * @param length length of returned string
-	 * @param chars set of chars which will be using during random string generation
-	 * @return a random string with given length.
-	 * @throws IllegalArgumentException if (length &lt; 1 || chars == null || chars.length == 0)
-	 */
-	private static String getRandomString(int length, char[] chars) throws IllegalArgumentException {
-		if (length < 1)
-			throw new IllegalArgumentException("Invalid length: " + length);
-		
-		if (chars == null || chars.length == 0)
-			throw new IllegalArgumentException("Null/Empty chars");
-		
-		StringBuilder sb = new StringBuilder();
-		Random random = new Random();
-		for (int i = 0; i < length; i++) {
-			char c = chars[random.nextInt(chars.length)];
-			sb.append(c);
-		}
-		return sb.toString();
+
+	public SessionCsrfSecurityManager() {
+		this(new SecureRandomCsrfTokenGenerator());
+	}
+
+	public CsrfTokenGenerator getTokenGenerator() {
+		return tokenGenerator;
 	}
-	// =========================================================================
 
-	// INSTANCE SCOPE ==========================================================
 	@Override
 	protected boolean isAllowed(HttpServletRequest request) {
-		HttpSession session = getRequest().getSession(false);
+		SessionState state = getSessionState();
 		
-		if (session == null)
+		if (state == null)
 			return false;
 		
-		String sessionToken = (String) session.getAttribute(SESSION_ATTR_CSRF_TOKEN);
 		String requestToken = request.getHeader(CSRF_HEADER);
-			
-		return Objects.equals(sessionToken, requestToken);
-	}
-
-	@Override
-	public void setCurrentUser(User user) {
-		super.setCurrentUser(user);
 		
-		HttpSession session = getRequest().getSession(true);
+		if (Objects.equals(state.getCsrfToken(), requestToken))
+			return true;
 		
-		String token = getRandomString(CSRF_TOKEN_LENGTH);
-		session.setAttribute(SESSION_ATTR_CSRF_TOKEN, token);
-		getResponse().setHeader(CSRF_HEADER, token);
+		onCsrfMismatch();
+		
+		return false;
 	}
 
 	@Override
-	public void unregisterCurrentUser() {
-		super.unregisterCurrentUser();
-		
-		HttpSession session = getRequest().getSession(false);
-		
-		if (session != null)
-			session.removeAttribute(SESSION_ATTR_CSRF_TOKEN);
+	SessionState createSessionState(Object user) {
+		// Token is stored along with the user, so registration writes the session once
+		String token = tokenGenerator.generateToken();
+		getResponse().setHeader(CSRF_HEADER, token);
+		return new SessionState(user, token);
 	}
 	// =========================================================================
 }
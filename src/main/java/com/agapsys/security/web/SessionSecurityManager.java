@@ -15,47 +15,157 @@
  */
 package com.agapsys.security.web;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
 /**
+ * Security manager storing users in HTTP sessions.
  *
+ * Sessions are only created when a user is registered. Requests which do
+ * not carry a session id (anonymous and public traffic) never reach the
+ * session store.
+ *
+ * When users are stored through a {@linkplain UserCodec}, a user which cannot
+ * be decoded by current codec (for instance, one encoded with another
+ * {@linkplain CompactUserCodec} dictionary) is discarded, so its session
+ * behaves as an anonymous one.
  * @author Leandro Oliveira (leandro@agapsys.com)
  */
 public class SessionSecurityManager extends WebSecurityManager {
 	// CLASS SCOPE =============================================================
-	private static final String SESSION_ATTR_USER = SessionSecurityManager.class + ".user";
+	private static final String SESSION_ATTR_STATE = SessionSecurityManager.class.getName() + ".state";
 	// =========================================================================
 
 	// INSTANCE SCOPE ==========================================================
-	@Override
-	public User getCurrentUser() {
-		HttpSession session = getRequest().getSession(false);
+	private final UserCodec userCodec;
+
+	/**
+	 * Constructor.
+	 * @param userCodec codec used to store users in sessions as byte arrays (for instance, a {@linkplain CompactUserCodec}). Passing null stores users as regular (serializable) objects.
+	 */
+	public SessionSecurityManager(UserCodec userCodec) {
+		this.userCodec = userCodec;
+	}
+
+	public SessionSecurityManager() {
+		this(null);
+	}
+
+	/**
+	 * Returns the codec used to store users in sessions.
+	 * @return the codec used to store users in sessions or null if users are stored as regular objects.
+	 */
+	public UserCodec getUserCodec() {
+		return userCodec;
+	}
+
+	/**
+	 * Returns the session of current request.
+	 *
+	 * Unless a session is being created, the session is only looked up if
+	 * the request carries a session id or if the session was already
+	 * accessed while processing the request.
+	 * @param create defines if a session shall be created when there is none.
+	 * @return the session of current request or null if there is no session (and create is false).
+	 */
+	protected final HttpSession getSession(boolean create) {
+		RequestContext context = getRequestContext();
+		HttpServletRequest request = context.getRequest();
+
+		if (request == null) {
+			if (create)
+				throw new IllegalStateException("There is no request being processed");
+
+			return null;
+		}
+
+		HttpSession session = null;
+
+		if (create || context.isSessionAccessed() || request.getRequestedSessionId() != null)
+			session = request.getSession(false);
+
+		SecurityMetrics metrics = getMetrics();
+
+		if (session == null && create) {
+			session = request.getSession(true);
+
+			if (metrics != null)
+				metrics.onSessionCreated();
+		}
+
+		if (session != null && !context.isSessionAccessed()) {
+			context.setSessionAccessed(true);
+
+			if (metrics != null)
+				metrics.onSessionAccess();
+		}
+
+		return session;
+	}
+
+	/**
+	 * Returns the security state stored in current session.
+	 * @return the security state stored in current session or null if there is no session or no state.
+	 */
+	final SessionState getSessionState() {
+		HttpSession session = getSession(false);
 
 		if (session == null)
 			return null;
 
-		return (User) session.getAttribute(SESSION_ATTR_USER);
+		return (SessionState) session.getAttribute(SESSION_ATTR_STATE);
+	}
+
+	/**
+	 * Creates the state to be stored when a user is registered. Subclasses may override this method to store additional data along with the user.
+	 * @param user user (or its encoded form) to be stored.
+	 * @return the state to be stored in the session.
+	 */
+	SessionState createSessionState(Object user) {
+		return new SessionState(user, null);
 	}
 
 	@Override
-	public void setCurrentUser(User user) {
-		if (user == null)
-			throw new IllegalArgumentException("User cannot be null");
-		
-		HttpSession session = getRequest().getSession(true);
-		session.setAttribute(SESSION_ATTR_USER, user);
+	protected User loadCurrentUser() {
+		SessionState state = getSessionState();
+
+		if (state == null)
+			return null;
+
+		Object value = state.getUser();
+
+		if (value instanceof byte[]) {
+			if (userCodec == null)
+				throw new IllegalStateException("Session contains an encoded user but there is no user codec");
+
+			try {
+				return userCodec.decode((byte[]) value);
+			} catch (IllegalArgumentException ex) {
+				// User was encoded by an incompatible codec (for instance, before a dictionary change): stale state is discarded and the session has no user
+				HttpSession session = getSession(false);
+
+				if (session != null)
+					session.removeAttribute(SESSION_ATTR_STATE);
+
+				return null;
+			}
+		}
+
+		return (User) value;
 	}
 
 	@Override
-	public void unregisterCurrentUser() {
-		HttpSession session = getRequest().getSession(false);
+	protected void storeCurrentUser(User user) {
+		HttpSession session = getSession(true);
+		session.setAttribute(SESSION_ATTR_STATE, createSessionState(userCodec == null ? user : userCodec.encode(user)));
+	}
+
+	@Override
+	protected void removeCurrentUser() {
+		HttpSession session = getSession(false);
 		
 		if (session != null)
-			session.removeAttribute(SESSION_ATTR_USER);
+			session.removeAttribute(SESSION_ATTR_STATE);
 	}
 	// =========================================================================
-
-	
-
-	
 }
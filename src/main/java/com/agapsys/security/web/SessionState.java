@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.io.Serializable;
+
+/**
+ * Security state kept in a session as a single attribute.
+ *
+ * Grouping the user with related data (such as a CSRF token or a version
+ * stamp) means a login or a logout writes the session once, so replicated
+ * containers replicate it once. Instances are immutable: a new state is stored whenever it
+ * changes.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+final class SessionState implements Serializable {
+	// CLASS SCOPE =============================================================
+	private static final long serialVersionUID = 1L;
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final Object user;
+	private final String csrfToken;
+	private final Long   version;
+
+	/**
+	 * Constructor.
+	 * @param user stored user: either a {@linkplain User} or its encoded form (see {@linkplain UserCodec}).
+	 * @param csrfToken CSRF token associated with the session (may be null).
+	 * @param version version stamp of stored user (may be null). See {@linkplain CachingSessionSecurityManager}.
+	 */
+	SessionState(Object user, String csrfToken, Long version) {
+		this.user      = user;
+		this.csrfToken = csrfToken;
+		this.version   = version;
+	}
+
+	SessionState(Object user, String csrfToken) {
+		this(user, csrfToken, null);
+	}
+
+	Object getUser() {
+		return user;
+	}
+
+	String getCsrfToken() {
+		return csrfToken;
+	}
+
+	Long getVersion() {
+		return version;
+	}
+	// =========================================================================
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.concurrent.ThreadLocalRandom;
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Session security manager using stateless CSRF tokens.
+ *
+ * A token is a MAC over the session id, the issue time and a nonce, signed
+ * with a rotating key (see {@linkplain HmacKeyRing}). Validating a token
+ * requires no session access. Tokens older than {@linkplain #getMaxTokenAge()}
+ * are rejected. When an accepted token is signed with a previous key or is
+ * older than half of maximum age, a fresh token is sent back through
+ * {@linkplain SessionCsrfSecurityManager#CSRF_HEADER}.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class SignedCsrfSecurityManager extends SessionSecurityManager {
+
+	// CLASS SCOPE =============================================================
+	/** Name of the header used to send/retrieve a CSRF token. */
+	public static final String CSRF_HEADER = SessionCsrfSecurityManager.CSRF_HEADER;
+
+	/** Default maximum token age. */
+	public static final long DEFAULT_MAX_TOKEN_AGE = 12 * 60 * 60 * 1000L; // 12 hours
+
+	private static final byte TOKEN_VERSION = 1;
+
+	// Token layout: version | keyId | issuedAt | nonce | mac
+	private static final int KEY_ID_OFFSET    = 1;
+	private static final int ISSUED_AT_OFFSET = KEY_ID_OFFSET + 8;
+	private static final int NONCE_OFFSET     = ISSUED_AT_OFFSET + 8;
+	private static final int MAC_OFFSET       = NONCE_OFFSET + 16;
+	private static final int TOKEN_BYTES      = MAC_OFFSET + HmacKeyRing.MAC_LENGTH;
+
+	private static void writeLong(byte[] buffer, int offset, long value) {
+		for (int i = offset + 7; i >= offset; i--) {
+			buffer[i] = (byte) value;
+			value >>>= 8;
+		}
+	}
+
+	private static long readLong(byte[] buffer, int offset) {
+		long value = 0;
+
+		for (int i = offset; i < offset + 8; i++) {
+			value = (value << 8) | (buffer[i] & 0xff);
+		}
+
+		return value;
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private static final class Buffers {
+		private final byte[] token = new byte[TOKEN_BYTES];
+		private final byte[] mac   = new byte[HmacKeyRing.MAC_LENGTH];
+		private final char[] chars = new char[Base64Url.getEncodedLength(TOKEN_BYTES)];
+	}
+
+	private final HmacKeyRing keyRing;
+	private volatile long     maxTokenAge = DEFAULT_MAX_TOKEN_AGE;
+
+	private final ThreadLocal<Buffers> threadBuffers = new ThreadLocal<Buffers>() {
+		@Override
+		protected Buffers initialValue() {
+			return new Buffers();
+		}
+	};
+
+	public SignedCsrfSecurityManager(HmacKeyRing keyRing) {
+		if (keyRing == null)
+			throw new IllegalArgumentException("Key ring cannot be null");
+
+		this.keyRing = keyRing;
+	}
+
+	public SignedCsrfSecurityManager() {
+		this(new HmacKeyRing());
+	}
+
+	public HmacKeyRing getKeyRing() {
+		return keyRing;
+	}
+
+	public long getMaxTokenAge() {
+		return maxTokenAge;
+	}
+
+	/**
+	 * Sets the maximum age of accepted tokens.
+	 * @param maxTokenAge maximum age in milliseconds.
+	 */
+	public void setMaxTokenAge(long maxTokenAge) {
+		if (maxTokenAge < 1)
+			throw new IllegalArgumentException("Invalid max token age: " + maxTokenAge);
+
+		this.maxTokenAge = maxTokenAge;
+	}
+
+	/**
+	 * Returns current time. Subclasses may override this method for testing purposes.
+	 * @return current time in milliseconds.
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	/** Computes the MAC of token header bound to given session id. */
+	private void computeMac(long keyId, String sessionId, byte[] token, byte[] out, int outOffset) {
+		Mac mac = keyRing.getMac(keyId);
+
+		for (int i = 0; i < sessionId.length(); i++) {
+			mac.update((byte) sessionId.charAt(i));
+		}
+		mac.update(token, 0, MAC_OFFSET);
+
+		try {
+			mac.doFinal(out, outOffset);
+		} catch (ShortBufferException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Generates a token bound to given session id.
+	 * @param sessionId session id
+	 * @return generated token.
+	 */
+	protected String generateToken(String sessionId) {
+		Buffers buffers = threadBuffers.get();
+		byte[] token = buffers.token;
+		long keyId = keyRing.getCurrentKeyId();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		token[0] = TOKEN_VERSION;
+		writeLong(token, KEY_ID_OFFSET, keyId);
+		writeLong(token, ISSUED_AT_OFFSET, currentTimeMillis());
+		writeLong(token, NONCE_OFFSET, random.nextLong());
+		writeLong(token, NONCE_OFFSET + 8, random.nextLong());
+		computeMac(keyId, sessionId, token, token, MAC_OFFSET);
+
+		Base64Url.encode(token, TOKEN_BYTES, buffers.chars);
+		return new String(buffers.chars);
+	}
+
+	/** Validates given token. On success, decoded token is left in current thread buffers. */
+	private boolean isValid(String requestToken, String sessionId, long now) {
+		Buffers buffers = threadBuffers.get();
+		byte[] token = buffers.token;
+
+		if (Base64Url.decode(requestToken, token) != TOKEN_BYTES || token[0] != TOKEN_VERSION)
+			return false;
+
+		long keyId = readLong(token, KEY_ID_OFFSET);
+		if (!keyRing.isAccepted(keyId))
+			return false;
+
+		computeMac(keyId, sessionId, token, buffers.mac, 0);
+		if (!HmacKeyRing.constantTimeEquals(token, MAC_OFFSET, buffers.mac, 0, HmacKeyRing.MAC_LENGTH))
+			return false;
+
+		return now - readLong(token, ISSUED_AT_OFFSET) <= maxTokenAge;
+	}
+
+	@Override
+	protected boolean isAllowed(HttpServletRequest request) {
+		String requestToken = request.getHeader(CSRF_HEADER);
+		String sessionId = request.getRequestedSessionId();
+
+		if (sessionId == null)
+			return false;
+
+		long now = currentTimeMillis();
+
+		if (requestToken == null || !isValid(requestToken, sessionId, now)) {
+			onCsrfMismatch();
+
+			return false;
+		}
+
+		byte[] token = threadBuffers.get().token;
+		long keyId = readLong(token, KEY_ID_OFFSET);
+		long age = now - readLong(token, ISSUED_AT_OFFSET);
+
+		// Token is still valid but it is signed with an expiring key or it is about to expire
+		if ((keyId != keyRing.getCurrentKeyId() || age > maxTokenAge / 2) && getResponse() != null)
+			getResponse().setHeader(CSRF_HEADER, generateToken(sessionId));
+
+		return true;
+	}
+
+	@Override
+	protected void storeCurrentUser(User user) {
+		super.storeCurrentUser(user);
+
+		// Session was created by superclass
+		HttpSession session = getSession(false);
+		getResponse().setHeader(CSRF_HEADER, generateToken(session.getId()));
+	}
+	// =========================================================================
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter spread across multiple cells in order to reduce contention.
+ *
+ * Each thread updates a cell chosen by its id. Cells are padded so that they
+ * do not share cache lines. Reading the value sums all cells, so it is not
+ * an atomic snapshot.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+final class StripedCounter {
+	// CLASS SCOPE =============================================================
+	/** Distance (in longs) between two cells: 128 bytes. */
+	static final int PADDING = 16;
+
+	/** Number of cells: the number of processors rounded up to a power of two. */
+	static final int STRIPES;
+
+	static {
+		int processors = Runtime.getRuntime().availableProcessors();
+		int stripes = Integer.highestOneBit(processors);
+
+		if (stripes < processors)
+			stripes <<= 1;
+
+		STRIPES = stripes;
+	}
+
+	/**
+	 * Returns the cell index associated with current thread.
+	 * @return the cell index associated with current thread.
+	 */
+	static int getStripe() {
+		return (int) Thread.currentThread().getId() & (STRIPES - 1);
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+	void increment() {
+		cells.getAndIncrement(getStripe() * PADDING);
+	}
+
+	void add(long value) {
+		cells.getAndAdd(getStripe() * PADDING, value);
+	}
+
+	long sum() {
+		long sum = 0;
+
+		for (int i = 0; i < STRIPES; i++) {
+			sum += cells.get(i * PADDING);
+		}
+
+		return sum;
+	}
+
+	void reset() {
+		for (int i = 0; i < STRIPES; i++) {
+			cells.set(i * PADDING, 0);
+		}
+	}
+	// =========================================================================
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+/**
+ * Carrier which associates a single reusable context with each thread.
+ *
+ * Opening a scope allocates nothing. This is the best choice for containers
+ * processing requests on a bounded pool of threads (thread-per-request),
+ * and it is the default carrier.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class ThreadLocalContextCarrier implements RequestContextCarrier {
+	// INSTANCE SCOPE ==========================================================
+	private final ThreadLocal<RequestContext> threadContext = new ThreadLocal<RequestContext>() {
+		@Override
+		protected RequestContext initialValue() {
+			return new RequestContext();
+		}
+	};
+
+	@Override
+	public RequestContext getContext() {
+		return threadContext.get();
+	}
+
+	@Override
+	public RequestContext openScope() {
+		return threadContext.get();
+	}
+
+	@Override
+	public void closeScope(RequestContext context) {
+		context.clear();
+	}
+
+	@Override
+	public void detachScope(RequestContext context) {
+		// Context leaves with the scope. Current thread receives a new one
+		threadContext.set(new RequestContext());
+	}
+
+	@Override
+	public RequestContext bind(RequestContext context) {
+		RequestContext previous = threadContext.get();
+		threadContext.set(context);
+		return previous;
+	}
+
+	@Override
+	public void restore(RequestContext previous) {
+		if (previous == null) {
+			threadContext.remove();
+		} else {
+			threadContext.set(previous);
+		}
+	}
+	// =========================================================================
+}
@@ -0,0 +1,440 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Stateless security manager.
+ *
+ * Current user is carried by a signed token sent through a header and,
+ * optionally, through a cookie. Since browsers attach cookies to cross-site
+ * requests, a token read from a cookie is only accepted by unsafe methods
+ * when the request comes from the same origin (see {@linkplain #isSameOrigin(HttpServletRequest)}).
+ * No server-side storage is involved, so any
+ * node sharing the same {@linkplain HmacKeyRing} master secret is able to
+ * authenticate a request. Tokens close to expiration (or signed with an
+ * expiring key) are renewed through the response.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class TokenSecurityManager extends WebSecurityManager {
+	// CLASS SCOPE =============================================================
+	/** Default name of the header used to send/retrieve a token. */
+	public static final String DEFAULT_TOKEN_HEADER = "X-Auth-Token";
+
+	/** Default SameSite attribute of token cookie. */
+	public static final String DEFAULT_COOKIE_SAME_SITE = "Lax";
+
+	public static final long DEFAULT_TOKEN_TTL  = 30 * 60 * 1000L; // 30 minutes
+	public static final int  DEFAULT_CACHE_SIZE = 1024;
+	public static final long DEFAULT_CACHE_TTL  = 60 * 1000L; // 1 minute
+
+	private static final byte TOKEN_VERSION = 1;
+
+	// Token layout: version | keyId | issuedAt | expiresAt | user | mac
+	private static final int KEY_ID_OFFSET     = 1;
+	private static final int ISSUED_AT_OFFSET  = KEY_ID_OFFSET + 8;
+	private static final int EXPIRES_AT_OFFSET = ISSUED_AT_OFFSET + 8;
+	private static final int PAYLOAD_OFFSET    = EXPIRES_AT_OFFSET + 8;
+
+	private static void writeLong(byte[] buffer, int offset, long value) {
+		for (int i = offset + 7; i >= offset; i--) {
+			buffer[i] = (byte) value;
+			value >>>= 8;
+		}
+	}
+
+	private static long readLong(byte[] buffer, int offset) {
+		long value = 0;
+
+		for (int i = offset; i < offset + 8; i++) {
+			value = (value << 8) | (buffer[i] & 0xff);
+		}
+
+		return value;
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	/** Result of a successful token verification. */
+	private static final class VerifiedToken {
+		private final User user;
+		private final long keyId;
+		private final long expiresAt;
+
+		private VerifiedToken(User user, long keyId, long expiresAt) {
+			this.user      = user;
+			this.keyId     = keyId;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final HmacKeyRing keyRing;
+	private final UserCodec   userCodec;
+	private final long        tokenTtl;
+
+	private final ExpiringCache<String, VerifiedToken> verifiedTokens;
+
+	private volatile String tokenHeader      = DEFAULT_TOKEN_HEADER;
+	private volatile String cookieName       = null;
+	private volatile String cookieSameSite   = DEFAULT_COOKIE_SAME_SITE;
+	private volatile long   refreshThreshold;
+	private volatile long   cacheTtl         = DEFAULT_CACHE_TTL;
+
+	/**
+	 * Constructor.
+	 * @param keyRing key ring used to sign tokens.
+	 * @param userCodec codec used to embed users into tokens.
+	 * @param tokenTtl token time-to-live in milliseconds.
+	 * @param cacheSize maximum number of verified tokens kept in memory.
+	 */
+	public TokenSecurityManager(HmacKeyRing keyRing, UserCodec userCodec, long tokenTtl, int cacheSize) {
+		if (keyRing == null)
+			throw new IllegalArgumentException("Key ring cannot be null");
+
+		if (userCodec == null)
+			throw new IllegalArgumentException("User codec cannot be null");
+
+		if (tokenTtl < 1)
+			throw new IllegalArgumentException("Invalid token TTL: " + tokenTtl);
+
+		this.keyRing          = keyRing;
+		this.userCodec        = userCodec;
+		this.tokenTtl         = tokenTtl;
+		this.refreshThreshold = tokenTtl / 2;
+		this.verifiedTokens   = new ExpiringCache<>(cacheSize);
+	}
+
+	public TokenSecurityManager(HmacKeyRing keyRing, long tokenTtl) {
+		this(keyRing, new DefaultUserCodec(), tokenTtl, DEFAULT_CACHE_SIZE);
+	}
+
+	public TokenSecurityManager(HmacKeyRing keyRing) {
+		this(keyRing, DEFAULT_TOKEN_TTL);
+	}
+
+	public TokenSecurityManager() {
+		this(new HmacKeyRing());
+	}
+
+	public HmacKeyRing getKeyRing() {
+		return keyRing;
+	}
+
+	public UserCodec getUserCodec() {
+		return userCodec;
+	}
+
+	public long getTokenTtl() {
+		return tokenTtl;
+	}
+
+	public String getTokenHeader() {
+		return tokenHeader;
+	}
+
+	/**
+	 * Defines the name of the header used to send/retrieve tokens.
+	 * @param tokenHeader header name. Default value is {@linkplain TokenSecurityManager#DEFAULT_TOKEN_HEADER}.
+	 */
+	public void setTokenHeader(String tokenHeader) {
+		if (tokenHeader == null || tokenHeader.trim().isEmpty())
+			throw new IllegalArgumentException("Null/Empty header");
+
+		this.tokenHeader = tokenHeader;
+	}
+
+	public String getCookieName() {
+		return cookieName;
+	}
+
+	/**
+	 * Defines the name of the cookie used to carry tokens.
+	 *
+	 * Browsers send cookies along with cross-site requests, so a cookie-carried
+	 * token is accepted by unsafe methods (POST, PUT, DELETE...) only when
+	 * {@linkplain #isSameOrigin(HttpServletRequest)} succeeds. Safe methods
+	 * must not change server state.
+	 * @param cookieName cookie name or null to disable cookies (default).
+	 */
+	public void setCookieName(String cookieName) {
+		if (cookieName != null && cookieName.trim().isEmpty())
+			throw new IllegalArgumentException("Empty cookie name");
+
+		this.cookieName = cookieName;
+	}
+
+	public String getCookieSameSite() {
+		return cookieSameSite;
+	}
+
+	/**
+	 * Defines the SameSite attribute of token cookie.
+	 * @param cookieSameSite "Strict", "Lax" or "None" (which requires HTTPS). Passing null omits the attribute. Default value is {@linkplain TokenSecurityManager#DEFAULT_COOKIE_SAME_SITE}.
+	 */
+	public void setCookieSameSite(String cookieSameSite) {
+		if (cookieSameSite != null && !cookieSameSite.equals("Strict") && !cookieSameSite.equals("Lax") && !cookieSameSite.equals("None"))
+			throw new IllegalArgumentException("Invalid SameSite value: " + cookieSameSite);
+
+		this.cookieSameSite = cookieSameSite;
+	}
+
+	public long getRefreshThreshold() {
+		return refreshThreshold;
+	}
+
+	/**
+	 * Defines when a token will be renewed.
+	 * @param refreshThreshold a token will be renewed when its remaining lifetime (in milliseconds) is less than this value. Default value is half of token TTL.
+	 */
+	public void setRefreshThreshold(long refreshThreshold) {
+		if (refreshThreshold < 0 || refreshThreshold > tokenTtl)
+			throw new IllegalArgumentException("Invalid refresh threshold: " + refreshThreshold);
+
+		this.refreshThreshold = refreshThreshold;
+	}
+
+	public long getCacheTtl() {
+		return cacheTtl;
+	}
+
+	/**
+	 * Defines for how long a verified token is kept in memory.
+	 * @param cacheTtl cache time-to-live in milliseconds (0 disables the cache).
+	 */
+	public void setCacheTtl(long cacheTtl) {
+		if (cacheTtl < 0)
+			throw new IllegalArgumentException("Invalid cache TTL: " + cacheTtl);
+
+		this.cacheTtl = cacheTtl;
+	}
+
+	/**
+	 * Returns current time. Subclasses may override this method for testing purposes.
+	 * @return current time in milliseconds.
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns a boolean indicating if given request was issued by a page served by this application.
+	 *
+	 * Origin header is compared against request scheme, host and port, falling
+	 * back to Referer header. Requests carrying none of them are rejected.
+	 * Applications behind a reverse proxy which changes scheme, host or port
+	 * must override this method.
+	 * @param request HTTP request
+	 * @return a boolean indicating if given request was issued by a page served by this application.
+	 */
+	protected boolean isSameOrigin(HttpServletRequest request) {
+		String scheme = request.getScheme();
+		int port = request.getServerPort();
+		boolean defaultPort = (port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https"));
+		String expected = scheme + "://" + request.getServerName() + (defaultPort ? "" : ":" + port);
+
+		String origin = request.getHeader("Origin");
+		if (origin != null)
+			return origin.equalsIgnoreCase(expected);
+
+		String referer = request.getHeader("Referer");
+		if (referer == null || referer.length() < expected.length() || !referer.regionMatches(true, 0, expected, 0, expected.length()))
+			return false;
+
+		return referer.length() == expected.length() || referer.charAt(expected.length()) == '/';
+	}
+
+	/**
+	 * Returns the token sent by given request.
+	 * @param request HTTP request
+	 * @return the token sent by given request or null if there is no token.
+	 */
+	protected String readToken(HttpServletRequest request) {
+		String token = request.getHeader(tokenHeader);
+
+		if (token != null || cookieName == null)
+			return token;
+
+		Cookie[] cookies = request.getCookies();
+		if (cookies != null) {
+			for (Cookie cookie : cookies) {
+				if (cookie.getName().equals(cookieName)) {
+					// Cookies are sent by cross-site requests as well
+					if (!isSafeMethod(request) && !isSameOrigin(request)) {
+						onCsrfMismatch();
+						return null;
+					}
+
+					return cookie.getValue();
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Sends given token to the client.
+	 * @param token token to be sent or null to discard client token.
+	 */
+	protected void writeToken(String token) {
+		HttpServletRequest request = getRequest();
+		HttpServletResponse response = getResponse();
+
+		if (token != null)
+			response.setHeader(tokenHeader, token);
+
+		if (cookieName != null) {
+			// Servlet API has no support for SameSite attribute
+			String contextPath = request.getContextPath();
+			String sameSite = cookieSameSite;
+			StringBuilder sb = new StringBuilder(cookieName).append('=').append(token == null ? "" : token);
+
+			sb.append("; Path=").append(contextPath.isEmpty() ? "/" : contextPath);
+			sb.append("; Max-Age=").append(token == null ? 0 : tokenTtl / 1000);
+			sb.append("; HttpOnly");
+
+			if (request.isSecure())
+				sb.append("; Secure");
+
+			if (sameSite != null)
+				sb.append("; SameSite=").append(sameSite);
+
+			response.addHeader("Set-Cookie", sb.toString());
+		}
+	}
+
+	private void computeMac(long keyId, byte[] token, int length, byte[] out, int outOffset) {
+		Mac mac = keyRing.getMac(keyId);
+		mac.update(token, 0, length);
+
+		try {
+			mac.doFinal(out, outOffset);
+		} catch (ShortBufferException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Issues a token for given user.
+	 * @param user user to be embedded into the token.
+	 * @return issued token.
+	 */
+	public String issueToken(User user) {
+		long now = currentTimeMillis();
+		long keyId = keyRing.getCurrentKeyId();
+		byte[] payload = userCodec.encode(user);
+		byte[] token = new byte[PAYLOAD_OFFSET + payload.length + HmacKeyRing.MAC_LENGTH];
+		int macOffset = PAYLOAD_OFFSET + payload.length;
+
+		token[0] = TOKEN_VERSION;
+		writeLong(token, KEY_ID_OFFSET, keyId);
+		writeLong(token, ISSUED_AT_OFFSET, now);
+		writeLong(token, EXPIRES_AT_OFFSET, now + tokenTtl);
+		System.arraycopy(payload, 0, token, PAYLOAD_OFFSET, payload.length);
+		computeMac(keyId, token, macOffset, token, macOffset);
+
+		String encodedToken = Base64Url.encode(token);
+
+		if (cacheTtl > 0)
+			verifiedTokens.put(encodedToken, new VerifiedToken(user, keyId, now + tokenTtl), Math.min(now + tokenTtl, now + cacheTtl));
+
+		return encodedToken;
+	}
+
+	private VerifiedToken verify(String encodedToken, long now) {
+		byte[] token;
+
+		try {
+			token = Base64Url.decode(encodedToken);
+		} catch (IllegalArgumentException ex) {
+			return null;
+		}
+
+		if (token.length < PAYLOAD_OFFSET + HmacKeyRing.MAC_LENGTH || token[0] != TOKEN_VERSION)
+			return null;
+
+		long keyId = readLong(token, KEY_ID_OFFSET);
+		long expiresAt = readLong(token, EXPIRES_AT_OFFSET);
+
+		if (now >= expiresAt || !keyRing.isAccepted(keyId))
+			return null;
+
+		int macOffset = token.length - HmacKeyRing.MAC_LENGTH;
+		byte[] mac = new byte[HmacKeyRing.MAC_LENGTH];
+		computeMac(keyId, token, macOffset, mac, 0);
+
+		if (!HmacKeyRing.constantTimeEquals(token, macOffset, mac, 0, HmacKeyRing.MAC_LENGTH))
+			return null;
+
+		byte[] payload = new byte[macOffset - PAYLOAD_OFFSET];
+		System.arraycopy(token, PAYLOAD_OFFSET, payload, 0, payload.length);
+
+		try {
+			return new VerifiedToken(userCodec.decode(payload), keyId, expiresAt);
+		} catch (IllegalArgumentException ex) {
+			return null;
+		}
+	}
+
+	@Override
+	protected User loadCurrentUser() {
+		String token = readToken(getRequest());
+
+		if (token == null)
+			return null;
+
+		long now = currentTimeMillis();
+		VerifiedToken verifiedToken = verifiedTokens.get(token, now);
+
+		if (verifiedToken == null) {
+			verifiedToken = verify(token, now);
+
+			if (verifiedToken == null)
+				return null;
+
+			if (cacheTtl > 0)
+				verifiedTokens.put(token, verifiedToken, Math.min(verifiedToken.expiresAt, now + cacheTtl));
+
+		} else if (now >= verifiedToken.expiresAt || !keyRing.isAccepted(verifiedToken.keyId)) {
+			return null;
+		}
+
+		// Sliding expiration
+		if (getResponse() != null && (verifiedToken.expiresAt - now < refreshThreshold || verifiedToken.keyId != keyRing.getCurrentKeyId()))
+			writeToken(issueToken(verifiedToken.user));
+
+		return verifiedToken.user;
+	}
+
+	@Override
+	protected void storeCurrentUser(User user) {
+		writeToken(issueToken(user));
+	}
+
+	/**
+	 * Discards client cookie (if any). Issued tokens remain valid until they expire.
+	 */
+	@Override
+	protected void removeCurrentUser() {
+		writeToken(null);
+	}
+	// =========================================================================
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+/**
+ * Converts users to/from the binary representation embedded in tokens or stored in sessions.
+ *
+ * Implementations must be thread-safe.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public interface UserCodec {
+	/**
+	 * Encodes given user.
+	 * @param user user to be encoded.
+	 * @return binary representation of given user.
+	 */
+	public byte[] encode(User user);
+
+	/**
+	 * Decodes a user.
+	 * @param data data produced by {@linkplain UserCodec#encode(User)}.
+	 * @return decoded user.
+	 * @throws IllegalArgumentException if given data is not a valid representation.
+	 */
+	public User decode(byte[] data) throws IllegalArgumentException;
+}
@@ -15,7 +15,16 @@
  */
 package com.agapsys.security.web;
 
+import com.agapsys.security.Secured;
 import com.agapsys.security.Security;
+import com.agapsys.security.Unsecured;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  *
@@ -24,20 +33,110 @@ import com.agapsys.security.Security;
 public class WebSecurity extends Security {
 	
 	// CLASS SCOPE =============================================================
+	private static volatile ClassLoader        securedClassLoader;
+	private static volatile Collection<String> securedClasses = Collections.emptyList();
+	
+	/**
+	 * Initializes the security layer.
+	 * 
+	 * Classes listed in the build-time index (see {@linkplain SecurityWeaver})
+	 * whose class files carry the weaver mark are already instrumented, so
+	 * only remaining classes (including indexed classes lacking the mark)
+	 * are instrumented and scanned.
+	 */
+	private static void init(ClassLoader classLoader, WebSecurityManager securityManager, Collection<String> classNames) {
+		SecurityIndex index = classLoader == null ? null : SecurityIndex.read(classLoader);
+		Set<String> runtimeClasses = new LinkedHashSet<>(classNames);
+		Set<String> allClasses = new LinkedHashSet<>(classNames);
+		
+		if (index != null) {
+			for (String className : index.getClassNames()) {
+				// A stale index may list classes which were compiled again after weaving
+				if (SecurityWeaver.isWoven(classLoader, className)) {
+					runtimeClasses.remove(className);
+				} else {
+					runtimeClasses.add(className);
+				}
+			}
+			
+			allClasses.addAll(index.getClassNames());
+		}
+		
+		Security.init(classLoader, securityManager, runtimeClasses.toArray(new String[runtimeClasses.size()]));
+		
+		if (index != null)
+			RoleRequirement.precompile(index.getRoleSets());
+		
+		RoleRequirement.precompile(SecuredClassScanner.getRoleSets(runtimeClasses));
+		securedClassLoader = classLoader;
+		securedClasses = Collections.unmodifiableList(new ArrayList<>(allClasses));
+	}
+	
 	public static void init(WebSecurityManager securityManager) throws IllegalStateException {
-		Security.init(securityManager);
+		init(Security.class.getClassLoader(), securityManager, SecuredClassScanner.readSecuredClasses());
 	}
 	
 	public static void init(ClassLoader classLoader, WebSecurityManager securityManager) {
-		Security.init(classLoader, securityManager);
+		init(classLoader, securityManager, SecuredClassScanner.readSecuredClasses());
 	}
 	
 	public static void init(WebSecurityManager securityManager, String... securedClasses) {
-		Security.init(securityManager, securedClasses);
+		init(Security.class.getClassLoader(), securityManager, Arrays.asList(securedClasses));
 	}
 	
 	public static void init(ClassLoader classLoader, WebSecurityManager securityManager, String... securedClasses) {
-		Security.init(classLoader, securityManager, securedClasses);
+		init(classLoader, securityManager, Arrays.asList(securedClasses));
+	}
+	
+	/**
+	 * Adds the endpoints served by secured methods to the path rules of current security manager.
+	 * 
+	 * Unauthenticated requests to these endpoints are then rejected by
+	 * {@linkplain WebSecurityFilter} before being dispatched, without
+	 * throwing a {@linkplain NotAllowedException}. Role checks are still
+	 * performed by secured methods.
+	 * @param mapper mapper giving the endpoints served by each secured method.
+	 * @return the number of registered endpoints.
+	 */
+	public static int registerEndpoints(EndpointMapper mapper) {
+		if (mapper == null)
+			throw new IllegalArgumentException("Mapper cannot be null");
+		
+		WebSecurityManager securityManager = getSecurityManager();
+		
+		if (securityManager == null)
+			throw new IllegalStateException("There is no security manager");
+		
+		PathRules.Builder builder = new PathRules.Builder().include(securityManager.getPathRules());
+		int count = 0;
+		
+		try {
+			for (String className : securedClasses) {
+				Class<?> securedClass = Class.forName(className, false, securedClassLoader);
+				boolean classSecured = securedClass.isAnnotationPresent(Secured.class);
+				
+				for (Method method : securedClass.getDeclaredMethods()) {
+					if (method.isAnnotationPresent(Unsecured.class) || (!classSecured && !method.isAnnotationPresent(Secured.class)))
+						continue;
+					
+					Collection<Endpoint> endpoints = mapper.getEndpoints(securedClass, method);
+					
+					if (endpoints == null)
+						continue;
+					
+					for (Endpoint endpoint : endpoints) {
+						String[] httpMethods = endpoint.getHttpMethods();
+						builder.secure(httpMethods.length == 0 ? null : httpMethods, endpoint.getPattern());
+						count++;
+					}
+				}
+			}
+		} catch (ClassNotFoundException ex) {
+			throw new RuntimeException(ex);
+		}
+		
+		securityManager.setPathRules(builder.build());
+		return count;
 	}
 	
 	public static WebSecurityManager getSecurityManager() {
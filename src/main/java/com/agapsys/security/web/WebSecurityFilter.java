@@ -16,7 +16,11 @@
 
 package com.agapsys.security.web;
 
+import com.agapsys.security.Security;
+import com.agapsys.security.SecurityManager;
 import java.io.IOException;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -26,39 +30,223 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+/**
+ * Binds the request being processed to the security layer.
+ *
+ * Requests rejected by the security manager receive status 401 (no user)
+ * or 403 (user not allowed). Requests are first checked against the
+ * {@linkplain PathRules} of the security manager, so requests failing a path
+ * rule are rejected before reaching the rest of the filter chain. When a request is put into asynchronous mode,
+ * its context is kept until the request completes and it is bound again on
+ * each asynchronous dispatch, so the filter must be mapped with both REQUEST
+ * and ASYNC dispatcher types (as it is in the bundled web-fragment.xml).
+ * Work handed to other threads must be wrapped with {@linkplain RequestContextExecutor}
+ * or {@linkplain RequestContextRunnable}.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
 public class WebSecurityFilter implements Filter {
 	// CLASS SCOPE =============================================================
 	public static final String ATTR_HTTP_REQUEST  = WebSecurityFilter.class.getName() + ".httpRequest";
 	public static final String ATTR_HTTP_RESPONSE = WebSecurityFilter.class.getName() + ".httpResponse";
+	
+	/** Filter parameter with the name of the {@linkplain RequestContextCarrier} class to be used (default: {@linkplain ThreadLocalContextCarrier}). */
+	public static final String INIT_PARAM_CONTEXT_CARRIER = "contextCarrier";
+	
+	/** Filter parameter with the name of the {@linkplain EndpointMapper} class used to register secured endpoints (see {@linkplain WebSecurity#registerEndpoints(EndpointMapper)}). */
+	public static final String INIT_PARAM_ENDPOINT_MAPPER = "endpointMapper";
+	
+	/** Filter parameter with the role hierarchy of the security manager, in the format accepted by {@linkplain RoleHierarchy#parse(String)}. */
+	public static final String INIT_PARAM_ROLE_HIERARCHY = "roleHierarchy";
+	
+	/** Request attribute holding the context of an asynchronous request. */
+	static final String ATTR_REQUEST_CONTEXT = WebSecurityFilter.class.getName() + ".requestContext";
+	
+	/** Releases the context of an asynchronous request when the request completes. */
+	private static final class AsyncRelease implements AsyncListener {
+		private final RequestContext context;
+		
+		private AsyncRelease(RequestContext context) {
+			this.context = context;
+		}
+		
+		@Override
+		public void onComplete(AsyncEvent event) throws IOException {
+			event.getAsyncContext().getRequest().removeAttribute(ATTR_REQUEST_CONTEXT);
+			context.clear();
+		}
+		
+		@Override
+		public void onTimeout(AsyncEvent event) throws IOException {}
+		
+		@Override
+		public void onError(AsyncEvent event) throws IOException {}
+		
+		@Override
+		public void onStartAsync(AsyncEvent event) throws IOException {
+			// Listeners are not carried over to a new asynchronous cycle
+			event.getAsyncContext().addListener(this);
+		}
+	}
 	// =========================================================================
 
 	// INSTANCE SCOPE ==========================================================
 	private final AttributeService attributeService = AttributeService.getInstance();
 	
 	@Override
-	public void init(FilterConfig filterConfig) throws ServletException {}
+	public void init(FilterConfig filterConfig) throws ServletException {
+		String carrierClass = filterConfig != null ? filterConfig.getInitParameter(INIT_PARAM_CONTEXT_CARRIER) : null;
+		
+		if (carrierClass != null && !carrierClass.trim().isEmpty()) {
+			try {
+				attributeService.setCarrier((RequestContextCarrier) Class.forName(carrierClass.trim()).newInstance());
+			} catch (ClassNotFoundException | InstantiationException | IllegalAccessException | ClassCastException ex) {
+				throw new ServletException("Invalid context carrier: " + carrierClass, ex);
+			}
+		}
+		
+		String mapperClass = filterConfig != null ? filterConfig.getInitParameter(INIT_PARAM_ENDPOINT_MAPPER) : null;
+		
+		if (mapperClass != null && !mapperClass.trim().isEmpty()) {
+			if (getWebSecurityManager() == null)
+				throw new ServletException("Security must be initialized before registering endpoints");
+			
+			try {
+				WebSecurity.registerEndpoints((EndpointMapper) Class.forName(mapperClass.trim()).newInstance());
+			} catch (ClassNotFoundException | InstantiationException | IllegalAccessException | ClassCastException ex) {
+				throw new ServletException("Invalid endpoint mapper: " + mapperClass, ex);
+			}
+		}
+		
+		String roleHierarchy = filterConfig != null ? filterConfig.getInitParameter(INIT_PARAM_ROLE_HIERARCHY) : null;
+		
+		if (roleHierarchy != null && !roleHierarchy.trim().isEmpty()) {
+			WebSecurityManager securityManager = getWebSecurityManager();
+			
+			if (securityManager == null)
+				throw new ServletException("Security must be initialized before setting a role hierarchy");
+			
+			try {
+				securityManager.setRoleHierarchy(RoleHierarchy.parse(roleHierarchy));
+			} catch (IllegalArgumentException ex) {
+				throw new ServletException("Invalid role hierarchy: " + roleHierarchy, ex);
+			}
+		}
+	}
 
+	private WebSecurityManager getWebSecurityManager() {
+		SecurityManager securityManager = Security.getSecurityManager();
+		
+		if (securityManager instanceof WebSecurityManager)
+			return (WebSecurityManager) securityManager;
+		
+		return null;
+	}
+	
+	private void reject(WebSecurityManager securityManager, HttpServletRequest req, HttpServletResponse resp, DenialReason reason, SecurityMetrics metrics) {
+		resp.setStatus(reason.getStatus());
+		
+		if (metrics != null) {
+			if (reason == DenialReason.UNAUTHENTICATED)
+				metrics.onUnauthorized();
+			else if (reason == DenialReason.THROTTLED)
+				metrics.onThrottled();
+			else
+				metrics.onForbidden();
+		}
+		
+		if (securityManager == null)
+			return;
+		
+		securityManager.onRequestDenied(req, reason);
+		
+		// Denials tighten the limits of the client which caused them
+		RequestThrottle throttle = securityManager.getRequestThrottle();
+		if (throttle != null && reason != DenialReason.THROTTLED)
+			throttle.onDenied(req);
+	}
+	
+	/** Checks current request against the rate limiter. */
+	private boolean isWithinLimits(WebSecurityManager securityManager, HttpServletRequest req, HttpServletResponse resp, SecurityMetrics metrics) {
+		RequestThrottle throttle = securityManager.getRequestThrottle();
+		
+		if (throttle == null || throttle.tryAcquire(req))
+			return true;
+		
+		reject(securityManager, req, resp, DenialReason.THROTTLED, metrics);
+		return false;
+	}
+	
+	/** Checks current request against path rules. Rejected requests have their status set without throwing an exception. */
+	private boolean isPathAllowed(WebSecurityManager securityManager, HttpServletRequest req, HttpServletResponse resp, SecurityMetrics metrics) {
+		PathRules.Rule rule = securityManager.getPathRules().match(req.getMethod(), req.getServletPath(), req.getPathInfo());
+		
+		if (rule == null || rule.isPublic())
+			return true;
+		
+		// Request-level checks (e.g. CSRF tokens) only guard unsafe methods, so
+		// browsers can fetch protected static resources. Secured code reached
+		// through a rule still performs a full check.
+		DenialReason reason = securityManager.checkAccess(rule.getRequirement(), !WebSecurityManager.isSafeMethod(req));
+		
+		if (reason == null)
+			return true;
+		
+		reject(securityManager, req, resp, reason, metrics);
+		return false;
+	}
+	
 	@Override
 	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+		WebSecurityManager securityManager = getWebSecurityManager();
+		SecurityMetrics metrics = securityManager == null ? null : securityManager.getMetrics();
+		long start = metrics == null ? 0 : System.nanoTime();
+		
 		HttpServletRequest req = (HttpServletRequest) request;
 		HttpServletResponse resp = (HttpServletResponse) response;
 		
-		attributeService.setAttribute(ATTR_HTTP_REQUEST, req);
-		attributeService.setAttribute(ATTR_HTTP_RESPONSE, resp);
+		RequestContextCarrier carrier = attributeService.getCarrier();
+		RequestContext asyncContext = (RequestContext) req.getAttribute(ATTR_REQUEST_CONTEXT);
+		RequestContext previous = null;
+		RequestContext context;
+		
+		if (asyncContext == null) {
+			context = carrier.openScope();
+		} else {
+			// Asynchronous dispatch: request context is bound to current thread while dispatch is processed
+			context = asyncContext;
+			previous = carrier.bind(context);
+		}
+		
+		context.setRequest(req);
+		context.setResponse(resp);
+		
+		long chainStart = metrics == null ? 0 : System.nanoTime();
 		
 		try {
-			chain.doFilter(request, response);
-		} catch (NotAllowedException ignored) {
-			User currentUser = WebSecurity.getCurrentUser();
+			// Limits were already checked when asynchronous request was dispatched for the first time, but
+			// path rules are checked again: an asynchronous dispatch may target another path
+			if (securityManager == null || ((asyncContext != null || isWithinLimits(securityManager, req, resp, metrics)) && isPathAllowed(securityManager, req, resp, metrics)))
+				chain.doFilter(request, response);
+		} catch (NotAllowedException ex) {
+			reject(securityManager, req, resp, ex.getReason(), metrics);
+		} finally {
+			long chainEnd = metrics == null ? 0 : System.nanoTime();
+			long checkNanos = context.takeSecurityNanos();
 			
-			if (currentUser == null) {
-				resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+			if (asyncContext != null) {
+				carrier.restore(previous);
+			} else if (req.isAsyncStarted()) {
+				// Context now belongs to the asynchronous request and it will be released when the request completes
+				carrier.detachScope(context);
+				req.setAttribute(ATTR_REQUEST_CONTEXT, context);
+				req.getAsyncContext().addListener(new AsyncRelease(context));
 			} else {
-				resp.setStatus(HttpServletResponse.SC_FORBIDDEN);
+				carrier.closeScope(context);
 			}
 			
-		} finally {
-			attributeService.destroyAttributes();
+			// Application code is excluded, except for role checks
+			if (metrics != null)
+				metrics.onRequest((chainStart - start) + (System.nanoTime() - chainEnd) + checkNanos);
 		}
 	}
 
@@ -24,51 +24,465 @@ import javax.servlet.http.HttpServletResponse;
  */
 public abstract class WebSecurityManager extends com.agapsys.security.SecurityManager {
 	
+	/**
+	 * Returns a boolean indicating if given request uses a safe HTTP method (GET, HEAD, OPTIONS or TRACE).
+	 * Safe methods are not supposed to change server state.
+	 * @param request HTTP request
+	 * @return a boolean indicating if given request uses a safe HTTP method.
+	 */
+	protected static boolean isSafeMethod(HttpServletRequest request) {
+		switch (request.getMethod()) {
+			case "GET":
+			case "HEAD":
+			case "OPTIONS":
+			case "TRACE":
+				return true;
+				
+			default:
+				return false;
+		}
+	}
+	
 	private final AttributeService attributeService = AttributeService.getInstance();
 	
-
-	public abstract User getCurrentUser();
+	private volatile SecurityMetrics metrics;
+	
+	private volatile RevocationList revocationList;
+	
+	private volatile PathRules pathRules = PathRules.EMPTY;
+	
+	private volatile DenialMode denialMode = DenialMode.STACK_TRACE;
+	
+	private volatile AuthorizationCache authorizationCache;
+	
+	private volatile RoleHierarchy roleHierarchy;
+	
+	private volatile RequestThrottle requestThrottle;
+	
+	private volatile AuditLog auditLog;
+	
+	/**
+	 * Loads current user from the underlying storage.
+	 * Returned value is cached until the end of the request.
+	 * @return current user or null if there is no user registered with current request.
+	 */
+	protected abstract User loadCurrentUser();
+	
+	/**
+	 * Stores given user into the underlying storage.
+	 * @param user user to be stored. Never null.
+	 */
+	protected abstract void storeCurrentUser(User user);
+	
+	/** Removes current user from the underlying storage. */
+	protected abstract void removeCurrentUser();
+	
+	
+	/**
+	 * Returns the metrics receiving measurements from this manager.
+	 * @return the metrics receiving measurements from this manager or null if metrics are disabled.
+	 */
+	public final SecurityMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Sets the metrics receiving measurements from this manager.
+	 * @param metrics metrics. Passing null disables measurements.
+	 */
+	public final void setMetrics(SecurityMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Returns the list of revoked sessions and users checked by this manager.
+	 * @return the list of revoked sessions and users checked by this manager or null if revocation is disabled.
+	 */
+	public final RevocationList getRevocationList() {
+		return revocationList;
+	}
+	
+	/**
+	 * Sets the list of revoked sessions and users checked by this manager.
+	 * Users resolved from a revoked session (or revoked users) are treated as unauthenticated.
+	 * @param revocationList revocation list. Passing null disables revocation checks.
+	 */
+	public final void setRevocationList(RevocationList revocationList) {
+		this.revocationList = revocationList;
+	}
+	
+	/**
+	 * Returns the rules applied by {@linkplain WebSecurityFilter} to request paths.
+	 * @return the rules applied by {@linkplain WebSecurityFilter} to request paths.
+	 */
+	public final PathRules getPathRules() {
+		return pathRules;
+	}
+	
+	/**
+	 * Sets the rules applied by {@linkplain WebSecurityFilter} to request paths.
+	 * Requests failing a rule are rejected before reaching the application.
+	 * @param pathRules path rules. Passing null removes all rules.
+	 */
+	public final void setPathRules(PathRules pathRules) {
+		this.pathRules = pathRules == null ? PathRules.EMPTY : pathRules;
+	}
+	
+	/**
+	 * Returns the cache of authorization decisions.
+	 * @return the cache of authorization decisions or null if decisions are not cached.
+	 */
+	public final AuthorizationCache getAuthorizationCache() {
+		return authorizationCache;
+	}
+	
+	/**
+	 * Sets the cache of authorization decisions. Only decisions for {@linkplain VersionedUser} instances are cached.
+	 * @param authorizationCache authorization cache. Passing null disables caching.
+	 */
+	public final void setAuthorizationCache(AuthorizationCache authorizationCache) {
+		this.authorizationCache = authorizationCache;
+	}
+	
+	/**
+	 * Returns the hierarchy used to expand user roles.
+	 * @return the hierarchy used to expand user roles or null if roles are checked as they are.
+	 */
+	public final RoleHierarchy getRoleHierarchy() {
+		return roleHierarchy;
+	}
 	
-	public abstract void setCurrentUser(User user);
+	/**
+	 * Sets the hierarchy used to expand user roles. Users are granted all roles implied by their own roles.
+	 * @param roleHierarchy role hierarchy. Passing null disables expansion.
+	 */
+	public final void setRoleHierarchy(RoleHierarchy roleHierarchy) {
+		this.roleHierarchy = roleHierarchy;
+		
+		AuthorizationCache authorizationCache = this.authorizationCache;
+		if (authorizationCache != null)
+			authorizationCache.clear();
+	}
 	
-	public abstract void unregisterCurrentUser();
+	/**
+	 * Returns the rate limiter applied by {@linkplain WebSecurityFilter}.
+	 * @return the rate limiter applied by {@linkplain WebSecurityFilter} or null if requests are not throttled.
+	 */
+	public final RequestThrottle getRequestThrottle() {
+		return requestThrottle;
+	}
 	
+	/**
+	 * Sets the rate limiter applied by {@linkplain WebSecurityFilter}. Requests over the limit are rejected with HTTP 429 before reaching the application.
+	 * @param requestThrottle rate limiter. Passing null disables throttling.
+	 */
+	public final void setRequestThrottle(RequestThrottle requestThrottle) {
+		this.requestThrottle = requestThrottle;
+	}
+	
+	/**
+	 * Returns the log receiving security events (logins, logouts, CSRF mismatches and denials).
+	 * @return the log receiving security events or null if events are not recorded.
+	 */
+	public final AuditLog getAuditLog() {
+		return auditLog;
+	}
+	
+	/**
+	 * Sets the log receiving security events (logins, logouts, CSRF mismatches and denials).
+	 * @param auditLog audit log. Passing null disables auditing. A replaced log is not closed.
+	 */
+	public final void setAuditLog(AuditLog auditLog) {
+		this.auditLog = auditLog;
+	}
+	
+	public final DenialMode getDenialMode() {
+		return denialMode;
+	}
+	
+	/**
+	 * Defines how exceptions are created when a secured method is denied.
+	 * Under abusive traffic, capturing stack traces of denials is a significant cost.
+	 * @param denialMode denial mode.
+	 */
+	public final void setDenialMode(DenialMode denialMode) {
+		if (denialMode == null)
+			throw new IllegalArgumentException("Denial mode cannot be null");
+		
+		this.denialMode = denialMode;
+	}
 	
 	protected boolean isAllowed(HttpServletRequest request) {
 		return true;
 	}
 	
+	protected final RequestContext getRequestContext() {
+		return attributeService.getRequestContext();
+	}
+	
 	protected final HttpServletRequest getRequest() {
-		return (HttpServletRequest) attributeService.getAttribute(WebSecurityFilter.ATTR_HTTP_REQUEST);
+		return getRequestContext().getRequest();
 	}
 	
 	protected final HttpServletResponse getResponse() {
-		return (HttpServletResponse) attributeService.getAttribute(WebSecurityFilter.ATTR_HTTP_RESPONSE);
+		return getRequestContext().getResponse();
 	}
 	
-	@Override
-	public final boolean isAllowed(String[] requiredRoles) {
+	public final User getCurrentUser() {
+		RequestContext context = getRequestContext();
+		
+		// Outside a request there is no point where cached value would be released
+		if (context.getRequest() == null)
+			return loadCurrentUser(metrics);
+		
+		if (!context.isUserResolved())
+			context.setCurrentUser(loadCurrentUser(metrics));
+		
+		return context.getCurrentUser();
+	}
+	
+	private User loadCurrentUser(SecurityMetrics metrics) {
+		User user;
+		
+		if (metrics == null) {
+			user = loadCurrentUser();
+		} else {
+			long start = System.nanoTime();
+			user = loadCurrentUser();
+			metrics.onUserLookup(System.nanoTime() - start);
+		}
 		
-		if (!isAllowed(getRequest()))
+		if (user != null && isRevoked(user))
+			return null;
+		
+		return user;
+	}
+	
+	private boolean isRevoked(User user) {
+		RevocationList revocationList = this.revocationList;
+		
+		if (revocationList == null)
 			return false;
 		
+		if (user instanceof IdentifiedUser && revocationList.isUserRevoked(((IdentifiedUser) user).getId()))
+			return true;
+		
+		HttpServletRequest request = getRequest();
+		String sessionId = request == null ? null : request.getRequestedSessionId();
+		
+		return sessionId != null && revocationList.isSessionRevoked(sessionId);
+	}
+	
+	public final void setCurrentUser(User user) {
+		if (user == null)
+			throw new IllegalArgumentException("User cannot be null");
+		
+		RequestContext context = getRequestContext();
+		context.invalidateUser();
+		
+		AuthorizationCache authorizationCache = this.authorizationCache;
+		if (authorizationCache != null)
+			authorizationCache.invalidate(user);
+		
+		storeCurrentUser(user);
+		
+		if (context.getRequest() != null)
+			context.setCurrentUser(user);
+		
+		AuditLog auditLog = this.auditLog;
+		if (auditLog != null)
+			auditLog.record(AuditEvent.Type.LOGIN, user, context.getRequest(), null);
+	}
+	
+	public final void unregisterCurrentUser() {
+		AuditLog auditLog = this.auditLog;
+		User user = auditLog == null ? null : getCurrentUser();
+		
+		RequestContext context = getRequestContext();
+		context.invalidateUser();
+		removeCurrentUser();
+		
+		if (context.getRequest() != null)
+			context.setCurrentUser(null);
+		
+		if (auditLog != null)
+			auditLog.record(AuditEvent.Type.LOGOUT, user, context.getRequest(), null);
+	}
+	
+	/** Reports a request with a missing or invalid CSRF token. */
+	final void onCsrfMismatch() {
+		SecurityMetrics metrics = this.metrics;
+		if (metrics != null)
+			metrics.onCsrfMismatch();
+		
+		AuditLog auditLog = this.auditLog;
+		if (auditLog != null) {
+			RequestContext context = getRequestContext();
+			auditLog.record(AuditEvent.Type.CSRF_MISMATCH, context.isUserResolved() ? context.getCurrentUser() : null, context.getRequest(), null);
+		}
+	}
+	
+	/**
+	 * Reports a request rejected by {@linkplain WebSecurityFilter}.
+	 * @param request rejected request
+	 * @param reason denial reason
+	 */
+	final void onRequestDenied(HttpServletRequest request, DenialReason reason) {
+		AuditLog auditLog = this.auditLog;
+		
+		if (auditLog != null) {
+			// User is not loaded only for the sake of auditing
+			RequestContext context = getRequestContext();
+			auditLog.record(AuditEvent.Type.DENIED, context.isUserResolved() ? context.getCurrentUser() : null, request, reason);
+		}
+	}
+	
+	/**
+	 * Returns the role mask of current user.
+	 * @return the role mask of current user or an empty mask if there is no user.
+	 */
+	protected final RoleMask getCurrentRoleMask() {
 		User currentUser = getCurrentUser();
+		
 		if (currentUser == null)
-			return false;
+			return RoleMask.EMPTY;
+		
+		RoleHierarchy roleHierarchy = this.roleHierarchy;
+		
+		if (roleHierarchy == null && currentUser instanceof RoleMaskProvider)
+			return ((RoleMaskProvider) currentUser).getRoleMask();
+		
+		RequestContext context = getRequestContext();
+		boolean cache = context.getRequest() != null;
+		RoleMask mask = context.getRoleMask();
+		RoleMask expandedMask = context.getExpandedRoleMask();
+		
+		// Roles unknown when the mask was built may have been registered since then
+		if (mask == null || mask.isOutdated()) {
+			mask = currentUser instanceof RoleMaskProvider ? ((RoleMaskProvider) currentUser).getRoleMask() : RoleMask.lookup(currentUser.getRoles());
+			expandedMask = null;
+			
+			if (cache) {
+				context.setRoleMask(mask);
+				context.setExpandedRoleMask(null);
+			}
+		}
+		
+		if (roleHierarchy == null)
+			return mask;
+		
+		if (expandedMask == null) {
+			expandedMask = roleHierarchy.expand(mask);
+			
+			if (cache)
+				context.setExpandedRoleMask(expandedMask);
+		}
+		
+		return expandedMask;
+	}
+	
+	private boolean isRequestAllowed() {
+		RequestContext context = getRequestContext();
+		Boolean allowed = context.getRequestAllowed();
+		
+		if (allowed == null) {
+			allowed = isAllowed(context.getRequest());
+			
+			if (context.getRequest() != null)
+				context.setRequestAllowed(allowed);
+		}
+		
+		return allowed;
+	}
+	
+	private DenialReason check(String[] requiredRoles, RoleRequirement requirement, boolean checkRequest) {
+		
+		if (checkRequest && !isRequestAllowed())
+			return getCurrentUser() == null ? DenialReason.UNAUTHENTICATED : DenialReason.REQUEST_REJECTED;
+		
+		User currentUser = getCurrentUser();
+		if (currentUser == null)
+			return DenialReason.UNAUTHENTICATED;
 		
 		if (currentUser.isAdmin())
-			return true;
+			return null;
 		
-		for (String requiredRole : requiredRoles) {
-			if (!currentUser.getRoles().contains(requiredRole))
-				return false;
+		if (requirement == null)
+			requirement = RoleRequirement.of(requiredRoles);
+		
+		AuthorizationCache authorizationCache = this.authorizationCache;
+		
+		if (authorizationCache != null && currentUser instanceof VersionedUser)
+			return authorizationCache.get((VersionedUser) currentUser, roleHierarchy).isSatisfied(requirement) ? null : DenialReason.FORBIDDEN;
+		
+		return requirement.isSatisfiedBy(getCurrentRoleMask()) ? null : DenialReason.FORBIDDEN;
+	}
+	
+	private DenialReason check(String[] requiredRoles, RoleRequirement requirement, boolean checkRequest, SecurityMetrics metrics) {
+		DenialReason reason;
+		
+		if (metrics == null) {
+			reason = check(requiredRoles, requirement, checkRequest);
+		} else {
+			long start = System.nanoTime();
+			if (requirement == null)
+				requirement = RoleRequirement.of(requiredRoles);
+			
+			reason = check(requiredRoles, requirement, checkRequest);
+			
+			RequestContext context = getRequestContext();
+			if (context.getRequest() != null)
+				context.addSecurityNanos(System.nanoTime() - start);
+			
+			metrics.onCheck(requirement, reason == null);
 		}
 		
-		return true;
+		if (reason != null) {
+			RequestContext context = getRequestContext();
+			
+			if (context.getRequest() != null)
+				context.setDenialReason(reason);
+		}
+		
+		return reason;
+	}
+	
+	@Override
+	public final boolean isAllowed(String[] requiredRoles) {
+		return check(requiredRoles, null, true, metrics) == null;
+	}
+	
+	/**
+	 * Checks if current request is allowed to proceed given a compiled requirement.
+	 * @param requirement required roles
+	 * @param checkRequest defines if {@linkplain #isAllowed(HttpServletRequest)} must be checked
+	 * @return the reason why request is denied or null if request is allowed.
+	 */
+	final DenialReason checkAccess(RoleRequirement requirement, boolean checkRequest) {
+		return check(null, requirement, checkRequest, metrics);
+	}
+	
+	/**
+	 * Checks if current request is allowed to proceed without throwing an exception.
+	 * @param requiredRoles required roles
+	 * @return the reason why request is denied or null if request is allowed.
+	 */
+	public final DenialReason checkAccess(String... requiredRoles) {
+		return check(requiredRoles, null, true, metrics);
 	}
 
 	@Override
 	public final void onNotAllowed() throws NotAllowedException {
-		throw new NotAllowedException(getCurrentUser());
+		RequestContext context = getRequestContext();
+		DenialReason reason = context.getRequest() == null ? null : context.getDenialReason();
+		
+		// Shared instances carry no user, so it is only loaded if there was no previous check
+		User user = reason != null && denialMode == DenialMode.SHARED ? null : getCurrentUser();
+		
+		// Secured code may call this method without a previous check
+		if (reason == null)
+			reason = user == null ? DenialReason.UNAUTHENTICATED : DenialReason.FORBIDDEN;
+		
+		throw NotAllowedException.of(denialMode, user, reason);
 	}	
 }
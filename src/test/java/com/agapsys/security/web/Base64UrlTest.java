@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Lives in the same package as {@linkplain Base64Url}, which is package-private. */
+public class Base64UrlTest {
+	// CLASS SCOPE =============================================================
+	private static String encode(String str) {
+		return Base64Url.encode(str.getBytes(StandardCharsets.US_ASCII));
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@Test
+	public void encodeTest() {
+		// RFC 4648 test vectors, without padding
+		Assert.assertEquals("", encode(""));
+		Assert.assertEquals("Zg", encode("f"));
+		Assert.assertEquals("Zm8", encode("fo"));
+		Assert.assertEquals("Zm9v", encode("foo"));
+		Assert.assertEquals("Zm9vYg", encode("foob"));
+		Assert.assertEquals("Zm9vYmE", encode("fooba"));
+		Assert.assertEquals("Zm9vYmFy", encode("foobar"));
+
+		// URL-safe alphabet ("+/" in standard Base64)
+		Assert.assertEquals("-_8", Base64Url.encode(new byte[] {(byte) 0xfb, (byte) 0xff}));
+
+		for (int i = 0; i < 10; i++) {
+			Assert.assertEquals(encode(new String(new char[i]).replace('\0', 'x')).length(), Base64Url.getEncodedLength(i));
+		}
+		Assert.assertEquals(43, Base64Url.getEncodedLength(32));
+	}
+
+	@Test
+	public void roundTripTest() {
+		Random random = new Random(0);
+
+		for (int length = 0; length < 100; length++) {
+			byte[] bytes = new byte[length];
+			random.nextBytes(bytes);
+
+			String encoded = Base64Url.encode(bytes);
+			Assert.assertTrue(encoded.matches("[A-Za-z0-9_-]*"));
+			Assert.assertArrayEquals(bytes, Base64Url.decode(encoded));
+
+			// Decoding into a larger buffer
+			byte[] dst = new byte[length + 8];
+			Assert.assertEquals(length, Base64Url.decode(encoded, dst));
+			Assert.assertArrayEquals(bytes, Arrays.copyOf(dst, length));
+		}
+	}
+
+	@Test
+	public void invalidInputTest() {
+		byte[] dst = new byte[16];
+
+		// Padding is not accepted
+		Assert.assertEquals(-1, Base64Url.decode("Zg==", dst));
+		Assert.assertEquals(-1, Base64Url.decode("Zm8=", dst));
+
+		// Standard alphabet, non-ASCII chars and whitespace
+		Assert.assertEquals(-1, Base64Url.decode("+/8", dst));
+		Assert.assertEquals(-1, Base64Url.decode("Zm9é", dst));
+		Assert.assertEquals(-1, Base64Url.decode("Zm9 v", dst));
+
+		// Impossible length
+		Assert.assertEquals(-1, Base64Url.decode("Zm9vY", dst));
+
+		// Non-canonical encoding (unused bits set)
+		Assert.assertEquals(-1, Base64Url.decode("Zh", dst));
+
+		// Output does not fit into buffer
+		Assert.assertEquals(-1, Base64Url.decode("Zm9vYmFy", new byte[5]));
+
+		try {
+			Base64Url.decode("Zg==");
+			Assert.fail();
+		} catch (IllegalArgumentException ex) {
+			// Expected
+		}
+	}
+	// =========================================================================
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.security.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Lives in the same package as {@linkplain NotAllowedException#of(DenialMode, User, DenialReason)}, which is package-private. */
+public class NotAllowedExceptionTest {
+	// INSTANCE SCOPE ==========================================================
+	@Test
+	public void sharedTest() throws IOException, ClassNotFoundException {
+		NotAllowedException shared = NotAllowedException.of(DenialMode.SHARED, null, DenialReason.FORBIDDEN);
+
+		if (shared != NotAllowedException.of(DenialMode.SHARED, null, DenialReason.FORBIDDEN)) {
+			// Runtime denies disabling suppression, so SHARED mode falls back to STACKLESS
+			Assert.assertNull(shared.getUser());
+			Assert.assertEquals(0, shared.getStackTrace().length);
+			return;
+		}
+
+		Assert.assertNotSame(shared, NotAllowedException.of(DenialMode.SHARED, null, DenialReason.UNAUTHENTICATED));
+		Assert.assertEquals(DenialReason.FORBIDDEN, shared.getReason());
+		Assert.assertNull(shared.getUser());
+
+		// Suppressed exceptions (e.g. added by try-with-resources) are ignored
+		shared.addSuppressed(new RuntimeException());
+		Assert.assertEquals(0, shared.getSuppressed().length);
+
+		try {
+			shared.initCause(new RuntimeException());
+			Assert.fail();
+		} catch (IllegalStateException ex) {
+			// Expected
+		}
+		Assert.assertNull(shared.getCause());
+
+		shared.setStackTrace(new Throwable().getStackTrace());
+		Assert.assertEquals(0, shared.getStackTrace().length);
+
+		shared.fillInStackTrace();
+		Assert.assertEquals(0, shared.getStackTrace().length);
+
+		// Deserialization resolves to the shared instance
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(shared);
+		}
+
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			Assert.assertSame(shared, in.readObject());
+		}
+	}
+
+	@Test
+	public void modesTest() {
+		User user = new BasicUser("user", Collections.<String>emptySet(), false);
+
+		NotAllowedException stackless = NotAllowedException.of(DenialMode.STACKLESS, user, DenialReason.FORBIDDEN);
+		Assert.assertSame(user, stackless.getUser());
+		Assert.assertEquals(0, stackless.getStackTrace().length);
+		Assert.assertNotSame(stackless, NotAllowedException.of(DenialMode.STACKLESS, user, DenialReason.FORBIDDEN));
+
+		// Non-shared instances keep regular behavior
+		stackless.addSuppressed(new RuntimeException());
+		Assert.assertEquals(1, stackless.getSuppressed().length);
+
+		NotAllowedException regular = NotAllowedException.of(DenialMode.STACK_TRACE, user, DenialReason.FORBIDDEN);
+		Assert.assertSame(user, regular.getUser());
+		Assert.assertTrue(regular.getStackTrace().length > 0);
+	}
+	// =========================================================================
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.security.web.ApiKeySecurityManager;
+import com.agapsys.security.web.ApiKeyStore;
+import com.agapsys.security.web.AttributeService;
+import com.agapsys.security.web.BasicUser;
+import com.agapsys.security.web.FileApiKeyLoader;
+import com.agapsys.security.web.IdentifiedUser;
+import com.agapsys.security.web.User;
+import com.agapsys.security.web.WebSecurityFilter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import javax.servlet.http.HttpServletRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class ApiKeySecurityManagerTest {
+	// CLASS SCOPE =============================================================
+	private static class ManualClockSecurityManager extends ApiKeySecurityManager {
+		private long now;
+
+		private ManualClockSecurityManager(File file) {
+			super(new FileApiKeyLoader(file), 1000);
+		}
+
+		@Override
+		protected long currentTimeMillis() {
+			return now;
+		}
+	}
+
+	/** Binds a request carrying given key. Any attempt to access a session fails. */
+	private static void bind(final String apiKey) {
+		Object request = Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				switch (method.getName()) {
+					case "getHeader":
+						return ApiKeySecurityManager.API_KEY_HEADER.equalsIgnoreCase((String) args[0]) ? apiKey : null;
+
+					case "getRequestedSessionId":
+						return null;
+
+					default:
+						throw new UnsupportedOperationException(method.getName());
+				}
+			}
+		});
+
+		AttributeService attributeService = AttributeService.getInstance();
+		attributeService.destroyAttributes();
+		attributeService.setAttribute(WebSecurityFilter.ATTR_HTTP_REQUEST, request);
+	}
+
+	private static void write(File file, String... lines) throws IOException {
+		// Key files are replaced atomically
+		File tmp = new File(file.getPath() + ".tmp");
+		Files.write(tmp.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@After
+	public void after() {
+		AttributeService.getInstance().destroyAttributes();
+	}
+
+	@Test
+	public void storeTest() {
+		ApiKeyStore keyStore = new ApiKeyStore.Builder()
+			.addKey("first-key", new BasicUser("first", Arrays.asList("API_READ"), false))
+			.addKey("second-key", new BasicUser("second", Collections.<String>emptyList(), true))
+			.build();
+
+		Assert.assertEquals(2, keyStore.size());
+		Assert.assertEquals("first", keyStore.find("first-key").getId());
+		Assert.assertEquals("second", keyStore.find("second-key").getId());
+		Assert.assertNull(keyStore.find("first-key "));
+		Assert.assertNull(keyStore.find("chave-inválida"));
+		Assert.assertNull(ApiKeyStore.EMPTY.find("first-key"));
+
+		ApiKeySecurityManager securityManager = new ApiKeySecurityManager(keyStore);
+
+		bind("first-key");
+		Assert.assertEquals("first", ((IdentifiedUser) securityManager.getCurrentUser()).getId());
+		Assert.assertTrue(securityManager.isAllowed(new String[] {"API_READ"}));
+		Assert.assertFalse(securityManager.isAllowed(new String[] {"API_WRITE"}));
+
+		bind(null);
+		Assert.assertNull(securityManager.getCurrentUser());
+
+		try {
+			securityManager.setCurrentUser(new BasicUser("other", Collections.<String>emptyList(), false));
+			Assert.fail();
+		} catch (UnsupportedOperationException ex) {
+			// No session is ever created
+		}
+
+		try {
+			new ApiKeyStore.Builder().addKey("key", keyStore.find("first-key")).addKey("key", keyStore.find("second-key")).build();
+			Assert.fail();
+		} catch (IllegalArgumentException ex) {
+			// Duplicate key
+		}
+	}
+
+	@Test
+	public void reloadTest() throws IOException {
+		File file = File.createTempFile("api-keys", ".txt");
+		file.deleteOnExit();
+
+		write(file, "# Test keys", ApiKeyStore.hash("first-key") + " first API_READ");
+		ManualClockSecurityManager securityManager = new ManualClockSecurityManager(file);
+		ApiKeyStore initialStore = securityManager.getKeyStore();
+
+		bind("first-key");
+		User user = securityManager.getCurrentUser();
+		Assert.assertEquals("first", ((IdentifiedUser) user).getId());
+		Assert.assertFalse(user.isAdmin());
+
+		write(file, "", ApiKeyStore.hash("second-key") + "  second  API_READ  *", ApiKeyStore.hash("third-key") + " third");
+		Assert.assertTrue(file.setLastModified(file.lastModified() + 2000));
+
+		// Keys are reloaded only after the reload interval
+		bind("first-key");
+		Assert.assertNotNull(securityManager.getCurrentUser());
+		Assert.assertSame(initialStore, securityManager.getKeyStore());
+
+		securityManager.now += 1000;
+		bind("first-key");
+		Assert.assertNull(securityManager.getCurrentUser());
+		bind("second-key");
+		Assert.assertTrue(securityManager.getCurrentUser().isAdmin());
+		Assert.assertEquals(2, securityManager.getKeyStore().size());
+
+		// Invalid files are ignored and current keys are kept
+		ApiKeyStore validStore = securityManager.getKeyStore();
+		write(file, "invalid");
+		Assert.assertTrue(file.setLastModified(file.lastModified() + 4000));
+		securityManager.now += 1000;
+		bind("third-key");
+		Assert.assertNotNull(securityManager.getCurrentUser());
+		Assert.assertSame(validStore, securityManager.getKeyStore());
+		Assert.assertTrue(securityManager.getLastReloadError() instanceof IllegalArgumentException);
+
+		// Unchanged files are not parsed again
+		write(file, ApiKeyStore.hash("first-key") + " first");
+		Assert.assertTrue(file.setLastModified(file.lastModified() + 6000));
+		securityManager.reload();
+		Assert.assertNull(securityManager.getLastReloadError());
+		ApiKeyStore reloadedStore = securityManager.getKeyStore();
+		securityManager.reload();
+		Assert.assertSame(reloadedStore, securityManager.getKeyStore());
+	}
+
+	@Test
+	public void replacedFileTest() throws IOException {
+		File file = File.createTempFile("api-keys", ".txt");
+		file.deleteOnExit();
+
+		write(file, ApiKeyStore.hash("first-key") + " first");
+		Assume.assumeNotNull(Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey());
+
+		ManualClockSecurityManager securityManager = new ManualClockSecurityManager(file);
+		long lastModified = file.lastModified();
+
+		// Same length and modification time, but a different file
+		write(file, ApiKeyStore.hash("other-key") + " other");
+		Assert.assertTrue(file.setLastModified(lastModified));
+		Assert.assertEquals(lastModified, file.lastModified());
+
+		securityManager.now += 1000;
+		bind("other-key");
+		Assert.assertEquals("other", ((IdentifiedUser) securityManager.getCurrentUser()).getId());
+		bind("first-key");
+		Assert.assertNull(securityManager.getCurrentUser());
+	}
+	// =========================================================================
+}
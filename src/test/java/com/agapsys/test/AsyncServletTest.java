@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.http.HttpClient;
+import com.agapsys.http.HttpGet;
+import com.agapsys.http.HttpResponse.StringResponse;
+import com.agapsys.security.web.AttributeService;
+import com.agapsys.security.web.PathRules;
+import com.agapsys.security.web.RequestContextCarrier;
+import com.agapsys.security.web.ScopedContextCarrier;
+import com.agapsys.security.web.SessionSecurityManager;
+import com.agapsys.security.web.WebSecurity;
+import com.agapsys.security.web.WebSecurityFilter;
+import com.agapsys.sevlet.container.ServletContainer;
+import com.agapsys.sevlet.container.StacktraceErrorHandler;
+import com.agapsys.test.app.AsyncServlet;
+import java.util.EnumSet;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class AsyncServletTest {
+	// CLASS SCOPE =============================================================
+	private static final String BASE_URL = "/async";
+	
+	/** Maps the security filter for asynchronous dispatches, as the bundled web fragment does. */
+	public static class AsyncFilterRegistration implements ServletContextListener {
+		@Override
+		public void contextInitialized(ServletContextEvent sce) {
+			sce.getServletContext().addFilter("asyncSecurityFilter", WebSecurityFilter.class).addMappingForUrlPatterns(EnumSet.of(DispatcherType.ASYNC), false, "/*");
+		}
+
+		@Override
+		public void contextDestroyed(ServletContextEvent sce) {}
+	}
+	
+	@BeforeClass
+	public static void beforeClass() {
+		SessionSecurityManager securityManager = new SessionSecurityManager();
+		securityManager.setPathRules(new PathRules.Builder()
+			.secure(BASE_URL + "/admin/**", "ROLE")
+			.build()
+		);
+		WebSecurity.init(securityManager, "com.agapsys.test.app.AsyncService");
+	}
+	// =========================================================================
+	
+	// INSTANCE SCOPE ==========================================================
+	private final ServletContainer sc;
+	
+	public AsyncServletTest() {
+		sc = new ServletContainerBuilder()
+			.registerServlet(AsyncServlet.class, BASE_URL + "/*")
+			.registerFilter(WebSecurityFilter.class, "/*")
+			.registerEventListener(AsyncFilterRegistration.class)
+			.setErrorHandler(new StacktraceErrorHandler())
+			.build();
+	}
+	
+	@Before
+	public void before() {
+		sc.startServer();
+	}
+	
+	@After
+	public void after() {
+		sc.stopServer();
+	}
+	
+	@Test
+	public void scopedCarrierTest() {
+		AttributeService attributeService = AttributeService.getInstance();
+		RequestContextCarrier defaultCarrier = attributeService.getCarrier();
+		attributeService.setCarrier(new ScopedContextCarrier());
+		
+		try {
+			executorTest();
+		} finally {
+			attributeService.setCarrier(defaultCarrier);
+		}
+	}
+	
+	@Test
+	public void executorTest() {
+		StringResponse resp;
+		String uri = BASE_URL + "/securedGet";
+		
+		// Unlogged access -----------------------------------------------------
+		resp = sc.doRequest(new HttpGet(uri));
+		TestUtils.assertStatus(401, resp);
+		// ---------------------------------------------------------------------
+		
+		// Logged access -------------------------------------------------------
+		HttpClient client = new HttpClient();
+		resp = sc.doRequest(client, new HttpGet(BASE_URL + "/login"));
+		TestUtils.assertStatus(200, resp);
+		
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "[ROLE]:OK", resp);
+		// ---------------------------------------------------------------------
+		
+		// Worker thread does not keep previous context ------------------------
+		resp = sc.doRequest(new HttpGet(uri));
+		TestUtils.assertStatus(401, resp);
+		// ---------------------------------------------------------------------
+	}
+	
+	@Test
+	public void asyncDispatchTest() {
+		StringResponse resp;
+		String uri = BASE_URL + "/dispatch";
+		
+		// Path rules are checked for the path targeted by the dispatch
+		resp = sc.doRequest(new HttpGet(uri));
+		TestUtils.assertStatus(401, resp);
+		
+		HttpClient client = new HttpClient();
+		sc.doRequest(client, new HttpGet(BASE_URL + "/login"));
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "ADMIN", resp);
+		
+		resp = sc.doRequest(new HttpGet(BASE_URL + "/admin"));
+		TestUtils.assertStatus(401, resp);
+	}
+	// =========================================================================
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.security.web.AuditEvent;
+import com.agapsys.security.web.AuditLog;
+import com.agapsys.security.web.AuditSink;
+import com.agapsys.security.web.BasicUser;
+import com.agapsys.security.web.DenialReason;
+import com.agapsys.security.web.IdentifiedUser;
+import com.agapsys.security.web.MappedFileAuditSink;
+import com.agapsys.security.web.User;
+import com.agapsys.security.web.WebSecurityManager;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AuditLogTest {
+	// CLASS SCOPE =============================================================
+	/** Security manager holding a single user outside requests. */
+	private static class StaticSecurityManager extends WebSecurityManager {
+		private volatile User user;
+
+		@Override
+		protected User loadCurrentUser() {
+			return user;
+		}
+
+		@Override
+		protected void storeCurrentUser(User user) {
+			this.user = user;
+		}
+
+		@Override
+		protected void removeCurrentUser() {
+			this.user = null;
+		}
+	}
+
+	/** Keeps written events as strings. Writing can be held until released. */
+	private static class MemorySink implements AuditSink {
+		private final List<String>   events  = Collections.synchronizedList(new ArrayList<String>());
+		private final CountDownLatch writing = new CountDownLatch(1);
+		private final CountDownLatch release;
+		private volatile boolean     closed;
+
+		private MemorySink(boolean held) {
+			release = new CountDownLatch(held ? 1 : 0);
+		}
+
+		@Override
+		public void write(AuditEvent event) throws IOException {
+			writing.countDown();
+
+			try {
+				release.await();
+			} catch (InterruptedException ex) {
+				throw new RuntimeException(ex);
+			}
+
+			events.add(event.getType() + ":" + event.getUserId() + ":" + event.getReason());
+		}
+
+		@Override
+		public void flush() {}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@Test
+	public void managerEventsTest() throws InterruptedException {
+		MemorySink sink = new MemorySink(false);
+		AuditLog auditLog = new AuditLog(sink);
+
+		StaticSecurityManager securityManager = new StaticSecurityManager();
+		securityManager.setAuditLog(auditLog);
+		securityManager.setCurrentUser(new BasicUser("user-1", Collections.<String>emptySet(), false));
+		securityManager.unregisterCurrentUser();
+		auditLog.record(AuditEvent.Type.DENIED, null, null, DenialReason.UNAUTHENTICATED);
+
+		auditLog.close();
+		Assert.assertTrue(sink.closed);
+		Assert.assertEquals(Arrays.asList("LOGIN:user-1:null", "LOGOUT:user-1:null", "DENIED:null:UNAUTHENTICATED"), sink.events);
+
+		// Closed log drops events
+		auditLog.record(AuditEvent.Type.LOGOUT, null, null, null);
+		Assert.assertEquals(1, auditLog.getDroppedCount());
+	}
+
+	@Test
+	public void dropTest() throws InterruptedException {
+		MemorySink sink = new MemorySink(true);
+		AuditLog auditLog = new AuditLog(sink, 4, AuditLog.OverflowPolicy.DROP);
+
+		// First event holds the writer, so it keeps its slot
+		auditLog.record(AuditEvent.Type.LOGIN, null, null, null);
+		sink.writing.await();
+
+		for (int i = 0; i < 10; i++) {
+			auditLog.record(AuditEvent.Type.LOGOUT, null, null, null);
+		}
+
+		Assert.assertEquals(7, auditLog.getDroppedCount());
+
+		sink.release.countDown();
+		auditLog.close();
+		Assert.assertEquals(4, sink.events.size());
+	}
+
+	@Test(timeout = 10000)
+	public void failingUserTest() throws InterruptedException {
+		MemorySink sink = new MemorySink(false);
+		AuditLog auditLog = new AuditLog(sink, 4, AuditLog.OverflowPolicy.BLOCK);
+
+		User user = new IdentifiedUser() {
+			@Override
+			public String getId() {
+				throw new IllegalStateException("Unavailable");
+			}
+
+			@Override
+			public Set<String> getRoles() {
+				return Collections.emptySet();
+			}
+
+			@Override
+			public boolean isAdmin() {
+				return false;
+			}
+		};
+
+		try {
+			auditLog.record(AuditEvent.Type.LOGIN, user, null, null);
+			Assert.fail();
+		} catch (IllegalStateException ex) {
+			// No slot was claimed for the event
+		}
+
+		// Later events (more than the capacity) are still written
+		for (int i = 0; i < 10; i++) {
+			auditLog.record(AuditEvent.Type.LOGOUT, null, null, null);
+		}
+
+		auditLog.close();
+		Assert.assertEquals(10, sink.events.size());
+		Assert.assertEquals(0, auditLog.getDroppedCount());
+	}
+
+	@Test
+	public void mappedFileTest() throws IOException, InterruptedException {
+		File directory = Files.createTempDirectory("audit").toFile();
+		AuditLog auditLog = new AuditLog(new MappedFileAuditSink(directory, "audit", 1024));
+
+		for (int i = 0; i < 30; i++) {
+			auditLog.record(AuditEvent.Type.LOGIN, new BasicUser("user \"" + i + "\"", Collections.<String>emptySet(), false), null, null);
+		}
+		auditLog.close();
+
+		File[] files = directory.listFiles();
+		Arrays.sort(files);
+		Assert.assertTrue(files.length > 1);
+
+		List<String> lines = new ArrayList<>();
+		for (File file : files) {
+			lines.addAll(Files.readAllLines(file.toPath(), StandardCharsets.US_ASCII));
+			file.delete();
+		}
+		directory.delete();
+
+		Assert.assertEquals(30, lines.size());
+		Assert.assertTrue(lines.get(29).matches("\\{\"time\":\\d+,\"type\":\"LOGIN\",\"user\":\"user \\\\\"29\\\\\"\"\\}"));
+	}
+	// =========================================================================
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.security.web.AuthorizationCache;
+import com.agapsys.security.web.RoleHierarchy;
+import com.agapsys.security.web.User;
+import com.agapsys.security.web.VersionedUser;
+import com.agapsys.security.web.WebSecurityManager;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AuthorizationCacheTest {
+	// CLASS SCOPE =============================================================
+	/** Security manager holding a single user outside requests. */
+	private static class StaticSecurityManager extends WebSecurityManager {
+		private volatile User user;
+
+		@Override
+		protected User loadCurrentUser() {
+			return user;
+		}
+
+		@Override
+		protected void storeCurrentUser(User user) {
+			this.user = user;
+		}
+
+		@Override
+		protected void removeCurrentUser() {
+			this.user = null;
+		}
+	}
+
+	private static class MutableUser implements VersionedUser {
+		private final Set<String> roles = new LinkedHashSet<>();
+		private long version;
+		private boolean versioned = true;
+
+		private MutableUser(String... roles) {
+			Collections.addAll(this.roles, roles);
+		}
+
+		@Override
+		public Set<String> getRoles() {
+			return Collections.unmodifiableSet(roles);
+		}
+
+		@Override
+		public boolean isAdmin() {
+			return false;
+		}
+
+		@Override
+		public long getRolesVersion() {
+			return version;
+		}
+
+		private void addRole(String role) {
+			roles.add(role);
+
+			if (versioned)
+				version++;
+		}
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@Test
+	public void versionTest() {
+		StaticSecurityManager securityManager = new StaticSecurityManager();
+		securityManager.setAuthorizationCache(new AuthorizationCache());
+
+		MutableUser user = new MutableUser("CACHE_A");
+		securityManager.setCurrentUser(user);
+
+		Assert.assertTrue(securityManager.isAllowed(new String[] {"CACHE_A"}));
+		Assert.assertFalse(securityManager.isAllowed(new String[] {"CACHE_A", "CACHE_B"}));
+
+		// Roles changed with a new version
+		user.addRole("CACHE_B");
+		Assert.assertTrue(securityManager.isAllowed(new String[] {"CACHE_A", "CACHE_B"}));
+
+		// Roles changed without a new version: cached decision is kept until user is set again
+		user.versioned = false;
+		user.addRole("CACHE_C");
+		Assert.assertFalse(securityManager.isAllowed(new String[] {"CACHE_C"}));
+		securityManager.setCurrentUser(user);
+		Assert.assertTrue(securityManager.isAllowed(new String[] {"CACHE_C"}));
+	}
+
+	@Test
+	public void sharedDecisionsTest() {
+		StaticSecurityManager securityManager = new StaticSecurityManager();
+		AuthorizationCache cache = new AuthorizationCache(1);
+		securityManager.setAuthorizationCache(cache);
+
+		// Users with the same roles (in any order) share decisions, even if they do not fit the cache
+		for (int i = 0; i < 10; i++) {
+			securityManager.setCurrentUser(i % 2 == 0 ? new MutableUser("CACHE_A", "CACHE_B") : new MutableUser("CACHE_B", "CACHE_A"));
+			Assert.assertTrue(securityManager.isAllowed(new String[] {"CACHE_B"}));
+			Assert.assertFalse(securityManager.isAllowed(new String[] {"CACHE_D"}));
+		}
+
+		cache.clear();
+		Assert.assertTrue(securityManager.isAllowed(new String[] {"CACHE_A"}));
+	}
+
+	@Test
+	public void roleHierarchyTest() {
+		AuthorizationCache cache = new AuthorizationCache();
+		StaticSecurityManager securityManager = new StaticSecurityManager();
+		StaticSecurityManager staleSecurityManager = new StaticSecurityManager();
+		securityManager.setAuthorizationCache(cache);
+		staleSecurityManager.setAuthorizationCache(cache);
+
+		MutableUser user = new MutableUser("CACHE_EDITOR");
+		securityManager.setCurrentUser(user);
+		staleSecurityManager.setCurrentUser(user);
+
+		securityManager.setRoleHierarchy(new RoleHierarchy.Builder().include("CACHE_EDITOR", "CACHE_VIEWER").build());
+		Assert.assertTrue(securityManager.isAllowed(new String[] {"CACHE_VIEWER"}));
+
+		// A lookup using the previous hierarchy stores its entry after the cache was cleared
+		securityManager.setRoleHierarchy(null);
+		staleSecurityManager.setRoleHierarchy(new RoleHierarchy.Builder().include("CACHE_EDITOR", "CACHE_VIEWER").build());
+		Assert.assertTrue(staleSecurityManager.isAllowed(new String[] {"CACHE_VIEWER"}));
+
+		Assert.assertFalse(securityManager.isAllowed(new String[] {"CACHE_VIEWER"}));
+		Assert.assertTrue(securityManager.isAllowed(new String[] {"CACHE_EDITOR"}));
+	}
+	// =========================================================================
+}
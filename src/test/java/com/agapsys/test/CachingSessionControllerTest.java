@@ -0,0 +1,261 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.http.HttpClient;
+import com.agapsys.http.HttpGet;
+import com.agapsys.http.HttpResponse;
+import com.agapsys.security.web.CachingSessionSecurityManager;
+import com.agapsys.security.web.CompactUserCodec;
+import com.agapsys.security.web.DefaultSecurityMetrics;
+import com.agapsys.security.web.InMemoryRevocationTransport;
+import com.agapsys.security.web.RevocationList;
+import com.agapsys.security.web.WebSecurity;
+import com.agapsys.security.web.WebSecurityFilter;
+import com.agapsys.sevlet.container.ServletContainer;
+import com.agapsys.sevlet.container.StacktraceErrorHandler;
+import com.agapsys.test.app.CachingSessionController;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CachingSessionControllerTest {
+	// CLASS SCOPE =============================================================
+	private static final String BASE_URL = "/cachingSession";
+	
+	private static class ManualClockSecurityManager extends CachingSessionSecurityManager {
+		private volatile long offset;
+		
+		private ManualClockSecurityManager(CompactUserCodec userCodec) {
+			super(userCodec, CachingSessionSecurityManager.DEFAULT_CACHE_SIZE, CachingSessionSecurityManager.DEFAULT_CACHE_TTL);
+		}
+		
+		@Override
+		protected long currentTimeMillis() {
+			return System.currentTimeMillis() + offset;
+		}
+	}
+	
+	@BeforeClass
+	public static void beforeClass() {
+		CompactUserCodec userCodec = new CompactUserCodec("ROLE");
+		CachingSessionSecurityManager securityManager = new ManualClockSecurityManager(userCodec);
+		securityManager.setRevocationList(new RevocationList(new InMemoryRevocationTransport(), RevocationList.DEFAULT_FILTER_BITS, 0));
+		WebSecurity.init(securityManager, "com.agapsys.test.app.CachingSessionController");
+	}
+	// =========================================================================
+	
+	// INSTANCE SCOPE ==========================================================
+	private ServletContainer sc;
+	
+	@Before
+	public void before() {
+		sc = new ServletContainerBuilder()
+			.registerController(CachingSessionController.class)
+			.registerFilter(SessionWriteCounter.class, "/*")
+			.registerFilter(WebSecurityFilter.class, "/*")
+			.registerEventListener(CachingSessionSecurityManager.SessionListener.class)
+			.setErrorHandler(new StacktraceErrorHandler())
+			.build();
+		sc.startServer();
+	}
+	
+	@After
+	public void after() {
+		sc.stopServer();
+	}
+	
+	@Test
+	public void userChangeTest() {
+		HttpResponse.StringResponse resp;
+		HttpClient client = new HttpClient();
+		String uri = BASE_URL + "/extraSecuredGet";
+		
+		// Cached extra user ---------------------------------------------------
+		sc.doRequest(client, new HttpGet(BASE_URL + "/doExtraLogin"));
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		// ---------------------------------------------------------------------
+		
+		// Cache miss: user is decoded from session ----------------------------
+		((CachingSessionSecurityManager) WebSecurity.getSecurityManager()).clearCache();
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		// ---------------------------------------------------------------------
+		
+		// Same session, another user ------------------------------------------
+		sc.doRequest(client, new HttpGet(BASE_URL + "/doSimpleLogin"));
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(403, resp);
+		// ---------------------------------------------------------------------
+		
+		// Logout --------------------------------------------------------------
+		sc.doRequest(client, new HttpGet(BASE_URL + "/logout"));
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(401, resp);
+		// ---------------------------------------------------------------------
+	}
+	
+	@Test
+	public void sessionWriteTest() {
+		HttpResponse.StringResponse resp;
+		HttpClient client = new HttpClient();
+		
+		// Login stores user and version stamp with a single write
+		SessionWriteCounter.WRITES.set(0);
+		sc.doRequest(client, new HttpGet(BASE_URL + "/doSimpleLogin"));
+		Assert.assertEquals(1, SessionWriteCounter.WRITES.get());
+		
+		((CachingSessionSecurityManager) WebSecurity.getSecurityManager()).clearCache();
+		resp = sc.doRequest(client, new HttpGet(BASE_URL + "/securedGet"));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		Assert.assertEquals(1, SessionWriteCounter.WRITES.get());
+		
+		// Logout removes both with a single write
+		sc.doRequest(client, new HttpGet(BASE_URL + "/logout"));
+		Assert.assertEquals(2, SessionWriteCounter.WRITES.get());
+		
+		resp = sc.doRequest(client, new HttpGet(BASE_URL + "/securedGet"));
+		TestUtils.assertStatus(401, resp);
+	}
+	
+	@Test
+	public void sessionInvalidationTest() {
+		HttpResponse.StringResponse resp;
+		HttpClient client = new HttpClient();
+		String uri = BASE_URL + "/securedGet";
+		
+		sc.doRequest(client, new HttpGet(BASE_URL + "/doSimpleLogin"));
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		
+		sc.doRequest(client, new HttpGet(BASE_URL + "/invalidateSession"));
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(401, resp);
+	}
+	
+	@Test
+	public void sessionRevocationTest() {
+		HttpResponse.StringResponse resp;
+		HttpClient client = new HttpClient();
+		String uri = BASE_URL + "/securedGet";
+		
+		sc.doRequest(client, new HttpGet(BASE_URL + "/doSimpleLogin"));
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		
+		// User is still cached, but its session is revoked
+		sc.doRequest(client, new HttpGet(BASE_URL + "/revokeSession"));
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(401, resp);
+		
+		// Other sessions are not affected
+		HttpClient otherClient = new HttpClient();
+		sc.doRequest(otherClient, new HttpGet(BASE_URL + "/doSimpleLogin"));
+		resp = sc.doRequest(otherClient, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+	}
+	
+	@Test
+	public void sessionTouchTest() {
+		HttpResponse.StringResponse resp;
+		HttpClient client = new HttpClient();
+		String uri = BASE_URL + "/securedGet";
+		ManualClockSecurityManager securityManager = (ManualClockSecurityManager) WebSecurity.getSecurityManager();
+		DefaultSecurityMetrics metrics = new DefaultSecurityMetrics();
+		
+		securityManager.setMetrics(metrics);
+		securityManager.setSessionTouchInterval(60000);
+		
+		try {
+			sc.doRequest(client, new HttpGet(BASE_URL + "/doSimpleLogin"));
+			Assert.assertEquals(1, metrics.getSessionAccessCount());
+			
+			// Within the interval, user is taken from the cache without reading the session
+			for (int i = 0; i < 3; i++) {
+				resp = sc.doRequest(client, new HttpGet(uri));
+				TestUtils.assertStringResponse(200, "OK", resp);
+			}
+			Assert.assertEquals(1, metrics.getSessionAccessCount());
+			
+			// Session is read again once the interval elapses
+			securityManager.offset += 60000;
+			for (int i = 0; i < 3; i++) {
+				resp = sc.doRequest(client, new HttpGet(uri));
+				TestUtils.assertStringResponse(200, "OK", resp);
+			}
+			Assert.assertEquals(2, metrics.getSessionAccessCount());
+			
+			// Logout on this node takes effect immediately
+			sc.doRequest(client, new HttpGet(BASE_URL + "/logout"));
+			resp = sc.doRequest(client, new HttpGet(uri));
+			TestUtils.assertStatus(401, resp);
+			Assert.assertEquals(1, metrics.getSessionCreatedCount());
+		} finally {
+			securityManager.setSessionTouchInterval(0);
+			securityManager.setMetrics(null);
+		}
+	}
+	
+	@Test
+	public void sessionTouchValidationTest() throws InterruptedException {
+		HttpResponse.StringResponse resp;
+		String uri = BASE_URL + "/securedGet";
+		ManualClockSecurityManager securityManager = (ManualClockSecurityManager) WebSecurity.getSecurityManager();
+		
+		securityManager.setSessionTouchInterval(60000);
+		
+		try {
+			// Rotated session id ----------------------------------------------
+			HttpClient client = new HttpClient();
+			sc.doRequest(client, new HttpGet(BASE_URL + "/doSimpleLogin"));
+			String oldSessionId = sc.doRequest(client, new HttpGet(BASE_URL + "/sessionId")).getContentString();
+			resp = sc.doRequest(client, new HttpGet(uri));
+			TestUtils.assertStringResponse(200, "OK", resp);
+			
+			String newSessionId = sc.doRequest(client, new HttpGet(BASE_URL + "/changeSessionId")).getContentString();
+			Assert.assertFalse(oldSessionId.equals(newSessionId));
+			
+			HttpClient staleClient = new HttpClient();
+			staleClient.addDefaultHeader("Cookie", "JSESSIONID=" + oldSessionId);
+			resp = sc.doRequest(staleClient, new HttpGet(uri));
+			TestUtils.assertStatus(401, resp);
+			
+			resp = sc.doRequest(client, new HttpGet(uri));
+			TestUtils.assertStringResponse(200, "OK", resp);
+			// -----------------------------------------------------------------
+			
+			// Expired session -------------------------------------------------
+			client = new HttpClient();
+			sc.doRequest(client, new HttpGet(BASE_URL + "/doSimpleLogin"));
+			resp = sc.doRequest(client, new HttpGet(uri));
+			TestUtils.assertStringResponse(200, "OK", resp);
+			
+			sc.doRequest(client, new HttpGet(BASE_URL + "/expireSession"));
+			Thread.sleep(1500);
+			resp = sc.doRequest(client, new HttpGet(uri));
+			TestUtils.assertStatus(401, resp);
+			// -----------------------------------------------------------------
+		} finally {
+			securityManager.setSessionTouchInterval(0);
+		}
+	}
+	// =========================================================================
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.security.web.BasicUser;
+import com.agapsys.security.web.CompactUserCodec;
+import com.agapsys.security.web.DefaultUserCodec;
+import com.agapsys.security.web.IdentifiedUser;
+import com.agapsys.security.web.User;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompactUserCodecTest {
+	// INSTANCE SCOPE ==========================================================
+	private final CompactUserCodec codec = new CompactUserCodec("ROLE_A", "ROLE_B", "ROLE_C", "ROLE_D");
+
+	@Test
+	public void roundTripTest() {
+		User user = new BasicUser("user-1", Arrays.asList("ROLE_D", "ROLE_B", "CUSTOM"), false);
+		User decoded = codec.decode(codec.encode(user));
+
+		Assert.assertEquals("user-1", ((IdentifiedUser) decoded).getId());
+		Assert.assertEquals(user.getRoles(), decoded.getRoles());
+		Assert.assertFalse(decoded.isAdmin());
+
+		user = new BasicUser(null, Arrays.<String>asList(), true);
+		decoded = codec.decode(codec.encode(user));
+		Assert.assertNull(((IdentifiedUser) decoded).getId());
+		Assert.assertTrue(decoded.getRoles().isEmpty());
+		Assert.assertTrue(decoded.isAdmin());
+	}
+
+	@Test
+	public void sizeTest() {
+		User user = new BasicUser("user-1", Arrays.asList("ROLE_A", "ROLE_B", "ROLE_C", "ROLE_D"), false);
+
+		// flags + id (1 + 6) + count + 4 indexes + inline count
+		Assert.assertEquals(14, codec.encode(user).length);
+		Assert.assertTrue(codec.encode(user).length * 2 < new DefaultUserCodec().encode(user).length);
+	}
+
+	@Test
+	public void invalidDataTest() {
+		byte[] data = codec.encode(new BasicUser("user-1", Arrays.asList("ROLE_A", "CUSTOM"), false));
+
+		for (byte[] invalid : new byte[][] {
+			new byte[0],
+			Arrays.copyOf(data, data.length - 1),
+			Arrays.copyOf(data, data.length + 1),
+			{0x20, 0, 0}, // unsupported version
+			{0x10, 1, 4, 0} // index out of dictionary
+		}) {
+			try {
+				codec.decode(invalid);
+				Assert.fail();
+			} catch (IllegalArgumentException ex) {}
+		}
+	}
+	// =========================================================================
+}
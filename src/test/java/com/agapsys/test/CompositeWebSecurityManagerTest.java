@@ -0,0 +1,214 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.security.web.AttributeService;
+import com.agapsys.security.web.Authenticator;
+import com.agapsys.security.web.BasicAuthenticator;
+import com.agapsys.security.web.CompositeWebSecurityManager;
+import com.agapsys.security.web.CredentialVerifier;
+import com.agapsys.security.web.User;
+import com.agapsys.security.web.WebSecurityFilter;
+import com.agapsys.test.app.AdminUser;
+import com.agapsys.test.app.SimpleUser;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompositeWebSecurityManagerTest {
+	// CLASS SCOPE =============================================================
+	private static class CountingVerifier implements CredentialVerifier {
+		private int calls;
+
+		@Override
+		public User verify(String username, String password) {
+			calls++;
+			return "user".equals(username) && "secret".equals(password) ? new SimpleUser() : null;
+		}
+	}
+
+	private static class TokenAuthenticator extends Authenticator {
+		private int calls;
+		private User stored;
+
+		private TokenAuthenticator(String header, String scheme, String cookie) {
+			super(header, scheme, cookie);
+		}
+
+		@Override
+		protected User authenticate(HttpServletRequest request, String credentials) {
+			calls++;
+			return "token".equals(credentials) ? new AdminUser() : null;
+		}
+
+		@Override
+		protected void store(User user) {
+			stored = user;
+		}
+
+		@Override
+		protected void remove() {
+			stored = null;
+		}
+	}
+
+	private static final char[] BASE64_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+	/** Encodes standard, padded Base64 (javax.xml.bind is not available on newer JDKs). */
+	private static String base64(byte[] data) {
+		StringBuilder sb = new StringBuilder((data.length + 2) / 3 * 4);
+		for (int i = 0; i < data.length; i += 3) {
+			int chunk = (data[i] & 0xff) << 16;
+			if (i + 1 < data.length) chunk |= (data[i + 1] & 0xff) << 8;
+			if (i + 2 < data.length) chunk |= data[i + 2] & 0xff;
+
+			sb.append(BASE64_ALPHABET[(chunk >> 18) & 0x3f]);
+			sb.append(BASE64_ALPHABET[(chunk >> 12) & 0x3f]);
+			sb.append(i + 1 < data.length ? BASE64_ALPHABET[(chunk >> 6) & 0x3f] : '=');
+			sb.append(i + 2 < data.length ? BASE64_ALPHABET[chunk & 0x3f] : '=');
+		}
+		return sb.toString();
+	}
+
+	private static String basic(String username, String password) {
+		return "Basic " + base64((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static HttpServletRequest newRequest(final Map<String, String> headers, final Cookie... cookies) {
+		return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				switch (method.getName()) {
+					case "getHeader":
+						for (Map.Entry<String, String> entry : headers.entrySet()) {
+							if (entry.getKey().equalsIgnoreCase((String) args[0]))
+								return entry.getValue();
+						}
+						return null;
+
+					case "getCookies":
+						return cookies.length == 0 ? null : cookies;
+
+					case "getRequestedSessionId":
+						return null;
+
+					default:
+						throw new UnsupportedOperationException(method.getName());
+				}
+			}
+		});
+	}
+
+	private static Map<String, String> headers(String... namesAndValues) {
+		Map<String, String> headers = new HashMap<>();
+
+		for (int i = 0; i < namesAndValues.length; i += 2) {
+			headers.put(namesAndValues[i], namesAndValues[i + 1]);
+		}
+
+		return headers;
+	}
+
+	private static void bind(HttpServletRequest request) {
+		AttributeService attributeService = AttributeService.getInstance();
+		attributeService.destroyAttributes();
+		attributeService.setAttribute(WebSecurityFilter.ATTR_HTTP_REQUEST, request);
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final CountingVerifier   verifier = new CountingVerifier();
+	private final TokenAuthenticator bearer   = new TokenAuthenticator("Authorization", "Bearer", null);
+	private final TokenAuthenticator cookie   = new TokenAuthenticator(null, null, "auth");
+
+	private final CompositeWebSecurityManager securityManager = new CompositeWebSecurityManager(cookie, new BasicAuthenticator(verifier), bearer, cookie);
+
+	@After
+	public void after() {
+		AttributeService.getInstance().destroyAttributes();
+	}
+
+	@Test
+	public void basicTest() {
+		bind(newRequest(headers("authorization", basic("user", "secret"))));
+		Assert.assertTrue(securityManager.getCurrentUser() instanceof SimpleUser);
+		Assert.assertTrue(securityManager.getCurrentAuthenticator() instanceof BasicAuthenticator);
+
+		// Verified credentials are cached
+		bind(newRequest(headers("Authorization", basic("user", "secret"))));
+		Assert.assertTrue(securityManager.getCurrentUser() instanceof SimpleUser);
+		Assert.assertEquals(1, verifier.calls);
+
+		bind(newRequest(headers("Authorization", basic("user", "wrong"))));
+		Assert.assertNull(securityManager.getCurrentUser());
+		bind(newRequest(headers("Authorization", "Basic !!!")));
+		Assert.assertNull(securityManager.getCurrentUser());
+		Assert.assertEquals(2, verifier.calls);
+		Assert.assertEquals(0, bearer.calls + cookie.calls);
+	}
+
+	@Test
+	public void dispatchTest() {
+		// Schemes sharing a header
+		bind(newRequest(headers("Authorization", "Bearer token")));
+		Assert.assertTrue(securityManager.getCurrentUser() instanceof AdminUser);
+		Assert.assertEquals(1, bearer.calls);
+
+		// Headers take precedence over cookies
+		bind(newRequest(headers("Authorization", "Bearer other"), new Cookie("auth", "token")));
+		Assert.assertNull(securityManager.getCurrentUser());
+		Assert.assertSame(bearer, securityManager.getCurrentAuthenticator());
+
+		bind(newRequest(headers("Authorization", "Digest token"), new Cookie("other", ""), new Cookie("auth", "token")));
+		Assert.assertTrue(securityManager.getCurrentUser() instanceof AdminUser);
+		Assert.assertEquals(1, cookie.calls);
+
+		bind(newRequest(headers()));
+		Assert.assertNull(securityManager.getCurrentUser());
+		Assert.assertNull(securityManager.getCurrentAuthenticator());
+		Assert.assertEquals(2, bearer.calls);
+		Assert.assertEquals(0, verifier.calls);
+	}
+
+	@Test
+	public void loginTest() {
+		bind(newRequest(headers()));
+		User user = new SimpleUser();
+		securityManager.setCurrentUser(user);
+		Assert.assertSame(user, cookie.stored);
+		Assert.assertSame(user, securityManager.getCurrentUser());
+
+		securityManager.unregisterCurrentUser();
+		Assert.assertNull(cookie.stored);
+		Assert.assertNull(securityManager.getCurrentUser());
+
+		try {
+			new CompositeWebSecurityManager(bearer, cookie);
+			Assert.fail();
+		} catch (IllegalArgumentException ex) {
+			// Login authenticator is not in the chain
+		}
+	}
+	// =========================================================================
+}
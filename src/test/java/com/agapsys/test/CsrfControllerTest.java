@@ -16,16 +16,23 @@
 package com.agapsys.test;
 
 import com.agapsys.http.HttpClient;
+import com.agapsys.http.HttpDelete;
 import com.agapsys.http.HttpGet;
 import com.agapsys.http.HttpHeader;
 import com.agapsys.http.HttpResponse;
 import com.agapsys.http.HttpResponse.StringResponse;
+import com.agapsys.security.web.DefaultSecurityMetrics;
+import com.agapsys.security.web.JmxSecurityMetricsExporter;
+import com.agapsys.security.web.PathRules;
+import com.agapsys.security.web.RoleRequirement;
 import com.agapsys.security.web.SessionCsrfSecurityManager;
 import com.agapsys.security.web.WebSecurity;
 import com.agapsys.security.web.WebSecurityFilter;
 import com.agapsys.sevlet.container.ServletContainer;
 import com.agapsys.sevlet.container.StacktraceErrorHandler;
 import com.agapsys.test.app.CsrfController;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -37,7 +44,12 @@ public class CsrfControllerTest {
 	
 	@BeforeClass
 	public static void beforeClass() {
-		WebSecurity.init(new SessionCsrfSecurityManager(), "com.agapsys.test.app.CsrfController");
+		SessionCsrfSecurityManager securityManager = new SessionCsrfSecurityManager();
+		securityManager.setPathRules(new PathRules.Builder()
+			.secure("/static/**")
+			.build()
+		);
+		WebSecurity.init(securityManager, "com.agapsys.test.app.CsrfController");
 	}
 	
 	public static enum LoginType {
@@ -74,10 +86,12 @@ public class CsrfControllerTest {
 	
 	// INSTANCE SCOPE ==========================================================
 	private final ServletContainer sc;
+	private final DefaultSecurityMetrics metrics = new DefaultSecurityMetrics();
 	
 	public CsrfControllerTest() {
 		sc = new ServletContainerBuilder()
 			.registerController(CsrfController.class)
+			.registerFilter(SessionWriteCounter.class, "/*")
 			.registerFilter(WebSecurityFilter.class, "/*")
 			.setErrorHandler(new StacktraceErrorHandler())
 			.build();
@@ -85,12 +99,14 @@ public class CsrfControllerTest {
 	
 	@Before
 	public void before() {
+		WebSecurity.getSecurityManager().setMetrics(metrics);
 		sc.startServer();
 	}
 	
 	@After
 	public void after() {
 		sc.stopServer();
+		WebSecurity.getSecurityManager().setMetrics(null);
 	}
 	
 	@Test
@@ -206,5 +222,139 @@ public class CsrfControllerTest {
 		TestUtils.assertStringResponse(200, "OK", resp);
 		// ---------------------------------------------------------------------
 	}
+	
+	@Test
+	public void staticResourceTest() {
+		HttpResponse.StringResponse resp;
+		HttpClient client;
+		String uri = "/static/js/app.js"; // Allowed requests reach the default servlet (which responds 404/405)
+		
+		// Unlogged access -----------------------------------------------------
+		resp = sc.doRequest(new HttpGet(uri));
+		TestUtils.assertStatus(401, resp);
+		// ---------------------------------------------------------------------
+		
+		// Browser GET carries no CSRF token -----------------------------------
+		client = doLogin(sc, LoginType.SIMPLE, false);
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(404, resp);
+		// ---------------------------------------------------------------------
+		
+		// Unsafe methods still require a CSRF token ---------------------------
+		resp = sc.doRequest(client, new HttpDelete(uri));
+		TestUtils.assertStatus(403, resp);
+		
+		client = doLogin(sc, LoginType.SIMPLE, true);
+		resp = sc.doRequest(client, new HttpDelete(uri));
+		TestUtils.assertStatus(405, resp);
+		// ---------------------------------------------------------------------
+		
+		// Secured endpoints still check CSRF tokens on GET --------------------
+		client = doLogin(sc, LoginType.SIMPLE, false);
+		resp = sc.doRequest(client, new HttpGet(BASE_URL + "/securedGet"));
+		TestUtils.assertStatus(403, resp);
+		// ---------------------------------------------------------------------
+	}
+	
+	@Test
+	public void sessionWritesTest() {
+		HttpResponse.StringResponse resp;
+		
+		// Login stores user and token with a single write
+		SessionWriteCounter.WRITES.set(0);
+		HttpClient client = doLogin(sc, LoginType.SIMPLE, true);
+		Assert.assertEquals(1, SessionWriteCounter.WRITES.get());
+		
+		resp = sc.doRequest(client, new HttpGet(BASE_URL + "/securedGet"));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		Assert.assertEquals(1, SessionWriteCounter.WRITES.get());
+		
+		// Logout removes both with a single write
+		resp = sc.doRequest(client, new HttpGet(BASE_URL + "/logout"));
+		TestUtils.assertStatus(200, resp);
+		Assert.assertEquals(2, SessionWriteCounter.WRITES.get());
+		
+		resp = sc.doRequest(client, new HttpGet(BASE_URL + "/securedGet"));
+		TestUtils.assertStatus(401, resp);
+	}
+	
+	@Test
+	public void metricsTest() {
+		HttpResponse.StringResponse resp;
+		String uri = BASE_URL + "/extraSecuredGet";
+		
+		resp = sc.doRequest(new HttpGet(uri));
+		TestUtils.assertStatus(401, resp);
+		
+		resp = sc.doRequest(doLogin(sc, LoginType.SIMPLE, true), new HttpGet(uri));
+		TestUtils.assertStatus(403, resp);
+		Assert.assertEquals(0, metrics.getCsrfMismatchCount());
+		
+		// Missing token rejects the request even though user has required role
+		resp = sc.doRequest(doLogin(sc, LoginType.EXTRA, false), new HttpGet(uri));
+		TestUtils.assertStatus(403, resp);
+		Assert.assertEquals(1, metrics.getCsrfMismatchCount());
+		
+		HttpClient client = doLogin(sc, LoginType.EXTRA, true);
+		long requestCount = metrics.getRequestCount();
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		
+		RoleRequirement requirement = RoleRequirement.of("ROLE");
+		Assert.assertEquals(1, metrics.getUnauthorizedCount());
+		Assert.assertEquals(2, metrics.getForbiddenCount());
+		Assert.assertEquals(1, metrics.getCsrfMismatchCount());
+		Assert.assertEquals(1, metrics.getAllowedChecks(requirement));
+		Assert.assertEquals(3, metrics.getDeniedChecks(requirement));
+		Assert.assertTrue(metrics.getCheckedRequirements().contains(requirement));
+		
+		// Every request passing through the filter is counted
+		Assert.assertEquals(requestCount + 1, metrics.getRequestCount());
+		Assert.assertTrue(metrics.getRequestPercentileNanos(99) > 0);
+		Assert.assertTrue(metrics.getUserLookupCount() >= 3);
+	}
+	
+	@Test
+	public void csrfMismatchMetricsTest() {
+		HttpResponse.StringResponse resp;
+		String uri = BASE_URL + "/securedGet";
+		
+		// Unauthenticated requests carry no session token to mismatch
+		resp = sc.doRequest(new HttpGet(uri));
+		TestUtils.assertStatus(401, resp);
+		Assert.assertEquals(0, metrics.getCsrfMismatchCount());
+		
+		resp = sc.doRequest(doLogin(sc, LoginType.SIMPLE, false), new HttpGet(uri));
+		TestUtils.assertStatus(403, resp);
+		Assert.assertEquals(1, metrics.getCsrfMismatchCount());
+		
+		resp = sc.doRequest(doLogin(sc, LoginType.ADMIN, false), new HttpGet(uri));
+		TestUtils.assertStatus(403, resp);
+		Assert.assertEquals(2, metrics.getCsrfMismatchCount());
+		
+		resp = sc.doRequest(doLogin(sc, LoginType.SIMPLE, true), new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		Assert.assertEquals(2, metrics.getCsrfMismatchCount());
+		Assert.assertEquals(2, metrics.getForbiddenCount());
+	}
+	
+	@Test
+	public void jmxMetricsTest() throws JMException {
+		HttpResponse.StringResponse resp;
+		
+		resp = sc.doRequest(doLogin(sc, LoginType.SIMPLE, false), new HttpGet(BASE_URL + "/securedGet"));
+		TestUtils.assertStatus(403, resp);
+		
+		JmxSecurityMetricsExporter exporter = new JmxSecurityMetricsExporter(metrics);
+		exporter.register();
+		try {
+			Object forbiddenCount = ManagementFactory.getPlatformMBeanServer().getAttribute(exporter.getObjectName(), "ForbiddenCount");
+			Object csrfMismatchCount = ManagementFactory.getPlatformMBeanServer().getAttribute(exporter.getObjectName(), "CsrfMismatchCount");
+			Assert.assertEquals(1L, forbiddenCount);
+			Assert.assertEquals(1L, csrfMismatchCount);
+		} finally {
+			exporter.unregister();
+		}
+	}
 	// =========================================================================
 }
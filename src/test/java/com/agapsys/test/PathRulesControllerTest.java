@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.http.HttpClient;
+import com.agapsys.http.HttpGet;
+import com.agapsys.http.HttpResponse;
+import com.agapsys.security.web.DefaultSecurityMetrics;
+import com.agapsys.security.web.DenialMode;
+import com.agapsys.security.web.PathRules;
+import com.agapsys.security.web.SessionSecurityManager;
+import com.agapsys.security.web.WebSecurity;
+import com.agapsys.security.web.WebSecurityFilter;
+import com.agapsys.sevlet.container.ServletContainer;
+import com.agapsys.sevlet.container.StacktraceErrorHandler;
+import com.agapsys.test.app.RcfEndpointMapper;
+import com.agapsys.test.app.RulesController;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PathRulesControllerTest {
+	// CLASS SCOPE =============================================================
+	private static final String BASE_URL = "/rules";
+	
+	@BeforeClass
+	public static void beforeClass() {
+		SessionSecurityManager securityManager = new SessionSecurityManager();
+		securityManager.setPathRules(new PathRules.Builder()
+			.permit("/static/public/**")
+			.secure("/static/**", "ROLE")
+			.build()
+		);
+		WebSecurity.init(securityManager, "com.agapsys.test.app.RulesController");
+		WebSecurity.registerEndpoints(new RcfEndpointMapper());
+	}
+	
+	private static HttpClient doLogin(ServletContainer sc, String action) {
+		HttpClient client = new HttpClient();
+		sc.doRequest(client, new HttpGet(BASE_URL + "/" + action));
+		return client;
+	}
+	// =========================================================================
+	
+	// INSTANCE SCOPE ==========================================================
+	private ServletContainer sc;
+	
+	@Before
+	public void before() {
+		sc = new ServletContainerBuilder()
+			.registerController(RulesController.class)
+			.registerFilter(WebSecurityFilter.class, "/*")
+			.setErrorHandler(new StacktraceErrorHandler())
+			.build();
+		sc.startServer();
+	}
+	
+	@After
+	public void after() {
+		sc.stopServer();
+	}
+	
+	@Test
+	public void endpointRulesTest() {
+		HttpResponse.StringResponse resp;
+		PathRules rules = WebSecurity.getSecurityManager().getPathRules();
+		
+		Assert.assertNull(rules.match("GET", BASE_URL + "/publicGet"));
+		Assert.assertNotNull(rules.match("GET", BASE_URL + "/securedGet"));
+		Assert.assertNotNull(rules.match("GET", BASE_URL + "/extraSecuredGet"));
+		
+		// Rules given before endpoints were registered are kept
+		Assert.assertTrue(rules.match("GET", "/static/public/index.html").isPublic());
+		
+		// Request is rejected by the filter, so it does not reach the controller
+		resp = sc.doRequest(new HttpGet(BASE_URL + "/securedGet"));
+		TestUtils.assertStatus(401, resp);
+		
+		// Endpoint rules only require authentication: roles are still checked by secured code
+		HttpClient client = doLogin(sc, "doSimpleLogin");
+		resp = sc.doRequest(client, new HttpGet(BASE_URL + "/securedGet"));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		resp = sc.doRequest(client, new HttpGet(BASE_URL + "/extraSecuredGet"));
+		TestUtils.assertStatus(403, resp);
+	}
+	
+	@Test
+	public void pathRulesTest() {
+		HttpResponse.StringResponse resp;
+		HttpClient client;
+		String uri = "/static/js/app.js"; // Rejected requests never reach the container (which would respond 404)
+		
+		// Unlogged access -----------------------------------------------------
+		resp = sc.doRequest(new HttpGet(uri));
+		TestUtils.assertStatus(401, resp);
+		resp = sc.doRequest(new HttpGet("/static/public/index.html"));
+		TestUtils.assertStatus(404, resp);
+		// ---------------------------------------------------------------------
+		
+		// Simple user ---------------------------------------------------------
+		client = doLogin(sc, "doSimpleLogin");
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(403, resp);
+		// ---------------------------------------------------------------------
+		
+		// Extra user ----------------------------------------------------------
+		client = doLogin(sc, "doExtraLogin");
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(404, resp);
+		// ---------------------------------------------------------------------
+		
+		// Admin user ---------------------------------------------------------
+		client = doLogin(sc, "doAdminLogin");
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(404, resp);
+		// ---------------------------------------------------------------------
+	}
+	
+	@Test
+	public void sessionlessTest() {
+		HttpResponse.StringResponse resp;
+		DefaultSecurityMetrics metrics = new DefaultSecurityMetrics();
+		WebSecurity.getSecurityManager().setMetrics(metrics);
+		
+		try {
+			// Requests rejected by path rules never create nor access a session
+			for (DenialMode denialMode : DenialMode.values()) {
+				WebSecurity.getSecurityManager().setDenialMode(denialMode);
+				
+				resp = sc.doRequest(new HttpGet(BASE_URL + "/securedGet"));
+				TestUtils.assertStatus(401, resp);
+				Assert.assertNull(resp.getFirstHeader("Set-Cookie"));
+				
+				resp = sc.doRequest(new HttpGet("/static/js/app.js"));
+				TestUtils.assertStatus(401, resp);
+				
+				resp = sc.doRequest(new HttpGet("/static/public/index.html"));
+				TestUtils.assertStatus(404, resp);
+			}
+			
+			Assert.assertEquals(0, metrics.getSessionCreatedCount());
+			Assert.assertEquals(0, metrics.getSessionAccessCount());
+		} finally {
+			WebSecurity.getSecurityManager().setDenialMode(DenialMode.STACK_TRACE);
+			WebSecurity.getSecurityManager().setMetrics(null);
+		}
+	}
+	// =========================================================================
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.security.web.PathRules;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PathRulesTest {
+	// INSTANCE SCOPE ==========================================================
+	private static String match(PathRules rules, String method, String path) {
+		PathRules.Rule rule = rules.match(method, path);
+		return rule == null ? null : rule.getPattern();
+	}
+
+	@Test
+	public void matchTest() {
+		PathRules rules = new PathRules.Builder()
+			.secure("/admin/**", "ADMIN")
+			.permit("/admin/login")
+			.secure("/api/*/items", "USER")
+			.secure(new String[] {"POST", "DELETE"}, "/api/**", "WRITER")
+			.secure("/files/**/readme")
+			.permit("/**")
+			.build();
+
+		Assert.assertEquals("/admin/**", match(rules, "GET", "/admin"));
+		Assert.assertEquals("/admin/**", match(rules, "GET", "/admin/users/1"));
+		Assert.assertEquals("/admin/login", match(rules, "GET", "/admin/login"));
+		Assert.assertEquals("/admin/login", match(rules, "GET", "//admin/login/"));
+		Assert.assertEquals("/api/*/items", match(rules, "GET", "/api/v1/items"));
+		Assert.assertEquals("/api/*/items", match(rules, "POST", "/api/v1/items"));
+		Assert.assertEquals("/api/**", match(rules, "POST", "/api/v1/orders"));
+		Assert.assertEquals("/**", match(rules, "GET", "/api/v1/orders"));
+		Assert.assertEquals("/**", match(rules, "GET", "/"));
+		Assert.assertEquals("/files/**/readme", match(rules, "GET", "/files/readme"));
+		Assert.assertEquals("/files/**/readme", match(rules, "GET", "/files/a/b/readme"));
+		Assert.assertEquals("/**", match(rules, "GET", "/files/a/b/readme.txt"));
+
+		// Servlet path and path info are matched as a single path
+		Assert.assertEquals("/admin/login", rules.match("GET", "/admin", "/login").getPattern());
+		Assert.assertEquals("/admin/**", rules.match("GET", "/adm", "in/login2").getPattern());
+
+		Assert.assertTrue(rules.match("GET", "/").isPublic());
+		Assert.assertEquals(0, rules.match("GET", "/files/x/readme").getRequirement().getRoles().length);
+		Assert.assertNull(PathRules.EMPTY.match("GET", "/admin"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void partialWildcardTest() {
+		new PathRules.Builder().secure("/static/*.js", "ROLE");
+	}
+	// =========================================================================
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.security.web.RequestContext;
+import com.agapsys.security.web.RequestContextCarrier;
+import com.agapsys.security.web.ScopedContextCarrier;
+import com.agapsys.security.web.ThreadLocalContextCarrier;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RequestContextCarrierTest {
+	// INSTANCE SCOPE ==========================================================
+	@Test
+	public void threadLocalTest() {
+		RequestContextCarrier carrier = new ThreadLocalContextCarrier();
+		RequestContext threadContext = carrier.getContext();
+
+		// Thread context is reused by every scope
+		RequestContext context = carrier.openScope();
+		Assert.assertSame(threadContext, context);
+		carrier.closeScope(context);
+		Assert.assertSame(threadContext, carrier.openScope());
+		carrier.closeScope(threadContext);
+
+		// Detached context is replaced
+		context = carrier.openScope();
+		carrier.detachScope(context);
+		Assert.assertNotSame(context, carrier.getContext());
+	}
+
+	@Test
+	public void scopedTest() {
+		RequestContextCarrier carrier = new ScopedContextCarrier();
+		RequestContext unscoped = carrier.getContext();
+		Assert.assertNotNull(unscoped);
+
+		RequestContext outer = carrier.openScope();
+		Assert.assertNotSame(unscoped, outer);
+		Assert.assertSame(outer, carrier.getContext());
+
+		// Nested scope
+		RequestContext inner = carrier.openScope();
+		Assert.assertNotSame(outer, inner);
+		Assert.assertSame(inner, carrier.getContext());
+		carrier.closeScope(inner);
+		Assert.assertSame(outer, carrier.getContext());
+
+		// Scopes must be closed in order
+		RequestContext other = carrier.openScope();
+		try {
+			carrier.closeScope(outer);
+			Assert.fail();
+		} catch (IllegalStateException ex) {}
+		carrier.closeScope(other);
+
+		carrier.closeScope(outer);
+		Assert.assertSame(unscoped, carrier.getContext());
+
+		// Each scope gets its own context
+		RequestContext context = carrier.openScope();
+		Assert.assertNotSame(outer, context);
+		carrier.detachScope(context);
+		Assert.assertSame(unscoped, carrier.getContext());
+
+		// Binding
+		RequestContext previous = carrier.bind(context);
+		Assert.assertNull(previous);
+		Assert.assertSame(context, carrier.getContext());
+		carrier.restore(previous);
+		Assert.assertSame(unscoped, carrier.getContext());
+	}
+	// =========================================================================
+}
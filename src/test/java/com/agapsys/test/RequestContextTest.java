@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.security.web.AttributeService;
+import com.agapsys.security.web.RequestContext;
+import com.agapsys.security.web.WebSecurityFilter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.http.HttpServletRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RequestContextTest {
+	// CLASS SCOPE =============================================================
+	/** Creates a request without headers, cookies or session (registered security manager may be any). */
+	private static HttpServletRequest newRequest() {
+		return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				return method.getReturnType() == boolean.class ? false : null;
+			}
+		});
+	}
+
+	/** Runs given task in another thread and waits for it. */
+	private static void runInOtherThread(Runnable task) throws InterruptedException {
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		Thread thread = new Thread(task);
+		thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			@Override
+			public void uncaughtException(Thread t, Throwable e) {
+				failure.set(e);
+			}
+		});
+		thread.start();
+		thread.join();
+
+		if (failure.get() != null)
+			throw new AssertionError(failure.get());
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private final AttributeService attributeService = AttributeService.getInstance();
+
+	@After
+	public void after() {
+		attributeService.destroyAttributes();
+	}
+
+	@Test
+	public void attributesTest() throws InterruptedException {
+		HttpServletRequest request = newRequest();
+		attributeService.setAttribute(WebSecurityFilter.ATTR_HTTP_REQUEST, request);
+		attributeService.setAttribute("custom", "value");
+
+		RequestContext context = attributeService.getRequestContext();
+		Assert.assertSame(request, context.getRequest());
+		Assert.assertSame(request, attributeService.getAttribute(WebSecurityFilter.ATTR_HTTP_REQUEST));
+		Assert.assertEquals("value", attributeService.getAttribute("custom"));
+
+		// Each thread has its own context
+		runInOtherThread(new Runnable() {
+			@Override
+			public void run() {
+				Assert.assertNull(attributeService.getRequestContext().getRequest());
+				Assert.assertNull(attributeService.getAttribute("custom"));
+			}
+		});
+
+		attributeService.destroyAttribute("custom");
+		Assert.assertNull(attributeService.getAttribute("custom"));
+		Assert.assertSame(request, context.getRequest());
+
+		attributeService.destroyAttributes();
+		Assert.assertNull(context.getRequest());
+		Assert.assertNull(context.getCurrentUser());
+	}
+
+	@Test
+	public void captureTest() throws InterruptedException {
+		final HttpServletRequest request = newRequest();
+		attributeService.setAttribute(WebSecurityFilter.ATTR_HTTP_REQUEST, request);
+		attributeService.setAttribute("custom", "value");
+
+		final RequestContext captured = attributeService.capture();
+		Assert.assertNotSame(attributeService.getRequestContext(), captured);
+
+		// Copy is independent of the original context
+		attributeService.destroyAttributes();
+		Assert.assertSame(request, captured.getRequest());
+
+		runInOtherThread(new Runnable() {
+			@Override
+			public void run() {
+				RequestContext previous = attributeService.bind(captured);
+
+				try {
+					Assert.assertSame(request, attributeService.getAttribute(WebSecurityFilter.ATTR_HTTP_REQUEST));
+					Assert.assertEquals("value", attributeService.getAttribute("custom"));
+				} finally {
+					attributeService.restore(previous);
+				}
+
+				Assert.assertNull(attributeService.getRequestContext().getRequest());
+			}
+		});
+	}
+	// =========================================================================
+}
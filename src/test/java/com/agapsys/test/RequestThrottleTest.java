@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.security.web.RequestThrottle;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import javax.servlet.http.HttpServletRequest;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RequestThrottleTest {
+	// CLASS SCOPE =============================================================
+	private static class ManualClockThrottle extends RequestThrottle {
+		private long now = 1000000;
+
+		private ManualClockThrottle(double rate, int burst, int denialCost) {
+			super(rate, burst, denialCost, 1024);
+		}
+
+		@Override
+		protected long currentTimeMillis() {
+			return now;
+		}
+	}
+
+	/** Identifies clients by the address forwarded by a trusted proxy. */
+	private static class ForwardedThrottle extends ManualClockThrottle {
+		private ForwardedThrottle(double rate, int burst, int denialCost) {
+			super(rate, burst, denialCost);
+		}
+
+		@Override
+		protected String getClientKey(HttpServletRequest request) {
+			String forwardedFor = request.getHeader("X-Forwarded-For");
+
+			if (forwardedFor == null)
+				return super.getClientKey(request);
+
+			return forwardedFor.substring(forwardedFor.lastIndexOf(',') + 1).trim();
+		}
+	}
+
+	private static HttpServletRequest newRequest(final String address, final String sessionId) {
+		return newRequest(address, sessionId, null);
+	}
+
+	private static HttpServletRequest newRequest(final String address, final String sessionId, final String forwardedFor) {
+		return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				switch (method.getName()) {
+					case "getRemoteAddr":
+						return address;
+
+					case "getRequestedSessionId":
+						return sessionId;
+
+					case "getHeader":
+						return args[0].equals("X-Forwarded-For") ? forwardedFor : null;
+
+					default:
+						throw new UnsupportedOperationException(method.getName());
+				}
+			}
+		});
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@Test
+	public void bucketTest() {
+		ManualClockThrottle throttle = new ManualClockThrottle(10, 5, 2);
+		HttpServletRequest first = newRequest("10.0.0.1", null);
+		HttpServletRequest second = newRequest("10.0.0.2", null);
+
+		for (int i = 0; i < 5; i++) {
+			Assert.assertTrue(throttle.tryAcquire(first));
+		}
+		Assert.assertFalse(throttle.tryAcquire(first));
+		Assert.assertTrue(throttle.tryAcquire(second));
+
+		// One token every 100 ms
+		throttle.now += 100;
+		Assert.assertTrue(throttle.tryAcquire(first));
+		Assert.assertFalse(throttle.tryAcquire(first));
+
+		// Denials are charged in addition to the request
+		throttle.now += 1000;
+		throttle.onDenied(second);
+		for (int i = 0; i < 3; i++) {
+			Assert.assertTrue(throttle.tryAcquire(second));
+		}
+		Assert.assertFalse(throttle.tryAcquire(second));
+
+		throttle.clear();
+		Assert.assertTrue(throttle.tryAcquire(first));
+	}
+
+	@Test
+	public void sessionTest() {
+		ManualClockThrottle throttle = new ManualClockThrottle(1, 2, 0);
+
+		// Session limit applies even if client address changes
+		Assert.assertTrue(throttle.tryAcquire(newRequest("10.0.0.1", "session")));
+		Assert.assertTrue(throttle.tryAcquire(newRequest("10.0.0.2", "session")));
+		Assert.assertFalse(throttle.tryAcquire(newRequest("10.0.0.3", "session")));
+		Assert.assertTrue(throttle.tryAcquire(newRequest("10.0.0.3", null)));
+	}
+
+	@Test
+	public void clientKeyTest() {
+		ManualClockThrottle throttle = new ManualClockThrottle(1, 1, 0);
+
+		// By default, all clients behind a proxy share its bucket
+		Assert.assertTrue(throttle.tryAcquire(newRequest("10.0.0.100", null, "192.168.0.1")));
+		Assert.assertFalse(throttle.tryAcquire(newRequest("10.0.0.100", null, "192.168.0.2")));
+
+		throttle = new ForwardedThrottle(1, 1, 1);
+		Assert.assertTrue(throttle.tryAcquire(newRequest("10.0.0.100", null, "192.168.0.1")));
+		Assert.assertTrue(throttle.tryAcquire(newRequest("10.0.0.100", null, "1.2.3.4, 192.168.0.2")));
+		Assert.assertFalse(throttle.tryAcquire(newRequest("10.0.0.100", null, "192.168.0.1")));
+
+		// Spoofed entries added by the client are ignored
+		Assert.assertFalse(throttle.tryAcquire(newRequest("10.0.0.100", null, "5.6.7.8, 192.168.0.1")));
+
+		// Denials are charged to the same key
+		throttle.now += 1000;
+		throttle.onDenied(newRequest("10.0.0.100", null, "192.168.0.1"));
+		Assert.assertFalse(throttle.tryAcquire(newRequest("10.0.0.100", null, "192.168.0.1")));
+		Assert.assertTrue(throttle.tryAcquire(newRequest("10.0.0.100", null, "192.168.0.2")));
+	}
+	// =========================================================================
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.security.web.FileRevocationTransport;
+import com.agapsys.security.web.InMemoryRevocationTransport;
+import com.agapsys.security.web.RevocationList;
+import com.agapsys.security.web.RevocationTransport;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RevocationListTest {
+	// INSTANCE SCOPE ==========================================================
+	@Test
+	public void clusterTest() {
+		RevocationTransport transport = new InMemoryRevocationTransport();
+		RevocationList node1 = new RevocationList(transport, RevocationList.DEFAULT_FILTER_BITS, 0);
+		RevocationList node2 = new RevocationList(transport, RevocationList.DEFAULT_FILTER_BITS, 0);
+
+		node1.revokeSession("session-1");
+		node2.revokeUser("user-1");
+
+		for (RevocationList node : new RevocationList[] {node1, node2}) {
+			Assert.assertTrue(node.isSessionRevoked("session-1"));
+			Assert.assertFalse(node.isSessionRevoked("session-2"));
+			Assert.assertTrue(node.isUserRevoked("user-1"));
+			Assert.assertFalse(node.isUserRevoked("session-1"));
+		}
+
+		node1.restoreUser("user-1");
+		Assert.assertFalse(node1.isUserRevoked("user-1"));
+		Assert.assertFalse(node2.isUserRevoked("user-1"));
+		Assert.assertEquals(1, node2.getRevokedCount());
+
+		// A node joining later reads the whole log
+		RevocationList node3 = new RevocationList(transport, 64, 0);
+		Assert.assertTrue(node3.isSessionRevoked("session-1"));
+		Assert.assertFalse(node3.isUserRevoked("user-1"));
+	}
+
+	@Test
+	public void syncIntervalTest() {
+		final long[] now = {0};
+		RevocationTransport transport = new InMemoryRevocationTransport();
+		RevocationList node1 = new RevocationList(transport);
+		RevocationList node2 = new RevocationList(transport) {
+			@Override
+			protected long currentTimeMillis() {
+				return now[0];
+			}
+		};
+
+		Assert.assertFalse(node2.isSessionRevoked("session-1"));
+		node1.revokeSession("session-1");
+		Assert.assertFalse(node2.isSessionRevoked("session-1"));
+
+		now[0] = RevocationList.DEFAULT_SYNC_INTERVAL;
+		Assert.assertTrue(node2.isSessionRevoked("session-1"));
+	}
+
+	@Test
+	public void sessionExpirationTest() {
+		final long[] now = {0};
+		RevocationTransport transport = new InMemoryRevocationTransport();
+		RevocationList node1 = new RevocationList(transport, 64, 0) {
+			@Override
+			protected long currentTimeMillis() {
+				return now[0];
+			}
+		};
+		node1.setSessionRevocationTtl(1000);
+
+		node1.revokeUser("user-1");
+		for (int i = 0; i < 100; i++) {
+			node1.revokeSession("session-" + i);
+		}
+		Assert.assertEquals(101, node1.getRevokedCount());
+
+		now[0] = 999;
+		Assert.assertTrue(node1.isSessionRevoked("session-0"));
+
+		// Expired revocations are dropped on sync; user revocations are kept
+		now[0] = 1000;
+		Assert.assertFalse(node1.isSessionRevoked("session-0"));
+		Assert.assertEquals(1, node1.getRevokedCount());
+		Assert.assertTrue(node1.isUserRevoked("user-1"));
+
+		node1.revokeSession("session-new");
+		Assert.assertTrue(node1.isSessionRevoked("session-new"));
+
+		// A node joining later skips expired entries
+		RevocationList node2 = new RevocationList(transport, 64, 0) {
+			@Override
+			protected long currentTimeMillis() {
+				return now[0];
+			}
+		};
+		Assert.assertTrue(node2.isSessionRevoked("session-new"));
+		Assert.assertFalse(node2.isSessionRevoked("session-1"));
+		Assert.assertEquals(2, node2.getRevokedCount());
+
+		// Entries written without expiration time expire after local TTL
+		transport.publish("+session:legacy");
+		node2.setSessionRevocationTtl(500);
+		Assert.assertTrue(node2.isSessionRevoked("legacy"));
+		now[0] += 500;
+		Assert.assertFalse(node2.isSessionRevoked("legacy"));
+
+		try {
+			node1.revokeSession("session\t1");
+			Assert.fail();
+		} catch (IllegalArgumentException ex) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void fileTransportTest() throws IOException {
+		File file = File.createTempFile("revocations", ".log");
+		file.deleteOnExit();
+
+		FileRevocationTransport transport = new FileRevocationTransport(file);
+		List<String> keys = new ArrayList<>();
+
+		transport.publish("a");
+		transport.publish("b");
+		long position = transport.read(0, keys);
+		Assert.assertEquals(2, keys.size());
+
+		// Incomplete lines are not consumed
+		try (FileOutputStream out = new FileOutputStream(file, true)) {
+			out.write("c".getBytes(StandardCharsets.UTF_8));
+		}
+
+		keys.clear();
+		Assert.assertEquals(position, transport.read(position, keys));
+		Assert.assertTrue(keys.isEmpty());
+
+		try (FileOutputStream out = new FileOutputStream(file, true)) {
+			out.write("\n".getBytes(StandardCharsets.UTF_8));
+		}
+
+		transport.read(position, keys);
+		Assert.assertEquals("c", keys.get(0));
+
+		RevocationList node = new RevocationList(transport, RevocationList.DEFAULT_FILTER_BITS, 0);
+		new RevocationList(new FileRevocationTransport(file), RevocationList.DEFAULT_FILTER_BITS, 0).revokeUser("user-1");
+		Assert.assertTrue(node.isUserRevoked("user-1"));
+	}
+	// =========================================================================
+}
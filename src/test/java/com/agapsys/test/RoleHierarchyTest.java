@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.security.web.AttributeService;
+import com.agapsys.security.web.AuthorizationCache;
+import com.agapsys.security.web.BasicUser;
+import com.agapsys.security.web.RoleHierarchy;
+import com.agapsys.security.web.RoleMask;
+import com.agapsys.security.web.User;
+import com.agapsys.security.web.WebSecurityFilter;
+import com.agapsys.security.web.WebSecurityManager;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RoleHierarchyTest {
+	// CLASS SCOPE =============================================================
+	/** Security manager holding a single user outside requests. */
+	private static class StaticSecurityManager extends WebSecurityManager {
+		private volatile User user;
+
+		@Override
+		protected User loadCurrentUser() {
+			return user;
+		}
+
+		@Override
+		protected void storeCurrentUser(User user) {
+			this.user = user;
+		}
+
+		@Override
+		protected void removeCurrentUser() {
+			this.user = null;
+		}
+	}
+
+	/** User which is not a RoleMaskProvider. */
+	private static class PlainUser implements User {
+		private final Set<String> roles;
+
+		private PlainUser(String... roles) {
+			this.roles = new LinkedHashSet<>(Arrays.asList(roles));
+		}
+
+		@Override
+		public Set<String> getRoles() {
+			return roles;
+		}
+
+		@Override
+		public boolean isAdmin() {
+			return false;
+		}
+	}
+
+	/** Binds a request, so role masks are cached during the request. */
+	private static void bindRequest() {
+		Object request = Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+
+		AttributeService attributeService = AttributeService.getInstance();
+		attributeService.destroyAttributes();
+		attributeService.setAttribute(WebSecurityFilter.ATTR_HTTP_REQUEST, request);
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@After
+	public void after() {
+		AttributeService.getInstance().destroyAttributes();
+	}
+
+	@Test
+	public void closureTest() {
+		RoleHierarchy hierarchy = RoleHierarchy.parse("H_ADMIN > H_EDITOR > H_VIEWER, H_ADMIN > H_AUDITOR, H_VIEWER > H_EDITOR");
+
+		Assert.assertEquals(new LinkedHashSet<>(Arrays.asList("H_EDITOR", "H_VIEWER", "H_AUDITOR")), hierarchy.getImpliedRoles("H_ADMIN"));
+		Assert.assertEquals(Collections.singleton("H_VIEWER"), hierarchy.getImpliedRoles("H_EDITOR"));
+		Assert.assertEquals(Collections.singleton("H_EDITOR"), hierarchy.getImpliedRoles("H_VIEWER"));
+		Assert.assertTrue(hierarchy.getImpliedRoles("H_AUDITOR").isEmpty());
+
+		Assert.assertEquals(RoleMask.of("H_ADMIN", "H_EDITOR", "H_VIEWER", "H_AUDITOR"), hierarchy.expand(RoleMask.of("H_ADMIN")));
+
+		// Masks implying no other roles are not copied
+		RoleMask mask = RoleMask.of("H_AUDITOR", "H_OTHER");
+		Assert.assertSame(mask, hierarchy.expand(mask));
+
+		try {
+			RoleHierarchy.parse("H_ADMIN");
+			Assert.fail();
+		} catch (IllegalArgumentException ex) {}
+	}
+
+	@Test
+	public void managerTest() {
+		StaticSecurityManager securityManager = new StaticSecurityManager();
+		securityManager.setCurrentUser(new BasicUser("editor", Collections.singleton("H_EDITOR"), false));
+
+		Assert.assertFalse(securityManager.isAllowed(new String[] {"H_VIEWER"}));
+
+		securityManager.setRoleHierarchy(new RoleHierarchy.Builder().include("H_EDITOR", "H_VIEWER").build());
+		Assert.assertTrue(securityManager.isAllowed(new String[] {"H_VIEWER"}));
+		Assert.assertTrue(securityManager.isAllowed(new String[] {"H_EDITOR", "H_VIEWER"}));
+		Assert.assertFalse(securityManager.isAllowed(new String[] {"H_ADMIN"}));
+
+		// Changing the hierarchy discards cached decisions
+		securityManager.setAuthorizationCache(new AuthorizationCache());
+		securityManager.setRoleHierarchy(null);
+		Assert.assertFalse(securityManager.isAllowed(new String[] {"H_VIEWER"}));
+	}
+
+	@Test
+	public void lateRoleTest() {
+		StaticSecurityManager securityManager = new StaticSecurityManager();
+		securityManager.setCurrentUser(new PlainUser("LATE_ROLE"));
+		bindRequest();
+
+		// Mask of current request is built before "LATE_ROLE" is required anywhere
+		Assert.assertNotNull(securityManager.checkAccess("LATE_OTHER"));
+		Assert.assertNull(securityManager.checkAccess("LATE_ROLE"));
+		Assert.assertNull(securityManager.checkAccess("LATE_ROLE"));
+
+		// Expanded masks are rebuilt as well
+		securityManager.setRoleHierarchy(new RoleHierarchy.Builder().include("LATE_EDITOR", "LATE_VIEWER").build());
+		securityManager.setCurrentUser(new PlainUser("LATE_EDITOR", "LATE_AUDITOR"));
+		bindRequest();
+
+		Assert.assertNull(securityManager.checkAccess("LATE_VIEWER"));
+		Assert.assertNull(securityManager.checkAccess("LATE_AUDITOR"));
+		Assert.assertNull(securityManager.checkAccess("LATE_VIEWER"));
+		Assert.assertNotNull(securityManager.checkAccess("LATE_ADMIN"));
+	}
+	// =========================================================================
+}
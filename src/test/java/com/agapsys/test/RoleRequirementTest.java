@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.security.web.BasicUser;
+import com.agapsys.security.web.RoleMask;
+import com.agapsys.security.web.RoleRegistry;
+import com.agapsys.security.web.RoleRequirement;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RoleRequirementTest {
+	// INSTANCE SCOPE ==========================================================
+	@Test
+	public void internTest() {
+		RoleRequirement requirement = RoleRequirement.of("A", "B");
+
+		Assert.assertSame(requirement, RoleRequirement.of("A", "B"));
+		Assert.assertSame(requirement, RoleRequirement.of("B", "A"));
+		Assert.assertNotSame(requirement, RoleRequirement.of("A"));
+		Assert.assertNotSame(requirement, RoleRequirement.of("A", "A"));
+		Assert.assertSame(RoleRequirement.of(), RoleRequirement.of(new String[0]));
+
+		// Forces table growth
+		for (int i = 0; i < 200; i++) {
+			RoleRequirement.of("ROLE_" + i);
+		}
+
+		Assert.assertSame(requirement, RoleRequirement.of("B", "A"));
+	}
+
+	@Test
+	public void matchTest() {
+		RoleRequirement none = RoleRequirement.of();
+		RoleRequirement a = RoleRequirement.of("A");
+		RoleRequirement ab = RoleRequirement.of("A", "B");
+
+		Assert.assertTrue(none.isSatisfiedBy(RoleMask.EMPTY));
+		Assert.assertFalse(a.isSatisfiedBy(RoleMask.EMPTY));
+		Assert.assertTrue(a.isSatisfiedBy(RoleMask.of("A")));
+		Assert.assertFalse(ab.isSatisfiedBy(RoleMask.of("A")));
+		Assert.assertTrue(ab.isSatisfiedBy(RoleMask.of("B", "C", "A")));
+
+		// Roles spanning multiple words
+		String[] roles = new String[130];
+		for (int i = 0; i < roles.length; i++) {
+			roles[i] = "WIDE_" + i;
+		}
+
+		RoleRequirement wide = RoleRequirement.of(roles[0], roles[129]);
+		Assert.assertTrue(wide.isSatisfiedBy(RoleMask.of(roles)));
+		Assert.assertFalse(wide.isSatisfiedBy(RoleMask.of(roles[0], roles[64])));
+		Assert.assertEquals(RoleMask.of("A", "B"), RoleMask.of("B", "A"));
+		Assert.assertEquals(RoleMask.of("A", "B").hashCode(), RoleMask.of("B", "A").hashCode());
+	}
+
+	@Test
+	public void lookupTest() {
+		RoleRegistry registry = RoleRegistry.getInstance();
+		RoleRequirement known = RoleRequirement.of("LOOKUP_KNOWN");
+		int size = registry.size();
+
+		// User roles unknown to any requirement are ignored and never registered
+		RoleMask mask = RoleMask.lookup(Arrays.asList("LOOKUP_KNOWN", "LOOKUP_UNKNOWN_1", null));
+		Assert.assertEquals(size, registry.size());
+		Assert.assertEquals(-1, registry.findIndex("LOOKUP_UNKNOWN_1"));
+		Assert.assertEquals(RoleMask.of("LOOKUP_KNOWN"), mask);
+		Assert.assertTrue(known.isSatisfiedBy(mask));
+		Assert.assertFalse(mask.isOutdated());
+
+		for (int i = 0; i < 100; i++) {
+			RoleMask.lookup(Arrays.asList("LOOKUP_UNKNOWN_" + i));
+		}
+		Assert.assertEquals(size, registry.size());
+
+		// A mask which ignored a role becomes outdated once that role is registered
+		BasicUser user = new BasicUser("user", Arrays.asList("LOOKUP_KNOWN", "LOOKUP_LATE"), false);
+		RoleMask userMask = user.getRoleMask();
+		Assert.assertSame(userMask, user.getRoleMask());
+
+		RoleRequirement late = RoleRequirement.of("LOOKUP_LATE");
+		Assert.assertTrue(userMask.isOutdated());
+		Assert.assertFalse(late.isSatisfiedBy(userMask));
+		Assert.assertTrue(late.isSatisfiedBy(user.getRoleMask()));
+		Assert.assertFalse(user.getRoleMask().isOutdated());
+
+		// Masks containing only known roles are never outdated
+		Assert.assertFalse(RoleMask.lookup(Arrays.asList("LOOKUP_KNOWN")).isOutdated());
+		Assert.assertSame(RoleMask.EMPTY, RoleMask.lookup(null));
+	}
+	// =========================================================================
+}
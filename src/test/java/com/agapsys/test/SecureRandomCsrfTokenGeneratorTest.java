@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.security.web.SecureRandomCsrfTokenGenerator;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SecureRandomCsrfTokenGeneratorTest {
+	// INSTANCE SCOPE ==========================================================
+	@Test
+	public void tokenTest() {
+		SecureRandomCsrfTokenGenerator generator = new SecureRandomCsrfTokenGenerator();
+		Assert.assertEquals(SecureRandomCsrfTokenGenerator.DEFAULT_ENTROPY_BYTES, generator.getEntropyBytes());
+		Assert.assertEquals(43, generator.getTokenLength());
+
+		Set<String> tokens = new HashSet<>();
+
+		for (int i = 0; i < 1000; i++) {
+			String token = generator.generateToken();
+
+			Assert.assertEquals(generator.getTokenLength(), token.length());
+			Assert.assertTrue(token, token.matches("[A-Za-z0-9_-]+"));
+			Assert.assertTrue(tokens.add(token));
+		}
+
+		generator = new SecureRandomCsrfTokenGenerator(16, 3);
+		Assert.assertEquals(22, generator.getTokenLength());
+		Assert.assertEquals(22, generator.generateToken().length());
+	}
+
+	@Test
+	public void poolTest() throws InterruptedException {
+		final SecureRandomCsrfTokenGenerator generator = new SecureRandomCsrfTokenGenerator(16, 4);
+		final Set<String> tokens = new HashSet<>();
+		Thread[] threads = new Thread[4];
+
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 500; j++) {
+						String token = generator.generateToken();
+
+						synchronized (tokens) {
+							tokens.add(token);
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		// Pooled instances must not produce the same sequence
+		Assert.assertEquals(threads.length * 500, tokens.size());
+	}
+
+	@Test
+	public void invalidArgumentsTest() {
+		try {
+			new SecureRandomCsrfTokenGenerator(15);
+			Assert.fail();
+		} catch (IllegalArgumentException ex) {
+			// Expected
+		}
+
+		try {
+			new SecureRandomCsrfTokenGenerator(16, 0);
+			Assert.fail();
+		} catch (IllegalArgumentException ex) {
+			// Expected
+		}
+	}
+	// =========================================================================
+}
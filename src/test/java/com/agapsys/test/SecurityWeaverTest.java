@@ -0,0 +1,201 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.security.web.NotAllowedException;
+import com.agapsys.security.web.SecurityWeaver;
+import com.agapsys.security.web.User;
+import com.agapsys.security.web.WebSecurity;
+import com.agapsys.security.web.WebSecurityManager;
+import com.agapsys.test.app.ExtraUser;
+import com.agapsys.test.app.SimpleUser;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class SecurityWeaverTest {
+	// CLASS SCOPE =============================================================
+	private static final String WOVEN_CLASS = "com.agapsys.test.app.WovenService";
+
+	/** Security manager holding a single user outside requests. */
+	private static class StaticSecurityManager extends WebSecurityManager {
+		private volatile User user;
+
+		@Override
+		protected User loadCurrentUser() {
+			return user;
+		}
+
+		@Override
+		protected void storeCurrentUser(User user) {
+			this.user = user;
+		}
+
+		@Override
+		protected void removeCurrentUser() {
+			this.user = null;
+		}
+	}
+
+	/** Loads woven classes from the output directory instead of delegating to the parent. */
+	private static class WovenClassLoader extends URLClassLoader {
+		private WovenClassLoader(File outputDirectory) throws IOException {
+			super(new URL[] {outputDirectory.toURI().toURL()}, SecurityWeaverTest.class.getClassLoader());
+		}
+
+		@Override
+		protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!name.equals(WOVEN_CLASS))
+				return super.loadClass(name, resolve);
+
+			Class<?> c = findLoadedClass(name);
+			return c != null ? c : findClass(name);
+		}
+
+		@Override
+		public URL getResource(String name) {
+			// Class file must be the one which is loaded
+			if (name.equals(WOVEN_CLASS.replace('.', '/') + ".class"))
+				return findResource(name);
+
+			return super.getResource(name);
+		}
+
+		private boolean isLoaded(String name) {
+			return findLoadedClass(name) != null;
+		}
+	}
+
+	private static File outputDirectory;
+	private static int  wovenMethods;
+
+	private static File copyClass(File outputDirectory, String className) throws IOException {
+		String path = className.replace('.', '/') + ".class";
+		File target = new File(outputDirectory, path);
+		target.getParentFile().mkdirs();
+
+		try (InputStream is = SecurityWeaverTest.class.getClassLoader().getResourceAsStream(path)) {
+			Files.copy(is, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		return target;
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws IOException {
+		outputDirectory = Files.createTempDirectory("woven").toFile();
+		copyClass(outputDirectory, WOVEN_CLASS);
+
+		File securityInfo = new File(outputDirectory, "META-INF/security.info");
+		securityInfo.getParentFile().mkdirs();
+		try (FileOutputStream out = new FileOutputStream(securityInfo)) {
+			out.write((WOVEN_CLASS + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+
+		SecurityWeaver.main(new String[] {outputDirectory.getAbsolutePath()});
+
+		// Weaving twice does not add checks twice
+		wovenMethods = SecurityWeaver.weave(outputDirectory, SecurityWeaverTest.class.getClassLoader(), Collections.singleton(WOVEN_CLASS));
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	private static Object invoke(Object target, String methodName) throws Exception {
+		try {
+			return target.getClass().getMethod(methodName).invoke(target);
+		} catch (InvocationTargetException ex) {
+			throw (Exception) ex.getCause();
+		}
+	}
+
+	@Test
+	public void weaveTest() throws Exception {
+		Assert.assertEquals(0, wovenMethods);
+
+		String index = new String(Files.readAllBytes(new File(outputDirectory, "META-INF/security.index").toPath()), StandardCharsets.UTF_8);
+		Assert.assertTrue(index.contains("class=" + WOVEN_CLASS + "\n"));
+		Assert.assertTrue(index.contains("roles=ROLE\n"));
+
+		// Index is found, so class is not instrumented again at runtime
+		StaticSecurityManager securityManager = new StaticSecurityManager();
+		WovenClassLoader classLoader = new WovenClassLoader(outputDirectory);
+		WebSecurity.init(classLoader, securityManager, WOVEN_CLASS);
+		Assert.assertFalse(classLoader.isLoaded(WOVEN_CLASS));
+
+		Object service = classLoader.loadClass(WOVEN_CLASS).newInstance();
+		Assert.assertEquals("OK", invoke(service, "publicGet"));
+
+		try {
+			invoke(service, "securedGet");
+			Assert.fail();
+		} catch (NotAllowedException ex) {
+			Assert.assertNull(ex.getUser());
+		}
+
+		securityManager.setCurrentUser(new SimpleUser());
+		try {
+			invoke(service, "securedGet");
+			Assert.fail();
+		} catch (NotAllowedException ex) {
+			Assert.assertNotNull(ex.getUser());
+		}
+
+		securityManager.setCurrentUser(new ExtraUser());
+		Assert.assertEquals("OK", invoke(service, "securedGet"));
+	}
+
+	@Test
+	public void staleIndexTest() throws Exception {
+		// Index lists the class, but class file was compiled again after weaving
+		File staleDirectory = Files.createTempDirectory("stale").toFile();
+		copyClass(staleDirectory, WOVEN_CLASS);
+
+		File index = new File(staleDirectory, "META-INF/security.index");
+		index.getParentFile().mkdirs();
+		Files.copy(new File(outputDirectory, "META-INF/security.index").toPath(), index.toPath());
+
+		// Class lacks the weaver mark, so it is instrumented at runtime
+		StaticSecurityManager securityManager = new StaticSecurityManager();
+		WovenClassLoader classLoader = new WovenClassLoader(staleDirectory);
+		WebSecurity.init(classLoader, securityManager, new String[0]);
+		Assert.assertTrue(classLoader.isLoaded(WOVEN_CLASS));
+
+		Object service = classLoader.loadClass(WOVEN_CLASS).newInstance();
+		Assert.assertEquals("OK", invoke(service, "publicGet"));
+
+		try {
+			invoke(service, "securedGet");
+			Assert.fail();
+		} catch (NotAllowedException ex) {
+			Assert.assertNull(ex.getUser());
+		}
+
+		securityManager.setCurrentUser(new ExtraUser());
+		Assert.assertEquals("OK", invoke(service, "securedGet"));
+	}
+	// =========================================================================
+}
@@ -18,6 +18,9 @@ package com.agapsys.test;
 import com.agapsys.http.HttpClient;
 import com.agapsys.http.HttpGet;
 import com.agapsys.http.HttpResponse;
+import com.agapsys.security.web.DefaultSecurityMetrics;
+import com.agapsys.security.web.DenialMode;
+import com.agapsys.security.web.RequestThrottle;
 import com.agapsys.security.web.SessionSecurityManager;
 import com.agapsys.security.web.WebSecurity;
 import com.agapsys.security.web.WebSecurityFilter;
@@ -25,6 +28,7 @@ import com.agapsys.sevlet.container.ServletContainer;
 import com.agapsys.sevlet.container.StacktraceErrorHandler;
 import com.agapsys.test.app.SessionController;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -170,5 +174,104 @@ public class SessionControllerTest {
 		TestUtils.assertStringResponse(200, "OK", resp);
 		// ---------------------------------------------------------------------
 	}
+	
+	@Test
+	public void denialModeTest() {
+		HttpResponse.StringResponse resp;
+		HttpClient client;
+		
+		for (DenialMode denialMode : DenialMode.values()) {
+			WebSecurity.getSecurityManager().setDenialMode(denialMode);
+			
+			try {
+				resp = sc.doRequest(new HttpGet(BASE_URL + "/extraSecuredGet"));
+				TestUtils.assertStatus(401, resp);
+				
+				client = doLogin(sc, LoginType.SIMPLE);
+				resp = sc.doRequest(client, new HttpGet(BASE_URL + "/extraSecuredGet"));
+				TestUtils.assertStatus(403, resp);
+				resp = sc.doRequest(client, new HttpGet(BASE_URL + "/securedGet"));
+				TestUtils.assertStringResponse(200, "OK", resp);
+			} finally {
+				WebSecurity.getSecurityManager().setDenialMode(DenialMode.STACK_TRACE);
+			}
+		}
+	}
+	
+	@Test
+	public void throttleTest() {
+		HttpResponse.StringResponse resp;
+		
+		// One request every 1000 seconds: no tokens are refilled during the test
+		WebSecurity.getSecurityManager().setRequestThrottle(new RequestThrottle(0.001, 10, 4, 64));
+		
+		try {
+			for (int i = 0; i < 2; i++) {
+				resp = sc.doRequest(new HttpGet(BASE_URL + "/publicGet"));
+				TestUtils.assertStringResponse(200, "OK", resp);
+			}
+			
+			// Denial costs 1 + 4 tokens
+			resp = sc.doRequest(new HttpGet(BASE_URL + "/securedGet"));
+			TestUtils.assertStatus(401, resp);
+			
+			for (int i = 0; i < 3; i++) {
+				resp = sc.doRequest(new HttpGet(BASE_URL + "/publicGet"));
+				TestUtils.assertStringResponse(200, "OK", resp);
+			}
+			
+			resp = sc.doRequest(new HttpGet(BASE_URL + "/publicGet"));
+			TestUtils.assertStatus(429, resp);
+		} finally {
+			WebSecurity.getSecurityManager().setRequestThrottle(null);
+		}
+	}
+	
+	@Test
+	public void sessionlessTest() {
+		HttpResponse.StringResponse resp;
+		DefaultSecurityMetrics metrics = new DefaultSecurityMetrics();
+		WebSecurity.getSecurityManager().setMetrics(metrics);
+		
+		try {
+			// Anonymous requests never create nor access a session ------------
+			for (DenialMode denialMode : DenialMode.values()) {
+				WebSecurity.getSecurityManager().setDenialMode(denialMode);
+				
+				resp = sc.doRequest(new HttpGet(BASE_URL + "/publicGet"));
+				TestUtils.assertStringResponse(200, "OK", resp);
+				Assert.assertNull(resp.getFirstHeader("Set-Cookie"));
+				
+				resp = sc.doRequest(new HttpGet(BASE_URL + "/securedGet"));
+				TestUtils.assertStatus(401, resp);
+				Assert.assertNull(resp.getFirstHeader("Set-Cookie"));
+				
+			}
+			
+			Assert.assertEquals(0, metrics.getSessionCreatedCount());
+			Assert.assertEquals(0, metrics.getSessionAccessCount());
+			// -----------------------------------------------------------------
+			
+			// Only registration creates a session -----------------------------
+			HttpClient client = doLogin(sc, LoginType.SIMPLE);
+			Assert.assertEquals(1, metrics.getSessionCreatedCount());
+			Assert.assertEquals(1, metrics.getSessionAccessCount());
+			
+			// Public actions do not read the session
+			resp = sc.doRequest(client, new HttpGet(BASE_URL + "/publicGet"));
+			TestUtils.assertStringResponse(200, "OK", resp);
+			Assert.assertEquals(1, metrics.getSessionAccessCount());
+			
+			// Session is accessed once per request
+			resp = sc.doRequest(client, new HttpGet(BASE_URL + "/extraSecuredGet"));
+			TestUtils.assertStatus(403, resp);
+			Assert.assertEquals(2, metrics.getSessionAccessCount());
+			Assert.assertEquals(1, metrics.getSessionCreatedCount());
+			// -----------------------------------------------------------------
+		} finally {
+			WebSecurity.getSecurityManager().setDenialMode(DenialMode.STACK_TRACE);
+			WebSecurity.getSecurityManager().setMetrics(null);
+		}
+	}
 	// =========================================================================
 }
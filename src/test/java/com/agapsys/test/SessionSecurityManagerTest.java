@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.security.web.AttributeService;
+import com.agapsys.security.web.BasicUser;
+import com.agapsys.security.web.CompactUserCodec;
+import com.agapsys.security.web.IdentifiedUser;
+import com.agapsys.security.web.SessionSecurityManager;
+import com.agapsys.security.web.WebSecurityFilter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SessionSecurityManagerTest {
+	// CLASS SCOPE =============================================================
+	private static final String SESSION_ID = "session";
+
+	/** Binds a request to a session backed by given attribute map. */
+	private static void bind(final Map<String, Object> attributes) {
+		final HttpSession session = (HttpSession) Proxy.newProxyInstance(HttpSession.class.getClassLoader(), new Class<?>[] {HttpSession.class}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				switch (method.getName()) {
+					case "getId":
+						return SESSION_ID;
+
+					case "getAttribute":
+						return attributes.get((String) args[0]);
+
+					case "setAttribute":
+						attributes.put((String) args[0], args[1]);
+						return null;
+
+					case "removeAttribute":
+						attributes.remove((String) args[0]);
+						return null;
+
+					default:
+						throw new UnsupportedOperationException(method.getName());
+				}
+			}
+		});
+
+		Object request = Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				switch (method.getName()) {
+					case "getRequestedSessionId":
+						return SESSION_ID;
+
+					case "getSession":
+						return session;
+
+					default:
+						throw new UnsupportedOperationException(method.getName());
+				}
+			}
+		});
+
+		AttributeService attributeService = AttributeService.getInstance();
+		attributeService.destroyAttributes();
+		attributeService.setAttribute(WebSecurityFilter.ATTR_HTTP_REQUEST, request);
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@After
+	public void after() {
+		AttributeService.getInstance().destroyAttributes();
+	}
+
+	@Test
+	public void incompatibleCodecTest() {
+		Map<String, Object> attributes = new LinkedHashMap<>();
+
+		SessionSecurityManager oldSecurityManager = new SessionSecurityManager(new CompactUserCodec("CODEC_READER", "CODEC_WRITER"));
+		bind(attributes);
+		oldSecurityManager.setCurrentUser(new BasicUser("user", Arrays.asList("CODEC_WRITER"), false));
+		Assert.assertEquals(1, attributes.size());
+
+		bind(attributes);
+		Assert.assertEquals("user", ((IdentifiedUser) oldSecurityManager.getCurrentUser()).getId());
+
+		// A dictionary which is not an extension of the previous one cannot decode the user
+		SessionSecurityManager newSecurityManager = new SessionSecurityManager(new CompactUserCodec("CODEC_WRITER"));
+		bind(attributes);
+		Assert.assertNull(newSecurityManager.getCurrentUser());
+		Assert.assertTrue(attributes.isEmpty());
+
+		// Session can be used for a new login
+		bind(attributes);
+		newSecurityManager.setCurrentUser(new BasicUser("user", Arrays.asList("CODEC_WRITER"), false));
+		bind(attributes);
+		Assert.assertTrue(newSecurityManager.isAllowed(new String[] {"CODEC_WRITER"}));
+	}
+	// =========================================================================
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.http.HttpClient;
+import com.agapsys.http.HttpGet;
+import com.agapsys.http.HttpHeader;
+import com.agapsys.http.HttpResponse;
+import com.agapsys.http.HttpResponse.StringResponse;
+import com.agapsys.security.web.HmacKeyRing;
+import com.agapsys.security.web.SignedCsrfSecurityManager;
+import com.agapsys.security.web.WebSecurity;
+import com.agapsys.security.web.WebSecurityFilter;
+import com.agapsys.sevlet.container.ServletContainer;
+import com.agapsys.sevlet.container.StacktraceErrorHandler;
+import com.agapsys.test.app.SignedCsrfController;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class SignedCsrfControllerTest {
+	// CLASS SCOPE =============================================================
+	private static final String BASE_URL = "/signedCsrf";
+	
+	private static final long ROTATION_INTERVAL = 60 * 1000;
+	private static final long GRACE_PERIOD      = 10 * 1000;
+	
+	private static long now = 0;
+	
+	private static class TestKeyRing extends HmacKeyRing {
+		public TestKeyRing() {
+			super(ROTATION_INTERVAL, GRACE_PERIOD);
+		}
+
+		@Override
+		protected long currentTimeMillis() {
+			return now;
+		}
+	}
+	
+	private static class TestSecurityManager extends SignedCsrfSecurityManager {
+		public TestSecurityManager() {
+			super(new TestKeyRing());
+		}
+
+		@Override
+		protected long currentTimeMillis() {
+			return now;
+		}
+	}
+	
+	private static final TestSecurityManager SECURITY_MANAGER = new TestSecurityManager();
+	
+	@BeforeClass
+	public static void beforeClass() {
+		WebSecurity.init(SECURITY_MANAGER, "com.agapsys.test.app.SignedCsrfController");
+	}
+	
+	public static enum LoginType {
+		SIMPLE(BASE_URL + "/doSimpleLogin"),
+		EXTRA(BASE_URL + "/doExtraLogin"),
+		ADMIN(BASE_URL + "/doAdminLogin");
+		
+		private final String uri;
+		
+		private LoginType(String uri) {
+			this.uri = uri;
+		}
+		
+		public String getUri() {
+			return uri;
+		}
+	}
+	
+	public static HttpClient doLogin(ServletContainer sc, LoginType loginType, boolean assignCsrf) {
+		if (loginType == null)
+			throw new IllegalArgumentException("Login type must be informed");
+		
+		HttpClient client = new HttpClient();
+		StringResponse resp = sc.doRequest(client, new HttpGet(loginType.getUri()));
+		HttpHeader csrfHeader = resp.getFirstHeader(SignedCsrfSecurityManager.CSRF_HEADER);
+		Assert.assertNotNull(csrfHeader);
+		if (assignCsrf)
+			client.addDefaultHeaders(csrfHeader);
+		
+		return client;
+	}
+	// =========================================================================
+	
+	// INSTANCE SCOPE ==========================================================
+	private final ServletContainer sc;
+	
+	public SignedCsrfControllerTest() {
+		sc = new ServletContainerBuilder()
+			.registerController(SignedCsrfController.class)
+			.registerFilter(WebSecurityFilter.class, "/*")
+			.setErrorHandler(new StacktraceErrorHandler())
+			.build();
+	}
+	
+	@Before
+	public void before() {
+		now = 10 * ROTATION_INTERVAL;
+		SECURITY_MANAGER.setMaxTokenAge(SignedCsrfSecurityManager.DEFAULT_MAX_TOKEN_AGE);
+		sc.startServer();
+	}
+	
+	@After
+	public void after() {
+		sc.stopServer();
+	}
+	
+	@Test
+	public void securedGetTest() {
+		HttpResponse.StringResponse resp;
+		HttpClient client;
+		String uri = BASE_URL + "/securedGet";
+		
+		// Unlogged access -----------------------------------------------------
+		resp = sc.doRequest(new HttpGet(uri));
+		TestUtils.assertStatus(401, resp);
+		// ---------------------------------------------------------------------
+		
+		// Simple user without CSRF token --------------------------------------
+		client = doLogin(sc, LoginType.SIMPLE, false);
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(403, resp);
+		// ---------------------------------------------------------------------
+		
+		// Simple user with CSRF token -----------------------------------------
+		client = doLogin(sc, LoginType.SIMPLE, true);
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		// ---------------------------------------------------------------------
+		
+		// Admin user without CSRF ---------------------------------------------
+		client = doLogin(sc, LoginType.ADMIN, false);
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(403, resp);
+		// ---------------------------------------------------------------------
+		
+		// Admin user with CSRF-------------------------------------------------
+		client = doLogin(sc, LoginType.ADMIN, true);
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		// ---------------------------------------------------------------------
+	}
+	
+	@Test
+	public void extraSecuredGetTest() {
+		HttpResponse.StringResponse resp;
+		HttpClient client;
+		String uri = BASE_URL + "/extraSecuredGet";
+		
+		// Simple user ---------------------------------------------------------
+		client = doLogin(sc, LoginType.SIMPLE, true);
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(403, resp);
+		// ---------------------------------------------------------------------
+		
+		// Extra user ----------------------------------------------------------
+		client = doLogin(sc, LoginType.EXTRA, true);
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		// ---------------------------------------------------------------------
+	}
+	
+	@Test
+	public void foreignTokenTest() {
+		HttpResponse.StringResponse resp;
+		String uri = BASE_URL + "/securedGet";
+		
+		// A valid token issued for another session is rejected
+		HttpClient client = doLogin(sc, LoginType.SIMPLE, false);
+		StringResponse loginResp = sc.doRequest(new HttpClient(), new HttpGet(LoginType.SIMPLE.getUri()));
+		client.addDefaultHeaders(loginResp.getFirstHeader(SignedCsrfSecurityManager.CSRF_HEADER));
+		
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(403, resp);
+	}
+	
+	@Test
+	public void keyRotationTest() {
+		HttpResponse.StringResponse resp;
+		String uri = BASE_URL + "/securedGet";
+		
+		HttpClient client = doLogin(sc, LoginType.SIMPLE, true);
+		
+		// Same period ---------------------------------------------------------
+		now += ROTATION_INTERVAL - 1;
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		Assert.assertNull(resp.getFirstHeader(SignedCsrfSecurityManager.CSRF_HEADER));
+		// ---------------------------------------------------------------------
+		
+		// Grace window: token is accepted and renewed -------------------------
+		now += GRACE_PERIOD;
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		HttpHeader renewedHeader = resp.getFirstHeader(SignedCsrfSecurityManager.CSRF_HEADER);
+		Assert.assertNotNull(renewedHeader);
+		// ---------------------------------------------------------------------
+		
+		// After grace window --------------------------------------------------
+		now += 1;
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(403, resp);
+		// ---------------------------------------------------------------------
+		
+		// Renewed token -------------------------------------------------------
+		client.clearDefaultHeaders();
+		client.addDefaultHeaders(renewedHeader);
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		// ---------------------------------------------------------------------
+	}
+	
+	@Test
+	public void tokenAgeTest() {
+		HttpResponse.StringResponse resp;
+		String uri = BASE_URL + "/securedGet";
+		long maxTokenAge = 40 * 1000; // Shorter than key rotation interval
+		
+		SECURITY_MANAGER.setMaxTokenAge(maxTokenAge);
+		HttpClient client = doLogin(sc, LoginType.SIMPLE, true);
+		
+		// Fresh token ---------------------------------------------------------
+		now += maxTokenAge / 2;
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		Assert.assertNull(resp.getFirstHeader(SignedCsrfSecurityManager.CSRF_HEADER));
+		// ---------------------------------------------------------------------
+		
+		// Near expiry: token is accepted and renewed --------------------------
+		now += 1;
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		HttpHeader renewedHeader = resp.getFirstHeader(SignedCsrfSecurityManager.CSRF_HEADER);
+		Assert.assertNotNull(renewedHeader);
+		// ---------------------------------------------------------------------
+		
+		// Expired token -------------------------------------------------------
+		now += maxTokenAge / 2;
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(403, resp);
+		// ---------------------------------------------------------------------
+		
+		// Renewed token -------------------------------------------------------
+		client.clearDefaultHeaders();
+		client.addDefaultHeaders(renewedHeader);
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		Assert.assertNull(resp.getFirstHeader(SignedCsrfSecurityManager.CSRF_HEADER));
+		// ---------------------------------------------------------------------
+	}
+	// =========================================================================
+}
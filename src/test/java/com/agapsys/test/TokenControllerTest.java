@@ -0,0 +1,251 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.http.HttpClient;
+import com.agapsys.http.HttpDelete;
+import com.agapsys.http.HttpGet;
+import com.agapsys.http.HttpHeader;
+import com.agapsys.http.HttpResponse;
+import com.agapsys.http.HttpResponse.StringResponse;
+import com.agapsys.security.web.HmacKeyRing;
+import com.agapsys.security.web.TokenSecurityManager;
+import com.agapsys.security.web.WebSecurity;
+import com.agapsys.security.web.WebSecurityFilter;
+import com.agapsys.sevlet.container.ServletContainer;
+import com.agapsys.sevlet.container.StacktraceErrorHandler;
+import com.agapsys.test.app.TokenController;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TokenControllerTest {
+	// CLASS SCOPE =============================================================
+	private static final String BASE_URL = "/token";
+	
+	private static final long TOKEN_TTL = 60 * 1000;
+	
+	private static long now = 0;
+	
+	private static class TestSecurityManager extends TokenSecurityManager {
+		public TestSecurityManager() {
+			super(new HmacKeyRing(), TOKEN_TTL);
+		}
+
+		@Override
+		protected long currentTimeMillis() {
+			return now;
+		}
+	}
+	
+	@BeforeClass
+	public static void beforeClass() {
+		WebSecurity.init(new TestSecurityManager(), "com.agapsys.test.app.TokenController");
+	}
+	
+	public static enum LoginType {
+		SIMPLE(BASE_URL + "/doSimpleLogin"),
+		EXTRA(BASE_URL + "/doExtraLogin"),
+		ADMIN(BASE_URL + "/doAdminLogin");
+		
+		private final String uri;
+		
+		private LoginType(String uri) {
+			this.uri = uri;
+		}
+		
+		public String getUri() {
+			return uri;
+		}
+	}
+	
+	public static HttpClient doLogin(ServletContainer sc, LoginType loginType) {
+		if (loginType == null)
+			throw new IllegalArgumentException("Login type must be informed");
+		
+		HttpClient client = new HttpClient();
+		StringResponse resp = sc.doRequest(new HttpClient(), new HttpGet(loginType.getUri()));
+		HttpHeader tokenHeader = resp.getFirstHeader(TokenSecurityManager.DEFAULT_TOKEN_HEADER);
+		Assert.assertNotNull(tokenHeader);
+		client.addDefaultHeaders(tokenHeader);
+		
+		return client;
+	}
+	
+	private static HttpClient newCookieClient(String cookie, String headerName, String headerValue) {
+		HttpClient client = new HttpClient();
+		client.addDefaultHeader("Cookie", cookie);
+		
+		if (headerName != null)
+			client.addDefaultHeader(headerName, headerValue);
+		
+		return client;
+	}
+	// =========================================================================
+	
+	// INSTANCE SCOPE ==========================================================
+	private final ServletContainer sc;
+	
+	public TokenControllerTest() {
+		sc = new ServletContainerBuilder()
+			.registerController(TokenController.class)
+			.registerFilter(WebSecurityFilter.class, "/*")
+			.setErrorHandler(new StacktraceErrorHandler())
+			.build();
+	}
+	
+	@Before
+	public void before() {
+		now = System.currentTimeMillis();
+		sc.startServer();
+	}
+	
+	@After
+	public void after() {
+		sc.stopServer();
+	}
+	
+	@Test
+	public void extraSecuredGetTest() {
+		HttpResponse.StringResponse resp;
+		HttpClient client;
+		String uri = BASE_URL + "/extraSecuredGet";
+		
+		// Unlogged access -----------------------------------------------------
+		resp = sc.doRequest(new HttpGet(uri));
+		TestUtils.assertStatus(401, resp);
+		// ---------------------------------------------------------------------
+		
+		// Simple user ---------------------------------------------------------
+		client = doLogin(sc, LoginType.SIMPLE);
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(403, resp);
+		// ---------------------------------------------------------------------
+		
+		// Extra user ----------------------------------------------------------
+		client = doLogin(sc, LoginType.EXTRA);
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		// ---------------------------------------------------------------------
+		
+		// Admin user ---------------------------------------------------------
+		client = doLogin(sc, LoginType.ADMIN);
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		// ---------------------------------------------------------------------
+	}
+	
+	@Test
+	public void tamperedTokenTest() {
+		HttpResponse.StringResponse resp;
+		String uri = BASE_URL + "/securedGet";
+		
+		HttpClient client = doLogin(sc, LoginType.SIMPLE);
+		String token = client.getDefaultHeaders().get(0).getValue();
+		char last = token.charAt(token.length() - 1);
+		String tamperedToken = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+		
+		client = new HttpClient();
+		client.addDefaultHeader(TokenSecurityManager.DEFAULT_TOKEN_HEADER, tamperedToken);
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(401, resp);
+	}
+	
+	@Test
+	public void expirationTest() {
+		HttpResponse.StringResponse resp;
+		String uri = BASE_URL + "/securedGet";
+		
+		HttpClient client = doLogin(sc, LoginType.SIMPLE);
+		
+		// Fresh token is not renewed ------------------------------------------
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		Assert.assertNull(resp.getFirstHeader(TokenSecurityManager.DEFAULT_TOKEN_HEADER));
+		// ---------------------------------------------------------------------
+		
+		// Token close to expiration is renewed --------------------------------
+		now += TOKEN_TTL - 1;
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		HttpHeader renewedHeader = resp.getFirstHeader(TokenSecurityManager.DEFAULT_TOKEN_HEADER);
+		Assert.assertNotNull(renewedHeader);
+		// ---------------------------------------------------------------------
+		
+		// Expired token -------------------------------------------------------
+		now += 1;
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStatus(401, resp);
+		// ---------------------------------------------------------------------
+		
+		// Renewed token -------------------------------------------------------
+		client.clearDefaultHeaders();
+		client.addDefaultHeaders(renewedHeader);
+		resp = sc.doRequest(client, new HttpGet(uri));
+		TestUtils.assertStringResponse(200, "OK", resp);
+		// ---------------------------------------------------------------------
+	}
+	
+	@Test
+	public void cookieTest() {
+		HttpResponse.StringResponse resp;
+		TokenSecurityManager securityManager = (TokenSecurityManager) WebSecurity.getSecurityManager();
+		securityManager.setCookieName("auth");
+		
+		try {
+			resp = sc.doRequest(new HttpGet(LoginType.SIMPLE.getUri()));
+			String setCookie = resp.getFirstHeader("Set-Cookie").getValue();
+			Assert.assertTrue(setCookie, setCookie.contains("; HttpOnly"));
+			Assert.assertTrue(setCookie, setCookie.endsWith("; SameSite=" + TokenSecurityManager.DEFAULT_COOKIE_SAME_SITE));
+			
+			String cookie = setCookie.substring(0, setCookie.indexOf(';'));
+			String uri = BASE_URL + "/securedDelete";
+			String origin = "http://localhost:" + sc.getLocalPort();
+			
+			// Safe methods accept cookie-carried tokens -----------------------
+			resp = sc.doRequest(newCookieClient(cookie, null, null), new HttpGet(BASE_URL + "/securedGet"));
+			TestUtils.assertStringResponse(200, "OK", resp);
+			// -----------------------------------------------------------------
+			
+			// Unsafe methods require a same-origin request --------------------
+			resp = sc.doRequest(newCookieClient(cookie, null, null), new HttpDelete(uri));
+			TestUtils.assertStatus(401, resp);
+			
+			resp = sc.doRequest(newCookieClient(cookie, "Origin", "http://evil.example.com"), new HttpDelete(uri));
+			TestUtils.assertStatus(401, resp);
+			
+			resp = sc.doRequest(newCookieClient(cookie, "Referer", origin + ".evil.example.com/page"), new HttpDelete(uri));
+			TestUtils.assertStatus(401, resp);
+			
+			resp = sc.doRequest(newCookieClient(cookie, "Origin", origin), new HttpDelete(uri));
+			TestUtils.assertStringResponse(200, "OK", resp);
+			
+			resp = sc.doRequest(newCookieClient(cookie, "Referer", origin + "/page"), new HttpDelete(uri));
+			TestUtils.assertStringResponse(200, "OK", resp);
+			// -----------------------------------------------------------------
+			
+			// Header-carried tokens do not depend on origin -------------------
+			resp = sc.doRequest(doLogin(sc, LoginType.SIMPLE), new HttpDelete(uri));
+			TestUtils.assertStringResponse(200, "OK", resp);
+			// -----------------------------------------------------------------
+		} finally {
+			securityManager.setCookieName(null);
+		}
+	}
+	// =========================================================================
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test;
+
+import com.agapsys.security.web.AttributeService;
+import com.agapsys.security.web.User;
+import com.agapsys.security.web.WebSecurityFilter;
+import com.agapsys.security.web.WebSecurityManager;
+import com.agapsys.test.app.ExtraUser;
+import com.agapsys.test.app.SimpleUser;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import javax.servlet.http.HttpServletRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UserResolutionTest {
+	// CLASS SCOPE =============================================================
+	/** Security manager counting accesses to the underlying storage. */
+	private static class CountingSecurityManager extends WebSecurityManager {
+		private User user;
+		private int  loads;
+		private int  requestChecks;
+
+		@Override
+		protected User loadCurrentUser() {
+			loads++;
+			return user;
+		}
+
+		@Override
+		protected void storeCurrentUser(User user) {
+			this.user = user;
+		}
+
+		@Override
+		protected void removeCurrentUser() {
+			this.user = null;
+		}
+
+		@Override
+		protected boolean isAllowed(HttpServletRequest request) {
+			requestChecks++;
+			return true;
+		}
+	}
+
+	private static void bindNewRequest() {
+		HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				return null;
+			}
+		});
+
+		AttributeService attributeService = AttributeService.getInstance();
+		attributeService.destroyAttributes();
+		attributeService.setAttribute(WebSecurityFilter.ATTR_HTTP_REQUEST, request);
+	}
+	// =========================================================================
+
+	// INSTANCE SCOPE ==========================================================
+	@After
+	public void after() {
+		AttributeService.getInstance().destroyAttributes();
+	}
+
+	@Test
+	public void memoizationTest() {
+		CountingSecurityManager securityManager = new CountingSecurityManager();
+		securityManager.user = new ExtraUser();
+
+		// User and request verdict are resolved once per request
+		bindNewRequest();
+		for (int i = 0; i < 3; i++) {
+			Assert.assertTrue(securityManager.getCurrentUser() instanceof ExtraUser);
+			Assert.assertTrue(securityManager.isAllowed(new String[] {"ROLE"}));
+		}
+		Assert.assertEquals(1, securityManager.loads);
+		Assert.assertEquals(1, securityManager.requestChecks);
+
+		bindNewRequest();
+		securityManager.getCurrentUser();
+		Assert.assertEquals(2, securityManager.loads);
+
+		// Outside a request, there is nothing to memoize into
+		AttributeService.getInstance().destroyAttributes();
+		securityManager.getCurrentUser();
+		securityManager.getCurrentUser();
+		Assert.assertEquals(4, securityManager.loads);
+	}
+
+	@Test
+	public void invalidationTest() {
+		CountingSecurityManager securityManager = new CountingSecurityManager();
+		securityManager.user = new ExtraUser();
+
+		bindNewRequest();
+		Assert.assertTrue(securityManager.isAllowed(new String[] {"ROLE"}));
+
+		// Registration replaces memoized user and verdict without a new lookup
+		SimpleUser user = new SimpleUser();
+		securityManager.setCurrentUser(user);
+		Assert.assertSame(user, securityManager.getCurrentUser());
+		Assert.assertFalse(securityManager.isAllowed(new String[] {"ROLE"}));
+		Assert.assertEquals(1, securityManager.loads);
+		Assert.assertEquals(2, securityManager.requestChecks);
+
+		securityManager.unregisterCurrentUser();
+		Assert.assertNull(securityManager.getCurrentUser());
+		Assert.assertFalse(securityManager.isAllowed(new String[0]));
+		Assert.assertEquals(1, securityManager.loads);
+	}
+	// =========================================================================
+}
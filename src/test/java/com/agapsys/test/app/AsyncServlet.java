@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test.app;
+
+import com.agapsys.security.web.NotAllowedException;
+import com.agapsys.security.web.RequestContextExecutor;
+import com.agapsys.security.web.User;
+import com.agapsys.security.web.WebSecurity;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet which completes its requests from another thread.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class AsyncServlet extends HttpServlet {
+	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+	private final Executor executor = new RequestContextExecutor(executorService);
+	private final AsyncService service = new AsyncService();
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		switch (req.getPathInfo()) {
+			case "/login":
+				WebSecurity.setCurrentUser(new ExtraUser());
+				break;
+
+			case "/securedGet":
+				securedGet(req);
+				break;
+
+			case "/dispatch":
+				// Public path forwarding the request to a path guarded by a path rule
+				((org.eclipse.jetty.server.Request) req).setAsyncSupported(true);
+				req.startAsync().dispatch(req.getServletPath() + "/admin");
+				break;
+
+			case "/admin":
+				resp.getWriter().print("ADMIN");
+				break;
+
+			default:
+				resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+		}
+	}
+
+	private void securedGet(HttpServletRequest req) {
+		// Servlet is registered without async support by the embedded container
+		((org.eclipse.jetty.server.Request) req).setAsyncSupported(true);
+
+		final AsyncContext asyncContext = req.startAsync();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				HttpServletResponse resp = (HttpServletResponse) asyncContext.getResponse();
+
+				try {
+					User user = WebSecurity.getCurrentUser();
+					resp.getWriter().print(user == null ? "null" : user.getRoles().toString());
+					resp.getWriter().print(":");
+					resp.getWriter().print(service.securedGet());
+				} catch (NotAllowedException ex) {
+					resp.setStatus(ex.getUser() == null ? HttpServletResponse.SC_UNAUTHORIZED : HttpServletResponse.SC_FORBIDDEN);
+				} catch (IOException ex) {
+					throw new RuntimeException(ex);
+				} finally {
+					asyncContext.complete();
+				}
+			}
+		});
+	}
+
+	@Override
+	public void destroy() {
+		executorService.shutdown();
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test.app;
+
+import com.agapsys.rcf.HttpMethod;
+import com.agapsys.rcf.WebAction;
+import com.agapsys.rcf.WebController;
+import com.agapsys.security.web.Endpoint;
+import com.agapsys.security.web.EndpointMapper;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Maps controller actions to their request paths.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+public class RcfEndpointMapper implements EndpointMapper {
+	@Override
+	public Collection<Endpoint> getEndpoints(Class<?> securedClass, Method method) {
+		WebController webController = securedClass.getAnnotation(WebController.class);
+		WebAction webAction = method.getAnnotation(WebAction.class);
+		
+		if (webController == null || webAction == null)
+			return null;
+		
+		String[] httpMethods = new String[webAction.httpMethods().length];
+		for (int i = 0; i < httpMethods.length; i++) {
+			HttpMethod httpMethod = webAction.httpMethods()[i];
+			httpMethods[i] = httpMethod.name();
+		}
+		
+		String controllerPath = "/" + webController.value();
+		String mapping = webAction.mapping().isEmpty() ? method.getName() : webAction.mapping();
+		
+		List<Endpoint> endpoints = new ArrayList<>();
+		endpoints.add(new Endpoint(controllerPath + "/" + mapping, httpMethods));
+		
+		if (webAction.defaultAction())
+			endpoints.add(new Endpoint(controllerPath, httpMethods));
+		
+		return endpoints;
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2016 Agapsys Tecnologia Ltda-ME.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agapsys.test.app;
+
+import com.agapsys.security.Secured;
+import com.agapsys.security.Unsecured;
+
+/**
+ * Service instrumented at build time. It must not be loaded by the test class loader.
+ * @author Leandro Oliveira (leandro@agapsys.com)
+ */
+@Secured("ROLE")
+public class WovenService {
+	public String securedGet() {
+		return "OK";
+	}
+	
+	@Unsecured
+	public String publicGet() {
+		return "OK";
+	}
+}